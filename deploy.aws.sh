@@ -141,18 +141,25 @@ ssh $SSH_OPTIONS -i "$SSH_KEY_PATH_EXPANDED" ubuntu@$APP_PUBLIC_IP "DB_HOST_IP=$
 
   DB_USER_VALUE=$(grep "export DB_USER" ~/.bashrc | tail -n 1 | cut -d"=" -f2)
   DB_PASSWORD_VALUE=$(grep "export DB_PASSWORD" ~/.bashrc | tail -n 1 | cut -d"=" -f2)
+  SHARED_CAPABILITY_SECRET_VALUE=$(grep "export SHARED_CAPABILITY_SECRET" ~/.bashrc | tail -n 1 | cut -d"=" -f2)
 
   if [ -z "$DB_USER_VALUE" ] || [ -z "$DB_PASSWORD_VALUE" ]; then
     echo "Error: DB_USER or DB_PASSWORD not found in ~/.bashrc"
     exit 1
   fi
 
+  if [ -z "$SHARED_CAPABILITY_SECRET_VALUE" ]; then
+    echo "Error: SHARED_CAPABILITY_SECRET not found in ~/.bashrc"
+    echo "Please ensure you have run the setup commands from DEPLOYMENT.AWS.md"
+    exit 1
+  fi
+
   # IMPORTANT: Removed '-v' to prevent deleting any app volumes (though app uses host bind mount)
   # Suppress warnings about variables not being set during 'down'
-  DB_USER=$DB_USER_VALUE DB_PASSWORD=$DB_PASSWORD_VALUE DB_HOST=$DB_HOST_IP docker compose -f docker/app/docker-compose.aws.app.yml down
+  DB_USER=$DB_USER_VALUE DB_PASSWORD=$DB_PASSWORD_VALUE DB_HOST=$DB_HOST_IP SHARED_CAPABILITY_SECRET=$SHARED_CAPABILITY_SECRET_VALUE docker compose -f docker/app/docker-compose.aws.app.yml down
 
   # --build triggers the multi-stage build on the remote server
-  DB_USER=$DB_USER_VALUE DB_PASSWORD=$DB_PASSWORD_VALUE DB_HOST=$DB_HOST_IP docker compose -f docker/app/docker-compose.aws.app.yml up --build -d
+  DB_USER=$DB_USER_VALUE DB_PASSWORD=$DB_PASSWORD_VALUE DB_HOST=$DB_HOST_IP SHARED_CAPABILITY_SECRET=$SHARED_CAPABILITY_SECRET_VALUE docker compose -f docker/app/docker-compose.aws.app.yml up --build -d
 '
 
 print_header "Cleaning up old Docker images on both instances..."
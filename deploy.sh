@@ -47,6 +47,10 @@ elif [ ! -s .env ]; then
     echo "❌ Error: '.env' file is empty."
     echo "Please populate it with the required environment variables."
     exit 1
+elif ! grep -Eq '^SHARED_CAPABILITY_SECRET=.+' .env; then
+    echo "❌ Error: SHARED_CAPABILITY_SECRET is not set in '.env'."
+    echo "Generate one with 'openssl rand -hex 32' and add it as SHARED_CAPABILITY_SECRET=<value>."
+    exit 1
 fi
 
 # Check for Docker
@@ -53,13 +53,14 @@ create table TAGS
 
 create table USERS
 (
-    CREATED_AT TIMESTAMP(6)       not null,
-    ID         NUMBER(19) generated as identity
+    CREATED_AT     TIMESTAMP(6)       not null,
+    ID             NUMBER(19) generated as identity
         primary key,
-    UPDATED_AT TIMESTAMP(6)       not null,
-    EMAIL      VARCHAR2(255 char) not null
+    UPDATED_AT     TIMESTAMP(6)       not null,
+    EMAIL          VARCHAR2(255 char) not null
         unique,
-    PASSWORD   VARCHAR2(255 char) not null
+    PASSWORD       VARCHAR2(255 char) not null,
+    IMAGES_VERSION NUMBER(19) default 0 not null
 )
     /
 
@@ -75,20 +76,37 @@ create table FILTERS
 )
     /
 
+create table IMAGE_METADATA
+(
+    ID            NUMBER(19) generated by default as identity
+        primary key,
+    VERSION       NUMBER(19) default 0 not null,
+    EXIFTOOL      CLOB,
+    EXIFTOOL_DATA BLOB
+)
+    /
+
 create table IMAGES
 (
-    RATING              NUMBER(10),
-    CREATED_AT          TIMESTAMP(6),
-    ID                  NUMBER(19) generated as identity
+    RATING                 NUMBER(10),
+    WIDTH                  NUMBER(10),
+    HEIGHT                 NUMBER(10),
+    CREATED_AT             TIMESTAMP(6),
+    ID                     NUMBER(19) generated as identity
         primary key,
-    IMPORTED_AT         TIMESTAMP(6),
-    MODIFIED_AT         TIMESTAMP(6),
-    USER_ID             NUMBER(19)
+    IMPORTED_AT            TIMESTAMP(6),
+    MODIFIED_AT            TIMESTAMP(6),
+    USER_ID                NUMBER(19)
         constraint FK13LJQFRFWBYVNSDHIHWTA8CPR
             references USERS,
-    ORIGINAL_FILE_NAME  VARCHAR2(255 char) not null,
-    THUMBNAIL_FILE_NAME VARCHAR2(255 char) not null,
-    EXIFTOOL            CLOB
+    ORIGINAL_FILE_NAME     VARCHAR2(255 char) not null,
+    THUMBNAIL_FILE_NAME    VARCHAR2(255 char) not null,
+    DISPLAY_FIELDS_VERSION VARCHAR2(64 char),
+    METADATA_ID            NUMBER(19)
+        constraint UK_IMAGES_METADATA
+            unique
+        constraint FK_IMAGES_METADATA
+            references IMAGE_METADATA
 )
     /
 
@@ -104,6 +122,19 @@ create table IMAGE_TAG
 )
     /
 
+create table IMAGE_DISPLAY_FIELDS
+(
+    IMAGE_ID       NUMBER(19)          not null
+        constraint FK_IMAGE_DISPLAY_FIELDS_IMAGE
+            references IMAGES
+                on delete cascade,
+    METADATA_KEY   VARCHAR2(255 char)  not null,
+    METADATA_VALUE VARCHAR2(4000 char),
+    constraint PK_IMAGE_DISPLAY_FIELDS
+        primary key (IMAGE_ID, METADATA_KEY)
+)
+    /
+
 create table REPORTS
 (
     CREATION_DATE  TIMESTAMP(6)       not null,
@@ -174,4 +205,34 @@ create table USER_HAS_ROLES
             references USERS,
     primary key (ROLE_ID, USER_ID)
 )
-    /
\ No newline at end of file
+    /
+
+create index IDX_IMAGES_USER_IMPORTED on IMAGES (USER_ID, IMPORTED_AT, ID)
+    /
+
+create index IDX_IMAGES_USER_CREATED on IMAGES (USER_ID, CREATED_AT, ID)
+    /
+
+create index IDX_IMAGES_USER_MODIFIED on IMAGES (USER_ID, MODIFIED_AT, ID)
+    /
+
+create index IDX_IMAGES_USER_RATING on IMAGES (USER_ID, RATING, ID)
+    /
+
+create index IDX_IMAGES_USER_FILENAME on IMAGES (USER_ID, LOWER(ORIGINAL_FILE_NAME), ID)
+    /
+
+create index IDX_IMAGES_IMPORTED on IMAGES (IMPORTED_AT, ID)
+    /
+
+create index IDX_IMAGES_CREATED on IMAGES (CREATED_AT, ID)
+    /
+
+create index IDX_IMAGES_MODIFIED on IMAGES (MODIFIED_AT, ID)
+    /
+
+create index IDX_IMAGES_RATING on IMAGES (RATING, ID)
+    /
+
+create index IDX_IMAGES_FILENAME on IMAGES (LOWER(ORIGINAL_FILE_NAME), ID)
+    /
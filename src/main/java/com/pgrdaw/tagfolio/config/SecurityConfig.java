@@ -54,6 +54,7 @@ public class SecurityConfig {
                 "/js/**",
                 "/images/original/**",
                 "/images/thumbnail/**",
+                "/images/rendition/**",
                 "/favicon.ico",
                 "/favicon.svg",
                 "/apple-touch-icon.png",
@@ -6,7 +6,10 @@ import com.pgrdaw.tagfolio.repository.ImageRepository;
 import com.pgrdaw.tagfolio.repository.UserRepository;
 import com.pgrdaw.tagfolio.service.ImageSecurityService;
 import com.pgrdaw.tagfolio.service.ImageService;
-import com.pgrdaw.tagfolio.service.SharedFilterService;
+import com.pgrdaw.tagfolio.service.SharedFilterSnapshotService;
+import com.pgrdaw.tagfolio.service.util.HttpCachingService;
+import com.pgrdaw.tagfolio.service.util.ThumbnailCache;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +19,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -24,11 +28,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -47,28 +53,36 @@ public class ImageDownloadController {
     private final UserRepository userRepository;
     private final ImageService imageService;
     private final ImageSecurityService imageSecurityService;
-    private final SharedFilterService sharedFilterService;
+    private final HttpCachingService httpCachingService;
+    private final ThumbnailCache thumbnailCache;
+    private final SharedFilterSnapshotService sharedFilterSnapshotService;
 
     /**
      * Constructs a new ImageDownloadController.
      *
-     * @param imageRepository      The image repository.
-     * @param userRepository       The user repository.
-     * @param imageService         The image service.
-     * @param imageSecurityService The image security service.
-     * @param sharedFilterService  The shared filter service.
+     * @param imageRepository             The image repository.
+     * @param userRepository              The user repository.
+     * @param imageService                The image service.
+     * @param imageSecurityService        The image security service.
+     * @param httpCachingService          The HTTP caching service.
+     * @param thumbnailCache              The in-memory thumbnail cache.
+     * @param sharedFilterSnapshotService The service that checks which images are shared with anonymous visitors.
      */
     @Autowired
     public ImageDownloadController(ImageRepository imageRepository,
                                    UserRepository userRepository,
                                    ImageService imageService,
                                    ImageSecurityService imageSecurityService,
-                                   SharedFilterService sharedFilterService) {
+                                   HttpCachingService httpCachingService,
+                                   ThumbnailCache thumbnailCache,
+                                   SharedFilterSnapshotService sharedFilterSnapshotService) {
         this.imageRepository = imageRepository;
         this.userRepository = userRepository;
         this.imageService = imageService;
         this.imageSecurityService = imageSecurityService;
-        this.sharedFilterService = sharedFilterService;
+        this.httpCachingService = httpCachingService;
+        this.thumbnailCache = thumbnailCache;
+        this.sharedFilterSnapshotService = sharedFilterSnapshotService;
     }
 
     /**
@@ -103,8 +117,9 @@ public class ImageDownloadController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
+            SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.getSnapshot(token);
             for (Long id : ids) {
-                if (!sharedFilterService.isImageInSharedFilter(id, token)) {
+                if (snapshot == null || !snapshot.contains(id)) {
                     logger.warn("Anonymous user attempted to export image {} not part of shared filter with token {}.", id, token);
                     return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
                 }
@@ -126,15 +141,26 @@ public class ImageDownloadController {
     }
 
     /**
-     * Serves a thumbnail image.
+     * Serves a thumbnail image. Conditional requests for a thumbnail that was served before are answered
+     * without loading the image.
      *
      * @param id             The ID of the image.
+     * @param version        The version of the thumbnail in the URL, if any.
      * @param authentication The current authentication object.
+     * @param webRequest     The current request.
      * @return A {@link ResponseEntity} with the thumbnail resource.
      */
     @GetMapping("/thumbnail/{id}")
     @ResponseBody
-    public ResponseEntity<Resource> serveThumbnailImage(@PathVariable Long id, Authentication authentication) {
+    public ResponseEntity<Resource> serveThumbnailImage(@PathVariable Long id,
+                                                        @RequestParam(value = "v", required = false) String version,
+                                                        Authentication authentication,
+                                                        WebRequest webRequest) {
+        ResponseEntity<Resource> notModified = httpCachingService.checkThumbnailNotModified(id, 0, version, webRequest);
+        if (notModified != null) {
+            return notModified;
+        }
+
         Image image = imageRepository.findByIdWithUser(id)
                 .orElseThrow(() -> new RuntimeException("Image not found with id: " + id));
 
@@ -145,17 +171,91 @@ public class ImageDownloadController {
             }
         }
 
-        return serveImageResource(id, image.getThumbnailFileName(), true, image.getUser().getId());
+        return serveImageResource(id, image.getThumbnailFileName(), true, image.getUser().getId(), version, webRequest);
     }
 
-    private ResponseEntity<Resource> serveImageResource(Long id, String fileName, boolean isThumbnail, Long userId) {
+    /**
+     * Serves a rendition of an image, that is, a copy scaled to one of the configured sizes.
+     * Sizes that are not configured are rounded up to the next rendition. Renditions no larger than the thumbnail
+     * follow the thumbnail's access rules, including conditional requests answered without loading the image;
+     * larger ones follow the original's. All renditions are versioned by the thumbnail.
+     *
+     * @param id             The ID of the image.
+     * @param size           The requested maximum dimension.
+     * @param version        The version of the thumbnail in the URL, if any.
+     * @param authentication The current authentication object.
+     * @param request        The HTTP request.
+     * @param webRequest     The current request.
+     * @return A {@link ResponseEntity} with the rendition resource.
+     */
+    @GetMapping("/rendition/{id}/{size}")
+    @ResponseBody
+    public ResponseEntity<Resource> serveRendition(@PathVariable Long id,
+                                                   @PathVariable int size,
+                                                   @RequestParam(value = "v", required = false) String version,
+                                                   Authentication authentication,
+                                                   HttpServletRequest request,
+                                                   WebRequest webRequest) {
+        int renditionSize = imageService.resolveRenditionSize(size);
+        boolean thumbnailSized = imageService.isThumbnailSizedRendition(renditionSize);
+        if (thumbnailSized) {
+            ResponseEntity<Resource> notModified = httpCachingService.checkThumbnailNotModified(id, renditionSize, version, webRequest);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+
+        Image image = imageRepository.findByIdWithUser(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found with id: " + id));
+
+        if (!(authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken)) {
+            User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
+            if (!imageSecurityService.canRead(user, image)) {
+                throw new AccessDeniedException("You do not have permission to view this image.");
+            }
+        } else if (!thumbnailSized && !sharedFilterSnapshotService.isSharedWithVisitor(request, id)) {
+            throw new AccessDeniedException("You do not have permission to view this image.");
+        }
+
+        try {
+            Resource resource = imageService.loadRenditionAsResource(image, renditionSize);
+            if (!resource.exists() || !resource.isReadable()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Rendition not found for image id: " + id);
+            }
+            if (thumbnailSized) {
+                httpCachingService.rememberThumbnail(id, renditionSize, resource,
+                        imageService.loadThumbnailAsResource(image.getThumbnailFileName(), image.getUser().getId()));
+            }
+            return httpCachingService.serve(resource, httpCachingService.getValidators(resource), resource.getFilename(),
+                    httpCachingService.getThumbnailVersion(image), version, webRequest);
+        } catch (IOException e) {
+            logger.error("Error serving {} px rendition for image id {}: {}", renditionSize, id, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error serving rendition for image id: " + id, e);
+        }
+    }
+
+    /**
+     * Gets the hit rate and memory use of the thumbnail cache, to size its memory budget.
+     *
+     * @return A {@link ResponseEntity} with the cache statistics.
+     */
+    @GetMapping("/thumbnail-cache/stats")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getThumbnailCacheStats() {
+        return ResponseEntity.ok(thumbnailCache.getStats());
+    }
+
+    private ResponseEntity<Resource> serveImageResource(Long id, String fileName, boolean isThumbnail, Long userId, String version, WebRequest webRequest) {
         try {
             Resource resource = isThumbnail ? imageService.loadThumbnailAsResource(fileName, userId) : imageService.loadImageAsResource(fileName, userId);
 
             if (resource.exists() && resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                        .body(resource);
+                HttpCachingService.Validators validators = httpCachingService.getValidators(resource);
+                if (isThumbnail) {
+                    httpCachingService.rememberThumbnail(id, 0, resource, resource);
+                }
+                return httpCachingService.serve(resource, validators, fileName, validators.version(), version, webRequest);
             } else {
                 logger.error("{} file not found or not readable: {}", isThumbnail ? "Thumbnail" : "Original", resource.getURI());
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, (isThumbnail ? "Thumbnail" : "Original image") + " not found for image id: " + id);
@@ -1,17 +1,19 @@
 package com.pgrdaw.tagfolio.controller;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.ImageRepository;
 import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.DisplayFieldMaterializer;
 import com.pgrdaw.tagfolio.service.ImageSecurityService;
+import com.pgrdaw.tagfolio.service.MetadataStorageMigrator;
 import com.pgrdaw.tagfolio.service.util.MetadataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -25,7 +27,6 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,8 +45,9 @@ public class ImageMetadataController {
     private final UserRepository userRepository;
     private final ImageSecurityService imageSecurityService;
     private final ObjectMapper objectMapper;
-    @SuppressWarnings("unused")
     private final MetadataService metadataService;
+    private final MetadataStorageMigrator metadataStorageMigrator;
+    private final DisplayFieldMaterializer displayFieldMaterializer;
     private final List<String> displayMetadataKeys;
 
     /**
@@ -56,18 +58,24 @@ public class ImageMetadataController {
      * @param imageSecurityService The image security service.
      * @param objectMapper         The object mapper for JSON processing.
      * @param metadataService      The metadata service.
+     * @param metadataStorageMigrator The metadata storage migrator.
+     * @param displayFieldMaterializer The display field materializer.
      */
     @Autowired
     public ImageMetadataController(ImageRepository imageRepository,
                                    UserRepository userRepository,
                                    ImageSecurityService imageSecurityService,
                                    ObjectMapper objectMapper,
-                                   MetadataService metadataService) {
+                                   MetadataService metadataService,
+                                   MetadataStorageMigrator metadataStorageMigrator,
+                                   DisplayFieldMaterializer displayFieldMaterializer) {
         this.imageRepository = imageRepository;
         this.userRepository = userRepository;
         this.imageSecurityService = imageSecurityService;
         this.objectMapper = objectMapper;
         this.metadataService = metadataService;
+        this.metadataStorageMigrator = metadataStorageMigrator;
+        this.displayFieldMaterializer = displayFieldMaterializer;
         this.displayMetadataKeys = metadataService.getDisplayMetadataKeys();
     }
 
@@ -109,26 +117,25 @@ public class ImageMetadataController {
     @ResponseBody
     public ResponseEntity<List<Map<String, Object>>> getSelectedImagesMetadata(@RequestBody List<Long> imageIds, Authentication authentication) throws IOException {
         if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
-            List<Map<String, Object>> allMetadata = new ArrayList<>();
+            List<Image> images = new ArrayList<>();
             for (Long id : imageIds) {
-                Image image = imageRepository.findById(id)
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found with id: " + id));
-                allMetadata.add(getFilteredMetadata(image));
+                images.add(imageRepository.findById(id)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found with id: " + id)));
             }
-            return ResponseEntity.ok(allMetadata);
+            return ResponseEntity.ok(getFilteredMetadata(images));
         }
 
         User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
-        List<Map<String, Object>> allMetadata = new ArrayList<>();
+        List<Image> images = new ArrayList<>();
         for (Long id : imageIds) {
             Image image = imageRepository.findByIdWithUser(id)
                     .orElseThrow(() -> new RuntimeException("Image not found with id: " + id));
             if (!imageSecurityService.canRead(user, image)) {
                 throw new AccessDeniedException("You do not have permission to view this image's metadata.");
             }
-            allMetadata.add(getFilteredMetadata(image));
+            images.add(image);
         }
-        return ResponseEntity.ok(allMetadata);
+        return ResponseEntity.ok(getFilteredMetadata(images));
     }
 
     /**
@@ -147,9 +154,8 @@ public class ImageMetadataController {
             for (Long id : imageIds) {
                 Image image = imageRepository.findById(id)
                         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found with id: " + id));
-                if (image.getExiftool() != null && !image.getExiftool().isEmpty()) {
-                    Map<String, Object> rawExifData = objectMapper.readValue(image.getExiftool(), new TypeReference<>() {
-                    });
+                Map<String, Object> rawExifData = metadataService.getRawMetadata(image);
+                if (!rawExifData.isEmpty()) {
                     allExifData.add(rawExifData);
                 }
             }
@@ -164,34 +170,71 @@ public class ImageMetadataController {
             if (!imageSecurityService.canRead(user, image)) {
                 throw new AccessDeniedException("You do not have permission to view this image's EXIF data.");
             }
-            if (image.getExiftool() != null && !image.getExiftool().isEmpty()) {
-                Map<String, Object> rawExifData = objectMapper.readValue(image.getExiftool(), new TypeReference<>() {
-                });
+            Map<String, Object> rawExifData = metadataService.getRawMetadata(image);
+            if (!rawExifData.isEmpty()) {
                 allExifData.add(rawExifData);
             }
         }
         return ResponseEntity.ok(allExifData);
     }
 
-    private Map<String, Object> filterMetadataForDisplay(Map<String, Object> rawMetadata) {
+    /**
+     * Gets the progress of the metadata storage migration and the bytes it saved.
+     *
+     * @return A {@link ResponseEntity} with the migration statistics.
+     */
+    @GetMapping("/metadata-storage/stats")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMetadataStorageStats() {
+        return ResponseEntity.ok(metadataStorageMigrator.getStats());
+    }
+
+    /**
+     * Gets the statistics of the parsed metadata cache.
+     *
+     * @return A {@link ResponseEntity} with the cache statistics.
+     */
+    @GetMapping("/metadata-cache/stats")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMetadataCacheStats() {
+        return ResponseEntity.ok(metadataService.getCacheStats());
+    }
+
+    /**
+     * Gets the progress of the extraction of display fields.
+     *
+     * @return A {@link ResponseEntity} with the materialization statistics.
+     */
+    @GetMapping("/display-fields/stats")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getDisplayFieldStats() {
+        return ResponseEntity.ok(displayFieldMaterializer.getStats());
+    }
+
+    private Map<String, Object> filterMetadataForDisplay(Map<String, String> displayFields) {
         Map<String, Object> filtered = new LinkedHashMap<>();
         for (String key : displayMetadataKeys) {
-            if (rawMetadata.containsKey(key)) {
-                Object value = rawMetadata.get(key);
-                filtered.put(key, String.valueOf(value));
+            String value = displayFields.get(key);
+            if (value != null) {
+                filtered.put(key, value);
             }
         }
         return filtered;
     }
 
     private Map<String, Object> getFilteredMetadata(Image image) throws IOException {
-        Map<String, Object> rawMetadata;
-        if (image.getExiftool() != null && !image.getExiftool().isEmpty()) {
-            rawMetadata = objectMapper.readValue(image.getExiftool(), new TypeReference<>() {
-            });
-        } else {
-            rawMetadata = Collections.emptyMap();
+        return filterMetadataForDisplay(metadataService.getDisplayFields(image));
+    }
+
+    private List<Map<String, Object>> getFilteredMetadata(List<Image> images) throws IOException {
+        Map<Long, Map<String, String>> displayFields = metadataService.getDisplayFields(images);
+        List<Map<String, Object>> allMetadata = new ArrayList<>(images.size());
+        for (Image image : images) {
+            allMetadata.add(filterMetadataForDisplay(displayFields.get(image.getId())));
         }
-        return filterMetadataForDisplay(rawMetadata);
+        return allMetadata;
     }
 }
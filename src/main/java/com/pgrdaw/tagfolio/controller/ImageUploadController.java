@@ -1,13 +1,17 @@
 package com.pgrdaw.tagfolio.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.ImageIngestService;
 import com.pgrdaw.tagfolio.service.ImageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -18,11 +22,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -40,18 +48,31 @@ public class ImageUploadController {
     private static final Logger logger = LoggerFactory.getLogger(ImageUploadController.class);
 
     private final ImageService imageService;
+    private final ImageIngestService imageIngestService;
     private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final long progressIntervalMillis;
 
     /**
      * Constructs a new ImageUploadController.
      *
-     * @param imageService   The image service.
-     * @param userRepository The user repository.
+     * @param imageService           The image service.
+     * @param imageIngestService     The image ingest service.
+     * @param userRepository         The user repository.
+     * @param objectMapper           The object mapper used to write streamed results.
+     * @param progressIntervalMillis The minimum time between two streamed progress events.
      */
     @Autowired
-    public ImageUploadController(ImageService imageService, UserRepository userRepository) {
+    public ImageUploadController(ImageService imageService,
+                                 ImageIngestService imageIngestService,
+                                 UserRepository userRepository,
+                                 ObjectMapper objectMapper,
+                                 @Value("${image.upload.progress-interval-ms:500}") long progressIntervalMillis) {
         this.imageService = imageService;
+        this.imageIngestService = imageIngestService;
         this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.progressIntervalMillis = progressIntervalMillis;
     }
 
     /**
@@ -97,14 +118,7 @@ public class ImageUploadController {
         }
         User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
 
-        List<ImageService.UploadResult> results = new ArrayList<>();
-        for (MultipartFile file : files) {
-            try {
-                results.add(imageService.processAndSaveFile(file, user));
-            } catch (IOException e) {
-                logger.error("Failed to upload file via AJAX: {}", e.getMessage(), e);
-            }
-        }
+        List<ImageService.UploadResult> results = imageIngestService.ingest(Arrays.asList(files), user);
 
         Map<String, List<?>> response = new HashMap<>();
         response.put("uploaded", results.stream().filter(r -> "UPLOADED".equals(r.getStatus())).map(ImageService.UploadResult::getImage).collect(Collectors.toList()));
@@ -114,6 +128,32 @@ public class ImageUploadController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stores images uploaded via an AJAX request, streaming one NDJSON event per file as it finishes.
+     * Besides the {@code result} and {@code failure} events, {@code progress} events with the running
+     * counters are sent periodically, followed by a final {@code complete} event.
+     *
+     * @param files          An array of uploaded image files.
+     * @param authentication The current authentication object.
+     * @return A {@link ResponseEntity} with a streaming body of upload events.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> storeAjaxStream(@RequestParam("images[]") MultipartFile[] files,
+                                                                 Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
+
+        StreamingResponseBody stream = out -> {
+            UploadEventWriter writer = new UploadEventWriter(out);
+            imageIngestService.ingest(Arrays.asList(files), user, writer);
+            writer.complete();
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stream);
+    }
+
     /**
      * Overwrites an existing image.
      *
@@ -165,4 +205,130 @@ public class ImageUploadController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "An error occurred: " + e.getMessage()));
         }
     }
+
+    /**
+     * Synchronizes the database with the user's image files, streaming one NDJSON event per file as it finishes.
+     *
+     * @param authentication The current authentication object.
+     * @return A {@link ResponseEntity} with a streaming body of synchronization events.
+     */
+    @PostMapping(value = "/sync-database/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> syncDatabaseStream(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
+
+        StreamingResponseBody stream = out -> {
+            UploadEventWriter writer = new UploadEventWriter(out);
+            try {
+                imageService.syncUserImages(user, writer);
+                writer.complete();
+            } catch (IOException e) {
+                logger.error("Error during database sync for user {}: {}", user.getEmail(), e.getMessage(), e);
+                writer.error("An error occurred: " + e.getMessage());
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stream);
+    }
+
+    /**
+     * Writes upload results as newline-delimited JSON events and keeps only the running counters.
+     */
+    private class UploadEventWriter implements ImageService.UploadResultListener {
+
+        private final OutputStream out;
+        private int total;
+        private int uploaded;
+        private int skipped;
+        private int conflicted;
+        private int failed;
+        private long lastProgressAt;
+
+        UploadEventWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void onStart(int totalFiles) {
+            this.total = totalFiles;
+            this.lastProgressAt = System.currentTimeMillis();
+            write(counters("start"));
+        }
+
+        @Override
+        public void onResult(ImageService.UploadResult result) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", "result");
+            event.put("status", result.getStatus());
+            switch (result.getStatus()) {
+                case "UPLOADED" -> uploaded++;
+                case "SKIPPED" -> skipped++;
+                case "CONFLICT" -> conflicted++;
+                default -> {
+                }
+            }
+            if (result.getImage() != null) {
+                event.put("image", result.getImage());
+            }
+            if (result.getConflict() != null) {
+                event.put("conflict", result.getConflict());
+            }
+            write(event);
+            progress();
+        }
+
+        @Override
+        public void onFailure(String fileName, Throwable error) {
+            failed++;
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", "failure");
+            event.put("fileName", fileName);
+            event.put("message", error.getMessage());
+            write(event);
+            progress();
+        }
+
+        void complete() {
+            write(counters("complete"));
+        }
+
+        void error(String message) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", "error");
+            event.put("message", message);
+            write(event);
+        }
+
+        private void progress() {
+            long now = System.currentTimeMillis();
+            if (now - lastProgressAt >= progressIntervalMillis) {
+                lastProgressAt = now;
+                write(counters("progress"));
+            }
+        }
+
+        private Map<String, Object> counters(String type) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", type);
+            event.put("total", total);
+            event.put("processed", uploaded + skipped + conflicted + failed);
+            event.put("uploaded", uploaded);
+            event.put("skipped", skipped);
+            event.put("conflicted", conflicted);
+            event.put("failed", failed);
+            return event;
+        }
+
+        private void write(Map<String, Object> event) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(event));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write upload event", e);
+            }
+        }
+    }
 }
@@ -3,8 +3,9 @@ package com.pgrdaw.tagfolio.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pgrdaw.tagfolio.dto.GalleryImageProjection;
+import com.pgrdaw.tagfolio.dto.GalleryImageResponse;
 import com.pgrdaw.tagfolio.model.Image;
-import com.pgrdaw.tagfolio.model.SharedFilter;
 import com.pgrdaw.tagfolio.model.Tag;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.ImageRepository;
@@ -12,10 +13,16 @@ import com.pgrdaw.tagfolio.repository.TagRepository;
 import com.pgrdaw.tagfolio.repository.UserRepository;
 import com.pgrdaw.tagfolio.service.ImageSecurityService;
 import com.pgrdaw.tagfolio.service.ImageService;
+import com.pgrdaw.tagfolio.service.CompiledFilter;
 import com.pgrdaw.tagfolio.service.FilterExpressionEvaluator;
-import com.pgrdaw.tagfolio.service.SharedFilterService;
-import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import com.pgrdaw.tagfolio.service.GalleryImageService;
+import com.pgrdaw.tagfolio.service.ImageIndexService;
+import com.pgrdaw.tagfolio.service.ImagePaginationService;
+import com.pgrdaw.tagfolio.service.ResultSetRegistry;
+import com.pgrdaw.tagfolio.service.SharedFilterSnapshotService;
+import com.pgrdaw.tagfolio.service.util.HttpCachingService;
 import com.pgrdaw.tagfolio.service.util.MetadataService;
+import com.pgrdaw.tagfolio.service.util.SharedCapabilityService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.Getter;
@@ -25,7 +32,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -35,6 +41,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
@@ -52,6 +59,7 @@ import java.util.stream.Collectors;
 public class ImageViewAndManagementController {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageViewAndManagementController.class);
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @Getter
     @Setter
@@ -71,9 +79,14 @@ public class ImageViewAndManagementController {
     private final ObjectMapper objectMapper;
     private final FilterExpressionEvaluator filterExpressionEvaluator;
     private final MetadataService metadataService;
-    private final ImageSortService imageSortService;
     private final Map<String, String> sortableFields;
-    private final SharedFilterService sharedFilterService;
+    private final HttpCachingService httpCachingService;
+    private final ImageIndexService imageIndexService;
+    private final ImagePaginationService imagePaginationService;
+    private final GalleryImageService galleryImageService;
+    private final ResultSetRegistry resultSetRegistry;
+    private final SharedFilterSnapshotService sharedFilterSnapshotService;
+    private final SharedCapabilityService sharedCapabilityService;
 
     /**
      * Constructs a new ImageViewAndManagementController.
@@ -86,8 +99,13 @@ public class ImageViewAndManagementController {
      * @param objectMapper            The object mapper for JSON processing.
      * @param filterExpressionEvaluator The filter expression evaluator.
      * @param metadataService         The metadata service.
-     * @param imageSortService        The image sort service.
-     * @param sharedFilterService     The shared filter service.
+     * @param httpCachingService      The HTTP caching service.
+     * @param imageIndexService       The image index service.
+     * @param imagePaginationService  The image pagination service.
+     * @param galleryImageService     The gallery image service.
+     * @param resultSetRegistry       The registry of the image lists kept for each session.
+     * @param sharedFilterSnapshotService The service that keeps the snapshots of shared filters.
+     * @param sharedCapabilityService The service that verifies the capabilities of anonymous visitors.
      * @param batchSize               The batch size for image loading.
      * @param sortableFields          A map of sortable fields.
      */
@@ -100,8 +118,13 @@ public class ImageViewAndManagementController {
                                             ObjectMapper objectMapper,
                                             FilterExpressionEvaluator filterExpressionEvaluator,
                                             MetadataService metadataService,
-                                            ImageSortService imageSortService,
-                                            SharedFilterService sharedFilterService,
+                                            HttpCachingService httpCachingService,
+                                            ImageIndexService imageIndexService,
+                                            ImagePaginationService imagePaginationService,
+                                            GalleryImageService galleryImageService,
+                                            ResultSetRegistry resultSetRegistry,
+                                            SharedFilterSnapshotService sharedFilterSnapshotService,
+                                            SharedCapabilityService sharedCapabilityService,
                                             @Value("${image.batch-size:50}") int batchSize,
                                             @Value("#{${app.sortable-fields}}") Map<String, String> sortableFields) {
         this.imageRepository = imageRepository;
@@ -112,10 +135,15 @@ public class ImageViewAndManagementController {
         this.objectMapper = objectMapper;
         this.filterExpressionEvaluator = filterExpressionEvaluator;
         this.metadataService = metadataService;
-        this.imageSortService = imageSortService;
         this.batchSize = batchSize;
         this.sortableFields = sortableFields;
-        this.sharedFilterService = sharedFilterService;
+        this.httpCachingService = httpCachingService;
+        this.imageIndexService = imageIndexService;
+        this.imagePaginationService = imagePaginationService;
+        this.galleryImageService = galleryImageService;
+        this.resultSetRegistry = resultSetRegistry;
+        this.sharedFilterSnapshotService = sharedFilterSnapshotService;
+        this.sharedCapabilityService = sharedCapabilityService;
     }
 
     /**
@@ -124,37 +152,54 @@ public class ImageViewAndManagementController {
      * @param id             The ID of the image.
      * @param model          The model to add attributes to.
      * @param authentication The current authentication object.
-     * @param session        The HTTP session.
+     * @param request        The HTTP request.
      * @return The name of the image detail view.
      * @throws IOException if an I/O error occurs.
      */
     @GetMapping("/{id}")
     @SuppressWarnings("SameReturnValue")
-    public String show(@PathVariable Long id, Model model, Authentication authentication, HttpSession session) throws IOException {
+    public String show(@PathVariable Long id, Model model, Authentication authentication, HttpServletRequest request) throws IOException {
         Image image = imageRepository.findByIdWithUser(id)
                 .orElseThrow(() -> new NoSuchElementException("Image not found with id: " + id));
 
         User currentUser = null;
         String sharedFilterToken = null;
-        List<Long> navigationImageIds = null;
+        ResultSetRegistry.ResultSet navigation = null;
 
         if (!(authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken)) {
             currentUser = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
             if (!imageSecurityService.canRead(currentUser, image)) {
                 throw new AccessDeniedException("You do not have permission to view this image.");
             }
-            navigationImageIds = (List<Long>) session.getAttribute("sortedImageIds");
-            if (navigationImageIds == null) {
-                navigationImageIds = imageService.getImagesForUser(currentUser).stream().map(Image::getId).collect(Collectors.toList());
+            HttpSession session = request.getSession();
+            navigation = resultSetRegistry.find(session, ResultSetRegistry.NAVIGATION);
+            if (navigation == null) {
+                // The gallery was paged with cursors, so the neighbours are found with the same seeks.
+                String sort = (String) session.getAttribute("currentSort");
+                String direction = (String) session.getAttribute("currentDirection");
+                ImagePaginationService.Neighbours neighbours = imagePaginationService.findNeighbours(currentUser, id,
+                        sort != null ? sort : "Imported", direction != null ? direction : "desc");
+                if (neighbours.previousId() != null) {
+                    model.addAttribute("prevImageId", neighbours.previousId());
+                }
+                if (neighbours.nextId() != null) {
+                    model.addAttribute("nextImageId", neighbours.nextId());
+                }
             }
 
         } else {
-            List<Long> sharedImageIds = (List<Long>) session.getAttribute("sharedImageIds");
-            if (sharedImageIds == null || !sharedImageIds.contains(id)) {
-                throw new AccessDeniedException("You do not have permission to view this image.");
+            SharedCapabilityService.Capability capability = sharedCapabilityService.find(request);
+            SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.findGrantedSnapshot(capability);
+            if (snapshot != null && snapshot.contains(id)) {
+                sharedFilterToken = snapshot.getToken();
+                navigation = sharedFilterSnapshotService.getOrder(snapshot, capability.sort(), capability.direction());
+            } else {
+                ResultSetRegistry.ResultSet sharedImages = resultSetRegistry.find(request, ResultSetRegistry.SHARED);
+                if (sharedImages == null || !sharedImages.contains(id)) {
+                    throw new AccessDeniedException("You do not have permission to view this image.");
+                }
+                navigation = resultSetRegistry.find(request, ResultSetRegistry.NAVIGATION);
             }
-            sharedFilterToken = (String) session.getAttribute("sharedFilterToken");
-            navigationImageIds = (List<Long>) session.getAttribute("sortedImageIds");
         }
 
         Map<String, Object> rawMetadata = metadataService.getRawMetadata(image);
@@ -162,15 +207,14 @@ public class ImageViewAndManagementController {
 
         List<Tag> sortedTags = getSortedTags(image);
 
-        if (navigationImageIds != null) {
-            int currentIndex = navigationImageIds.indexOf(id);
-            if (currentIndex != -1) {
-                if (currentIndex > 0) {
-                    model.addAttribute("prevImageId", navigationImageIds.get(currentIndex - 1));
-                }
-                if (currentIndex < navigationImageIds.size() - 1) {
-                    model.addAttribute("nextImageId", navigationImageIds.get(currentIndex + 1));
-                }
+        if (navigation != null) {
+            Long previousId = navigation.getPrevious(id);
+            if (previousId != null) {
+                model.addAttribute("prevImageId", previousId);
+            }
+            Long nextId = navigation.getNext(id);
+            if (nextId != null) {
+                model.addAttribute("nextImageId", nextId);
             }
         }
 
@@ -192,17 +236,23 @@ public class ImageViewAndManagementController {
     }
 
     /**
-     * Serves the original image file.
+     * Serves the original image file, with support for conditional and range requests.
      *
      * @param id             The ID of the image.
+     * @param version        The version of the original in the URL, if any.
      * @param authentication The current authentication object.
-     * @param session        The HTTP session.
+     * @param request        The HTTP request.
+     * @param webRequest     The current request.
      * @return A {@link ResponseEntity} with the image resource.
      * @throws IOException if an I/O error occurs.
      */
     @GetMapping("/original/{id}")
     @ResponseBody
-    public ResponseEntity<Resource> serveOriginalImage(@PathVariable Long id, Authentication authentication, HttpSession session) throws IOException {
+    public ResponseEntity<Resource> serveOriginalImage(@PathVariable Long id,
+                                                       @RequestParam(value = "v", required = false) String version,
+                                                       Authentication authentication,
+                                                       HttpServletRequest request,
+                                                       WebRequest webRequest) throws IOException {
         Image image = imageRepository.findByIdWithUser(id)
                 .orElseThrow(() -> new NoSuchElementException("Image not found with id: " + id));
 
@@ -211,17 +261,39 @@ public class ImageViewAndManagementController {
             if (!imageSecurityService.canRead(user, image)) {
                 throw new AccessDeniedException("You do not have permission to view this image.");
             }
-        } else {
-            List<Long> sharedImageIds = (List<Long>) session.getAttribute("sharedImageIds");
-            if (sharedImageIds == null || !sharedImageIds.contains(id)) {
-                throw new AccessDeniedException("You do not have permission to view this image.");
-            }
+        } else if (!sharedFilterSnapshotService.isSharedWithVisitor(request, id)) {
+            throw new AccessDeniedException("You do not have permission to view this image.");
         }
 
         Resource resource = imageService.loadImageAsResource(image.getOriginalFileName(), image.getUser().getId());
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + image.getOriginalFileName() + "\"")
-                .body(resource);
+        HttpCachingService.Validators validators = httpCachingService.getValidators(resource);
+        return httpCachingService.serve(resource, validators, image.getOriginalFileName(), validators.version(), version, webRequest);
+    }
+
+    /**
+     * The images shared with an anonymous visitor and the owners of those images.
+     */
+    private record SharedScope(Collection<Long> ownerIds, List<Long> imageIds) {
+    }
+
+    /**
+     * Gets the images shared with an anonymous visitor: the snapshot granted by their capability, or the shared
+     * report they opened in their session. The owners of a report's images are read from their projections, as a
+     * report only holds a few images.
+     */
+    private SharedScope findSharedScope(HttpServletRequest request) {
+        SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.findGrantedSnapshot(request);
+        if (snapshot != null) {
+            return new SharedScope(snapshot.getOwnerIds(), snapshot.getImageIds());
+        }
+        ResultSetRegistry.ResultSet sharedImages = resultSetRegistry.find(request, ResultSetRegistry.SHARED);
+        if (sharedImages == null) {
+            return null;
+        }
+        Set<Long> ownerIds = galleryImageService.findProjections(sharedImages.asList()).stream()
+                .map(GalleryImageProjection::userId)
+                .collect(Collectors.toSet());
+        return new SharedScope(ownerIds, sharedImages.asList());
     }
 
     private String getPrettyPrintedExif(Map<String, Object> rawMetadata) throws JsonProcessingException {
@@ -243,53 +315,79 @@ public class ImageViewAndManagementController {
 
     /**
      * Gets a paginated list of images.
+     * <p>
+     * Authenticated users page through their images with cursors: the response carries the cursor of the next page
+     * in the {@value #NEXT_CURSOR_HEADER} header, which is absent on the last page, and any page after the first one
+     * must be requested with it. Requests by page number are still served for shared filters and reports. Images are
+     * listed without their metadata, and the {@code fields} parameter limits the response to the fields the client
+     * renders.
      *
-     * @param page           The page number.
+     * @param page           The page number, used by anonymous visitors and otherwise only to request the first page.
      * @param size           The page size.
      * @param sort           The sort field.
      * @param direction      The sort direction.
+     * @param cursor         The cursor returned with the previous page, if any.
+     * @param fields         A comma-separated list of the fields to return, or null for all of them.
      * @param authentication The current authentication object.
-     * @param session        The HTTP session.
+     * @param request        The HTTP request.
      * @return A {@link ResponseEntity} with a list of images.
      */
     @GetMapping("/paginated")
     @ResponseBody
-    @SuppressWarnings("unchecked")
-    public ResponseEntity<List<Image>> getPaginatedImages(
+    public ResponseEntity<List<GalleryImageResponse>> getPaginatedImages(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(required = false) String size,
             @RequestParam(defaultValue = "Imported") String sort,
             @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
             Authentication authentication,
-            HttpSession session) {
+            HttpServletRequest request) {
 
-        session.setAttribute("currentSort", sort);
-        session.setAttribute("currentDirection", direction);
+        Set<String> requestedFields = galleryImageService.parseFields(fields);
 
-        List<Image> allImages;
+        int effectiveSize = (size == null || "null".equalsIgnoreCase(size)) ? this.batchSize : Integer.parseInt(size);
+        int start = page * effectiveSize;
 
         if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
-            List<Long> sharedImageIds = (List<Long>) session.getAttribute("sharedImageIds");
-            if (sharedImageIds == null || sharedImageIds.isEmpty()) {
+            SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.findGrantedSnapshot(request);
+            if (snapshot != null) {
+                List<Long> sortedImageIds = sharedFilterSnapshotService.getOrder(snapshot, sort, direction).asList();
+                if (start >= sortedImageIds.size()) {
+                    return ResponseEntity.ok(Collections.emptyList());
+                }
+                return ResponseEntity.ok(galleryImageService.findByIds(
+                        sortedImageIds.subList(start, Math.min(start + effectiveSize, sortedImageIds.size())), requestedFields));
+            }
+            HttpSession session = request.getSession(false);
+            ResultSetRegistry.ResultSet sharedImages = session != null ? resultSetRegistry.find(session, ResultSetRegistry.SHARED) : null;
+            if (sharedImages == null || sharedImages.size() == 0) {
                 return ResponseEntity.ok(Collections.emptyList());
             }
-            allImages = imageRepository.findAllById(sharedImageIds);
-        } else {
-            User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
-            allImages = imageService.getImagesForUser(user);
+            List<GalleryImageProjection> allImages = galleryImageService.sort(galleryImageService.findProjections(sharedImages.asList()), sort, direction);
+            resultSetRegistry.store(session, ResultSetRegistry.NAVIGATION, allImages.stream().map(GalleryImageProjection::id).toList());
+            if (start >= allImages.size()) {
+                return ResponseEntity.ok(Collections.emptyList());
+            }
+            int end = Math.min(start + effectiveSize, allImages.size());
+            return ResponseEntity.ok(galleryImageService.toResponses(allImages.subList(start, end), requestedFields));
         }
 
-        allImages.sort(imageSortService.getImageComparator(sort, direction));
-        
-        session.setAttribute("sortedImageIds", allImages.stream().map(Image::getId).collect(Collectors.toList()));
-
-        int effectiveSize = (size == null || "null".equalsIgnoreCase(size)) ? this.batchSize : Integer.parseInt(size);
-        int start = page * effectiveSize;
-        if (start >= allImages.size()) {
-            return ResponseEntity.ok(Collections.emptyList());
+        User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
+        HttpSession session = request.getSession();
+        session.setAttribute("currentSort", sort);
+        session.setAttribute("currentDirection", direction);
+        if (cursor == null && page != 0) {
+            // A page number would need the whole gallery sorted to find where the page starts.
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Pages after the first one need the cursor of the previous page.");
         }
-        int end = Math.min(start + effectiveSize, allImages.size());
-        return ResponseEntity.ok(allImages.subList(start, end));
+        ImagePaginationService.ImagePage imagePage = imagePaginationService.findPage(user, sort, direction, cursor, effectiveSize);
+        resultSetRegistry.remove(session, ResultSetRegistry.NAVIGATION);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (imagePage.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, imagePage.nextCursor());
+        }
+        return response.body(galleryImageService.findByIds(imagePage.imageIds(), requestedFields));
     }
 
     /**
@@ -297,56 +395,54 @@ public class ImageViewAndManagementController {
      *
      * @param filterRequest  The filter request.
      * @param authentication The current authentication object.
-     * @param session        The HTTP session.
+     * @param request        The HTTP request.
      * @return A {@link ResponseEntity} with a map of matching and non-matching image IDs.
      */
     @PostMapping("/filter")
     @ResponseBody
-    @SuppressWarnings("unchecked")
-    public ResponseEntity<Map<String, List<Long>>> filterImages(@RequestBody FilterRequest filterRequest, Authentication authentication, HttpSession session) {
-        List<Image> imagesToFilter;
+    public ResponseEntity<Map<String, List<Long>>> filterImages(@RequestBody FilterRequest filterRequest, Authentication authentication, HttpServletRequest request) {
+        List<Long> sortedScopeIds;
+        List<Long> sortedMatchingImageIds;
+        HttpSession session;
         if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
-            List<Long> sharedImageIds = (List<Long>) session.getAttribute("sharedImageIds");
-            if (sharedImageIds == null || sharedImageIds.isEmpty()) {
+            SharedScope sharedScope = findSharedScope(request);
+            if (sharedScope == null || sharedScope.imageIds().isEmpty()) {
                 return ResponseEntity.ok(Collections.emptyMap());
             }
-            imagesToFilter = imageRepository.findAllById(sharedImageIds);
+            // Visitors browsing with a capability have no session, so their order is not kept.
+            session = request.getSession(false);
+            CompiledFilter filter = filterExpressionEvaluator.compile(filterRequest.getExpression());
+            sortedMatchingImageIds = imageIndexService.sortMatchingImageIds(sharedScope.ownerIds(), filter, sharedScope.imageIds(),
+                    filterRequest.getSort(), filterRequest.getDirection());
+            sortedScopeIds = imageIndexService.sortImageIds(sharedScope.ownerIds(), sharedScope.imageIds(),
+                    filterRequest.getSort(), filterRequest.getDirection());
         } else {
             User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
-            imagesToFilter = (filterRequest.getBaseImageIds() != null && !filterRequest.getBaseImageIds().isEmpty())
-                    ? imageRepository.findAllById(filterRequest.getBaseImageIds())
-                    : imageService.getImagesForUser(user);
-        }
-        
-        if (authentication != null && authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)) {
-             User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
-             imagesToFilter = imagesToFilter.stream()
-                     .filter(image -> imageSecurityService.canRead(user, image))
-                     .collect(Collectors.toList());
+            session = request.getSession();
+            List<Long> baseImageIds = (filterRequest.getBaseImageIds() != null && !filterRequest.getBaseImageIds().isEmpty())
+                    ? filterRequest.getBaseImageIds()
+                    : null;
+            CompiledFilter filter = filterExpressionEvaluator.compile(filterRequest.getExpression());
+            sortedMatchingImageIds = imageIndexService.sortMatchingImageIds(user, filter, baseImageIds,
+                    filterRequest.getSort(), filterRequest.getDirection());
+            sortedScopeIds = imageIndexService.sortImageIds(user, baseImageIds, filterRequest.getSort(), filterRequest.getDirection());
         }
 
-        List<Long> matchingImageIds = filterExpressionEvaluator.evaluate(imagesToFilter, filterRequest.getExpression());
-        Set<Long> matchingImageIdsSet = new HashSet<>(matchingImageIds);
-        List<Long> nonMatchingImageIds = imagesToFilter.stream()
-                .map(Image::getId)
+        Set<Long> matchingImageIdsSet = new HashSet<>(sortedMatchingImageIds);
+        List<Long> sortedNonMatchingImageIds = sortedScopeIds.stream()
                 .filter(id -> !matchingImageIdsSet.contains(id))
                 .collect(Collectors.toList());
 
-        List<Image> sortedMatchingImages = imageRepository.findAllById(matchingImageIds).stream()
-                .sorted(imageSortService.getImageComparator(filterRequest.getSort(), filterRequest.getDirection()))
-                .toList();
-        List<Image> sortedNonMatchingImages = imageRepository.findAllById(nonMatchingImageIds).stream()
-                .sorted(imageSortService.getImageComparator(filterRequest.getSort(), filterRequest.getDirection()))
-                .toList();
-                
         List<Long> sortedImageIds = new ArrayList<>();
-        sortedImageIds.addAll(sortedMatchingImages.stream().map(Image::getId).collect(Collectors.toList()));
-        sortedImageIds.addAll(sortedNonMatchingImages.stream().map(Image::getId).collect(Collectors.toList()));
-        session.setAttribute("sortedImageIds", sortedImageIds);
+        sortedImageIds.addAll(sortedMatchingImageIds);
+        sortedImageIds.addAll(sortedNonMatchingImageIds);
+        if (session != null) {
+            resultSetRegistry.store(session, ResultSetRegistry.NAVIGATION, sortedImageIds);
+        }
 
         Map<String, List<Long>> response = new HashMap<>();
-        response.put("matchingImageIds", sortedMatchingImages.stream().map(Image::getId).collect(Collectors.toList()));
-        response.put("nonMatchingImageIds", sortedNonMatchingImages.stream().map(Image::getId).collect(Collectors.toList()));
+        response.put("matchingImageIds", sortedMatchingImageIds);
+        response.put("nonMatchingImageIds", sortedNonMatchingImageIds);
         return ResponseEntity.ok(response);
     }
 
@@ -356,38 +452,49 @@ public class ImageViewAndManagementController {
      * @param imageIds       The list of image IDs.
      * @param sort           The sort field.
      * @param direction      The sort direction.
+     * @param fields         A comma-separated list of the fields to return, or null for all of them.
      * @param authentication The current authentication object.
-     * @param session        The HTTP session.
+     * @param request        The HTTP request.
      * @return A {@link ResponseEntity} with a list of images.
      */
     @PostMapping("/by-ids")
     @ResponseBody
-    @SuppressWarnings("unchecked")
-    public ResponseEntity<List<Image>> getImagesByIds(@RequestBody List<Long> imageIds,
-                                                      @RequestParam(defaultValue = "Imported") String sort,
-                                                      @RequestParam(defaultValue = "desc") String direction,
-                                                      Authentication authentication,
-                                                      HttpSession session) {
-        List<Image> images;
+    public ResponseEntity<List<GalleryImageResponse>> getImagesByIds(@RequestBody List<Long> imageIds,
+                                                                     @RequestParam(defaultValue = "Imported") String sort,
+                                                                     @RequestParam(defaultValue = "desc") String direction,
+                                                                     @RequestParam(required = false) String fields,
+                                                                     Authentication authentication,
+                                                                     HttpServletRequest request) {
+        Set<String> requestedFields = galleryImageService.parseFields(fields);
+        List<GalleryImageProjection> images;
+        HttpSession session;
         if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
-            List<Long> sharedImageIds = (List<Long>) session.getAttribute("sharedImageIds");
-            if (sharedImageIds == null) {
+            SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.findGrantedSnapshot(request);
+            session = request.getSession(false);
+            ResultSetRegistry.ResultSet sharedImages = snapshot == null && session != null
+                    ? resultSetRegistry.find(session, ResultSetRegistry.SHARED) : null;
+            if (snapshot == null && sharedImages == null) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Collections.emptyList());
             }
-            List<Long> allowedImageIds = imageIds.stream().filter(sharedImageIds::contains).collect(Collectors.toList());
-            images = imageRepository.findAllById(allowedImageIds);
+            List<Long> allowedImageIds = imageIds.stream()
+                    .filter(id -> snapshot != null ? snapshot.contains(id) : sharedImages.contains(id))
+                    .collect(Collectors.toList());
+            images = galleryImageService.findProjections(allowedImageIds);
         } else {
             User user = userRepository.findByEmail(authentication.getName()).orElseThrow(() -> new AccessDeniedException("Authenticated user not found."));
-            images = imageRepository.findAllById(imageIds);
-            for (Image image : images) {
-                if (!imageSecurityService.canRead(user, image)) {
+            session = request.getSession();
+            images = galleryImageService.findProjections(imageIds);
+            for (GalleryImageProjection image : images) {
+                if (!imageSecurityService.canRead(user, image.userId())) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Collections.emptyList());
                 }
             }
         }
-        images.sort(imageSortService.getImageComparator(sort, direction));
-        session.setAttribute("sortedImageIds", images.stream().map(Image::getId).collect(Collectors.toList()));
-        return ResponseEntity.ok(images);
+        images = galleryImageService.sort(images, sort, direction);
+        if (session != null) {
+            resultSetRegistry.store(session, ResultSetRegistry.NAVIGATION, images.stream().map(GalleryImageProjection::id).toList());
+        }
+        return ResponseEntity.ok(galleryImageService.toResponses(images, requestedFields));
     }
 
     /**
@@ -4,6 +4,7 @@ import com.pgrdaw.tagfolio.dto.ImageSummaryResponse;
 import com.pgrdaw.tagfolio.dto.ReportDetailsResponse;
 import com.pgrdaw.tagfolio.dto.ReportGenerationRequest;
 import com.pgrdaw.tagfolio.dto.ReportResponse;
+import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.Report;
 import com.pgrdaw.tagfolio.model.ReportType;
 import com.pgrdaw.tagfolio.model.SharedReport;
@@ -12,6 +13,7 @@ import com.pgrdaw.tagfolio.repository.ReportTypeRepository;
 import com.pgrdaw.tagfolio.service.ReportService;
 import com.pgrdaw.tagfolio.service.SharedReportService;
 import com.pgrdaw.tagfolio.service.UserService;
+import com.pgrdaw.tagfolio.service.util.HttpCachingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,6 +46,7 @@ public class ReportController {
     private final UserService userService;
     private final SharedReportService sharedReportService;
     private final ReportTypeRepository reportTypeRepository;
+    private final HttpCachingService httpCachingService;
 
     /**
      * Constructs a new ReportController.
@@ -52,16 +55,19 @@ public class ReportController {
      * @param userService          The user service.
      * @param sharedReportService  The shared report service.
      * @param reportTypeRepository The report type repository.
+     * @param httpCachingService   The HTTP caching service, used to version thumbnail URLs.
      */
     @Autowired
     public ReportController(ReportService reportService,
                             UserService userService,
                             SharedReportService sharedReportService,
-                            ReportTypeRepository reportTypeRepository) {
+                            ReportTypeRepository reportTypeRepository,
+                            HttpCachingService httpCachingService) {
         this.reportService = reportService;
         this.userService = userService;
         this.sharedReportService = sharedReportService;
         this.reportTypeRepository = reportTypeRepository;
+        this.httpCachingService = httpCachingService;
     }
 
     /**
@@ -114,7 +120,7 @@ public class ReportController {
             String shareableLink = isShared ? sharedReportService.getShareableLinkUrl(sharedReportOptional.get().getToken()) : null;
 
             List<ImageSummaryResponse> images = report.getReportImages().stream()
-                    .map(reportImage -> new ImageSummaryResponse(reportImage.getImage().getId(), "/images/thumbnail/" + reportImage.getImage().getId()))
+                    .map(reportImage -> new ImageSummaryResponse(reportImage.getImage().getId(), getThumbnailUrl(reportImage.getImage())))
                     .collect(Collectors.toList());
 
             ReportDetailsResponse response = new ReportDetailsResponse(
@@ -249,4 +255,9 @@ public class ReportController {
         reportService.deleteReports(reportIds, currentUser);
         return ResponseEntity.ok().build();
     }
+
+    private String getThumbnailUrl(Image image) {
+        String version = httpCachingService.getThumbnailVersion(image);
+        return "/images/thumbnail/" + image.getId() + (version != null ? "?v=" + version : "");
+    }
 }
@@ -3,16 +3,14 @@ package com.pgrdaw.tagfolio.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Filter;
-import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.SharedFilter;
-import com.pgrdaw.tagfolio.model.User;
-import com.pgrdaw.tagfolio.service.FilterExpressionEvaluator;
-import com.pgrdaw.tagfolio.service.ImageService;
 import com.pgrdaw.tagfolio.service.SharedFilterService;
+import com.pgrdaw.tagfolio.service.SharedFilterSnapshotService;
 import com.pgrdaw.tagfolio.service.util.ImageSortService;
 import com.pgrdaw.tagfolio.service.util.MetadataService;
+import com.pgrdaw.tagfolio.service.util.SharedCapabilityService;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,10 +19,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Controller for handling shared filter view requests.
@@ -36,8 +31,8 @@ import java.util.stream.Collectors;
 public class SharedFilterViewController {
 
     private final SharedFilterService sharedFilterService;
-    private final ImageService imageService;
-    private final FilterExpressionEvaluator filterExpressionEvaluator;
+    private final SharedFilterSnapshotService sharedFilterSnapshotService;
+    private final SharedCapabilityService sharedCapabilityService;
     private final ImageSortService imageSortService;
     private final MetadataService metadataService;
     private final ObjectMapper objectMapper;
@@ -46,24 +41,24 @@ public class SharedFilterViewController {
     /**
      * Constructs a new SharedFilterViewController.
      *
-     * @param sharedFilterService     The shared filter service.
-     * @param imageService            The image service.
-     * @param filterExpressionEvaluator The filter expression evaluator.
-     * @param imageSortService        The image sort service.
-     * @param metadataService         The metadata service.
-     * @param objectMapper            The object mapper for JSON processing.
-     * @param batchSize               The batch size for image loading.
+     * @param sharedFilterService         The shared filter service.
+     * @param sharedFilterSnapshotService The service that keeps the snapshots of shared filters.
+     * @param sharedCapabilityService     The service that issues the capabilities of visitors.
+     * @param imageSortService            The image sort service.
+     * @param metadataService             The metadata service.
+     * @param objectMapper                The object mapper for JSON processing.
+     * @param batchSize                   The batch size for image loading.
      */
     public SharedFilterViewController(SharedFilterService sharedFilterService,
-                                      ImageService imageService,
-                                      FilterExpressionEvaluator filterExpressionEvaluator,
+                                      SharedFilterSnapshotService sharedFilterSnapshotService,
+                                      SharedCapabilityService sharedCapabilityService,
                                       ImageSortService imageSortService,
                                       MetadataService metadataService,
                                       ObjectMapper objectMapper,
                                       @Value("${image.batch-size:50}") int batchSize) {
         this.sharedFilterService = sharedFilterService;
-        this.imageService = imageService;
-        this.filterExpressionEvaluator = filterExpressionEvaluator;
+        this.sharedFilterSnapshotService = sharedFilterSnapshotService;
+        this.sharedCapabilityService = sharedCapabilityService;
         this.imageSortService = imageSortService;
         this.metadataService = metadataService;
         this.objectMapper = objectMapper;
@@ -71,7 +66,8 @@ public class SharedFilterViewController {
     }
 
     /**
-     * Displays the shared filter view.
+     * Displays the shared filter view, and gives the visitor a capability to browse the images it shows without a
+     * session.
      *
      * @param token     The shared filter token.
      * @param view      The view type (e.g., "grid").
@@ -79,6 +75,7 @@ public class SharedFilterViewController {
      * @param direction The sort direction.
      * @param model     The model to add attributes to.
      * @param request   The HTTP request.
+     * @param response  The HTTP response, where the capability cookie is set.
      * @return The name of the view to render.
      * @throws JsonProcessingException if an error occurs during JSON processing.
      */
@@ -89,7 +86,8 @@ public class SharedFilterViewController {
                                    @RequestParam(value = "sort", defaultValue = "Imported") String sort,
                                    @RequestParam(value = "direction", defaultValue = "desc") String direction,
                                    Model model,
-                                   HttpServletRequest request) throws JsonProcessingException {
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) throws JsonProcessingException {
         Optional<SharedFilter> sharedFilterOptional = sharedFilterService.getSharedFilterByToken(token);
 
         if (sharedFilterOptional.isEmpty()) {
@@ -98,24 +96,12 @@ public class SharedFilterViewController {
 
         SharedFilter sharedFilter = sharedFilterOptional.get();
         Filter originalFilter = sharedFilter.getFilter();
-        User filterCreator = originalFilter.getUser();
-        List<Image> allCreatorImages = imageService.getImagesForUser(filterCreator);
-
-        List<Map<String, String>> filterExpression = filterExpressionEvaluator.parseExpressionJson(originalFilter.getExpression());
-        List<Long> matchingImageIds = filterExpressionEvaluator.evaluate(allCreatorImages, filterExpression);
-
-        List<Image> images = imageService.findImagesByIds(matchingImageIds);
-
-        images.sort(imageSortService.getImageComparator(sort, direction));
-        
-        List<Long> sortedImageIds = images.stream().map(Image::getId).collect(Collectors.toList());
-
-        HttpSession session = request.getSession();
-        session.setAttribute("sharedImageIds", matchingImageIds);
-        session.setAttribute("sortedImageIds", sortedImageIds);
-        session.setAttribute("sharedFilterToken", token);
+        SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.getSnapshot(token);
+        if (snapshot == null) {
+            return "error/404";
+        }
+        sharedCapabilityService.issue(token, snapshot.getVersion(), sort, direction, request, response);
 
-        model.addAttribute("images", images);
         model.addAttribute("isSharedView", true);
         model.addAttribute("sharedFilterName", originalFilter.getName());
         model.addAttribute("sharedFilterToken", sharedFilter.getToken());
@@ -123,7 +109,7 @@ public class SharedFilterViewController {
         model.addAttribute("currentSort", sort);
         model.addAttribute("currentDirection", direction);
         model.addAttribute("currentUri", request.getRequestURI());
-        model.addAttribute("sharedImageIds", matchingImageIds);
+        model.addAttribute("sharedImageIds", snapshot.getImageIds());
         model.addAttribute("sortableFields", imageSortService.getSortableFieldsMap());
         model.addAttribute("sortableFieldsJson", objectMapper.writeValueAsString(imageSortService.getSortableFieldsMap()));
         model.addAttribute("displayMetadataMap", metadataService.getDisplayMetadataMap());
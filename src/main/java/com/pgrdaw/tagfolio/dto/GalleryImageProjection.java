@@ -0,0 +1,31 @@
+package com.pgrdaw.tagfolio.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns of an image that the gallery needs, read by a constructor query that leaves out the metadata.
+ *
+ * @param id                The ID of the image.
+ * @param userId            The ID of the user who owns the image.
+ * @param originalFileName  The original file name.
+ * @param thumbnailFileName The file name of the thumbnail.
+ * @param width             The width in pixels, if known.
+ * @param height            The height in pixels, if known.
+ * @param rating            The rating, if any.
+ * @param createdAt         The creation date, if known.
+ * @param modifiedAt        The modification date, if known.
+ * @param importedAt        The import date.
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+public record GalleryImageProjection(Long id,
+                                     Long userId,
+                                     String originalFileName,
+                                     String thumbnailFileName,
+                                     Integer width,
+                                     Integer height,
+                                     Integer rating,
+                                     LocalDateTime createdAt,
+                                     LocalDateTime modifiedAt,
+                                     LocalDateTime importedAt) {
+}
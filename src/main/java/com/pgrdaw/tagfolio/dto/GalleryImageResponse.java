@@ -0,0 +1,33 @@
+package com.pgrdaw.tagfolio.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Represents an image as listed in the gallery. Fields that were not requested, or have no value, are left out
+ * of the JSON.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GalleryImageResponse {
+    private Long id;
+    private String originalFileName;
+    private String thumbnailUrl;
+    private Integer width;
+    private Integer height;
+    private Integer rating;
+    private LocalDateTime createdAt;
+    private LocalDateTime modifiedAt;
+    private LocalDateTime importedAt;
+    private List<String> tags;
+}
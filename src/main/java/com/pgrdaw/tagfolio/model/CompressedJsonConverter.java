@@ -0,0 +1,90 @@
+package com.pgrdaw.tagfolio.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores JSON text as Jackson Smile, a binary JSON format, compressed with Deflate.
+ * <p>
+ * The first byte of the stored value names its format, so the encoding can change without rewriting old rows.
+ * Entities keep working with the JSON text; it is encoded when written and decoded when read.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Converter
+public class CompressedJsonConverter implements AttributeConverter<String, byte[]> {
+
+    /**
+     * The format byte of Smile compressed with Deflate.
+     */
+    static final byte FORMAT_SMILE_DEFLATE = 1;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final SmileMapper SMILE_MAPPER = new SmileMapper();
+
+    @Override
+    public byte[] convertToDatabaseColumn(String json) {
+        return json != null ? encode(json) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        return data != null ? decode(data) : null;
+    }
+
+    /**
+     * Encodes JSON text.
+     *
+     * @param json The JSON text.
+     * @return The encoded bytes.
+     * @throws UncheckedIOException if the text is not valid JSON.
+     */
+    public static byte[] encode(String json) {
+        try {
+            JsonNode tree = JSON_MAPPER.readTree(json);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, json.length() / 4));
+            bytes.write(FORMAT_SMILE_DEFLATE);
+            // A stream given its own Deflater does not end it when closed, so its native memory is released here.
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(bytes, deflater)) {
+                SMILE_MAPPER.writeValue(deflated, tree);
+            } finally {
+                deflater.end();
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode JSON metadata", e);
+        }
+    }
+
+    /**
+     * Decodes bytes written by {@link #encode(String)}.
+     *
+     * @param data The encoded bytes.
+     * @return The JSON text.
+     * @throws UncheckedIOException if the bytes cannot be decoded.
+     */
+    public static String decode(byte[] data) {
+        if (data.length == 0 || data[0] != FORMAT_SMILE_DEFLATE) {
+            throw new UncheckedIOException(new IOException("Unknown metadata format: " + (data.length == 0 ? "empty" : data[0])));
+        }
+        try (InputStream inflated = new InflaterInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+            return JSON_MAPPER.writeValueAsString(SMILE_MAPPER.readTree(inflated));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode JSON metadata", e);
+        }
+    }
+}
@@ -2,16 +2,13 @@ package com.pgrdaw.tagfolio.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -21,12 +18,21 @@ import java.util.Set;
  * @since 2026-01-01
  */
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = {
+        @Index(name = "idx_images_user_imported", columnList = "user_id, imported_at, id"),
+        @Index(name = "idx_images_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_images_user_modified", columnList = "user_id, modified_at, id"),
+        @Index(name = "idx_images_user_rating", columnList = "user_id, rating, id"),
+        @Index(name = "idx_images_imported", columnList = "imported_at, id"),
+        @Index(name = "idx_images_created", columnList = "created_at, id"),
+        @Index(name = "idx_images_modified", columnList = "modified_at, id"),
+        @Index(name = "idx_images_rating", columnList = "rating, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
-@ToString(exclude = {"user", "tags", "reportImages"})
+@ToString(exclude = {"user", "metadata", "displayFields", "tags", "reportImages"})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Image {
 
@@ -45,9 +51,10 @@ public class Image {
     @Column(nullable = false)
     private String thumbnailFileName;
 
-    @Lob
-    @Column(name = "exiftool", columnDefinition = "CLOB")
-    private String exiftool;
+    @JsonIgnore
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "metadata_id", unique = true)
+    private ImageMetadata metadata;
 
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -61,6 +68,30 @@ public class Image {
     @Column(name = "rating")
     private Integer rating;
 
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    /**
+     * The values of the configured display metadata keys, extracted from the metadata when it is set, so they can
+     * be shown without parsing it. Keyed by ExifTool key.
+     */
+    @JsonIgnore
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "image_display_fields", joinColumns = @JoinColumn(name = "image_id"))
+    @MapKeyColumn(name = "metadata_key")
+    @Column(name = "metadata_value", length = 4000)
+    private Map<String, String> displayFields = new HashMap<>();
+
+    /**
+     * The version of the display keys the display fields were extracted with, or null if they were not.
+     */
+    @JsonIgnore
+    @Column(name = "display_fields_version", length = 64)
+    private String displayFieldsVersion;
+
     @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(name = "image_tag",
             joinColumns = @JoinColumn(name = "image_id"),
@@ -71,8 +102,6 @@ public class Image {
     @OneToMany(mappedBy = "image", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<ReportImage> reportImages = new HashSet<>();
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-
     /**
      * Constructs a new Image associated with the specified user.
      *
@@ -83,32 +112,16 @@ public class Image {
     }
 
     /**
-     * Retrieves the value of a specific field from the ExifTool JSON data.
+     * Sets the raw ExifTool JSON of the image, creating its metadata if it has none.
+     * The metadata is loaded if it was not, so this must be called within a transaction.
      *
-     * @param fieldName The name of the field to retrieve.
-     * @return The value of the field as a String, or null if not found.
+     * @param exiftool The ExifTool JSON.
      */
-    public String getExiftoolField(String fieldName) {
-        if (exiftool == null || exiftool.isEmpty()) {
-            return null;
-        }
-        try {
-            JsonNode rootNode = OBJECT_MAPPER.readTree(exiftool);
-            JsonNode fieldNode = rootNode.get(fieldName);
-            if (fieldNode != null && fieldNode.isTextual()) {
-                return fieldNode.asText();
-            } else if (fieldNode != null && fieldNode.isArray()) {
-                List<String> values = new ArrayList<>();
-                for (JsonNode node : fieldNode) {
-                    if (node.isTextual()) {
-                        values.add(node.asText());
-                    }
-                }
-                return String.join(", ", values);
-            }
-        } catch (JsonProcessingException e) {
-            System.err.println("Error parsing exiftool JSON: " + e.getMessage());
+    public void setExiftool(String exiftool) {
+        if (metadata == null) {
+            metadata = new ImageMetadata(exiftool);
+        } else {
+            metadata.setExiftool(exiftool);
         }
-        return null;
     }
 }
@@ -0,0 +1,88 @@
+package com.pgrdaw.tagfolio.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Represents the raw ExifTool metadata of an image, kept apart from the image so it is only read when needed.
+ * <p>
+ * The metadata is stored compressed by {@link CompressedJsonConverter}. Rows written before the compression was
+ * introduced keep their JSON text in the legacy column until they are re-encoded, and are read from there.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Entity
+@Table(name = "image_metadata")
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(of = "id")
+@ToString(exclude = {"exiftool", "legacyExiftool"})
+public class ImageMetadata {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Lob
+    @Convert(converter = CompressedJsonConverter.class)
+    @Column(name = "exiftool_data", columnDefinition = "BLOB")
+    private String exiftool;
+
+    @Lob
+    @Setter(AccessLevel.NONE)
+    @Column(name = "exiftool", columnDefinition = "CLOB")
+    private String legacyExiftool;
+
+    /**
+     * Incremented by every write of the metadata, so parsed copies of it can tell they are stale, and a write based
+     * on metadata that changed meanwhile fails instead of overwriting it.
+     */
+    @Version
+    @Setter(AccessLevel.NONE)
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    /**
+     * Whether the metadata was set since it was read. Its version only changes when it is written, so until then
+     * it does not tell the new metadata apart from the stored one.
+     */
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private boolean modified;
+
+    /**
+     * Constructs new metadata with the given ExifTool JSON.
+     *
+     * @param exiftool The ExifTool JSON.
+     */
+    public ImageMetadata(String exiftool) {
+        this.exiftool = exiftool;
+    }
+
+    /**
+     * Gets the ExifTool JSON, from the legacy column if the row has not been re-encoded yet.
+     *
+     * @return The ExifTool JSON, or null if there is none.
+     */
+    public String getExiftool() {
+        return exiftool != null ? exiftool : legacyExiftool;
+    }
+
+    /**
+     * Sets the ExifTool JSON. It is stored compressed, and the legacy column is cleared.
+     *
+     * @param exiftool The ExifTool JSON.
+     */
+    public void setExiftool(String exiftool) {
+        this.exiftool = exiftool;
+        this.legacyExiftool = null;
+        this.modified = true;
+    }
+}
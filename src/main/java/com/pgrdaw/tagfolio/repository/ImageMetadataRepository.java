@@ -0,0 +1,52 @@
+package com.pgrdaw.tagfolio.repository;
+
+import com.pgrdaw.tagfolio.model.ImageMetadata;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for {@link ImageMetadata} entities.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+public interface ImageMetadataRepository extends JpaRepository<ImageMetadata, Long> {
+
+    /**
+     * Finds metadata still stored as JSON text in the legacy column, in ID order.
+     *
+     * @param afterId  The ID to start after.
+     * @param pageable The maximum number of rows to return.
+     * @return Triples of ID, JSON text and version of the metadata to re-encode.
+     */
+    @Query("SELECT m.id, m.legacyExiftool, m.version FROM ImageMetadata m WHERE m.legacyExiftool IS NOT NULL AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findLegacyAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Finds the current version of metadata, without loading it.
+     *
+     * @param id The ID of the metadata.
+     * @return An optional containing the version, or empty if the metadata does not exist.
+     */
+    @Query("SELECT m.version FROM ImageMetadata m WHERE m.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Stores already encoded metadata in place of the legacy JSON text, unless the metadata changed since it was read.
+     *
+     * @param id      The ID of the metadata.
+     * @param data    The encoded metadata, as written by {@link com.pgrdaw.tagfolio.model.CompressedJsonConverter}.
+     * @param version The version the metadata was read at.
+     * @return The number of rows updated: 0 if the metadata changed meanwhile.
+     */
+    @Modifying
+    @Query(value = "UPDATE image_metadata SET exiftool_data = :data, exiftool = NULL, version = version + 1 WHERE id = :id AND version = :version",
+            nativeQuery = true)
+    int updateEncoded(@Param("id") Long id, @Param("data") byte[] data, @Param("version") long version);
+}
@@ -1,12 +1,16 @@
 package com.pgrdaw.tagfolio.repository;
 
+import com.pgrdaw.tagfolio.dto.GalleryImageProjection;
 import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.Tag;
 import com.pgrdaw.tagfolio.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -76,4 +80,114 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
      * @return A list of images.
      */
     List<Image> findByTags(Tag tag);
+
+    /**
+     * Finds the filterable and sortable attributes of a user's images, without loading the entities.
+     *
+     * @param userId The ID of the user.
+     * @return Rows of image ID, original file name, creation date, modification date, import date and rating.
+     */
+    @Query("SELECT i.id, i.originalFileName, i.createdAt, i.modifiedAt, i.importedAt, i.rating FROM Image i WHERE i.user.id = :userId")
+    List<Object[]> findIndexAttributesByUserId(@Param("userId") Long userId);
+
+    /**
+     * Finds the tags of a user's images, without loading the entities.
+     *
+     * @param userId The ID of the user.
+     * @return Rows of image ID, tag ID and tag name.
+     */
+    @Query("SELECT i.id, t.id, t.name FROM Image i JOIN i.tags t WHERE i.user.id = :userId")
+    List<Object[]> findIndexTagsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Finds the gallery fields of a set of images, without reading their metadata.
+     *
+     * @param ids The IDs of the images.
+     * @return The projections of the images that exist, in no particular order.
+     */
+    @Query("SELECT new com.pgrdaw.tagfolio.dto.GalleryImageProjection(i.id, i.user.id, i.originalFileName, i.thumbnailFileName, "
+            + "i.width, i.height, i.rating, i.createdAt, i.modifiedAt, i.importedAt) FROM Image i WHERE i.id IN :ids")
+    List<GalleryImageProjection> findGalleryProjectionsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the tag names of a set of images, without loading the entities.
+     *
+     * @param ids The IDs of the images.
+     * @return Rows of image ID and tag name.
+     */
+    @Query("SELECT i.id, t.name FROM Image i JOIN i.tags t WHERE i.id IN :ids")
+    List<Object[]> findTagNamesByImageIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the materialized display fields of a set of images.
+     *
+     * @param ids The IDs of the images.
+     * @return Rows of image ID, ExifTool key and value.
+     */
+    @Query("SELECT i.id, KEY(f), VALUE(f) FROM Image i JOIN i.displayFields f WHERE i.id IN :ids")
+    List<Object[]> findDisplayFieldsByImageIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the images whose display fields were not extracted with the given version of the display keys, in ID
+     * order.
+     *
+     * @param version  The current version of the display keys.
+     * @param afterId  The ID to start after.
+     * @param pageable The maximum number of images to return.
+     * @return Rows of image ID, version of the display keys the fields were extracted with, and metadata ID.
+     */
+    @Query("SELECT i.id, i.displayFieldsVersion, m.id FROM Image i LEFT JOIN i.metadata m "
+            + "WHERE (i.displayFieldsVersion IS NULL OR i.displayFieldsVersion <> :version) AND i.id > :afterId ORDER BY i.id")
+    List<Object[]> findStaleDisplayFields(@Param("version") String version, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Sets the version of the display keys the display fields of an image were extracted with, unless it changed since
+     * it was read. It does not go through the entity, so it neither loads the image nor reports a change of it.
+     *
+     * @param id           The ID of the image.
+     * @param staleVersion The version read, or {@code "-"} if there was none.
+     * @param version      The new version, or null if the image keeps no display fields.
+     * @return The number of rows updated: 0 if the display fields were extracted meanwhile.
+     */
+    @Modifying
+    @Query("UPDATE Image i SET i.displayFieldsVersion = :version WHERE i.id = :id AND COALESCE(i.displayFieldsVersion, '-') = :staleVersion")
+    int updateDisplayFieldsVersion(@Param("id") Long id, @Param("staleVersion") String staleVersion, @Param("version") String version);
+
+    /**
+     * Deletes the materialized display fields of an image.
+     *
+     * @param imageId The ID of the image.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM image_display_fields WHERE image_id = :imageId", nativeQuery = true)
+    void deleteDisplayFields(@Param("imageId") Long imageId);
+
+    /**
+     * Stores a materialized display field of an image.
+     *
+     * @param imageId The ID of the image.
+     * @param key     The ExifTool key.
+     * @param value   The value.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO image_display_fields (image_id, metadata_key, metadata_value) VALUES (:imageId, :key, :value)",
+            nativeQuery = true)
+    void insertDisplayField(@Param("imageId") Long imageId, @Param("key") String key, @Param("value") String value);
+
+    /**
+     * Finds the IDs of the users who own at least one image.
+     *
+     * @return A list of user IDs.
+     */
+    @Query("SELECT DISTINCT i.user.id FROM Image i")
+    List<Long> findDistinctUserIds();
+
+    /**
+     * Finds the owners of a set of images.
+     *
+     * @param ids The IDs of the images.
+     * @return Pairs of image ID and user ID.
+     */
+    @Query("SELECT i.id, i.user.id FROM Image i WHERE i.id IN :ids")
+    List<Object[]> findUserIdsByIds(@Param("ids") Collection<Long> ids);
 }
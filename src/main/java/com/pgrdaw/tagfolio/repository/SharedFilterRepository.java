@@ -22,6 +22,14 @@ public interface SharedFilterRepository extends JpaRepository<SharedFilter, Long
      */
     Optional<SharedFilter> findByToken(String token);
 
+    /**
+     * Checks whether a shared filter with a token exists.
+     *
+     * @param token The token of the shared filter.
+     * @return True if the shared filter exists, false otherwise.
+     */
+    boolean existsByToken(String token);
+
     /**
      * Finds a shared filter by its content hash.
      *
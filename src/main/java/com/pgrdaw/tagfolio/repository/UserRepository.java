@@ -2,8 +2,12 @@ package com.pgrdaw.tagfolio.repository;
 
 import com.pgrdaw.tagfolio.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -29,4 +33,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return True if a user with the email exists, false otherwise.
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Finds the version of the images of every user.
+     *
+     * @return Pairs of user ID and images version.
+     */
+    @Query("SELECT u.id, u.imagesVersion FROM User u")
+    List<Object[]> findImagesVersions();
+
+    /**
+     * Finds the version of the images of some users.
+     *
+     * @param userIds The IDs of the users.
+     * @return Pairs of user ID and images version.
+     */
+    @Query("SELECT u.id, u.imagesVersion FROM User u WHERE u.id IN :userIds")
+    List<Object[]> findImagesVersions(@Param("userIds") Collection<Long> userIds);
 }
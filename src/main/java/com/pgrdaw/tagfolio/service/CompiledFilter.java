@@ -0,0 +1,254 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Function;
+
+/**
+ * A filter expression compiled into an immutable tree of typed predicates.
+ * <p>
+ * Operands are parsed once at compile time, and evaluation allocates nothing and stops at the first operand
+ * that decides an AND or an OR. Instances are created by {@link FilterExpressionEvaluator#compile} and are safe
+ * to share between threads.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+public final class CompiledFilter {
+
+    /**
+     * A filter that matches no image, used for empty and malformed expressions.
+     */
+    public static final CompiledFilter NONE = new CompiledFilter(new Constant(false));
+
+    private final Node root;
+
+    CompiledFilter(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the root of the predicate tree.
+     *
+     * @return The root node.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Checks whether an image matches the filter.
+     *
+     * @param image The image.
+     * @return True if the image matches.
+     */
+    public boolean matches(Image image) {
+        return root.test(image);
+    }
+
+    /**
+     * Converts a date to the epoch seconds that date predicates compare, dropping any fraction of a second.
+     *
+     * @param value The date.
+     * @return The epoch seconds of the date, taken as UTC.
+     */
+    public static long toEpochSecond(LocalDateTime value) {
+        return value.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * A comparison between an image field and an operand.
+     */
+    public enum Comparison {
+        EQ, LT, LE, GT, GE;
+
+        /**
+         * Parses a comparison operator.
+         *
+         * @param op The operator, such as {@code "<="}.
+         * @return The comparison, or null if the operator is not supported.
+         */
+        static Comparison parse(String op) {
+            return switch (op) {
+                case "=" -> EQ;
+                case "<" -> LT;
+                case "<=" -> LE;
+                case ">" -> GT;
+                case ">=" -> GE;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * A date field of an image that can be filtered on.
+     */
+    public enum DateField {
+        CREATED(Image::getCreatedAt),
+        MODIFIED(Image::getModifiedAt),
+        IMPORTED(Image::getImportedAt);
+
+        private final Function<Image, LocalDateTime> getter;
+
+        DateField(Function<Image, LocalDateTime> getter) {
+            this.getter = getter;
+        }
+
+        /**
+         * Gets the value of the field.
+         *
+         * @param image The image.
+         * @return The value, or null if the image has none.
+         */
+        public LocalDateTime get(Image image) {
+            return getter.apply(image);
+        }
+    }
+
+    /**
+     * A node of the predicate tree.
+     */
+    public sealed interface Node permits Constant, HasTag, DateMatch, RatingMatch, Not, And, Or {
+
+        /**
+         * Evaluates the node against an image.
+         *
+         * @param image The image.
+         * @return True if the image matches.
+         */
+        boolean test(Image image);
+    }
+
+    /**
+     * A predicate with a fixed result.
+     *
+     * @param value The result.
+     */
+    public record Constant(boolean value) implements Node {
+        @Override
+        public boolean test(Image image) {
+            return value;
+        }
+    }
+
+    /**
+     * Matches images that have a tag with the given name.
+     *
+     * @param name The tag name.
+     */
+    public record HasTag(String name) implements Node {
+        @Override
+        public boolean test(Image image) {
+            for (Tag tag : image.getTags()) {
+                if (name.equals(tag.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Compares a date field with a range, such as a whole day or month. Dates are compared to the second, the
+     * finest resolution a filter can express. Images without the field never match.
+     *
+     * @param field      The date field.
+     * @param comparison The comparison.
+     * @param start      The first second of the range, in epoch seconds.
+     * @param end        The last second of the range, in epoch seconds.
+     */
+    public record DateMatch(DateField field, Comparison comparison, long start, long end) implements Node {
+        @Override
+        public boolean test(Image image) {
+            LocalDateTime value = field.get(image);
+            return value != null && test(toEpochSecond(value));
+        }
+
+        /**
+         * Compares a value of the field with the range.
+         *
+         * @param value The value, in epoch seconds.
+         * @return True if the value matches.
+         */
+        public boolean test(long value) {
+            return switch (comparison) {
+                case EQ -> value >= start && value <= end;
+                case LT -> value < start;
+                case LE -> value <= end;
+                case GT -> value > end;
+                case GE -> value >= start;
+            };
+        }
+    }
+
+    /**
+     * Compares the rating with a number. Unrated images never match.
+     *
+     * @param comparison The comparison.
+     * @param value      The number.
+     */
+    public record RatingMatch(Comparison comparison, int value) implements Node {
+        @Override
+        public boolean test(Image image) {
+            Integer rating = image.getRating();
+            return rating != null && test(rating.intValue());
+        }
+
+        /**
+         * Compares a rating with the number.
+         *
+         * @param r The rating.
+         * @return True if the rating matches.
+         */
+        public boolean test(int r) {
+            return switch (comparison) {
+                case EQ -> r == value;
+                case LT -> r < value;
+                case LE -> r <= value;
+                case GT -> r > value;
+                case GE -> r >= value;
+            };
+        }
+    }
+
+    /**
+     * Negates a predicate.
+     *
+     * @param operand The predicate.
+     */
+    public record Not(Node operand) implements Node {
+        @Override
+        public boolean test(Image image) {
+            return !operand.test(image);
+        }
+    }
+
+    /**
+     * Matches images that match both predicates.
+     *
+     * @param left  The predicate evaluated first.
+     * @param right The predicate evaluated only if the first one matches.
+     */
+    public record And(Node left, Node right) implements Node {
+        @Override
+        public boolean test(Image image) {
+            return left.test(image) && right.test(image);
+        }
+    }
+
+    /**
+     * Matches images that match either predicate.
+     *
+     * @param left  The predicate evaluated first.
+     * @param right The predicate evaluated only if the first one does not match.
+     */
+    public record Or(Node left, Node right) implements Node {
+        @Override
+        public boolean test(Image image) {
+            return left.test(image) || right.test(image);
+        }
+    }
+}
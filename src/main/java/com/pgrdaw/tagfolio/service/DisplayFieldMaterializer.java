@@ -0,0 +1,233 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.pgrdaw.tagfolio.model.ImageMetadata;
+import com.pgrdaw.tagfolio.repository.ImageMetadataRepository;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.service.util.MetadataKeyResolver;
+import com.pgrdaw.tagfolio.service.util.MetadataService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that extracts the display fields of images again when the display metadata keys change, in the
+ * background.
+ * <p>
+ * After the application starts, a single daemon thread reads the images whose display fields were extracted with
+ * another version of the keys, or never extracted, in batches, and extracts them from the stored metadata. The
+ * fields of each image are stored in their own transaction, so an image that cannot be written does not undo the
+ * rest of its batch. Until an image is processed, its display fields are read from its metadata.
+ * <p>
+ * Images are not loaded: only their metadata is, and the display fields are written with targeted statements, so the
+ * filter index is not told of a change that does not affect it. An image whose display fields were extracted by
+ * another writer since the batch was read is left as that writer stored it.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class DisplayFieldMaterializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisplayFieldMaterializer.class);
+
+    private final ImageRepository imageRepository;
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final MetadataService metadataService;
+    private final MetadataKeyResolver metadataKeyResolver;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final AtomicLong materializedImages = new AtomicLong();
+    private final AtomicLong skippedImages = new AtomicLong();
+    private final AtomicLong failedImages = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    /**
+     * An image whose display fields are stale.
+     *
+     * @param imageId      The ID of the image.
+     * @param staleVersion The version of the keys its display fields were extracted with, or null if never.
+     * @param fields       The extracted display fields, or null if a value is too long to be stored.
+     */
+    private record StaleImage(Long imageId, String staleVersion, Map<String, String> fields) {
+    }
+
+    private enum Outcome {
+        MATERIALIZED, SKIPPED, UNCHANGED
+    }
+
+    /**
+     * Constructs a new DisplayFieldMaterializer.
+     *
+     * @param imageRepository         The image repository.
+     * @param imageMetadataRepository The image metadata repository.
+     * @param metadataService     The metadata service.
+     * @param metadataKeyResolver The resolver of configured metadata keys.
+     * @param transactionManager  The transaction manager.
+     * @param enabled             Whether stale display fields are extracted again after startup.
+     * @param batchSize           The number of images read at a time.
+     */
+    public DisplayFieldMaterializer(ImageRepository imageRepository,
+                                    ImageMetadataRepository imageMetadataRepository,
+                                    MetadataService metadataService,
+                                    MetadataKeyResolver metadataKeyResolver,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${image.display-fields.materialization.enabled:true}") boolean enabled,
+                                    @Value("${image.display-fields.materialization.batch-size:200}") int batchSize) {
+        this.imageRepository = imageRepository;
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.metadataService = metadataService;
+        this.metadataKeyResolver = metadataKeyResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Starts the materialization thread once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::materialize, "display-field-materializer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the materialization after the current batch.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Extracts the display fields of all stale images, batch by batch, until none is left.
+     */
+    public void materialize() {
+        running = true;
+        try {
+            Long lastId = 0L;
+            while (lastId != null && !stopped) {
+                lastId = materializeBatch(lastId);
+            }
+            if (materializedImages.get() > 0 || skippedImages.get() > 0) {
+                logger.info("Extracted the display fields of {} images ({} left reading their metadata).",
+                        materializedImages.get(), skippedImages.get());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Display field materialization stopped: {}", e.getMessage(), e);
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Gets the progress of the materialization.
+     *
+     * @return A map with the materialization statistics.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", running);
+        result.put("version", metadataKeyResolver.getDisplayKeysVersion());
+        result.put("materializedImages", materializedImages.get());
+        result.put("skippedImages", skippedImages.get());
+        result.put("failedImages", failedImages.get());
+        return result;
+    }
+
+    /**
+     * Extracts the display fields of one batch of images, storing those of each image in its own transaction. Images
+     * with a value too long to store, or whose metadata cannot be parsed or written, are left as they are; the next
+     * batch starts after them.
+     *
+     * @return The ID of the last image of the batch, or null if there were no images left.
+     */
+    private Long materializeBatch(Long afterId) {
+        String version = metadataKeyResolver.getDisplayKeysVersion();
+        List<StaleImage> images = new ArrayList<>();
+        Long lastId = transactionTemplate.execute(status -> readBatch(version, afterId, images));
+        for (StaleImage image : images) {
+            try {
+                Outcome outcome = transactionTemplate.execute(status -> store(image, version));
+                if (outcome == Outcome.MATERIALIZED) {
+                    materializedImages.incrementAndGet();
+                } else if (outcome == Outcome.SKIPPED) {
+                    skippedImages.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                failedImages.incrementAndGet();
+                logger.warn("Could not store the display fields of image {}: {}", image.imageId(), e.getMessage());
+            }
+        }
+        return lastId;
+    }
+
+    private Long readBatch(String version, Long afterId, List<StaleImage> images) {
+        List<Object[]> rows = imageRepository.findStaleDisplayFields(version, afterId, PageRequest.of(0, batchSize));
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<Long> metadataIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (row[2] != null) {
+                metadataIds.add((Long) row[2]);
+            }
+        }
+        Map<Long, ImageMetadata> metadataById = new HashMap<>();
+        for (ImageMetadata metadata : imageMetadataRepository.findAllById(metadataIds)) {
+            metadataById.put(metadata.getId(), metadata);
+        }
+        for (Object[] row : rows) {
+            Long imageId = (Long) row[0];
+            try {
+                Map<String, String> fields = metadataService.extractStorableDisplayFields(metadataById.get((Long) row[2]));
+                images.add(new StaleImage(imageId, (String) row[1], fields));
+            } catch (JsonProcessingException e) {
+                failedImages.incrementAndGet();
+                logger.warn("Could not extract the display fields of image {}: {}", imageId, e.getMessage());
+            }
+        }
+        return (Long) rows.get(rows.size() - 1)[0];
+    }
+
+    private Outcome store(StaleImage image, String version) {
+        Long imageId = image.imageId();
+        String staleVersion = image.staleVersion() != null ? image.staleVersion() : "-";
+        if (image.fields() == null) {
+            logger.debug("Display fields of image {} are too long to store.", imageId);
+            if (image.staleVersion() != null && imageRepository.updateDisplayFieldsVersion(imageId, staleVersion, null) > 0) {
+                imageRepository.deleteDisplayFields(imageId);
+            }
+            return Outcome.SKIPPED;
+        }
+        if (imageRepository.updateDisplayFieldsVersion(imageId, staleVersion, version) == 0) {
+            logger.debug("Display fields of image {} were extracted meanwhile; skipped.", imageId);
+            return Outcome.UNCHANGED;
+        }
+        imageRepository.deleteDisplayFields(imageId);
+        image.fields().forEach((key, value) -> imageRepository.insertDisplayField(imageId, key, value));
+        return Outcome.MATERIALIZED;
+    }
+}
@@ -0,0 +1,202 @@
+package com.pgrdaw.tagfolio.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived ExifTool process started with {@code -stay_open True -@ -}.
+ * <p>
+ * Commands are written to the process standard input one argument per line and terminated
+ * with {@code -execute{id}}. The output of each command ends with a {@code {ready{id}}} marker,
+ * which is used to split the output stream into individual responses, each read as it arrives.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+class ExifToolDaemon implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExifToolDaemon.class);
+    private static final AtomicLong EXECUTE_IDS = new AtomicLong();
+    private static final String END_OF_STREAM = "\u0000EOF";
+
+    private final Path configPath;
+
+    private Process process;
+    private BlockingQueue<String> outputLines;
+    private BufferedWriter stdin;
+    private boolean broken;
+
+    /**
+     * Constructs a new, not yet started, ExifToolDaemon.
+     *
+     * @param configPath The ExifTool config file to load, or null to use none.
+     */
+    ExifToolDaemon(Path configPath) {
+        this.configPath = configPath;
+    }
+
+    /**
+     * Checks whether the daemon can accept commands.
+     *
+     * @return True if the underlying process is running and has not failed.
+     */
+    boolean isHealthy() {
+        return process != null && process.isAlive() && !broken;
+    }
+
+    /**
+     * Executes a single ExifTool command on the long-lived process, starting it if needed. The output is handed to
+     * the handler as it is produced, and whatever the handler does not read is discarded up to the end of the
+     * command.
+     *
+     * @param arguments      The command arguments, without the {@code exiftool} executable.
+     * @param timeoutSeconds The maximum time to wait for the command to complete.
+     * @param handler        The consumer of the output of the command.
+     * @param <T>            The type of the result.
+     * @return The result of the handler.
+     * @throws IOException                       if the handler fails to read the output.
+     * @throws ExifToolService.ExifToolException if the process cannot be started, dies or times out.
+     */
+    <T> T execute(List<String> arguments, long timeoutSeconds, ExifToolOutput.Handler<T> handler) throws IOException {
+        if (!isHealthy()) {
+            close();
+            start();
+        }
+
+        String executeId = String.valueOf(EXECUTE_IDS.incrementAndGet());
+        String readyMarker = "{ready" + executeId + "}";
+
+        try {
+            for (String argument : arguments) {
+                stdin.write(argument);
+                stdin.newLine();
+            }
+            stdin.write("-execute" + executeId);
+            stdin.newLine();
+            stdin.flush();
+        } catch (IOException e) {
+            broken = true;
+            throw new ExifToolService.ExifToolException("Failed to send command to ExifTool daemon.", e);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        ExifToolOutput output = new ExifToolOutput(() -> nextLine(readyMarker, deadline, timeoutSeconds));
+        try {
+            return handler.handle(output);
+        } finally {
+            output.drain();
+        }
+    }
+
+    private String nextLine(String readyMarker, long deadline, long timeoutSeconds) {
+        String line;
+        try {
+            long remaining = deadline - System.nanoTime();
+            line = remaining > 0 ? outputLines.poll(remaining, TimeUnit.NANOSECONDS) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broken = true;
+            throw new ExifToolService.ExifToolException("ExifTool daemon command was interrupted.", e);
+        }
+        if (line == null) {
+            broken = true;
+            throw new ExifToolService.ExifToolException("ExifTool daemon timed out after " + timeoutSeconds + " seconds.");
+        }
+        if (END_OF_STREAM.equals(line)) {
+            broken = true;
+            throw new ExifToolService.ExifToolException("ExifTool daemon terminated unexpectedly.");
+        }
+        return readyMarker.equals(line) ? null : line;
+    }
+
+    private void start() {
+        List<String> command = new ArrayList<>();
+        command.add("exiftool");
+        if (configPath != null) {
+            command.add("-config");
+            command.add(configPath.toString());
+        }
+        command.add("-stay_open");
+        command.add("True");
+        command.add("-@");
+        command.add("-");
+
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            process = processBuilder.start();
+        } catch (IOException e) {
+            broken = true;
+            throw new ExifToolService.ExifToolException("Failed to start ExifTool daemon.", e);
+        }
+
+        broken = false;
+        outputLines = new LinkedBlockingQueue<>();
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        Process startedProcess = process;
+        BlockingQueue<String> startedOutputLines = outputLines;
+        Thread readerThread = new Thread(() -> pumpOutput(startedProcess, startedOutputLines), "exiftool-daemon-" + startedProcess.pid());
+        readerThread.setDaemon(true);
+        readerThread.start();
+        logger.info("Started ExifTool daemon with pid {}", startedProcess.pid());
+    }
+
+    private static void pumpOutput(Process source, BlockingQueue<String> lines) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            logger.debug("ExifTool daemon output stream closed: {}", e.getMessage());
+        } finally {
+            lines.add(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Asks the process to exit gracefully and destroys it if it does not terminate in time.
+     */
+    @Override
+    public void close() {
+        if (process == null) {
+            return;
+        }
+        try {
+            if (process.isAlive() && !broken) {
+                stdin.write("-stay_open");
+                stdin.newLine();
+                stdin.write("False");
+                stdin.newLine();
+                stdin.flush();
+                process.waitFor(5, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            logger.debug("Could not request ExifTool daemon shutdown: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+            process = null;
+            stdin = null;
+        }
+    }
+}
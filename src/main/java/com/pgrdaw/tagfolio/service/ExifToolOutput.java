@@ -0,0 +1,166 @@
+package com.pgrdaw.tagfolio.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The output of an ExifTool command, read line by line as the process writes it.
+ * <p>
+ * Consumers read it as a {@link Reader}, so large outputs are parsed as they arrive instead of being collected into
+ * a string first. Lines starting with {@code Error:} are remembered, and the lines skipped or drained without being
+ * read are kept, up to a limit, to report failures.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+class ExifToolOutput extends Reader {
+
+    private static final int MAX_KEPT_LINES = 20;
+
+    private final LineSource source;
+    private final List<String> errors = new ArrayList<>();
+    private final List<String> skippedLines = new ArrayList<>();
+
+    private String line;
+    private int position;
+    private boolean finished;
+
+    /**
+     * A source of output lines.
+     */
+    @FunctionalInterface
+    interface LineSource {
+
+        /**
+         * Reads the next line of output.
+         *
+         * @return The line, without its terminator, or null at the end of the output.
+         * @throws IOException if the output cannot be read.
+         */
+        String readLine() throws IOException;
+    }
+
+    /**
+     * A consumer of the output of an ExifTool command.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    interface Handler<T> {
+
+        /**
+         * Reads the output of a command. The output does not have to be read to the end.
+         *
+         * @param output The output.
+         * @return The result.
+         * @throws IOException if the output cannot be read or parsed.
+         */
+        T handle(ExifToolOutput output) throws IOException;
+    }
+
+    /**
+     * Constructs a new ExifToolOutput.
+     *
+     * @param source The source of the output lines.
+     */
+    ExifToolOutput(LineSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if ((line == null || position > line.length()) && !nextLine()) {
+            return -1;
+        }
+        int count = 0;
+        while (count < length && position <= line.length()) {
+            buffer[offset + count++] = position < line.length() ? line.charAt(position) : '\n';
+            position++;
+        }
+        return count;
+    }
+
+    /**
+     * Skips lines until one that starts with a character, which is read next.
+     *
+     * @param start The character the line must start with.
+     * @return True if such a line was found, or false if the output ended.
+     * @throws IOException if the output cannot be read.
+     */
+    boolean skipTo(char start) throws IOException {
+        if (line != null && position < line.length() && line.charAt(position) == start) {
+            return true;
+        }
+        while (nextLine()) {
+            if (!line.isEmpty() && line.charAt(0) == start) {
+                return true;
+            }
+            keep(line);
+        }
+        return false;
+    }
+
+    /**
+     * Reads and discards the rest of the output.
+     *
+     * @throws IOException if the output cannot be read.
+     */
+    void drain() throws IOException {
+        while (nextLine()) {
+            keep(line);
+        }
+    }
+
+    /**
+     * Gets the error lines read so far.
+     *
+     * @return The lines starting with {@code Error:}.
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the lines that were skipped or drained, to report a failure.
+     *
+     * @return The first lines that were not read, joined by line breaks.
+     */
+    String getSkippedLines() {
+        return String.join("\n", skippedLines);
+    }
+
+    /**
+     * Does nothing: the process is owned by whoever runs the command.
+     */
+    @Override
+    public void close() {
+    }
+
+    private boolean nextLine() throws IOException {
+        if (finished) {
+            line = null;
+            return false;
+        }
+        line = source.readLine();
+        position = 0;
+        if (line == null) {
+            finished = true;
+            return false;
+        }
+        if (line.startsWith("Error:") && errors.size() < MAX_KEPT_LINES) {
+            errors.add(line);
+        }
+        return true;
+    }
+
+    private void keep(String skipped) {
+        if (skippedLines.size() < MAX_KEPT_LINES) {
+            skippedLines.add(skipped);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.pgrdaw.tagfolio.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
@@ -13,12 +16,19 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * A service for interacting with the ExifTool command-line utility.
@@ -31,6 +41,9 @@ public class ExifToolService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExifToolService.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int poolSize;
+    private final long poolAcquireTimeoutSeconds;
+    private BlockingQueue<ExifToolDaemon> daemonPool;
     private Path tempConfigPath;
 
     public static class ExifToolException extends RuntimeException {
@@ -43,7 +56,20 @@ public class ExifToolService {
     }
 
     /**
-     * Initializes the ExifToolService by creating a temporary config file.
+     * Constructs a new ExifToolService.
+     *
+     * @param poolSize                  The number of long-lived ExifTool processes to keep, or 0 to start a process per call.
+     * @param poolAcquireTimeoutSeconds The maximum time to wait for an idle pooled process before starting a dedicated one.
+     */
+    public ExifToolService(@Value("${image.exiftool.pool-size:0}") int poolSize,
+                           @Value("${image.exiftool.pool-acquire-timeout-seconds:10}") long poolAcquireTimeoutSeconds) {
+        this.poolSize = poolSize;
+        this.poolAcquireTimeoutSeconds = poolAcquireTimeoutSeconds;
+    }
+
+    /**
+     * Initializes the ExifToolService by creating a temporary config file and the process pool.
+     * Pooled processes are started lazily on first use.
      *
      * @throws ExifToolException if the temporary config file cannot be created.
      */
@@ -60,13 +86,27 @@ public class ExifToolService {
             this.tempConfigPath = null;
             throw new ExifToolException("Failed to initialize ExifTool service: could not create temporary config file.", e);
         }
+
+        if (poolSize > 0) {
+            this.daemonPool = new ArrayBlockingQueue<>(poolSize);
+            for (int i = 0; i < poolSize; i++) {
+                daemonPool.add(new ExifToolDaemon(tempConfigPath));
+            }
+            logger.info("ExifTool pooled mode enabled with {} processes.", poolSize);
+        }
     }
 
     /**
-     * Cleans up the temporary ExifTool config file.
+     * Stops the pooled ExifTool processes and cleans up the temporary ExifTool config file.
      */
     @PreDestroy
     public void cleanup() {
+        if (this.daemonPool != null) {
+            ExifToolDaemon daemon;
+            while ((daemon = daemonPool.poll()) != null) {
+                daemon.close();
+            }
+        }
         if (this.tempConfigPath != null) {
             try {
                 Files.deleteIfExists(this.tempConfigPath);
@@ -78,41 +118,43 @@ public class ExifToolService {
     }
 
     /**
-     * Executes an ExifTool command and returns its standard output.
+     * Executes an ExifTool command, handing its standard output to a handler as it is produced.
      * Throws ExifToolException if the command fails or times out.
      *
      * @param command The list of command line arguments for ExifTool.
      * @param timeoutSeconds The maximum time to wait for the ExifTool process to complete.
-     * @return The standard output of the ExifTool process.
+     * @param handler The consumer of the standard output of the ExifTool process.
+     * @return The result of the handler.
      * @throws ExifToolException if the ExifTool process encounters an error, times out, or is interrupted.
      */
-    private String executeExifToolCommand(List<String> command, long timeoutSeconds) {
+    private <T> T executeExifToolCommand(List<String> command, long timeoutSeconds, ExifToolOutput.Handler<T> handler) {
+        Process process = null;
         try {
             ProcessBuilder processBuilder = new ProcessBuilder(command);
             processBuilder.redirectErrorStream(true);
 
-            Process process = processBuilder.start();
+            process = processBuilder.start();
 
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
+            T result;
+            ExifToolOutput output;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                output = new ExifToolOutput(reader::readLine);
+                result = handler.handle(output);
+                output.drain();
             }
 
             if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
-                process.destroyForcibly();
                 throw new ExifToolException("ExifTool process timed out after " + timeoutSeconds + " seconds. Command: " + String.join(" ", command));
             }
 
             int exitCode = process.exitValue();
             if (exitCode != 0) {
-                logger.error("ExifTool command failed with exit code {}. Command: {}. Output: {}", exitCode, String.join(" ", command), output.toString().trim());
-                throw new ExifToolException("ExifTool command failed with exit code " + exitCode + ". Output: " + output.toString().trim());
+                String message = String.join("\n", output.getErrors()) + "\n" + output.getSkippedLines();
+                logger.error("ExifTool command failed with exit code {}. Command: {}. Output: {}", exitCode, String.join(" ", command), message.trim());
+                throw new ExifToolException("ExifTool command failed with exit code " + exitCode + ". Output: " + message.trim());
             }
 
-            return output.toString();
+            return result;
 
         } catch (IOException e) {
             logger.error("IOException during ExifTool command execution. Command: {}", String.join(" ", command), e);
@@ -121,9 +163,96 @@ public class ExifToolService {
             Thread.currentThread().interrupt();
             logger.error("ExifTool command execution was interrupted. Command: {}", String.join(" ", command), e);
             throw new ExifToolException("ExifTool command execution was interrupted.", e);
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
         }
     }
 
+    /**
+     * Runs ExifTool with the given arguments, using a pooled long-lived process when available.
+     * Falls back to a dedicated process when pooling is disabled, no pooled process becomes idle
+     * in time, or an argument cannot be expressed in an ExifTool argument file.
+     *
+     * @param arguments      The ExifTool arguments, without the executable and config options.
+     * @param timeoutSeconds The maximum time to wait for the command to complete.
+     * @param handler        The consumer of the standard output of the command, which reads it as it is produced.
+     * @return The result of the handler.
+     * @throws ExifToolException if the command fails, times out, or is interrupted, or its output cannot be read.
+     */
+    private <T> T runExifTool(List<String> arguments, long timeoutSeconds, ExifToolOutput.Handler<T> handler) {
+        ExifToolDaemon daemon = null;
+        if (daemonPool != null && arguments.stream().noneMatch(ExifToolService::isUnsafeArgFileLine)) {
+            try {
+                daemon = daemonPool.poll(poolAcquireTimeoutSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExifToolException("Interrupted while waiting for an ExifTool process.", e);
+            }
+        }
+
+        if (daemon == null) {
+            List<String> command = new ArrayList<>();
+            command.add("exiftool");
+            if (tempConfigPath != null) {
+                command.add("-config");
+                command.add(tempConfigPath.toString());
+            }
+            command.addAll(arguments);
+            return executeExifToolCommand(command, timeoutSeconds, handler);
+        }
+
+        try {
+            return daemon.execute(arguments, timeoutSeconds, output -> {
+                T result = handler.handle(output);
+                output.drain();
+                if (!output.getErrors().isEmpty()) {
+                    throw new ExifToolException("ExifTool command failed. Output: " + String.join("\n", output.getErrors()));
+                }
+                return result;
+            });
+        } catch (IOException e) {
+            throw new ExifToolException("Failed to read the output of ExifTool.", e);
+        } finally {
+            if (!daemon.isHealthy()) {
+                logger.warn("Restarting unhealthy ExifTool process.");
+                daemon.close();
+                daemon = new ExifToolDaemon(tempConfigPath);
+            }
+            daemonPool.offer(daemon);
+        }
+    }
+
+    /**
+     * Reads the JSON array ExifTool prints with {@code -json} one object at a time, skipping any messages printed
+     * before it.
+     *
+     * @param output   The output of ExifTool.
+     * @param consumer The consumer of each object of the array.
+     * @return Always null.
+     * @throws IOException if the output holds no JSON array or it is not valid JSON.
+     */
+    private Void readJsonObjects(ExifToolOutput output, Consumer<Map<String, Object>> consumer) throws IOException {
+        if (!output.skipTo('[')) {
+            throw new IOException("ExifTool returned no JSON array.");
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(output)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("ExifTool output is not a JSON array.");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, new TypeReference<Map<String, Object>>() {}));
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUnsafeArgFileLine(String argument) {
+        return argument.indexOf('\n') >= 0 || argument.indexOf('\r') >= 0
+                || !argument.equals(argument.strip()) || argument.startsWith("#");
+    }
+
     /**
      * Reads metadata from an image file.
      *
@@ -136,30 +265,91 @@ public class ExifToolService {
             return null;
         }
 
-        List<String> command = new ArrayList<>();
-        command.add("exiftool");
-        command.add("-json");
-        command.add("-G1");
-        command.add("-struct");
-        command.add(path.toString());
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-json");
+        arguments.add("-G1");
+        arguments.add("-struct");
+        arguments.add(path.toString());
 
         try {
-            String output = executeExifToolCommand(command, 30);
-            List<Map<String, Object>> metadataList = objectMapper.readValue(output, new TypeReference<>() {});
+            List<Map<String, Object>> metadataList = new ArrayList<>(1);
+            runExifTool(arguments, 30, output -> readJsonObjects(output, metadataList::add));
 
-            if (metadataList != null && !metadataList.isEmpty()) {
+            if (!metadataList.isEmpty()) {
                 return metadataList.get(0);
             }
         } catch (ExifToolException e) {
             logger.error("Failed to read EXIF data from file: {}", path, e);
             return null;
-        } catch (IOException e) {
-            logger.error("Failed to parse JSON output from ExifTool for file: {}", path, e);
-            return null;
         }
         return null;
     }
 
+    /**
+     * Reads metadata from several image files with a single ExifTool invocation.
+     * The JSON array produced by ExifTool is consumed one object at a time with a streaming parser, as the
+     * process writes it.
+     * If the batch as a whole fails, each file is read individually so a single bad file does not
+     * discard the metadata of the rest.
+     *
+     * @param paths The paths to the image files.
+     * @return A map of each readable path to its metadata, in the order of the given paths.
+     */
+    public Map<Path, Map<String, Object>> readAll(List<Path> paths) {
+        Map<String, Path> pathsBySourceFile = new LinkedHashMap<>();
+        for (Path path : paths) {
+            if (path != null && Files.exists(path)) {
+                pathsBySourceFile.put(path.toString(), path);
+            } else {
+                logger.warn("Skipping null or non-existent path in EXIF batch read: {}", path);
+            }
+        }
+
+        Map<Path, Map<String, Object>> results = new LinkedHashMap<>();
+        if (pathsBySourceFile.isEmpty()) {
+            return results;
+        }
+
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-json");
+        arguments.add("-G1");
+        arguments.add("-struct");
+        arguments.addAll(pathsBySourceFile.keySet());
+
+        Map<Path, Map<String, Object>> unordered = new HashMap<>();
+        try {
+            runExifTool(arguments, 30L + pathsBySourceFile.size(), output -> readJsonObjects(output, metadata -> {
+                Path path = pathsBySourceFile.get(String.valueOf(metadata.get("SourceFile")));
+                if (path != null) {
+                    unordered.put(path, metadata);
+                }
+            }));
+        } catch (ExifToolException e) {
+            logger.warn("Batch EXIF read of {} files failed, reading them individually: {}", pathsBySourceFile.size(), e.getMessage());
+            unordered.clear();
+            for (Path path : pathsBySourceFile.values()) {
+                Map<String, Object> metadata = read(path);
+                if (metadata != null) {
+                    unordered.put(path, metadata);
+                }
+            }
+        }
+
+        for (Path path : pathsBySourceFile.values()) {
+            Map<String, Object> metadata = unordered.get(path);
+            if (metadata != null) {
+                results.put(path, metadata);
+            }
+        }
+        return results;
+    }
+
+    private static String readFully(ExifToolOutput output) throws IOException {
+        StringWriter writer = new StringWriter();
+        output.transferTo(writer);
+        return writer.toString();
+    }
+
     /**
      * Writes metadata to an image file.
      *
@@ -177,11 +367,6 @@ public class ExifToolService {
             Map<String, Object> metadataToWrite = objectMapper.readValue(json, new TypeReference<>() {});
 
             List<String> command = new ArrayList<>();
-            command.add("exiftool");
-            if (tempConfigPath != null) {
-                command.add("-config");
-                command.add(tempConfigPath.toString());
-            }
 
             for (Map.Entry<String, Object> entry : metadataToWrite.entrySet()) {
                 String key = entry.getKey();
@@ -199,7 +384,7 @@ public class ExifToolService {
             command.add("-overwrite_original");
             command.add(path.toString());
 
-            String output = executeExifToolCommand(command, 60);
+            String output = runExifTool(command, 60, ExifToolService::readFully);
             logger.info("Successfully wrote EXIF data to file: {}. Output: {}", path, output.trim());
 
         } catch (ExifToolException e) {
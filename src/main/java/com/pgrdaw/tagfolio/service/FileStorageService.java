@@ -1,5 +1,6 @@
 package com.pgrdaw.tagfolio.service;
 
+import com.pgrdaw.tagfolio.service.util.ThumbnailCache;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import org.slf4j.Logger;
@@ -8,14 +9,27 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -31,10 +45,23 @@ import java.util.zip.ZipOutputStream;
 public class FileStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+    private static final String INCOMING_DIRECTORY = ".incoming";
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
 
     private final Path originalsPath;
     private final Path thumbnailsPath;
     private final Path deletedPath;
+    private final ThumbnailCache thumbnailCache;
+
+    /**
+     * An upload written to disk, waiting to be moved to its final location or discarded.
+     *
+     * @param path   The spooled file.
+     * @param size   The size of the file in bytes.
+     * @param sha256 The SHA-256 hash of the file content, as a hexadecimal string.
+     */
+    public record SpooledUpload(Path path, long size, String sha256) {
+    }
 
     /**
      * Constructs a new FileStorageService.
@@ -42,13 +69,16 @@ public class FileStorageService {
      * @param originalsPath      The path to the originals directory.
      * @param thumbnailsPath     The path to the thumbnails directory.
      * @param deletedStoragePath The path to the deleted files directory.
+     * @param thumbnailCache     The in-memory cache of thumbnail files.
      */
     public FileStorageService(@Value("${storage.originals-path}") String originalsPath,
                               @Value("${storage.thumbnails-path}") String thumbnailsPath,
-                              @Value("${file.storage-deleted-path}") String deletedStoragePath) {
+                              @Value("${file.storage-deleted-path}") String deletedStoragePath,
+                              ThumbnailCache thumbnailCache) {
         this.originalsPath = Paths.get(originalsPath);
         this.thumbnailsPath = Paths.get(thumbnailsPath);
         this.deletedPath = Paths.get(deletedStoragePath);
+        this.thumbnailCache = thumbnailCache;
     }
 
     /**
@@ -86,6 +116,98 @@ public class FileStorageService {
         return filePath;
     }
 
+    /**
+     * Writes an uploaded file to the user's incoming directory, computing its SHA-256 hash during the copy.
+     * The incoming directory lives inside the originals directory so that moving the file to its final
+     * location is a rename rather than a second copy.
+     *
+     * @param file   The uploaded file.
+     * @param userId The ID of the user who owns the file.
+     * @return The spooled upload.
+     * @throws IOException if an I/O error occurs.
+     */
+    public SpooledUpload spoolUpload(MultipartFile file, Long userId) throws IOException {
+        Path incomingDir = originalsPath.resolve(String.valueOf(userId)).resolve(INCOMING_DIRECTORY);
+        Files.createDirectories(incomingDir);
+        String fileName = file.getOriginalFilename() == null ? "upload" : Path.of(file.getOriginalFilename()).getFileName().toString();
+        Path target = incomingDir.resolve(UUID.randomUUID() + "-" + fileName);
+
+        MessageDigest digest = newSha256Digest();
+        long size = 0;
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest);
+             ReadableByteChannel source = Channels.newChannel(inputStream);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long transferred;
+            while ((transferred = channel.transferFrom(source, size, TRANSFER_CHUNK_SIZE)) > 0) {
+                size += transferred;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return new SpooledUpload(target, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Deletes a spooled upload if it has not been moved to its final location.
+     *
+     * @param upload The spooled upload.
+     */
+    public void discardSpooledUpload(SpooledUpload upload) {
+        try {
+            Files.deleteIfExists(upload.path());
+        } catch (IOException e) {
+            logger.warn("Could not delete spooled upload {}: {}", upload.path(), e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a stored original file.
+     *
+     * @param fileName The name of the file.
+     * @param userId   The ID of the user who owns the file.
+     * @return The hash as a hexadecimal string, or null if the file does not exist.
+     * @throws IOException if an I/O error occurs.
+     */
+    public String calculateOriginalSha256(String fileName, Long userId) throws IOException {
+        Path filePath = originalsPath.resolve(String.valueOf(userId)).resolve(fileName);
+        if (!Files.isRegularFile(filePath)) {
+            return null;
+        }
+        MessageDigest digest = newSha256Digest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(filePath), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not found. This should not happen in a standard Java environment.", e);
+        }
+    }
+
+    /**
+     * Moves a file that was spooled to disk into the originals directory.
+     *
+     * @param sourceFile The spooled file to move.
+     * @param fileName   The name of the file.
+     * @param userId     The ID of the user who owns the file.
+     * @return The path to the saved file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public Path saveOriginalFile(Path sourceFile, String fileName, Long userId) throws IOException {
+        Path userDir = originalsPath.resolve(String.valueOf(userId));
+        if (!Files.exists(userDir)) {
+            Files.createDirectories(userDir);
+        }
+        Path filePath = userDir.resolve(fileName);
+        Files.move(sourceFile, filePath, StandardCopyOption.REPLACE_EXISTING);
+        return filePath;
+    }
+
     /**
      * Saves a thumbnail file.
      *
@@ -100,7 +222,15 @@ public class FileStorageService {
             Files.createDirectories(userDir);
         }
         Path filePath = userDir.resolve(fileName);
-        Files.write(filePath, fileBytes);
+        // Written next to the target and renamed, so a thumbnail being served is never seen half written.
+        Path tempFile = Files.createTempFile(userDir, fileName, ".tmp");
+        try {
+            Files.write(tempFile, fileBytes);
+            Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+            thumbnailCache.invalidate(userId, fileName);
+        }
     }
 
     /**
@@ -117,16 +247,17 @@ public class FileStorageService {
     }
 
     /**
-     * Loads a thumbnail file as a resource.
+     * Loads a thumbnail file as a resource, from the thumbnail cache when possible.
      *
      * @param fileName The name of the file.
      * @param userId   The ID of the user who owns the file.
      * @return The file resource.
-     * @throws MalformedURLException if the file URL is malformed.
+     * @throws IOException if the file cannot be read.
      */
-    public Resource loadThumbnailAsResource(String fileName, Long userId) throws MalformedURLException {
+    public Resource loadThumbnailAsResource(String fileName, Long userId) throws IOException {
         Path filePath = this.thumbnailsPath.resolve(String.valueOf(userId)).resolve(fileName);
-        return new UrlResource(filePath.toUri());
+        Resource cached = thumbnailCache.get(userId, fileName, filePath);
+        return cached != null ? cached : new UrlResource(filePath.toUri());
     }
 
     /**
@@ -168,7 +299,11 @@ public class FileStorageService {
      */
     public void deleteThumbnailFile(String fileName, Long userId) throws IOException {
         Path filePath = thumbnailsPath.resolve(String.valueOf(userId)).resolve(fileName);
-        Files.deleteIfExists(filePath);
+        try {
+            Files.deleteIfExists(filePath);
+        } finally {
+            thumbnailCache.invalidate(userId, fileName);
+        }
     }
 
     /**
@@ -3,7 +3,6 @@ package com.pgrdaw.tagfolio.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Filter;
-import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.FilterRepository;
 import org.springframework.stereotype.Service;
@@ -25,6 +24,7 @@ public class FilterExportService {
 
     private final FilterRepository filterRepository;
     private final ImageService imageService;
+    private final ImageIndexService imageIndexService;
     private final FilterExpressionEvaluator filterExpressionEvaluator;
     private final ObjectMapper objectMapper;
 
@@ -33,15 +33,18 @@ public class FilterExportService {
      *
      * @param filterRepository        The filter repository.
      * @param imageService            The image service.
+     * @param imageIndexService       The image index service.
      * @param filterExpressionEvaluator The filter expression evaluator.
      * @param objectMapper            The object mapper for JSON processing.
      */
     public FilterExportService(FilterRepository filterRepository,
                                ImageService imageService,
+                               ImageIndexService imageIndexService,
                                FilterExpressionEvaluator filterExpressionEvaluator,
                                ObjectMapper objectMapper) {
         this.filterRepository = filterRepository;
         this.imageService = imageService;
+        this.imageIndexService = imageIndexService;
         this.filterExpressionEvaluator = filterExpressionEvaluator;
         this.objectMapper = objectMapper;
     }
@@ -56,7 +59,6 @@ public class FilterExportService {
      */
     @Transactional(readOnly = true)
     public void exportFilters(List<Long> filterIds, User user, ZipOutputStream zipOutputStream) throws IOException {
-        List<Image> allUserImages = imageService.getImagesForUser(user);
         Set<Long> allMatchingImageIds = new HashSet<>();
 
         for (Long filterId : filterIds) {
@@ -64,7 +66,7 @@ public class FilterExportService {
             if (filter != null && (filter.getUser().equals(user) || user.isAdmin())) {
                 try {
                     List<Map<String, String>> expression = objectMapper.readValue(filter.getExpression(), new TypeReference<>() {});
-                    allMatchingImageIds.addAll(filterExpressionEvaluator.evaluate(allUserImages, expression));
+                    allMatchingImageIds.addAll(imageIndexService.findMatchingImageIds(user, filterExpressionEvaluator.compile(expression)));
                 } catch (IOException e) {
                     throw new IOException("Error evaluating filter expression for filter ID: " + filterId, e);
                 }
@@ -3,9 +3,11 @@ package com.pgrdaw.tagfolio.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.pgrdaw.tagfolio.model.Image;
-import com.pgrdaw.tagfolio.model.Tag;
 import com.pgrdaw.tagfolio.service.util.FilterFieldService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.DateTimeException;
@@ -14,10 +16,12 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * A service for evaluating filter expressions.
+ * <p>
+ * Expressions are compiled into a {@link CompiledFilter} before they are evaluated, and compiled filters are
+ * cached by the content of their expression, so saved and shared filters are only compiled once.
  *
  * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
  * @since 2026-01-01
@@ -45,16 +49,23 @@ public class FilterExpressionEvaluator {
 
     private final FilterFieldService filterFieldService;
     private final ObjectMapper objectMapper;
+    private final Cache<List<Map<String, String>>, CompiledFilter> compiledFilters;
 
     /**
      * Constructs a new FilterExpressionEvaluator.
      *
      * @param filterFieldService The filter field service.
      * @param objectMapper       The object mapper for JSON processing.
+     * @param compiledCacheSize  The number of compiled filters kept in memory.
      */
-    public FilterExpressionEvaluator(FilterFieldService filterFieldService, ObjectMapper objectMapper) {
+    public FilterExpressionEvaluator(FilterFieldService filterFieldService,
+                                     ObjectMapper objectMapper,
+                                     @Value("${filter.compiled-cache-size:1000}") long compiledCacheSize) {
         this.filterFieldService = filterFieldService;
         this.objectMapper = objectMapper;
+        this.compiledFilters = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, compiledCacheSize))
+                .build();
     }
 
     /**
@@ -65,21 +76,89 @@ public class FilterExpressionEvaluator {
      * @return A list of IDs of the images that match the expression.
      */
     public List<Long> evaluate(List<Image> allImages, List<Map<String, String>> expression) {
-        if (expression == null || expression.isEmpty()) {
+        return evaluate(allImages, compile(expression));
+    }
+
+    /**
+     * Evaluates a compiled filter against a list of images.
+     *
+     * @param allImages The list of images to evaluate against.
+     * @param filter    The compiled filter.
+     * @return A list of IDs of the images that match the filter.
+     */
+    public List<Long> evaluate(List<Image> allImages, CompiledFilter filter) {
+        if (filter == CompiledFilter.NONE) {
             return Collections.emptyList();
         }
+        List<Long> matchingIds = new ArrayList<>();
+        for (Image image : allImages) {
+            if (filter.matches(image)) {
+                matchingIds.add(image.getId());
+            }
+        }
+        return matchingIds;
+    }
+
+    /**
+     * Compiles a filter expression, or returns the cached result of compiling an equal expression before.
+     * Empty and malformed expressions compile to {@link CompiledFilter#NONE}.
+     *
+     * @param expression The filter expression.
+     * @return The compiled filter.
+     */
+    public CompiledFilter compile(List<Map<String, String>> expression) {
+        if (expression == null || expression.isEmpty()) {
+            return CompiledFilter.NONE;
+        }
+        CompiledFilter compiled = compiledFilters.getIfPresent(expression);
+        if (compiled == null) {
+            compiled = compileUncached(expression);
+            // The key is copied, as callers may reuse or modify their expression.
+            List<Map<String, String>> key = expression.stream().<Map<String, String>>map(HashMap::new).toList();
+            compiledFilters.put(key, compiled);
+        }
+        return compiled;
+    }
 
+    private CompiledFilter compileUncached(List<Map<String, String>> expression) {
         List<Map<String, String>> consolidatedExpression = consolidateExpression(expression);
 
         List<Map<String, String>> rpn = convertToRPN(consolidatedExpression);
         if (rpn == null) {
-            return Collections.emptyList();
+            return CompiledFilter.NONE;
+        }
+
+        Deque<CompiledFilter.Node> stack = new ArrayDeque<>();
+        for (Map<String, String> item : rpn) {
+            String type = item.get("type");
+            String value = item.get("value");
+
+            if ("tag".equals(type)) {
+                stack.push(value != null ? new CompiledFilter.HasTag(value) : new CompiledFilter.Constant(false));
+            } else if ("field".equals(type)) {
+                stack.push(compileFieldPredicate(item));
+            } else if ("operator".equals(type)) {
+                if ("NOT".equals(value)) {
+                    if (stack.isEmpty()) {
+                        return CompiledFilter.NONE;
+                    }
+                    stack.push(new CompiledFilter.Not(stack.pop()));
+                } else {
+                    if (stack.size() < 2) {
+                        return CompiledFilter.NONE;
+                    }
+                    CompiledFilter.Node op2 = stack.pop();
+                    CompiledFilter.Node op1 = stack.pop();
+                    if ("AND".equals(value)) {
+                        stack.push(new CompiledFilter.And(op1, op2));
+                    } else if ("OR".equals(value)) {
+                        stack.push(new CompiledFilter.Or(op1, op2));
+                    }
+                }
+            }
         }
 
-        return allImages.stream()
-                .filter(image -> evaluateRPN(rpn, image))
-                .map(Image::getId)
-                .collect(Collectors.toList());
+        return stack.size() == 1 ? new CompiledFilter(stack.pop()) : CompiledFilter.NONE;
     }
 
     private List<Map<String, String>> consolidateExpression(List<Map<String, String>> expression) {
@@ -137,47 +216,6 @@ public class FilterExpressionEvaluator {
         return result;
     }
 
-    private boolean evaluateRPN(List<Map<String, String>> rpn, Image image) {
-        Set<String> imageTags = image.getTags().stream()
-                .map(Tag::getName)
-                .collect(Collectors.toSet());
-        Deque<Boolean> stack = new ArrayDeque<>();
-
-        for (Map<String, String> item : rpn) {
-            String type = item.get("type");
-            String value = item.get("value");
-
-            if ("tag".equals(type)) {
-                boolean matches = imageTags.contains(value);
-                stack.push(matches);
-            } else if ("field".equals(type)) {
-                boolean matches = evaluateFieldPredicate(item, image);
-                stack.push(matches);
-            } else if ("operator".equals(type)) {
-                if ("NOT".equals(value)) {
-                    if (stack.isEmpty()) {
-                        return false;
-                    }
-                    boolean op = stack.pop();
-                    stack.push(!op);
-                } else {
-                    if (stack.size() < 2) {
-                        return false;
-                    }
-                    boolean op2 = stack.pop();
-                    boolean op1 = stack.pop();
-                    if ("AND".equals(value)) {
-                        stack.push(op1 && op2);
-                    } else if ("OR".equals(value)) {
-                        stack.push(op1 || op2);
-                    }
-                }
-            }
-        }
-
-        return stack.size() == 1 && stack.pop();
-    }
-
     private List<Map<String, String>> convertToRPN(List<Map<String, String>> infix) {
         Deque<Map<String, String>> outputQueue = new ArrayDeque<>();
         Deque<Map<String, String>> operatorStack = new ArrayDeque<>();
@@ -226,48 +264,41 @@ public class FilterExpressionEvaluator {
         return new ArrayList<>(outputQueue);
     }
 
-    private boolean evaluateFieldPredicate(Map<String, String> item, Image image) {
+    private CompiledFilter.Node compileFieldPredicate(Map<String, String> item) {
         String field = safeLower(item.get("field"));
         String op = item.getOrDefault("op", "=");
         String rawValue = item.get("rawValue");
         if (rawValue == null) rawValue = item.get("value");
 
         if (field == null || op == null || rawValue == null) {
-            return false;
+            return new CompiledFilter.Constant(false);
+        }
+        CompiledFilter.Comparison comparison = CompiledFilter.Comparison.parse(op);
+        if (comparison == null) {
+            return new CompiledFilter.Constant(false);
         }
 
         switch (field) {
             case "created":
             case "modified":
             case "imported":
-                LocalDateTime fieldValue = switch (field) {
-                    case "created" -> image.getCreatedAt();
-                    case "modified" -> image.getModifiedAt();
-                    case "imported" -> image.getImportedAt();
-                    default -> null;
+                CompiledFilter.DateField dateField = switch (field) {
+                    case "created" -> CompiledFilter.DateField.CREATED;
+                    case "modified" -> CompiledFilter.DateField.MODIFIED;
+                    default -> CompiledFilter.DateField.IMPORTED;
                 };
 
-                if (fieldValue == null) return false;
-
                 DateRange range = parseDateRange(rawValue);
-                if (range == null) return false;
-
-                return switch (op) {
-                    case "=" -> !fieldValue.isBefore(range.start) && !fieldValue.isAfter(range.end);
-                    case "<" -> fieldValue.isBefore(range.start);
-                    case "<=" -> !fieldValue.isAfter(range.end);
-                    case ">" -> fieldValue.isAfter(range.end);
-                    case ">=" -> !fieldValue.isBefore(range.start);
-                    default -> false;
-                };
+                if (range == null) return new CompiledFilter.Constant(false);
+
+                return new CompiledFilter.DateMatch(dateField, comparison,
+                        CompiledFilter.toEpochSecond(range.start), CompiledFilter.toEpochSecond(range.end));
             case "rating":
-                Integer rating = image.getRating();
-                if (rating == null) return false;
                 Integer value = parseInteger(rawValue);
-                if (value == null) return false;
-                return compareNumbers(rating, value, op);
+                if (value == null) return new CompiledFilter.Constant(false);
+                return new CompiledFilter.RatingMatch(comparison, value);
             default:
-                return false;
+                return new CompiledFilter.Constant(false);
         }
     }
 
@@ -279,17 +310,6 @@ public class FilterExpressionEvaluator {
         }
     }
 
-    private boolean compareNumbers(int a, int b, String op) {
-        return switch (op) {
-            case "<" -> a < b;
-            case ">" -> a > b;
-            case "=" -> a == b;
-            case "<=" -> a <= b;
-            case ">=" -> a >= b;
-            default -> false;
-        };
-    }
-
     private static final List<DateTimeFormatter> DATE_FORMATTERS = Arrays.asList(
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
             DateTimeFormatter.ofPattern("yyyy-MM-dd"),
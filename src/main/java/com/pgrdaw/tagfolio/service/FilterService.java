@@ -2,7 +2,6 @@ package com.pgrdaw.tagfolio.service;
 
 import com.pgrdaw.tagfolio.dto.FilterResponse;
 import com.pgrdaw.tagfolio.model.Filter;
-import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.SharedFilter;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.FilterRepository;
@@ -25,7 +24,7 @@ import java.util.stream.Collectors;
 public class FilterService {
 
     private final FilterRepository filterRepository;
-    private final ImageService imageService;
+    private final ImageIndexService imageIndexService;
     private final FilterExpressionEvaluator filterExpressionEvaluator;
     private final SharedFilterService sharedFilterService;
 
@@ -33,16 +32,16 @@ public class FilterService {
      * Constructs a new FilterService.
      *
      * @param filterRepository        The filter repository.
-     * @param imageService            The image service.
+     * @param imageIndexService       The image index service.
      * @param filterExpressionEvaluator The filter expression evaluator.
      * @param sharedFilterService     The shared filter service.
      */
     public FilterService(FilterRepository filterRepository,
-                         ImageService imageService,
+                         ImageIndexService imageIndexService,
                          FilterExpressionEvaluator filterExpressionEvaluator,
                          SharedFilterService sharedFilterService) {
         this.filterRepository = filterRepository;
-        this.imageService = imageService;
+        this.imageIndexService = imageIndexService;
         this.filterExpressionEvaluator = filterExpressionEvaluator;
         this.sharedFilterService = sharedFilterService;
     }
@@ -114,23 +113,22 @@ public class FilterService {
      */
     @Transactional(readOnly = true)
     public List<Long> evaluateFilter(List<Map<String, String>> expression, String sharedFilterToken, User user) {
-        List<Image> imagesToFilter;
+        User owner;
 
         if (user != null) {
-            imagesToFilter = imageService.getImagesForUser(user);
+            owner = user;
         } else if (sharedFilterToken != null) {
             Optional<SharedFilter> sharedFilterOptional = sharedFilterService.getSharedFilterByToken(sharedFilterToken);
             if (sharedFilterOptional.isEmpty()) {
                 return List.of();
             }
             SharedFilter sharedFilter = sharedFilterOptional.get();
-            User filterCreator = sharedFilter.getFilter().getUser();
-            imagesToFilter = imageService.getImagesForUser(filterCreator);
+            owner = sharedFilter.getFilter().getUser();
         } else {
             return List.of();
         }
 
-        return filterExpressionEvaluator.evaluate(imagesToFilter, expression);
+        return imageIndexService.findMatchingImageIds(owner, filterExpressionEvaluator.compile(expression));
     }
 
     /**
@@ -174,6 +172,7 @@ public class FilterService {
             if (!filter.getUser().getId().equals(user.getId()) && !user.isAdmin()) {
                 throw new FilterServiceException("Filter not found or not owned by user: " + filterId);
             }
+            sharedFilterService.evictSnapshot(filterId);
             filterRepository.deleteById(filterId);
         }
     }
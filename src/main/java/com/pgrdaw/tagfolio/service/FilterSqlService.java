@@ -0,0 +1,303 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A service that evaluates filters in the database.
+ * <p>
+ * A compiled filter is translated into the {@code WHERE} clause of a single native query: tags become
+ * {@code EXISTS} subqueries on {@code image_tag}, and dates and ratings become range predicates on their columns.
+ * Every field predicate also requires the column to be set, so a {@code NOT} matches images without the field,
+ * as it does in memory. Results are read in pages ordered by image ID, each page starting after the last ID of
+ * the previous one. Candidate images are restricted in the query too, in chunks that fit an {@code IN} list, so only
+ * the matching candidates are read. The same clauses restrict the sorted pages of {@link ImagePaginationService}.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class FilterSqlService {
+
+    /**
+     * The maximum number of values in an {@code IN} list, which Oracle limits to 1000.
+     */
+    static final int MAX_IN_LIST = 1000;
+
+    private final EntityManager entityManager;
+    private final int pageSize;
+
+    /**
+     * Constructs a new FilterSqlService.
+     *
+     * @param entityManager The entity manager.
+     * @param pageSize      The number of image IDs read per query.
+     */
+    public FilterSqlService(EntityManager entityManager,
+                            @Value("${filter.sql.page-size:1000}") int pageSize) {
+        this.entityManager = entityManager;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Finds the images a user can read that match a filter.
+     *
+     * @param user   The user.
+     * @param filter The compiled filter.
+     * @return The IDs of the matching images, in ascending order.
+     */
+    public List<Long> findMatchingImageIds(User user, CompiledFilter filter) {
+        return findMatchingImageIds(getScope(user), filter);
+    }
+
+    /**
+     * Finds the images of a set of owners that match a filter.
+     *
+     * @param ownerIds The IDs of the owners, or null for the images of every owner.
+     * @param filter   The compiled filter.
+     * @return The IDs of the matching images, in ascending order.
+     */
+    public List<Long> findMatchingImageIds(Collection<Long> ownerIds, CompiledFilter filter) {
+        List<Long> result = new ArrayList<>();
+        Long afterId = null;
+        while (true) {
+            List<Long> page = findMatchingImageIds(ownerIds, filter, afterId, pageSize);
+            result.addAll(page);
+            if (page.size() < pageSize) {
+                return result;
+            }
+            afterId = page.get(page.size() - 1);
+        }
+    }
+
+    /**
+     * Finds the images of a set of owners that match a filter, among a set of candidates.
+     *
+     * @param ownerIds     The IDs of the owners, or null for the images of every owner.
+     * @param filter       The compiled filter, or null to find every candidate of the owners.
+     * @param candidateIds The IDs of the candidate images, or null for all the images of the owners.
+     * @return The IDs of the matching images, in ascending order within each chunk of candidates.
+     */
+    public List<Long> findMatchingImageIds(Collection<Long> ownerIds, CompiledFilter filter, Collection<Long> candidateIds) {
+        if (candidateIds == null) {
+            return findMatchingImageIds(ownerIds, filter);
+        }
+        if (filter == CompiledFilter.NONE) {
+            return List.of();
+        }
+        List<Long> candidates = new ArrayList<>(candidateIds);
+        List<Long> result = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i += MAX_IN_LIST) {
+            List<Object> parameters = new ArrayList<>();
+            StringBuilder sql = new StringBuilder("SELECT i.id FROM images i WHERE ");
+            appendScope(sql, ownerIds, parameters);
+            sql.append(" AND ");
+            appendIn(sql, "i.id", candidates.subList(i, Math.min(i + MAX_IN_LIST, candidates.size())), parameters);
+            if (filter != null) {
+                sql.append(" AND ");
+                appendNode(sql, filter.getRoot(), parameters);
+            }
+            sql.append(" ORDER BY i.id");
+            result.addAll(toIds(createQuery(sql, parameters).getResultList()));
+        }
+        return result;
+    }
+
+    /**
+     * Finds a page of the images a user can read that match a filter.
+     *
+     * @param user    The user.
+     * @param filter  The compiled filter.
+     * @param afterId The last ID of the previous page, or null for the first page.
+     * @param limit   The maximum number of IDs to return.
+     * @return The IDs of the matching images, in ascending order.
+     */
+    public List<Long> findMatchingImageIds(User user, CompiledFilter filter, Long afterId, int limit) {
+        return findMatchingImageIds(getScope(user), filter, afterId, limit);
+    }
+
+    private List<Long> findMatchingImageIds(Collection<Long> ownerIds, CompiledFilter filter, Long afterId, int limit) {
+        if (filter == CompiledFilter.NONE) {
+            return List.of();
+        }
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT i.id FROM images i WHERE ");
+        appendScope(sql, ownerIds, parameters);
+        if (filter != null) {
+            sql.append(" AND ");
+            appendNode(sql, filter.getRoot(), parameters);
+        }
+        if (afterId != null) {
+            sql.append(" AND i.id > ").append(parameter(parameters, afterId));
+        }
+        sql.append(" ORDER BY i.id");
+
+        Query query = createQuery(sql, parameters);
+        query.setMaxResults(limit);
+        return toIds(query.getResultList());
+    }
+
+    /**
+     * Checks whether an image readable by a user matches a filter.
+     *
+     * @param user    The user.
+     * @param filter  The compiled filter.
+     * @param imageId The ID of the image.
+     * @return True if the user can read the image and it matches.
+     */
+    public boolean matches(User user, CompiledFilter filter, Long imageId) {
+        if (filter == CompiledFilter.NONE) {
+            return false;
+        }
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT i.id FROM images i WHERE i.id = ").append(parameter(parameters, imageId)).append(" AND ");
+        appendScope(sql, getScope(user), parameters);
+        sql.append(" AND ");
+        appendNode(sql, filter.getRoot(), parameters);
+        return !createQuery(sql, parameters).getResultList().isEmpty();
+    }
+
+    /**
+     * Gets the owners whose images a user can read, or null if the user can read the images of every owner.
+     */
+    static Collection<Long> getScope(User user) {
+        return user.isAdmin() ? null : List.of(user.getId());
+    }
+
+    /**
+     * Appends the condition that an image {@code i} belongs to one of a set of owners.
+     *
+     * @param ownerIds The IDs of the owners, or null for every owner.
+     */
+    static void appendScope(StringBuilder sql, Collection<Long> ownerIds, List<Object> parameters) {
+        if (ownerIds == null) {
+            sql.append("1 = 1");
+        } else if (ownerIds.size() == 1) {
+            sql.append("i.user_id = ").append(parameter(parameters, ownerIds.iterator().next()));
+        } else {
+            appendIn(sql, "i.user_id", ownerIds, parameters);
+        }
+    }
+
+    /**
+     * Appends the condition that a column is one of a set of values, split into lists of at most
+     * {@value #MAX_IN_LIST} values.
+     */
+    static void appendIn(StringBuilder sql, String column, Collection<Long> values, List<Object> parameters) {
+        if (values.isEmpty()) {
+            sql.append("1 = 0");
+            return;
+        }
+        sql.append("(");
+        int count = 0;
+        for (Long value : values) {
+            if (count % MAX_IN_LIST == 0) {
+                sql.append(count == 0 ? "" : ") OR ").append(column).append(" IN (");
+            } else {
+                sql.append(", ");
+            }
+            sql.append(parameter(parameters, value));
+            count++;
+        }
+        sql.append("))");
+    }
+
+    /**
+     * Appends the condition that an image {@code i} matches a filter.
+     */
+    void appendFilter(StringBuilder sql, CompiledFilter filter, List<Object> parameters) {
+        appendNode(sql, filter.getRoot(), parameters);
+    }
+
+    private void appendNode(StringBuilder sql, CompiledFilter.Node node, List<Object> parameters) {
+        if (node instanceof CompiledFilter.Constant constant) {
+            sql.append(constant.value() ? "1 = 1" : "1 = 0");
+        } else if (node instanceof CompiledFilter.HasTag hasTag) {
+            sql.append("EXISTS (SELECT 1 FROM image_tag it JOIN tags t ON t.id = it.tag_id WHERE it.image_id = i.id AND t.name = ")
+                    .append(parameter(parameters, hasTag.name()))
+                    .append(")");
+        } else if (node instanceof CompiledFilter.Not not) {
+            sql.append("NOT (");
+            appendNode(sql, not.operand(), parameters);
+            sql.append(")");
+        } else if (node instanceof CompiledFilter.And and) {
+            appendBinary(sql, and.left(), "AND", and.right(), parameters);
+        } else if (node instanceof CompiledFilter.Or or) {
+            appendBinary(sql, or.left(), "OR", or.right(), parameters);
+        } else if (node instanceof CompiledFilter.DateMatch dateMatch) {
+            appendDateMatch(sql, dateMatch, parameters);
+        } else if (node instanceof CompiledFilter.RatingMatch ratingMatch) {
+            String operator = switch (ratingMatch.comparison()) {
+                case EQ -> " = ";
+                case LT -> " < ";
+                case LE -> " <= ";
+                case GT -> " > ";
+                case GE -> " >= ";
+            };
+            sql.append("(i.rating IS NOT NULL AND i.rating").append(operator).append(parameter(parameters, ratingMatch.value())).append(")");
+        } else {
+            throw new IllegalStateException("Unsupported filter node: " + node);
+        }
+    }
+
+    private void appendBinary(StringBuilder sql, CompiledFilter.Node left, String operator, CompiledFilter.Node right, List<Object> parameters) {
+        sql.append("(");
+        appendNode(sql, left, parameters);
+        sql.append(" ").append(operator).append(" ");
+        appendNode(sql, right, parameters);
+        sql.append(")");
+    }
+
+    /**
+     * Dates are compared to the second, so the last second of a range ends where the next second starts.
+     */
+    private void appendDateMatch(StringBuilder sql, CompiledFilter.DateMatch dateMatch, List<Object> parameters) {
+        String column = switch (dateMatch.field()) {
+            case CREATED -> "i.created_at";
+            case MODIFIED -> "i.modified_at";
+            case IMPORTED -> "i.imported_at";
+        };
+        LocalDateTime start = LocalDateTime.ofEpochSecond(dateMatch.start(), 0, ZoneOffset.UTC);
+        LocalDateTime afterEnd = LocalDateTime.ofEpochSecond(dateMatch.end() + 1, 0, ZoneOffset.UTC);
+        sql.append("(").append(column).append(" IS NOT NULL AND ");
+        switch (dateMatch.comparison()) {
+            case EQ -> sql.append(column).append(" >= ").append(parameter(parameters, start))
+                    .append(" AND ").append(column).append(" < ").append(parameter(parameters, afterEnd));
+            case LT -> sql.append(column).append(" < ").append(parameter(parameters, start));
+            case LE -> sql.append(column).append(" < ").append(parameter(parameters, afterEnd));
+            case GT -> sql.append(column).append(" >= ").append(parameter(parameters, afterEnd));
+            case GE -> sql.append(column).append(" >= ").append(parameter(parameters, start));
+        }
+        sql.append(")");
+    }
+
+    static String parameter(List<Object> parameters, Object value) {
+        parameters.add(value);
+        return ":p" + (parameters.size() - 1);
+    }
+
+    Query createQuery(StringBuilder sql, List<Object> parameters) {
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter("p" + i, parameters.get(i));
+        }
+        return query;
+    }
+
+    private static List<Long> toIds(List<?> rows) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            ids.add(((Number) row).longValue());
+        }
+        return ids;
+    }
+}
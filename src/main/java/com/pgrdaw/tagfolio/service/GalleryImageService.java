@@ -0,0 +1,213 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.dto.GalleryImageProjection;
+import com.pgrdaw.tagfolio.dto.GalleryImageResponse;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.service.util.HttpCachingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A service that lists images for the gallery.
+ * <p>
+ * Images are read as {@link GalleryImageProjection}s, which never include the ExifTool metadata, and returned as
+ * {@link GalleryImageResponse}s with only the fields the client asked for. Tags and thumbnail versions are only
+ * looked up when their fields are requested.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class GalleryImageService {
+
+    /**
+     * The fields a client can request. The ID is always included.
+     */
+    public static final Set<String> FIELDS = Set.of("id", "originalFileName", "thumbnailUrl", "width", "height",
+            "rating", "createdAt", "modifiedAt", "importedAt", "tags");
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final ImageRepository imageRepository;
+    private final HttpCachingService httpCachingService;
+    private final ImageIndexService imageIndexService;
+
+    /**
+     * Constructs a new GalleryImageService.
+     *
+     * @param imageRepository    The image repository.
+     * @param httpCachingService The HTTP caching service.
+     * @param imageIndexService  The image index service, whose indexes keep the images of each user sorted.
+     */
+    public GalleryImageService(ImageRepository imageRepository, HttpCachingService httpCachingService,
+                               ImageIndexService imageIndexService) {
+        this.imageRepository = imageRepository;
+        this.httpCachingService = httpCachingService;
+        this.imageIndexService = imageIndexService;
+    }
+
+    /**
+     * Parses the {@code fields} parameter of a gallery request.
+     *
+     * @param fields A comma-separated list of field names, or null for all fields.
+     * @return The requested fields, including the ID.
+     * @throws ResponseStatusException if a field is unknown.
+     */
+    public Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return FIELDS;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        result.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.contains(name)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + name);
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the gallery projections of a set of images.
+     *
+     * @param imageIds The IDs of the images.
+     * @return The projections of the images that exist, in no particular order.
+     */
+    @Transactional(readOnly = true)
+    public List<GalleryImageProjection> findProjections(Collection<Long> imageIds) {
+        List<GalleryImageProjection> result = new ArrayList<>(imageIds.size());
+        for (List<Long> chunk : chunk(imageIds)) {
+            result.addAll(imageRepository.findGalleryProjectionsByIds(chunk));
+        }
+        return result;
+    }
+
+    /**
+     * Finds a set of images and converts them to responses, in the order of their IDs.
+     *
+     * @param imageIds The IDs of the images, in order.
+     * @param fields   The requested fields.
+     * @return The responses of the images that exist.
+     */
+    @Transactional(readOnly = true)
+    public List<GalleryImageResponse> findByIds(List<Long> imageIds, Set<String> fields) {
+        Map<Long, GalleryImageProjection> projections = new HashMap<>();
+        for (GalleryImageProjection projection : findProjections(imageIds)) {
+            projections.put(projection.id(), projection);
+        }
+        return toResponses(imageIds.stream().map(projections::get).filter(Objects::nonNull).toList(), fields);
+    }
+
+    /**
+     * Converts projections to responses with the requested fields.
+     *
+     * @param projections The projections, in order.
+     * @param fields      The requested fields.
+     * @return The responses, in the same order.
+     */
+    @Transactional(readOnly = true)
+    public List<GalleryImageResponse> toResponses(List<GalleryImageProjection> projections, Set<String> fields) {
+        Map<Long, Set<String>> tagNames = fields.contains("tags") ? findTagNames(projections) : Map.of();
+        List<GalleryImageResponse> responses = new ArrayList<>(projections.size());
+        for (GalleryImageProjection projection : projections) {
+            GalleryImageResponse response = new GalleryImageResponse();
+            response.setId(projection.id());
+            if (fields.contains("originalFileName")) {
+                response.setOriginalFileName(projection.originalFileName());
+            }
+            if (fields.contains("thumbnailUrl")) {
+                response.setThumbnailUrl(getThumbnailUrl(projection));
+            }
+            if (fields.contains("width")) {
+                response.setWidth(projection.width());
+            }
+            if (fields.contains("height")) {
+                response.setHeight(projection.height());
+            }
+            if (fields.contains("rating")) {
+                response.setRating(projection.rating());
+            }
+            if (fields.contains("createdAt")) {
+                response.setCreatedAt(projection.createdAt());
+            }
+            if (fields.contains("modifiedAt")) {
+                response.setModifiedAt(projection.modifiedAt());
+            }
+            if (fields.contains("importedAt")) {
+                response.setImportedAt(projection.importedAt());
+            }
+            if (fields.contains("tags")) {
+                response.setTags(new ArrayList<>(tagNames.getOrDefault(projection.id(), Set.of())));
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    /**
+     * Sorts projections in the order of the gallery: images without a value last, and ties broken by ID.
+     *
+     * @param projections The projections.
+     * @param sort        The field to sort by.
+     * @param direction   The sort direction ("asc" or "desc").
+     * @return The projections, sorted.
+     */
+    public List<GalleryImageProjection> sort(Collection<GalleryImageProjection> projections, String sort, String direction) {
+        Map<Long, GalleryImageProjection> byId = new HashMap<>();
+        Set<Long> ownerIds = new HashSet<>();
+        for (GalleryImageProjection projection : projections) {
+            byId.put(projection.id(), projection);
+            ownerIds.add(projection.userId());
+        }
+        return imageIndexService.sortImageIds(ownerIds, byId.keySet(), sort, direction).stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private String getThumbnailUrl(GalleryImageProjection projection) {
+        String url = "/images/thumbnail/" + projection.id();
+        String version = httpCachingService.getThumbnailVersion(projection.thumbnailFileName(), projection.userId());
+        return version != null ? url + "?v=" + version : url;
+    }
+
+    private Map<Long, Set<String>> findTagNames(List<GalleryImageProjection> projections) {
+        Map<Long, Set<String>> tagNames = new HashMap<>();
+        for (List<Long> chunk : chunk(projections.stream().map(GalleryImageProjection::id).toList())) {
+            for (Object[] row : imageRepository.findTagNamesByImageIds(chunk)) {
+                tagNames.computeIfAbsent((Long) row[0], id -> new TreeSet<>()).add((String) row[1]);
+            }
+        }
+        return tagNames;
+    }
+
+    /**
+     * Splits IDs into lists small enough for an {@code IN} clause.
+     */
+    private static List<List<Long>> chunk(Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += MAX_IDS_PER_QUERY) {
+            chunks.add(list.subList(i, Math.min(i + MAX_IDS_PER_QUERY, list.size())));
+        }
+        return chunks;
+    }
+}
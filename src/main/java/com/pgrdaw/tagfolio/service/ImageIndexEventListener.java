@@ -0,0 +1,150 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.Image;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reports every change made to an image through Hibernate to the {@link ImageIndexService}, so the filter index
+ * never has to be refreshed by hand.
+ * <p>
+ * It also increments the images version of the owner in the database, once per transaction and owner, so the
+ * change is visible to every instance of the application when the transaction commits.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Component
+public class ImageIndexEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        PostCollectionRecreateEventListener, PostCollectionUpdateEventListener {
+
+    private static final String INCREMENT_IMAGES_VERSION = "UPDATE users SET images_version = images_version + 1 WHERE id = ?";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ImageIndexService imageIndexService;
+    private final Object changedOwnersKey = new Object();
+
+    /**
+     * Constructs a new ImageIndexEventListener.
+     *
+     * @param entityManagerFactory The entity manager factory.
+     * @param imageIndexService    The image index service.
+     */
+    public ImageIndexEventListener(EntityManagerFactory entityManagerFactory, ImageIndexService imageIndexService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.imageIndexService = imageIndexService;
+    }
+
+    /**
+     * Registers the listener with Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Image image) {
+            incrementImagesVersion(event.getSession(), image);
+            imageIndexService.onImageSaved(image);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Image image) {
+            incrementImagesVersion(event.getSession(), image);
+            imageIndexService.onImageSaved(image);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Image image) {
+            incrementImagesVersion(event.getSession(), image);
+            imageIndexService.onImageDeleted(image);
+        }
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof Image image) {
+            incrementImagesVersion(event.getSession(), image);
+            imageIndexService.onImageSaved(image);
+        }
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof Image image) {
+            incrementImagesVersion(event.getSession(), image);
+            imageIndexService.onImageSaved(image);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Increments the images version of the owner of an image, the first time the current transaction changes one of
+     * their images. The statement runs on the connection of the flush, so it commits or rolls back with the change.
+     */
+    @SuppressWarnings("unchecked")
+    private void incrementImagesVersion(EventSource session, Image image) {
+        Long userId = image.getUser().getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Set<Long> changedOwnerIds = (Set<Long>) TransactionSynchronizationManager.getResource(changedOwnersKey);
+            if (changedOwnerIds == null) {
+                changedOwnerIds = new HashSet<>();
+                TransactionSynchronizationManager.bindResource(changedOwnersKey, changedOwnerIds);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(changedOwnersKey);
+                    }
+                });
+            }
+            if (!changedOwnerIds.add(userId)) {
+                return;
+            }
+        }
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INCREMENT_IMAGES_VERSION)) {
+                statement.setLong(1, userId);
+                statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,631 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A service that keeps an in-memory filter index of every user's images.
+ * <p>
+ * The index of a user is built from the database the first time it is needed and is then kept up to date by
+ * {@link ImageIndexEventListener}, which reports every image insert, update, tag change and delete. Changes are
+ * applied once their transaction commits; until then, the transaction that made them reads a private index built
+ * from the database. Filters are evaluated over the index without loading any image, so callers only load the
+ * images they are going to show.
+ * <p>
+ * The evaluation mode is chosen per deployment. Large libraries can evaluate filters in the database with
+ * {@link FilterSqlService} instead of keeping an index in memory; images are then also restricted to the candidates
+ * and sorted by the database, in keyset pages read by {@link ImagePaginationService}, so no request reads the whole
+ * library. The entity mode loads the images and filters them one by one, and sorts through the database too.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ImageIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageIndexService.class);
+
+    /**
+     * The number of times a build is retried when images of the user change while it runs.
+     */
+    private static final int MAX_BUILD_ATTEMPTS = 3;
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final ImageRepository imageRepository;
+    private final ImageService imageService;
+    private final ImageSecurityService imageSecurityService;
+    private final FilterExpressionEvaluator filterExpressionEvaluator;
+    private final ImageSortService imageSortService;
+    private final FilterSqlService filterSqlService;
+    private final ImagePaginationService imagePaginationService;
+    private final Mode mode;
+    private final Map<Long, IndexHolder> holders = new ConcurrentHashMap<>();
+    private final Object pendingChangesKey = new Object();
+
+    /**
+     * Where filters are evaluated.
+     */
+    public enum Mode {
+        /**
+         * Over the in-memory index.
+         */
+        INDEX,
+        /**
+         * In the database, with a single query per filter.
+         */
+        SQL,
+        /**
+         * Over the loaded images.
+         */
+        ENTITY
+    }
+
+    /**
+     * The indexed fields of an image.
+     *
+     * @param imageId          The ID of the image.
+     * @param originalFileName The original file name.
+     * @param createdAt        The creation date.
+     * @param modifiedAt       The modification date.
+     * @param importedAt       The import date.
+     * @param rating           The rating.
+     * @param tags             The names of the image's tags by ID, or null if they are unchanged.
+     */
+    record IndexedImage(Long imageId, String originalFileName, LocalDateTime createdAt, LocalDateTime modifiedAt,
+                        LocalDateTime importedAt, Integer rating, Map<Long, String> tags) {
+    }
+
+    /**
+     * The index of a user and the number of changes made to the user's images, which tells a build whether it
+     * raced with a change it may have missed, and tells other caches whether their results are still current.
+     */
+    private static final class IndexHolder {
+        private volatile long version;
+        private volatile UserImageIndex index;
+        private volatile long imagesVersion = -1;
+    }
+
+    /**
+     * Constructs a new ImageIndexService.
+     *
+     * @param imageRepository           The image repository.
+     * @param imageService              The image service.
+     * @param imageSecurityService      The image security service.
+     * @param filterExpressionEvaluator The filter expression evaluator.
+     * @param imageSortService          The image sort service.
+     * @param filterSqlService          The filter SQL service.
+     * @param imagePaginationService    The service that reads sorted pages of images from the database.
+     * @param mode                      Where filters are evaluated: "index", "sql" or "entity".
+     */
+    public ImageIndexService(ImageRepository imageRepository,
+                             ImageService imageService,
+                             ImageSecurityService imageSecurityService,
+                             FilterExpressionEvaluator filterExpressionEvaluator,
+                             ImageSortService imageSortService,
+                             FilterSqlService filterSqlService,
+                             ImagePaginationService imagePaginationService,
+                             @Value("${filter.evaluation-mode:index}") String mode) {
+        this.imageRepository = imageRepository;
+        this.imageService = imageService;
+        this.imageSecurityService = imageSecurityService;
+        this.filterExpressionEvaluator = filterExpressionEvaluator;
+        this.imageSortService = imageSortService;
+        this.filterSqlService = filterSqlService;
+        this.imagePaginationService = imagePaginationService;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        logger.info("Filters are evaluated in {} mode", this.mode);
+    }
+
+    /**
+     * Finds the images a user can read that match a filter.
+     *
+     * @param user   The user.
+     * @param filter The compiled filter.
+     * @return The IDs of the matching images.
+     */
+    public List<Long> findMatchingImageIds(User user, CompiledFilter filter) {
+        return findMatchingImageIds(user, filter, null);
+    }
+
+    /**
+     * Finds the images a user can read that match a filter, among a set of candidates.
+     *
+     * @param user         The user.
+     * @param filter       The compiled filter.
+     * @param candidateIds The IDs of the candidate images, or null for all images.
+     * @return The IDs of the matching images.
+     */
+    public List<Long> findMatchingImageIds(User user, CompiledFilter filter, Collection<Long> candidateIds) {
+        if (filter == CompiledFilter.NONE) {
+            return List.of();
+        }
+        if (mode == Mode.ENTITY) {
+            return filterExpressionEvaluator.evaluate(loadReadableImages(user, candidateIds), filter);
+        }
+        if (mode == Mode.SQL) {
+            return filterSqlService.findMatchingImageIds(FilterSqlService.getScope(user), filter, candidateIds);
+        }
+        List<Long> result = new ArrayList<>();
+        for (Long ownerId : getReadableOwnerIds(user)) {
+            getIndex(ownerId).collectMatching(filter, candidateIds, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the images of a set of owners that match a filter, among a set of candidates, such as the images shared
+     * with an anonymous visitor.
+     *
+     * @param ownerIds     The IDs of the owners of the candidates.
+     * @param filter       The compiled filter.
+     * @param candidateIds The IDs of the candidate images.
+     * @return The IDs of the matching images.
+     */
+    public List<Long> findMatchingImageIds(Collection<Long> ownerIds, CompiledFilter filter, Collection<Long> candidateIds) {
+        if (filter == CompiledFilter.NONE || candidateIds.isEmpty()) {
+            return List.of();
+        }
+        if (mode == Mode.ENTITY) {
+            Set<Long> owners = new HashSet<>(ownerIds);
+            List<Image> candidates = imageRepository.findAllById(candidateIds).stream()
+                    .filter(image -> owners.contains(image.getUser().getId()))
+                    .toList();
+            return filterExpressionEvaluator.evaluate(candidates, filter);
+        }
+        if (mode == Mode.SQL) {
+            return filterSqlService.findMatchingImageIds(ownerIds, filter, candidateIds);
+        }
+        List<Long> result = new ArrayList<>();
+        for (Long ownerId : ownerIds) {
+            getIndex(ownerId).collectMatching(filter, candidateIds, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the images a user can read.
+     *
+     * @param user         The user.
+     * @param candidateIds The IDs of the candidate images, or null for all images.
+     * @return The IDs of the readable images.
+     */
+    public List<Long> findReadableImageIds(User user, Collection<Long> candidateIds) {
+        if (mode == Mode.ENTITY) {
+            return loadReadableImages(user, candidateIds).stream().map(Image::getId).toList();
+        }
+        if (mode == Mode.SQL) {
+            return filterSqlService.findMatchingImageIds(FilterSqlService.getScope(user), null, candidateIds);
+        }
+        List<Long> ownerIds = getReadableOwnerIds(user);
+        List<Long> result = collectImageIds(ownerIds, candidateIds);
+        if (dropIndexesMissingImages(ownerIds, candidateIds, result)) {
+            result = collectImageIds(ownerIds, candidateIds);
+        }
+        return result;
+    }
+
+    private List<Long> collectImageIds(Collection<Long> ownerIds, Collection<Long> candidateIds) {
+        List<Long> result = new ArrayList<>();
+        for (Long ownerId : ownerIds) {
+            getIndex(ownerId).collectImageIds(candidateIds, result);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the images a user can read, without loading them. Images without a value for the field sort last,
+     * and images with the same value are ordered by ID.
+     *
+     * @param user         The user.
+     * @param candidateIds The IDs of the images to sort, or null for all images.
+     * @param sort         The field to sort by.
+     * @param direction    The sort direction ("asc" or "desc").
+     * @return The IDs of the readable images, sorted.
+     */
+    public List<Long> sortImageIds(User user, Collection<Long> candidateIds, String sort, String direction) {
+        if (mode == Mode.ENTITY) {
+            return loadReadableImages(user, candidateIds).stream()
+                    .sorted(imageSortService.getImageComparator(sort, direction))
+                    .map(Image::getId)
+                    .toList();
+        }
+        if (mode == Mode.SQL) {
+            return imagePaginationService.findSortedImageIds(FilterSqlService.getScope(user), candidateIds, null, sort, direction);
+        }
+        return sortImageIds(getReadableOwnerIds(user), candidateIds, sort, direction);
+    }
+
+    /**
+     * Sorts images of a set of owners, without loading them, in the same order as
+     * {@link #sortImageIds(User, Collection, String, String)}. The images of each owner are read in the order the
+     * owner's index keeps them in, and the owners are merged. Without an index, the database sorts them.
+     *
+     * @param ownerIds     The IDs of the owners of the images.
+     * @param candidateIds The IDs of the images to sort, or null for all the images of the owners.
+     * @param sort         The field to sort by.
+     * @param direction    The sort direction ("asc" or "desc").
+     * @return The IDs of the images, sorted.
+     */
+    public List<Long> sortImageIds(Collection<Long> ownerIds, Collection<Long> candidateIds, String sort, String direction) {
+        if (mode != Mode.INDEX) {
+            return imagePaginationService.findSortedImageIds(ownerIds, candidateIds, null, sort, direction);
+        }
+        ImageSortService.SortField field = ImageSortService.SortField.of(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        List<Long> result = sortImageIds(ownerIds, candidateIds, field, descending);
+        if (dropIndexesMissingImages(ownerIds, candidateIds, result)) {
+            result = sortImageIds(ownerIds, candidateIds, field, descending);
+        }
+        return result;
+    }
+
+    private List<Long> sortImageIds(Collection<Long> ownerIds, Collection<Long> candidateIds,
+                                    ImageSortService.SortField field, boolean descending) {
+        List<UserImageIndex.SortedRun> runs = new ArrayList<>();
+        for (Long ownerId : ownerIds) {
+            UserImageIndex.SortedRun run = getIndex(ownerId).sort(field, descending, candidateIds);
+            if (run.size() > 0) {
+                runs.add(run);
+            }
+        }
+        if (runs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return runs.size() == 1 ? runs.get(0).toImageIds() : merge(runs, descending);
+    }
+
+    /**
+     * Sorts the images a user can read that match a filter, in the order of
+     * {@link #sortImageIds(User, Collection, String, String)}. In SQL mode the database filters, restricts and sorts
+     * them in one query per page.
+     *
+     * @param user         The user.
+     * @param filter       The compiled filter.
+     * @param candidateIds The IDs of the candidate images, or null for all images.
+     * @param sort         The field to sort by.
+     * @param direction    The sort direction ("asc" or "desc").
+     * @return The IDs of the matching images, sorted.
+     */
+    public List<Long> sortMatchingImageIds(User user, CompiledFilter filter, Collection<Long> candidateIds,
+                                           String sort, String direction) {
+        if (mode == Mode.SQL) {
+            return imagePaginationService.findSortedImageIds(FilterSqlService.getScope(user), candidateIds, filter, sort, direction);
+        }
+        Set<Long> matchingImageIds = new HashSet<>(findMatchingImageIds(user, filter, candidateIds));
+        return sortImageIds(user, candidateIds, sort, direction).stream().filter(matchingImageIds::contains).toList();
+    }
+
+    /**
+     * Sorts the images of a set of owners that match a filter, among a set of candidates, in the order of
+     * {@link #sortImageIds(Collection, Collection, String, String)}.
+     *
+     * @param ownerIds     The IDs of the owners of the candidates.
+     * @param filter       The compiled filter.
+     * @param candidateIds The IDs of the candidate images.
+     * @param sort         The field to sort by.
+     * @param direction    The sort direction ("asc" or "desc").
+     * @return The IDs of the matching images, sorted.
+     */
+    public List<Long> sortMatchingImageIds(Collection<Long> ownerIds, CompiledFilter filter, Collection<Long> candidateIds,
+                                           String sort, String direction) {
+        if (mode == Mode.SQL) {
+            return imagePaginationService.findSortedImageIds(ownerIds, candidateIds, filter, sort, direction);
+        }
+        Set<Long> matchingImageIds = new HashSet<>(findMatchingImageIds(ownerIds, filter, candidateIds));
+        return sortImageIds(ownerIds, candidateIds, sort, direction).stream().filter(matchingImageIds::contains).toList();
+    }
+
+    /**
+     * Checks whether an image readable by a user matches a filter.
+     *
+     * @param user    The user.
+     * @param filter  The compiled filter.
+     * @param imageId The ID of the image.
+     * @return True if the user can read the image and it matches.
+     */
+    public boolean matches(User user, CompiledFilter filter, Long imageId) {
+        if (filter == CompiledFilter.NONE) {
+            return false;
+        }
+        if (mode == Mode.ENTITY) {
+            return !filterExpressionEvaluator.evaluate(loadReadableImages(user, List.of(imageId)), filter).isEmpty();
+        }
+        if (mode == Mode.SQL) {
+            return filterSqlService.matches(user, filter, imageId);
+        }
+        for (Long ownerId : getReadableOwnerIds(user)) {
+            UserImageIndex index = getIndex(ownerId);
+            if (index.contains(imageId)) {
+                return index.matches(filter, imageId);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that an image was inserted or updated. The index is updated when the transaction commits.
+     *
+     * @param image The image.
+     */
+    void onImageSaved(Image image) {
+        Long userId = image.getUser().getId();
+        if (mode != Mode.INDEX) {
+            afterCommit(() -> apply(userId, null));
+            return;
+        }
+        Map<Long, String> tags = null;
+        if (Hibernate.isInitialized(image.getTags())) {
+            tags = new HashMap<>();
+            for (Tag tag : image.getTags()) {
+                tags.put(tag.getId(), tag.getName());
+            }
+        }
+        IndexedImage indexedImage = new IndexedImage(image.getId(), image.getOriginalFileName(), image.getCreatedAt(),
+                image.getModifiedAt(), image.getImportedAt(), image.getRating(), tags);
+        markPending(userId);
+        afterCommit(() -> apply(userId, index -> index.put(indexedImage)));
+    }
+
+    /**
+     * Records that an image was deleted. The index is updated when the transaction commits.
+     *
+     * @param image The image.
+     */
+    void onImageDeleted(Image image) {
+        Long userId = image.getUser().getId();
+        if (mode != Mode.INDEX) {
+            afterCommit(() -> apply(userId, null));
+            return;
+        }
+        Long imageId = image.getId();
+        markPending(userId);
+        afterCommit(() -> apply(userId, index -> index.remove(imageId)));
+    }
+
+    /**
+     * Gets the version of a user's images, which changes every time a change to them is committed, in every mode.
+     * Results computed from the images can be kept until it changes.
+     *
+     * @param userId The ID of the user.
+     * @return The version, only meaningful within this instance of the application.
+     */
+    public long getDataVersion(Long userId) {
+        IndexHolder holder = holders.get(userId);
+        return holder != null ? holder.version : 0;
+    }
+
+    /**
+     * Drops the index of a user if the version of the user's images in the database is not the one last checked,
+     * because another instance of the application may have changed them, and this instance's index never saw it.
+     *
+     * @param userId        The ID of the user.
+     * @param imagesVersion The version of the user's images read from the database.
+     */
+    public void checkImagesVersion(Long userId, long imagesVersion) {
+        IndexHolder holder = holders.computeIfAbsent(userId, id -> new IndexHolder());
+        if (holder.imagesVersion != imagesVersion) {
+            apply(userId, null);
+            holder.imagesVersion = imagesVersion;
+        }
+    }
+
+    /**
+     * Drops the index of a user, to be rebuilt the next time it is needed.
+     *
+     * @param userId The ID of the user.
+     */
+    public void evict(Long userId) {
+        apply(userId, null);
+    }
+
+    private static List<Long> merge(List<UserImageIndex.SortedRun> runs, boolean descending) {
+        int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(runs.size(), (a, b) ->
+                UserImageIndex.SortedRun.compare(runs.get(a), positions[a], runs.get(b), positions[b], descending));
+        int total = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            heads.add(i);
+            total += runs.get(i).size();
+        }
+        List<Long> result = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int head = heads.poll();
+            UserImageIndex.SortedRun run = runs.get(head);
+            result.add(run.imageIds()[positions[head]++]);
+            if (positions[head] < run.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether candidates left out of a result are images of the owners whose indexes were read, which means an
+     * index missed a change, for instance one made by another instance of the application. Those indexes are dropped,
+     * so they are built again from the database. Candidates of other owners are rightly left out.
+     *
+     * @return True if an index was dropped and the result must be computed again.
+     */
+    private boolean dropIndexesMissingImages(Collection<Long> ownerIds, Collection<Long> candidateIds, List<Long> result) {
+        if (mode != Mode.INDEX || candidateIds == null || result.size() >= candidateIds.size()) {
+            return false;
+        }
+        Set<Long> missingIds = new HashSet<>(candidateIds);
+        result.forEach(missingIds::remove);
+        if (missingIds.isEmpty()) {
+            return false;
+        }
+        Set<Long> owners = new HashSet<>(ownerIds);
+        Map<Long, Integer> missingByOwner = new HashMap<>();
+        List<Long> missing = new ArrayList<>(missingIds);
+        for (int i = 0; i < missing.size(); i += MAX_IDS_PER_QUERY) {
+            for (Object[] row : imageRepository.findUserIdsByIds(missing.subList(i, Math.min(i + MAX_IDS_PER_QUERY, missing.size())))) {
+                Long ownerId = (Long) row[1];
+                if (owners.contains(ownerId) && !hasPendingChanges(ownerId)) {
+                    missingByOwner.merge(ownerId, 1, Integer::sum);
+                }
+            }
+        }
+        missingByOwner.forEach((ownerId, count) -> {
+            logger.warn("Filter index of user {} is missing {} of their images; rebuilding it", ownerId, count);
+            evict(ownerId);
+        });
+        return !missingByOwner.isEmpty();
+    }
+
+    /**
+     * Gets the owners whose images a user can read: the user, or every owner if the user is an administrator.
+     *
+     * @param user The user.
+     * @return The IDs of the owners.
+     */
+    public List<Long> getReadableOwnerIds(User user) {
+        return user.isAdmin() ? imageRepository.findDistinctUserIds() : List.of(user.getId());
+    }
+
+    private List<Image> loadReadableImages(User user, Collection<Long> candidateIds) {
+        if (candidateIds == null) {
+            return imageService.getImagesForUser(user);
+        }
+        return imageRepository.findAllById(candidateIds).stream()
+                .filter(image -> imageSecurityService.canRead(user, image))
+                .toList();
+    }
+
+    private void apply(Long userId, Consumer<UserImageIndex> change) {
+        holders.compute(userId, (id, holder) -> {
+            if (holder == null) {
+                holder = new IndexHolder();
+            }
+            holder.version++;
+            if (change == null) {
+                holder.index = null;
+            } else if (holder.index != null) {
+                change.accept(holder.index);
+            }
+            return holder;
+        });
+    }
+
+    private UserImageIndex getIndex(Long userId) {
+        if (hasPendingChanges(userId)) {
+            return build(userId);
+        }
+        IndexHolder holder = holders.computeIfAbsent(userId, id -> new IndexHolder());
+        UserImageIndex index = holder.index;
+        if (index != null) {
+            return index;
+        }
+        synchronized (holder) {
+            for (int attempt = 1; ; attempt++) {
+                index = holder.index;
+                if (index != null) {
+                    return index;
+                }
+                long version = holder.version;
+                UserImageIndex built = build(userId);
+                if (hasPendingChanges(userId)) {
+                    // Building flushed changes of the current transaction, which must not be shared.
+                    return built;
+                }
+                if (attempt == MAX_BUILD_ATTEMPTS) {
+                    // Serve the build without keeping it; the next request tries again.
+                    logger.debug("Images of user {} kept changing while their index was built", userId);
+                    return built;
+                }
+                boolean[] published = {false};
+                holders.computeIfPresent(userId, (id, current) -> {
+                    if (current.version == version && current.index == null) {
+                        current.index = built;
+                        published[0] = true;
+                    }
+                    return current;
+                });
+                if (published[0]) {
+                    return built;
+                }
+            }
+        }
+    }
+
+    private UserImageIndex build(Long userId) {
+        long start = System.currentTimeMillis();
+        Map<Long, Map<Long, String>> tagsByImage = new HashMap<>();
+        for (Object[] row : imageRepository.findIndexTagsByUserId(userId)) {
+            tagsByImage.computeIfAbsent((Long) row[0], id -> new HashMap<>()).put((Long) row[1], (String) row[2]);
+        }
+        UserImageIndex index = new UserImageIndex();
+        List<Object[]> rows = imageRepository.findIndexAttributesByUserId(userId);
+        for (Object[] row : rows) {
+            Long imageId = (Long) row[0];
+            index.put(new IndexedImage(imageId, (String) row[1], (LocalDateTime) row[2], (LocalDateTime) row[3],
+                    (LocalDateTime) row[4], (Integer) row[5], tagsByImage.getOrDefault(imageId, Map.of())));
+        }
+        logger.debug("Built filter index of user {} with {} images in {} ms", userId, rows.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+
+    /**
+     * Remembers that the current transaction changed images of a user, so it does not read the shared index.
+     */
+    @SuppressWarnings("unchecked")
+    private void markPending(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Set<Long> pendingUserIds = (Set<Long>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        if (pendingUserIds == null) {
+            pendingUserIds = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, pendingUserIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                }
+            });
+        }
+        pendingUserIds.add(userId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean hasPendingChanges(Long userId) {
+        Set<Long> pendingUserIds = (Set<Long>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        return pendingUserIds != null && pendingUserIds.contains(userId);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
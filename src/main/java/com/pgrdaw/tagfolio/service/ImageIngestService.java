@@ -0,0 +1,334 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.service.util.ImageDecodingService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A service that ingests batches of uploaded files through a staged, parallel pipeline.
+ * <p>
+ * Each file goes through the stages spool, decode, metadata, render and persist. Every stage has its
+ * own bounded worker pool and queue; when a queue is full the submitting thread runs the task itself,
+ * which slows down the previous stage and applies backpressure all the way to the request thread.
+ * Once the pools are shut down, new tasks are rejected and the files they belong to fail instead of
+ * waiting forever.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ImageIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageIngestService.class);
+
+    private final ImageService imageService;
+    private final ExifToolService exifToolService;
+    private final FileStorageService fileStorageService;
+
+    private final ThreadPoolExecutor spoolExecutor;
+    private final ThreadPoolExecutor decodeExecutor;
+    private final ThreadPoolExecutor metadataExecutor;
+    private final ThreadPoolExecutor renderExecutor;
+    private final ThreadPoolExecutor persistExecutor;
+
+    /**
+     * The state of a single file as it moves through the pipeline.
+     */
+    private static class IngestItem {
+        private final MultipartFile file;
+        private final String originalFilename;
+        private final User user;
+        private FileStorageService.SpooledUpload upload;
+        private Long existingImageId;
+        private ImageDecodingService.DecodedImage decodedImage;
+        private Map<String, Object> metadata;
+        private ImageService.UploadResult result;
+
+        IngestItem(MultipartFile file, User user) {
+            this.file = file;
+            this.originalFilename = file.getOriginalFilename();
+            this.user = user;
+        }
+    }
+
+    /**
+     * Constructs a new ImageIngestService.
+     *
+     * @param imageService          The image service.
+     * @param exifToolService       The ExifTool service.
+     * @param fileStorageService    The file storage service.
+     * @param spoolThreads          The number of workers copying uploads to disk.
+     * @param spoolQueueCapacity    The number of files waiting to be spooled.
+     * @param decodeThreads         The number of workers decoding images.
+     * @param decodeQueueCapacity   The number of files waiting to be decoded.
+     * @param metadataThreads       The number of workers extracting metadata.
+     * @param metadataQueueCapacity The number of files waiting for metadata extraction, at most one per render worker
+     *                              because each of them already holds its decoded pixels.
+     * @param renderThreads         The number of workers resizing images and rendering thumbnails.
+     * @param renderQueueCapacity   The number of files waiting to be rendered.
+     * @param persistThreads        The number of workers saving image entities.
+     * @param persistQueueCapacity  The number of files waiting to be saved.
+     */
+    public ImageIngestService(ImageService imageService,
+                              ExifToolService exifToolService,
+                              FileStorageService fileStorageService,
+                              @Value("${image.ingest.spool.threads:2}") int spoolThreads,
+                              @Value("${image.ingest.spool.queue-capacity:32}") int spoolQueueCapacity,
+                              @Value("${image.ingest.decode.threads:2}") int decodeThreads,
+                              @Value("${image.ingest.decode.queue-capacity:4}") int decodeQueueCapacity,
+                              @Value("${image.ingest.metadata.threads:2}") int metadataThreads,
+                              @Value("${image.ingest.metadata.queue-capacity:2}") int metadataQueueCapacity,
+                              @Value("${image.ingest.render.threads:2}") int renderThreads,
+                              @Value("${image.ingest.render.queue-capacity:4}") int renderQueueCapacity,
+                              @Value("${image.ingest.persist.threads:1}") int persistThreads,
+                              @Value("${image.ingest.persist.queue-capacity:64}") int persistQueueCapacity) {
+        this.imageService = imageService;
+        this.exifToolService = exifToolService;
+        this.fileStorageService = fileStorageService;
+        this.spoolExecutor = newStageExecutor("spool", spoolThreads, spoolQueueCapacity);
+        this.decodeExecutor = newStageExecutor("decode", decodeThreads, decodeQueueCapacity);
+        this.metadataExecutor = newStageExecutor("metadata", metadataThreads, Math.min(metadataQueueCapacity, Math.max(1, renderThreads)));
+        this.renderExecutor = newStageExecutor("render", renderThreads, renderQueueCapacity);
+        this.persistExecutor = newStageExecutor("persist", persistThreads, persistQueueCapacity);
+    }
+
+    private static ThreadPoolExecutor newStageExecutor(String stage, int threads, int queueCapacity) {
+        int workers = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ingest-" + stage + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler callerRuns = (runnable, executor) -> {
+            if (executor.isShutdown()) {
+                // Thrown into the pipeline, which completes the file's future exceptionally.
+                throw new RejectedExecutionException("The " + stage + " stage has been shut down");
+            }
+            runnable.run();
+        };
+        return new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, callerRuns);
+    }
+
+    /**
+     * Stops the stage worker pools.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : List.of(spoolExecutor, decodeExecutor, metadataExecutor, renderExecutor, persistExecutor)) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Ingests a batch of uploaded files and waits until all of them have been processed.
+     * Files that fail are logged and left out of the results, as in single-file uploads.
+     *
+     * @param files The uploaded files.
+     * @param user  The user who uploaded the files.
+     * @return The upload results, in the order of the given files.
+     */
+    public List<ImageService.UploadResult> ingest(List<MultipartFile> files, User user) {
+        List<CompletableFuture<ImageService.UploadResult>> futures = submit(files, user);
+
+        List<ImageService.UploadResult> results = new ArrayList<>();
+        for (CompletableFuture<ImageService.UploadResult> future : futures) {
+            try {
+                ImageService.UploadResult result = future.get();
+                if (result != null) {
+                    results.add(result);
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                logger.error("Failed to ingest uploaded file: {}", cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while waiting for uploaded files to be ingested.");
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Ingests a batch of uploaded files, handing each result to the listener as soon as its file is done.
+     * The listener is always called from the calling thread, in completion order, and no result is kept
+     * after it has been delivered.
+     *
+     * @param files    The uploaded files.
+     * @param user     The user who uploaded the files.
+     * @param listener The listener that receives the result of each file.
+     */
+    public void ingest(List<MultipartFile> files, User user, ImageService.UploadResultListener listener) {
+        List<CompletableFuture<ImageService.UploadResult>> futures = submit(files, user);
+        BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).whenComplete((result, error) -> completed.add(index));
+        }
+
+        listener.onStart(futures.size());
+        for (int remaining = futures.size(); remaining > 0; remaining--) {
+            int index;
+            try {
+                index = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while waiting for uploaded files to be ingested.");
+                return;
+            }
+            CompletableFuture<ImageService.UploadResult> future = futures.set(index, null);
+            String fileName = files.get(index).getOriginalFilename();
+            try {
+                ImageService.UploadResult result = future.get();
+                if (result != null) {
+                    listener.onResult(result);
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                logger.error("Failed to ingest uploaded file {}: {}", fileName, cause.getMessage(), cause);
+                listener.onFailure(fileName, cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<CompletableFuture<ImageService.UploadResult>> submit(List<MultipartFile> files, User user) {
+        List<CompletableFuture<ImageService.UploadResult>> futures = new ArrayList<>();
+        Map<String, CompletableFuture<ImageService.UploadResult>> lastByFilename = new HashMap<>();
+
+        for (MultipartFile file : files) {
+            IngestItem item = new IngestItem(file, user);
+            // Files sharing a name must see each other's outcome, so they run one after another.
+            CompletableFuture<ImageService.UploadResult> previous = lastByFilename.get(item.originalFilename);
+            CompletableFuture<ImageService.UploadResult> future = previous == null
+                    ? runPipeline(item)
+                    : previous.handle((result, error) -> item).thenCompose(this::runPipeline);
+            lastByFilename.put(item.originalFilename, future);
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    private CompletableFuture<ImageService.UploadResult> runPipeline(IngestItem item) {
+        return CompletableFuture.completedFuture(item)
+                .thenApplyAsync(this::spool, spoolExecutor)
+                .thenApplyAsync(this::decode, decodeExecutor)
+                .thenApplyAsync(this::extractMetadata, metadataExecutor)
+                .thenApplyAsync(this::render, renderExecutor)
+                .thenApplyAsync(this::persist, persistExecutor)
+                .whenComplete((result, error) -> cleanUp(item));
+    }
+
+    private IngestItem spool(IngestItem item) {
+        try {
+            if (item.file.isEmpty()) {
+                throw new IOException("File is empty");
+            }
+            item.existingImageId = imageService.findExistingImage(item.originalFilename, item.user)
+                    .map(Image::getId)
+                    .orElse(null);
+            item.upload = fileStorageService.spoolUpload(item.file, item.user.getId());
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spool file " + item.originalFilename, e);
+        }
+    }
+
+    private IngestItem decode(IngestItem item) {
+        if (item.existingImageId != null) {
+            return item;
+        }
+        try {
+            item.decodedImage = imageService.decodeForProcessing(item.upload.path());
+            if (item.decodedImage == null) {
+                throw new IOException("Could not read image file: " + item.originalFilename);
+            }
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private IngestItem extractMetadata(IngestItem item) {
+        try {
+            if (item.existingImageId != null) {
+                item.result = imageService.resolveExistingUpload(item.existingImageId, item.originalFilename, item.upload);
+                return item;
+            }
+            // Metadata is read from the final location so that file name and source match the stored original.
+            Path storedFile = fileStorageService.saveOriginalFile(item.upload.path(), item.originalFilename, item.user.getId());
+            item.metadata = exifToolService.read(storedFile);
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private IngestItem render(IngestItem item) {
+        if (item.result != null) {
+            return item;
+        }
+        try {
+            ImageService.ProcessedImage processedImage = imageService.processImage(item.decodedImage.getImage(), item.originalFilename, item.upload.size());
+            item.decodedImage.close();
+            imageService.storeProcessedImage(processedImage, item.originalFilename, item.user.getId());
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ImageService.UploadResult persist(IngestItem item) {
+        if (item.result != null) {
+            return item.result;
+        }
+        try {
+            Image image = imageService.persistNewImage(item.originalFilename, item.user, item.metadata);
+            ImageService.UploadResult result = new ImageService.UploadResult();
+            result.setStatus("UPLOADED");
+            result.setImage(image);
+            return result;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void cleanUp(IngestItem item) {
+        if (item.decodedImage != null) {
+            item.decodedImage.close();
+        }
+        if (item.upload != null) {
+            fileStorageService.discardSpooledUpload(item.upload);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A service that pages through a user's images in the database with keyset pagination.
+ * <p>
+ * Images are ordered by the sort field, with images without a value last and ties broken by ID. Instead of an
+ * offset, each page ends with an opaque cursor holding the sort value and ID of its last image, and the next page
+ * starts right after them. Every page is then a range scan of the {@code images(user_id, <field>, id)} index, or of
+ * the {@code images(<field>, id)} index for administrators, so a deep page costs the same as the first one.
+ * <p>
+ * Pages can be restricted to the images that match a filter, with the conditions of {@link FilterSqlService}, and to
+ * a set of candidate images, which is how {@link ImageIndexService} sorts images when it keeps no index in memory.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ImagePaginationService {
+
+    private final ObjectMapper objectMapper;
+    private final FilterSqlService filterSqlService;
+    private final int pageSize;
+
+    /**
+     * A page of images.
+     *
+     * @param imageIds   The IDs of the images, in order.
+     * @param nextCursor The cursor of the next page, or null if this is the last page.
+     */
+    public record ImagePage(List<Long> imageIds, String nextCursor) {
+    }
+
+    /**
+     * The images before and after an image in the gallery order.
+     *
+     * @param previousId The ID of the previous image, or null if the image is the first one.
+     * @param nextId     The ID of the next image, or null if the image is the last one.
+     */
+    public record Neighbours(Long previousId, Long nextId) {
+    }
+
+    /**
+     * The position after which a page starts.
+     *
+     * @param sort       The sort field the cursor was created for.
+     * @param descending Whether the cursor was created for a descending order.
+     * @param value      The sort value of the last image, or null if it had none.
+     * @param id         The ID of the last image.
+     */
+    private record Cursor(String sort, boolean descending, String value, Long id) {
+    }
+
+    /**
+     * The images pages are read from.
+     *
+     * @param ownerIds     The IDs of the owners of the images, or null for every owner.
+     * @param candidateIds The IDs of the candidate images, or null for all the images of the owners.
+     * @param filter       The filter the images match, or null for every image.
+     */
+    private record Scope(Collection<Long> ownerIds, Collection<Long> candidateIds, CompiledFilter filter) {
+    }
+
+    /**
+     * Constructs a new ImagePaginationService.
+     *
+     * @param objectMapper     The object mapper for JSON processing.
+     * @param filterSqlService The service that translates filters into SQL.
+     * @param pageSize         The number of images read per query when a whole order is read.
+     */
+    public ImagePaginationService(ObjectMapper objectMapper, FilterSqlService filterSqlService,
+                                  @Value("${filter.sql.page-size:1000}") int pageSize) {
+        this.objectMapper = objectMapper;
+        this.filterSqlService = filterSqlService;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Finds a page of the IDs of the images a user can read.
+     *
+     * @param user      The user.
+     * @param sort      The field to sort by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @param size      The maximum number of images in the page.
+     * @return The page.
+     * @throws ResponseStatusException if the cursor is invalid or was created for another order.
+     */
+    @Transactional(readOnly = true)
+    public ImagePage findPage(User user, String sort, String direction, String cursor, int size) {
+        return findPage(user, null, sort, direction, cursor, size);
+    }
+
+    /**
+     * Finds a page of the IDs of the images a user can read that match a filter. The filter, the order and the page
+     * limit are all applied by the database, so only the images of the page are read.
+     *
+     * @param user      The user.
+     * @param filter    The compiled filter, or null for every image.
+     * @param sort      The field to sort by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @param cursor    The cursor returned with the previous page, or null for the first page.
+     * @param size      The maximum number of images in the page.
+     * @return The page.
+     * @throws ResponseStatusException if the cursor is invalid or was created for another order.
+     */
+    @Transactional(readOnly = true)
+    public ImagePage findPage(User user, CompiledFilter filter, String sort, String direction, String cursor, int size) {
+        ImageSortService.SortField field = ImageSortService.SortField.of(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        Cursor after = cursor != null ? decodeCursor(cursor, field, descending) : null;
+        if (filter == CompiledFilter.NONE) {
+            return new ImagePage(List.of(), null);
+        }
+
+        List<Object[]> rows = findRows(new Scope(FilterSqlService.getScope(user), null, filter), field, descending, after, false, size);
+        if (rows.isEmpty()) {
+            return new ImagePage(List.of(), null);
+        }
+        List<Long> ids = rows.stream().map(row -> (Long) row[0]).toList();
+
+        String nextCursor = rows.size() < size ? null : encodeCursor(toCursor(field, descending, rows.get(rows.size() - 1)));
+        return new ImagePage(ids, nextCursor);
+    }
+
+    /**
+     * Finds the images before and after an image, in the order of the gallery.
+     *
+     * @param user      The user.
+     * @param imageId   The ID of the image.
+     * @param sort      The field to sort by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @return The neighbouring images.
+     */
+    @Transactional(readOnly = true)
+    public Neighbours findNeighbours(User user, Long imageId, String sort, String direction) {
+        ImageSortService.SortField field = ImageSortService.SortField.of(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT i.id, ").append(getSortExpression(field))
+                .append(" FROM images i WHERE i.id = ").append(FilterSqlService.parameter(parameters, imageId));
+        List<?> rows = filterSqlService.createQuery(sql, parameters).getResultList();
+        if (rows.isEmpty()) {
+            return new Neighbours(null, null);
+        }
+        Cursor position = toCursor(field, descending, toRow(field, (Object[]) rows.get(0)));
+
+        Scope scope = new Scope(FilterSqlService.getScope(user), null, null);
+        List<Object[]> previous = findRows(scope, field, descending, position, true, 1);
+        List<Object[]> next = findRows(scope, field, descending, position, false, 1);
+        return new Neighbours(previous.isEmpty() ? null : (Long) previous.get(0)[0], next.isEmpty() ? null : (Long) next.get(0)[0]);
+    }
+
+    /**
+     * Sorts images of a set of owners in the database, reading the order in pages. Candidates are sent in chunks that
+     * fit an {@code IN} list; each chunk comes back sorted, and the chunks are merged.
+     *
+     * @param ownerIds     The IDs of the owners of the images, or null for every owner.
+     * @param candidateIds The IDs of the images to sort, or null for all the images of the owners.
+     * @param filter       The filter the images must match, or null for every image.
+     * @param sort         The field to sort by.
+     * @param direction    The sort direction ("asc" or "desc").
+     * @return The IDs of the images, sorted.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findSortedImageIds(Collection<Long> ownerIds, Collection<Long> candidateIds, CompiledFilter filter,
+                                         String sort, String direction) {
+        ImageSortService.SortField field = ImageSortService.SortField.of(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        if (filter == CompiledFilter.NONE || (candidateIds != null && candidateIds.isEmpty())) {
+            return new ArrayList<>();
+        }
+        if (candidateIds == null || candidateIds.size() <= FilterSqlService.MAX_IN_LIST) {
+            return readOrder(new Scope(ownerIds, candidateIds, filter), field, descending).stream()
+                    .map(row -> (Long) row[0])
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        List<Long> candidates = new ArrayList<>(candidateIds);
+        List<Object[]> rows = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i += FilterSqlService.MAX_IN_LIST) {
+            List<Long> chunk = candidates.subList(i, Math.min(i + FilterSqlService.MAX_IN_LIST, candidates.size()));
+            rows.addAll(readOrder(new Scope(ownerIds, chunk, filter), field, descending));
+        }
+        // The chunks are sorted runs, which the sort merges.
+        rows.sort(getRowComparator(descending));
+        List<Long> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add((Long) row[0]);
+        }
+        return result;
+    }
+
+    private List<Object[]> readOrder(Scope scope, ImageSortService.SortField field, boolean descending) {
+        List<Object[]> rows = new ArrayList<>();
+        Cursor after = null;
+        while (true) {
+            List<Object[]> page = findRows(scope, field, descending, after, false, pageSize);
+            rows.addAll(page);
+            if (page.size() < pageSize) {
+                return rows;
+            }
+            after = toCursor(field, descending, page.get(page.size() - 1));
+        }
+    }
+
+    /**
+     * Finds the IDs and sort values of the images after a position, or before it if reading backwards. Images with a
+     * value and images without one are read with separate queries, so each one is a plain index range scan.
+     */
+    private List<Object[]> findRows(Scope scope, ImageSortService.SortField field, boolean descending, Cursor position,
+                                    boolean backwards, int limit) {
+        List<Object[]> rows = new ArrayList<>();
+        boolean positionHasValue = position == null || position.value() != null;
+        if (!backwards) {
+            if (positionHasValue) {
+                rows.addAll(seek(scope, field, descending, position, false, false, limit));
+            }
+            if (rows.size() < limit) {
+                rows.addAll(seek(scope, field, descending, positionHasValue ? null : position, true, false, limit - rows.size()));
+            }
+        } else {
+            if (!positionHasValue) {
+                rows.addAll(seek(scope, field, descending, position, true, true, limit));
+            }
+            if (rows.size() < limit) {
+                rows.addAll(seek(scope, field, descending, positionHasValue ? position : null, false, true, limit - rows.size()));
+            }
+        }
+        return rows;
+    }
+
+    private List<Object[]> seek(Scope scope, ImageSortService.SortField field, boolean descending, Cursor position,
+                                boolean withoutValue, boolean backwards, int limit) {
+        String expression = getSortExpression(field);
+        boolean valuesDescending = descending != backwards;
+        String idOperator = backwards ? "<" : ">";
+        String idOrder = backwards ? "DESC" : "ASC";
+
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT i.id, ").append(expression).append(" FROM images i WHERE ");
+        // Administrators read every user's images, through the indexes that do not start with the owner.
+        if (scope.ownerIds() != null) {
+            FilterSqlService.appendScope(sql, scope.ownerIds(), parameters);
+            sql.append(" AND ");
+        }
+        if (scope.candidateIds() != null) {
+            FilterSqlService.appendIn(sql, "i.id", scope.candidateIds(), parameters);
+            sql.append(" AND ");
+        }
+        if (scope.filter() != null) {
+            filterSqlService.appendFilter(sql, scope.filter(), parameters);
+            sql.append(" AND ");
+        }
+        if (withoutValue) {
+            sql.append(expression).append(" IS NULL");
+            if (position != null) {
+                sql.append(" AND i.id ").append(idOperator).append(" ").append(FilterSqlService.parameter(parameters, position.id()));
+            }
+            sql.append(" ORDER BY i.id ").append(idOrder);
+        } else {
+            sql.append(expression).append(" IS NOT NULL");
+            if (position != null) {
+                String value = FilterSqlService.parameter(parameters, parseValue(field, position.value()));
+                sql.append(" AND (").append(expression).append(valuesDescending ? " < " : " > ").append(value)
+                        .append(" OR (").append(expression).append(" = ").append(value)
+                        .append(" AND i.id ").append(idOperator).append(" ").append(FilterSqlService.parameter(parameters, position.id())).append("))");
+            }
+            sql.append(" ORDER BY ").append(expression).append(valuesDescending ? " DESC" : " ASC").append(", i.id ").append(idOrder);
+        }
+
+        Query query = filterSqlService.createQuery(sql, parameters);
+        List<?> results = query.setMaxResults(limit).getResultList();
+        List<Object[]> rows = new ArrayList<>(results.size());
+        for (Object result : results) {
+            rows.add(toRow(field, (Object[]) result));
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the expression images are sorted by. File names are sorted by the same lower-case key as in memory, see
+     * {@link ImageSortService#getFileNameSortKey}.
+     */
+    private static String getSortExpression(ImageSortService.SortField field) {
+        return switch (field) {
+            case FILENAME -> "LOWER(i.original_file_name)";
+            case CREATED -> "i.created_at";
+            case MODIFIED -> "i.modified_at";
+            case RATING -> "i.rating";
+            case IMPORTED -> "i.imported_at";
+        };
+    }
+
+    /**
+     * Converts a row read by a native query, whose types depend on the database, into an ID and a sort value of
+     * the type {@link #parseValue} returns.
+     */
+    private static Object[] toRow(ImageSortService.SortField field, Object[] result) {
+        Object value = result[1];
+        if (value != null) {
+            value = switch (field) {
+                case FILENAME -> value.toString();
+                case RATING -> ((Number) value).intValue();
+                default -> value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value;
+            };
+        }
+        return new Object[]{((Number) result[0]).longValue(), value};
+    }
+
+    private static Cursor toCursor(ImageSortService.SortField field, boolean descending, Object[] row) {
+        return new Cursor(field.name(), descending, row[1] != null ? row[1].toString() : null, (Long) row[0]);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object[]> getRowComparator(boolean descending) {
+        Comparator<Comparable> values = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        return Comparator.<Object[], Comparable>comparing(row -> (Comparable) row[1], Comparator.nullsLast(values))
+                .thenComparing(row -> (Long) row[0]);
+    }
+
+    private static Object parseValue(ImageSortService.SortField field, String value) {
+        return switch (field) {
+            case FILENAME -> value;
+            case RATING -> Integer.valueOf(value);
+            default -> LocalDateTime.parse(value);
+        };
+    }
+
+    private String encodeCursor(Cursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode the pagination cursor", e);
+        }
+    }
+
+    private Cursor decodeCursor(String encoded, ImageSortService.SortField field, boolean descending) {
+        try {
+            Cursor cursor = objectMapper.readValue(Base64.getUrlDecoder().decode(encoded.getBytes(StandardCharsets.US_ASCII)), Cursor.class);
+            if (cursor.id() == null || !field.name().equals(cursor.sort()) || cursor.descending() != descending) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The cursor belongs to a different sort order.");
+            }
+            if (cursor.value() != null) {
+                parseValue(field, cursor.value());
+            }
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException | IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor.", e);
+        }
+    }
+}
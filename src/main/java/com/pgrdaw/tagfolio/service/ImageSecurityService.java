@@ -14,7 +14,11 @@ import org.springframework.stereotype.Service;
 public class ImageSecurityService {
 
     private boolean isOwnerOrAdmin(User user, Image image) {
-        return user.isAdmin() || image.getUser().getId().equals(user.getId());
+        return isOwnerOrAdmin(user, image.getUser().getId());
+    }
+
+    private boolean isOwnerOrAdmin(User user, Long ownerId) {
+        return user.isAdmin() || user.getId().equals(ownerId);
     }
 
     /**
@@ -28,6 +32,17 @@ public class ImageSecurityService {
         return isOwnerOrAdmin(user, image);
     }
 
+    /**
+     * Checks if a user can read an image, given only the ID of its owner.
+     *
+     * @param user    The user.
+     * @param ownerId The ID of the user who owns the image.
+     * @return True if the user can read the image, false otherwise.
+     */
+    public boolean canRead(User user, Long ownerId) {
+        return isOwnerOrAdmin(user, ownerId);
+    }
+
     /**
      * Checks if a user can update an image.
      *
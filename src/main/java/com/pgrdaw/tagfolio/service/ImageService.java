@@ -1,12 +1,14 @@
 package com.pgrdaw.tagfolio.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.Tag;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.ImageRepository;
 import com.pgrdaw.tagfolio.repository.TagRepository;
+import com.pgrdaw.tagfolio.service.util.ImageDecodingService;
+import com.pgrdaw.tagfolio.service.util.JpegEncodingService;
+import com.pgrdaw.tagfolio.service.util.MetadataKeyResolver;
 import com.pgrdaw.tagfolio.service.util.MetadataService;
 import lombok.Getter;
 import lombok.Setter;
@@ -17,18 +19,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
@@ -56,6 +52,8 @@ public class ImageService {
     private final int imageMaxDimension;
     private final long imageMaxFileSizeKB;
     private final int thumbnailMaxDimension;
+    private final int[] renditionSizes;
+    private final int exifBatchSize;
 
     private final ImageRepository imageRepository;
     private final TagRepository tagRepository;
@@ -63,15 +61,26 @@ public class ImageService {
     private final ObjectMapper objectMapper;
     private final ImageSecurityService imageSecurityService;
     private final FileStorageService fileStorageService;
+    private final ImageDecodingService imageDecodingService;
+    private final JpegEncodingService jpegEncodingService;
+    private final MetadataService metadataService;
 
-    private final Map<String, String> tagSourceKeys;
-    private final Map<String, String> sortableFields;
+    private final MetadataKeyResolver metadataKeyResolver;
+    private final TransactionTemplate transactionTemplate;
 
     private static final Set<String> INTERNAL_IGNORED_METADATA_KEYS = Set.of(
             "SourceFile", "FileName", "Directory", "FileModifyDate", "CreateDate",
             "FileAccessDate", "FileInodeChangeDate", "FilePermissions"
     );
 
+    private static final List<String> WIDTH_METADATA_KEYS = List.of(
+            "File:ImageWidth", "PNG:ImageWidth", "ExifIFD:ExifImageWidth", "IFD0:ImageWidth"
+    );
+
+    private static final List<String> HEIGHT_METADATA_KEYS = List.of(
+            "File:ImageHeight", "PNG:ImageHeight", "ExifIFD:ExifImageHeight", "IFD0:ImageHeight"
+    );
+
     @Getter
     @Setter
     public static class UploadResult {
@@ -80,6 +89,44 @@ public class ImageService {
         private FileConflict conflict;
     }
 
+    /**
+     * Receives the outcome of each file of a batch as soon as it has been processed.
+     */
+    public interface UploadResultListener {
+
+        /**
+         * Called once, before any file is processed.
+         *
+         * @param totalFiles The number of files in the batch.
+         */
+        default void onStart(int totalFiles) {
+        }
+
+        /**
+         * Called when a file has been processed.
+         *
+         * @param result The result for the file.
+         */
+        void onResult(UploadResult result);
+
+        /**
+         * Called when a file could not be processed.
+         *
+         * @param fileName The name of the file.
+         * @param error    The cause of the failure.
+         */
+        default void onFailure(String fileName, Throwable error) {
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class ProcessedImage {
+        private byte[] originalBytes;
+        private byte[] thumbnailBytes;
+        private Map<Integer, byte[]> renditionBytes;
+    }
+
     @Getter
     @Setter
     public static class FileConflict {
@@ -97,11 +144,15 @@ public class ImageService {
      * @param imageSecurityService The image security service.
      * @param fileStorageService   The file storage service.
      * @param metadataService      The metadata service.
-     * @param tagSourceKeys        A map of tag source keys.
-     * @param sortableFields       A map of sortable fields.
+     * @param imageDecodingService The image decoding service.
+     * @param jpegEncodingService  The JPEG encoding service.
+     * @param metadataKeyResolver  The resolver of configured metadata keys.
+     * @param transactionManager   The transaction manager, used to sync images in chunks.
      * @param imageMaxDimension    The maximum dimension for image resizing.
      * @param imageMaxFileSizeKB   The maximum file size in kilobytes for image resizing.
      * @param thumbnailMaxDimension The maximum dimension for thumbnail resizing.
+     * @param renditionSizes       The maximum dimensions of the additional renditions stored next to the thumbnail.
+     * @param exifBatchSize        The number of files whose metadata is read per ExifTool invocation during sync.
      */
     @Autowired
     public ImageService(ImageRepository imageRepository,
@@ -110,22 +161,31 @@ public class ImageService {
                         ImageSecurityService imageSecurityService,
                         FileStorageService fileStorageService,
                         MetadataService metadataService,
-                        @Value("#{${image.exiftool.tag-source-keys}}") Map<String, String> tagSourceKeys,
-                        @Value("#{${app.sortable-fields}}") Map<String, String> sortableFields,
+                        ImageDecodingService imageDecodingService,
+                        JpegEncodingService jpegEncodingService,
+                        MetadataKeyResolver metadataKeyResolver,
+                        PlatformTransactionManager transactionManager,
                         @Value("${image.max-dimension}") int imageMaxDimension,
                         @Value("${image.max-file-size-kb}") long imageMaxFileSizeKB,
-                        @Value("${thumbnail.max-dimension}") int thumbnailMaxDimension) {
+                        @Value("${thumbnail.max-dimension}") int thumbnailMaxDimension,
+                        @Value("${thumbnail.rendition-sizes:150,300,600,1200}") int[] renditionSizes,
+                        @Value("${image.exiftool.batch-size:200}") int exifBatchSize) {
         this.imageRepository = imageRepository;
         this.tagRepository = tagRepository;
         this.exifToolService = exifToolService;
         this.imageSecurityService = imageSecurityService;
         this.fileStorageService = fileStorageService;
+        this.imageDecodingService = imageDecodingService;
+        this.jpegEncodingService = jpegEncodingService;
         this.imageMaxDimension = imageMaxDimension;
         this.imageMaxFileSizeKB = imageMaxFileSizeKB;
         this.thumbnailMaxDimension = thumbnailMaxDimension;
+        this.renditionSizes = Arrays.stream(renditionSizes).filter(size -> size > 0).distinct().sorted().toArray();
+        this.exifBatchSize = Math.max(1, exifBatchSize);
         this.objectMapper = new ObjectMapper();
-        this.sortableFields = sortableFields;
-        this.tagSourceKeys = tagSourceKeys;
+        this.metadataKeyResolver = metadataKeyResolver;
+        this.metadataService = metadataService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -143,81 +203,211 @@ public class ImageService {
         }
 
         String originalFilename = file.getOriginalFilename();
-        Optional<Image> existingImageOpt = imageRepository.findByOriginalFileNameAndUser(originalFilename, user);
+        FileStorageService.SpooledUpload upload = fileStorageService.spoolUpload(file, user.getId());
+        try {
+            Optional<Image> existingImageOpt = findExistingImage(originalFilename, user);
+            if (existingImageOpt.isPresent()) {
+                return resolveExistingUpload(existingImageOpt.get(), originalFilename, upload);
+            }
 
-        if (existingImageOpt.isPresent()) {
-            Image existingImage = existingImageOpt.get();
-            byte[] newFileBytes = file.getBytes();
+            Image newImage = createImageFromSpooledUpload(upload, originalFilename, user);
+            UploadResult result = new UploadResult();
+            result.setStatus("UPLOADED");
+            result.setImage(newImage);
+            return result;
+        } finally {
+            fileStorageService.discardSpooledUpload(upload);
+        }
+    }
 
-            Path tempFile = Files.createTempFile("upload-", ".tmp");
-            Map<String, Object> newMetadata;
-            try {
-                Files.write(tempFile, newFileBytes);
-                newMetadata = exifToolService.read(tempFile);
-            } finally {
-                Files.deleteIfExists(tempFile);
-            }
+    /**
+     * Finds an image of a user with the given original file name.
+     *
+     * @param originalFilename The original file name.
+     * @param user             The owner of the image.
+     * @return An {@link Optional} containing the existing image, or empty if there is none.
+     */
+    public Optional<Image> findExistingImage(String originalFilename, User user) {
+        return imageRepository.findByOriginalFileNameAndUser(originalFilename, user);
+    }
 
-            if (isMetadataEqual(existingImage.getExiftool(), newMetadata)) {
-                UploadResult result = new UploadResult();
-                result.setStatus("SKIPPED");
-                result.setImage(existingImage);
-                return result;
-            } else {
-                UploadResult result = new UploadResult();
-                result.setStatus("CONFLICT");
-                FileConflict conflict = new FileConflict();
-                conflict.setFileName(originalFilename);
-                conflict.setOriginalMetadata(objectMapper.readValue(existingImage.getExiftool(), new TypeReference<>() {
-                }));
-                conflict.setNewMetadata(newMetadata);
-                result.setConflict(conflict);
-                return result;
-            }
+    /**
+     * Decides the outcome of uploading a spooled file whose name already exists for the user, loading the
+     * existing image in its own transaction. Used by the ingest pipeline, whose workers hold no entities.
+     *
+     * @param existingImageId  The ID of the image already stored under the same name.
+     * @param originalFilename The name of the uploaded file.
+     * @param upload           The spooled upload.
+     * @return A SKIPPED result if the content or metadata is unchanged, or a CONFLICT result otherwise.
+     * @throws IOException if the image no longer exists, or the files or the stored metadata cannot be read.
+     */
+    @Transactional(readOnly = true)
+    public UploadResult resolveExistingUpload(Long existingImageId, String originalFilename, FileStorageService.SpooledUpload upload) throws IOException {
+        Image existingImage = imageRepository.findByIdWithUser(existingImageId)
+                .orElseThrow(() -> new IOException("Image " + existingImageId + " was deleted during the upload of " + originalFilename));
+        return resolveExistingUpload(existingImage, originalFilename, upload);
+    }
+
+    /**
+     * Decides the outcome of uploading a spooled file whose name already exists for the user.
+     * Uploads with the same content as the stored original are skipped without reading their metadata.
+     *
+     * @param existingImage    The image already stored under the same name.
+     * @param originalFilename The name of the uploaded file.
+     * @param upload           The spooled upload.
+     * @return A SKIPPED result if the content or metadata is unchanged, or a CONFLICT result otherwise.
+     * @throws IOException if the files or the stored metadata cannot be read.
+     */
+    public UploadResult resolveExistingUpload(Image existingImage, String originalFilename, FileStorageService.SpooledUpload upload) throws IOException {
+        String storedSha256 = fileStorageService.calculateOriginalSha256(existingImage.getOriginalFileName(), existingImage.getUser().getId());
+        if (upload.sha256().equals(storedSha256)) {
+            UploadResult result = new UploadResult();
+            result.setStatus("SKIPPED");
+            result.setImage(existingImage);
+            return result;
         }
+        return resolveExistingUpload(existingImage, originalFilename, exifToolService.read(upload.path()));
+    }
 
-        Image newImage = createImageFromFile(file, user);
-        UploadResult result = new UploadResult();
-        result.setStatus("UPLOADED");
-        result.setImage(newImage);
-        return result;
+    /**
+     * Decides the outcome of uploading a file whose name already exists for the user.
+     *
+     * @param existingImage    The image already stored under the same name.
+     * @param originalFilename The name of the uploaded file.
+     * @param newMetadata      The metadata read from the uploaded file.
+     * @return A SKIPPED result if the metadata is unchanged, or a CONFLICT result otherwise.
+     * @throws IOException if the stored metadata cannot be parsed.
+     */
+    public UploadResult resolveExistingUpload(Image existingImage, String originalFilename, Map<String, Object> newMetadata) throws IOException {
+        Map<String, Object> existingMetadata = getStoredMetadata(existingImage);
+        if (isMetadataEqual(existingMetadata, newMetadata)) {
+            UploadResult result = new UploadResult();
+            result.setStatus("SKIPPED");
+            result.setImage(existingImage);
+            return result;
+        } else {
+            UploadResult result = new UploadResult();
+            result.setStatus("CONFLICT");
+            FileConflict conflict = new FileConflict();
+            conflict.setFileName(originalFilename);
+            conflict.setOriginalMetadata(existingMetadata);
+            conflict.setNewMetadata(newMetadata);
+            result.setConflict(conflict);
+            return result;
+        }
     }
 
     /**
      * Synchronizes images for a user from their storage directory.
+     * Metadata is extracted in chunks of {@code image.exiftool.batch-size} files per ExifTool invocation.
      *
      * @param user The user to synchronize images for.
      * @return A list of {@link UploadResult}s indicating the status of each synchronized file.
      * @throws IOException if an I/O error occurs.
      */
-    @Transactional
     public List<UploadResult> syncUserImages(User user) throws IOException {
+        List<UploadResult> results = new ArrayList<>();
+        syncUserImages(user, results::add);
+        return results;
+    }
+
+    /**
+     * Synchronizes images for a user from their storage directory, reporting each file as soon as it is committed.
+     * <p>
+     * Each chunk of {@code image.exiftool.batch-size} files is saved in its own transaction, so its entities are
+     * released when it commits and a failure only rolls back that chunk. If a chunk cannot be committed, its files
+     * are saved again one per transaction, so that one bad file does not fail the others. Results are reported after
+     * the transaction that saved them commits, and outside of it, so a listener that fails, such as a client that
+     * disconnected, stops the sync without undoing what was already saved.
+     *
+     * @param user     The user to synchronize images for.
+     * @param listener The listener that receives the result of each file.
+     * @throws IOException if the storage directory cannot be read.
+     */
+    public void syncUserImages(User user, UploadResultListener listener) throws IOException {
         Path userOriginalsDir = fileStorageService.getOriginalsPath().resolve(String.valueOf(user.getId()));
         if (!Files.exists(userOriginalsDir)) {
             throw new IOException("Directory not found: " + userOriginalsDir.toAbsolutePath());
         }
 
-        List<UploadResult> results = new ArrayList<>();
         try (java.util.stream.Stream<Path> stream = Files.list(userOriginalsDir)) {
             List<Path> files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
             if (files.isEmpty()) {
                 logger.warn("No files found in {}", userOriginalsDir);
             }
-            for (Path file : files) {
+            listener.onStart(files.size());
+            for (int start = 0; start < files.size(); start += exifBatchSize) {
+                List<Path> chunk = files.subList(start, Math.min(start + exifBatchSize, files.size()));
+                Map<Path, Map<String, Object>> chunkMetadata = exifToolService.readAll(chunk);
+                List<SyncOutcome> outcomes;
                 try {
-                    UploadResult result = processExistingFile(file, user);
-                    if (result != null) {
-                        results.add(result);
+                    outcomes = transactionTemplate.execute(status -> syncChunk(chunk, user, chunkMetadata));
+                } catch (RuntimeException e) {
+                    logger.warn("Could not sync a chunk of {} files, syncing them one by one: {}", chunk.size(), e.getMessage());
+                    outcomes = new ArrayList<>();
+                    for (Path file : chunk) {
+                        outcomes.add(syncFile(file, user, chunkMetadata.get(file)));
                     }
-                } catch (Exception e) {
-                    logger.error("Error syncing file {}: {}", file, e.getMessage());
+                }
+                for (SyncOutcome outcome : outcomes) {
+                    outcome.report(listener);
                 }
             }
         }
-        return results;
     }
 
-    private UploadResult processExistingFile(Path filePath, User user) throws IOException {
+    /**
+     * The outcome of syncing one file, kept until the transaction that saved it commits.
+     */
+    private record SyncOutcome(Path file, UploadResult result, Exception error) {
+
+        void report(UploadResultListener listener) {
+            if (error != null) {
+                listener.onFailure(file.getFileName().toString(), error);
+            } else if (result != null) {
+                listener.onResult(result);
+            }
+        }
+    }
+
+    /**
+     * Syncs a chunk of files in the current transaction. Files that cannot be read are reported as failed; any
+     * other error is thrown, so the chunk is rolled back and retried file by file.
+     */
+    private List<SyncOutcome> syncChunk(List<Path> chunk, User user, Map<Path, Map<String, Object>> chunkMetadata) {
+        List<SyncOutcome> outcomes = new ArrayList<>(chunk.size());
+        for (Path file : chunk) {
+            try {
+                outcomes.add(new SyncOutcome(file, processExistingFile(file, user, chunkMetadata.get(file)), null));
+            } catch (IOException e) {
+                logger.error("Error syncing file {}: {}", file, e.getMessage());
+                outcomes.add(new SyncOutcome(file, null, e));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Syncs a single file in its own transaction.
+     */
+    private SyncOutcome syncFile(Path file, User user, Map<String, Object> fileMetadata) {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return new SyncOutcome(file, processExistingFile(file, user, fileMetadata), null);
+                } catch (IOException e) {
+                    status.setRollbackOnly();
+                    logger.error("Error syncing file {}: {}", file, e.getMessage());
+                    return new SyncOutcome(file, null, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Error syncing file {}: {}", file, e.getMessage());
+            return new SyncOutcome(file, null, e);
+        }
+    }
+
+    private UploadResult processExistingFile(Path filePath, User user, Map<String, Object> fileMetadata) throws IOException {
         String originalFilename = filePath.getFileName().toString();
         List<Image> existingImages = imageRepository.findAllByOriginalFileNameAndUser(originalFilename, user);
 
@@ -225,7 +415,7 @@ public class ImageService {
             logger.warn("Found {} duplicate records for file {}. Deleting all and re-importing.", existingImages.size(), originalFilename);
             for (Image img : existingImages) {
                 try {
-                    fileStorageService.deleteThumbnailFile(img.getThumbnailFileName(), user.getId());
+                    deleteThumbnailsFromStorage(img.getThumbnailFileName(), user.getId());
                 } catch (Exception e) {
                     logger.warn("Failed to delete thumbnail for duplicate image {}: {}", img.getId(), e.getMessage());
                 }
@@ -236,9 +426,10 @@ public class ImageService {
             // Fall through to create new
         } else if (existingImages.size() == 1) {
             Image existingImage = existingImages.get(0);
-            Map<String, Object> newMetadata = exifToolService.read(filePath);
+            Map<String, Object> newMetadata = fileMetadata;
 
-            if (isMetadataEqual(existingImage.getExiftool(), newMetadata) && !hasInvalidMetadata(existingImage.getExiftool())) {
+            Map<String, Object> existingMetadata = getStoredMetadata(existingImage);
+            if (isMetadataEqual(existingMetadata, newMetadata) && !hasInvalidMetadata(existingMetadata)) {
                 logger.info("Skipping image {}: Metadata unchanged.", originalFilename);
                 UploadResult result = new UploadResult();
                 result.setStatus("SKIPPED");
@@ -252,11 +443,9 @@ public class ImageService {
                 syncTagsFromMetadata(newMetadata, existingImage);
                 
                 // Regenerate thumbnail as well, since file might have changed
-                try {
-                    BufferedImage originalImage = ImageIO.read(filePath.toFile());
-                    if (originalImage != null) {
-                        BufferedImage thumbnailImage = resizeImageByDimension(originalImage, thumbnailMaxDimension);
-                        saveThumbnailToStorage(thumbnailImage, existingImage.getThumbnailFileName(), user.getId());
+                try (ImageDecodingService.DecodedImage decodedImage = imageDecodingService.decode(filePath, getThumbnailDecodeDimension())) {
+                    if (decodedImage != null) {
+                        saveThumbnailsToStorage(decodedImage.getImage(), existingImage.getThumbnailFileName(), user.getId());
                         logger.info("Regenerated thumbnail for updated image: {}", originalFilename);
                     }
                 } catch (Exception e) {
@@ -272,13 +461,13 @@ public class ImageService {
             }
         }
 
-        byte[] fileBytes = Files.readAllBytes(filePath);
-        BufferedImage originalBufferedImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
-        if (originalBufferedImage == null) {
-             return null;
+        Image newImage;
+        try (ImageDecodingService.DecodedImage decodedImage = decodeForProcessing(filePath)) {
+            if (decodedImage == null) {
+                return null;
+            }
+            newImage = createImageEntityAndProcess(decodedImage.getImage(), originalFilename, user, filePath, Files.size(filePath), fileMetadata);
         }
-        
-        Image newImage = createImageEntityAndProcess(originalBufferedImage, originalFilename, user, fileBytes);
         logger.info("Imported new image: {}", originalFilename);
 
         UploadResult result = new UploadResult();
@@ -287,10 +476,16 @@ public class ImageService {
         return result;
     }
 
-    private boolean hasInvalidMetadata(String metadataJson) {
-        if (metadataJson == null) return false;
+    /**
+     * Gets the parsed metadata stored for an image, or null if it has none.
+     */
+    private Map<String, Object> getStoredMetadata(Image image) throws IOException {
+        return image.getMetadata() != null ? metadataService.getRawMetadata(image) : null;
+    }
+
+    private boolean hasInvalidMetadata(Map<String, Object> metadata) {
+        if (metadata == null) return false;
         try {
-            Map<String, Object> metadata = objectMapper.readValue(metadataJson, new TypeReference<>() {});
             String sourceFile = (String) metadata.get("SourceFile");
             if (sourceFile != null && (sourceFile.startsWith("/tmp/") || sourceFile.contains(".tmp"))) {
                 return true;
@@ -300,35 +495,26 @@ public class ImageService {
                 return true;
             }
         } catch (Exception e) {
-            logger.warn("Failed to parse metadata JSON for validation", e);
+            logger.warn("Failed to read metadata for validation", e);
         }
         return false;
     }
 
-    private boolean isMetadataEqual(String existingMetadataJson, Map<String, Object> newMetadata) throws IOException {
-        if (existingMetadataJson == null || newMetadata == null) {
-            return existingMetadataJson == null && newMetadata == null;
+    private boolean isMetadataEqual(Map<String, Object> existingMetadata, Map<String, Object> newMetadata) {
+        if (existingMetadata == null || newMetadata == null) {
+            return existingMetadata == null && newMetadata == null;
         }
-        Map<String, Object> existingMetadata = objectMapper.readValue(existingMetadataJson, new TypeReference<>() {
-        });
 
-        for (Map.Entry<String, String> entry : tagSourceKeys.entrySet()) {
-            String configuredKeys = entry.getValue();
-            List<String> individualKeys = Arrays.stream(configuredKeys.split(","))
-                                                .map(String::trim)
-                                                .toList();
-
-            for (String key : individualKeys) {
-                if (INTERNAL_IGNORED_METADATA_KEYS.contains(key)) {
-                    continue;
-                }
+        for (String key : metadataKeyResolver.getTagSourceKeys()) {
+            if (INTERNAL_IGNORED_METADATA_KEYS.contains(key)) {
+                continue;
+            }
 
-                Set<String> existingValues = normalizeMetadataValue(existingMetadata.get(key));
-                Set<String> newValues = normalizeMetadataValue(newMetadata.get(key));
+            Set<String> existingValues = normalizeMetadataValue(existingMetadata.get(key));
+            Set<String> newValues = normalizeMetadataValue(newMetadata.get(key));
 
-                if (!existingValues.equals(newValues)) {
-                    return false;
-                }
+            if (!existingValues.equals(newValues)) {
+                return false;
             }
         }
 
@@ -365,7 +551,7 @@ public class ImageService {
                 .orElseThrow(() -> new IOException("No existing image to overwrite."));
 
         fileStorageService.moveOriginalToDeleted(existingImage.getOriginalFileName(), user.getId());
-        fileStorageService.deleteThumbnailFile(existingImage.getThumbnailFileName(), user.getId());
+        deleteThumbnailsFromStorage(existingImage.getThumbnailFileName(), user.getId());
         imageRepository.delete(existingImage);
 
         return createImageFromFile(file, user);
@@ -392,27 +578,68 @@ public class ImageService {
      */
     @Transactional
     public Image createImageFromFile(MultipartFile file, User user) throws IOException {
-        byte[] fileBytes = file.getBytes();
-        BufferedImage originalBufferedImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
-        if (originalBufferedImage == null) {
-            throw new IOException("Could not read image file: " + file.getOriginalFilename());
+        FileStorageService.SpooledUpload upload = fileStorageService.spoolUpload(file, user.getId());
+        try {
+            return createImageFromSpooledUpload(upload, file.getOriginalFilename(), user);
+        } finally {
+            fileStorageService.discardSpooledUpload(upload);
         }
-        return createImageEntityAndProcess(originalBufferedImage, file.getOriginalFilename(), user, fileBytes);
     }
 
-    private Image createImageEntityAndProcess(BufferedImage originalImage, String originalFilename, User user, byte[] originalFileBytes) throws IOException {
-        String thumbnailFilename = generateThumbnailFilename(originalFilename);
+    /**
+     * Creates an image entity from a spooled upload, moving the spooled file to its final location.
+     *
+     * @param upload           The spooled upload.
+     * @param originalFilename The name of the uploaded file.
+     * @param user             The user who owns the image.
+     * @return The newly created image.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Transactional
+    public Image createImageFromSpooledUpload(FileStorageService.SpooledUpload upload, String originalFilename, User user) throws IOException {
+        try (ImageDecodingService.DecodedImage decodedImage = decodeForProcessing(upload.path())) {
+            if (decodedImage == null) {
+                throw new IOException("Could not read image file: " + originalFilename);
+            }
+            Path originalFilePath = fileStorageService.saveOriginalFile(upload.path(), originalFilename, user.getId());
+            return createImageEntityAndProcess(decodedImage.getImage(), originalFilename, user, originalFilePath, upload.size(), null);
+        }
+    }
+
+    /**
+     * Decodes an original image at the resolution needed to store it, that is, subsampled when it is far
+     * larger than {@code image.max-dimension}. The result must be closed once processing is done.
+     *
+     * @param file The image file.
+     * @return The decoded image, or null if the file is not a supported image.
+     * @throws IOException if the file cannot be read.
+     */
+    public ImageDecodingService.DecodedImage decodeForProcessing(Path file) throws IOException {
+        return imageDecodingService.decode(file, imageMaxDimension);
+    }
 
-        // 1. Save original bytes to destination first
-        Path originalFilePath = fileStorageService.saveOriginalFile(originalFileBytes, originalFilename, user.getId());
+    private Image createImageEntityAndProcess(BufferedImage originalImage, String originalFilename, User user, Path originalFilePath,
+                                              long originalFileSize, Map<String, Object> knownMetadata) throws IOException {
+        // 1. Extract metadata from the stored original, unless it was already read in a batch
+        Map<String, Object> exiftoolData = knownMetadata != null ? knownMetadata : exifToolService.read(originalFilePath);
 
-        // 2. Extract metadata from the saved file
-        Map<String, Object> exiftoolData = exifToolService.read(originalFilePath);
-        if (exiftoolData == null) {
-            exiftoolData = new HashMap<>();
-        }
+        // 2. Process Original Image (Resize & Compress) if needed, and overwrite it together with the thumbnail
+        ProcessedImage processedImage = processImage(originalImage, originalFilename, originalFileSize);
+        storeProcessedImage(processedImage, originalFilename, user.getId());
 
-        // 3. Process Original Image (Resize & Compress) if needed
+        return persistNewImage(originalFilename, user, exiftoolData);
+    }
+
+    /**
+     * Resizes and compresses an original image to the configured limits and renders its thumbnail.
+     *
+     * @param originalImage    The decoded original image.
+     * @param originalFilename The name of the original file.
+     * @param originalFileSize The size in bytes of the original file.
+     * @return The processed image.
+     * @throws IOException if the image cannot be encoded.
+     */
+    public ProcessedImage processImage(BufferedImage originalImage, String originalFilename, long originalFileSize) throws IOException {
         boolean originalModified = false;
         BufferedImage processedOriginalImage = originalImage;
 
@@ -422,35 +649,64 @@ public class ImageService {
             logger.info("Original image {} resized to max dimension {}.", originalFilename, imageMaxDimension);
         }
 
-        byte[] processedOriginalBytes = originalFileBytes;
-        if (originalModified) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(processedOriginalImage, "jpg", baos); // Assuming JPG for processed images
-            processedOriginalBytes = baos.toByteArray();
+        byte[] processedOriginalBytes = null;
+        if (originalModified || originalFileSize > imageMaxFileSizeKB * 1024) {
+            // Assuming JPG for processed images
+            JpegEncodingService.FittedJpeg fittedJpeg = jpegEncodingService.encodeWithinSize(processedOriginalImage, imageMaxFileSizeKB * 1024, originalFilename);
+            processedOriginalImage = fittedJpeg.image();
+            processedOriginalBytes = fittedJpeg.bytes();
         }
 
-        if (processedOriginalBytes.length > imageMaxFileSizeKB * 1024) {
-            logger.info("Image {} exceeds max file size.", originalFilename);
-            processedOriginalImage = resizeImageByFileSize(processedOriginalImage, originalFilename, imageMaxFileSizeKB);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(processedOriginalImage, "jpg", baos);
-            processedOriginalBytes = baos.toByteArray();
-            originalModified = true;
-        }
+        // Create Thumbnail and renditions from the processed original
+        BufferedImage thumbnailImage = resizeImageByDimension(processedOriginalImage, thumbnailMaxDimension);
+
+        ProcessedImage processedImage = new ProcessedImage();
+        processedImage.setOriginalBytes(processedOriginalBytes);
+        processedImage.setThumbnailBytes(jpegEncodingService.encode(thumbnailImage, JpegEncodingService.DEFAULT_QUALITY));
+        processedImage.setRenditionBytes(renderRenditions(processedOriginalImage));
+        return processedImage;
+    }
 
-        // 4. If modified, overwrite the file
-        if (originalModified) {
-             fileStorageService.saveOriginalFile(processedOriginalBytes, originalFilename, user.getId());
+    /**
+     * Writes a processed image to storage: the re-encoded original, if it was modified, and the thumbnail.
+     *
+     * @param processedImage   The processed image.
+     * @param originalFilename The name of the original file.
+     * @param userId           The ID of the user who owns the image.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void storeProcessedImage(ProcessedImage processedImage, String originalFilename, Long userId) throws IOException {
+        if (processedImage.getOriginalBytes() != null) {
+            fileStorageService.saveOriginalFile(processedImage.getOriginalBytes(), originalFilename, userId);
         }
+        String thumbnailFilename = generateThumbnailFilename(originalFilename);
+        fileStorageService.saveThumbnailFile(processedImage.getThumbnailBytes(), thumbnailFilename, userId);
+        if (processedImage.getRenditionBytes() != null) {
+            for (Map.Entry<Integer, byte[]> rendition : processedImage.getRenditionBytes().entrySet()) {
+                fileStorageService.saveThumbnailFile(rendition.getValue(), generateRenditionFilename(thumbnailFilename, rendition.getKey()), userId);
+            }
+        }
+    }
 
-        // Create Thumbnail from the processed original
-        BufferedImage thumbnailImage = resizeImageByDimension(processedOriginalImage, thumbnailMaxDimension);
-        saveThumbnailToStorage(thumbnailImage, thumbnailFilename, user.getId());
+    /**
+     * Creates and saves the entity for a newly stored image.
+     *
+     * @param originalFilename The name of the original file.
+     * @param user             The user who owns the image.
+     * @param exiftoolData     The metadata read from the stored original, or null if none could be read.
+     * @return The saved image.
+     * @throws IOException if the metadata cannot be serialized.
+     */
+    @Transactional
+    public Image persistNewImage(String originalFilename, User user, Map<String, Object> exiftoolData) throws IOException {
+        if (exiftoolData == null) {
+            exiftoolData = new HashMap<>();
+        }
 
         Image image = new Image(user);
         image.setImportedAt(LocalDateTime.now());
         image.setOriginalFileName(originalFilename);
-        image.setThumbnailFileName(thumbnailFilename);
+        image.setThumbnailFileName(generateThumbnailFilename(originalFilename));
         image.setExiftool(objectMapper.writeValueAsString(exiftoolData));
 
         updateImageFieldsFromMetadata(image, exiftoolData);
@@ -497,19 +753,31 @@ public class ImageService {
                 logger.warn("Could not parse rating '{}' for image '{}'", ratingObj, image.getOriginalFileName(), e);
             }
         }
+
+        image.setWidth(getDimension(WIDTH_METADATA_KEYS, exiftoolData));
+        image.setHeight(getDimension(HEIGHT_METADATA_KEYS, exiftoolData));
+        metadataService.materializeDisplayFields(image, exiftoolData);
     }
 
-    private Object getMetadataValue(String fieldName, Map<String, Object> metadata) {
-        String keys = sortableFields.get(fieldName);
-        if (keys == null) {
-            return null;
+    private Integer getDimension(List<String> keys, Map<String, Object> metadata) {
+        for (String key : keys) {
+            Object value = metadata.get(key);
+            if (value instanceof Number number) {
+                return number.intValue();
+            }
+            if (value != null) {
+                try {
+                    return Integer.parseInt(String.valueOf(value).trim());
+                } catch (NumberFormatException e) {
+                    logger.debug("Ignoring non-numeric dimension '{}' in {}", value, key);
+                }
+            }
         }
-        return Arrays.stream(keys.split(","))
-                .map(String::trim)
-                .map(metadata::get)
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+        return null;
+    }
+
+    private Object getMetadataValue(String fieldName, Map<String, Object> metadata) {
+        return metadataKeyResolver.resolveSortable(fieldName, metadata);
     }
 
     private String generateThumbnailFilename(String originalFilename) {
@@ -517,60 +785,54 @@ public class ImageService {
         return baseName + "_thumb.jpg";
     }
 
-    private void saveThumbnailToStorage(BufferedImage thumbnailImage, String thumbnailFileName, Long userId) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(thumbnailImage, "jpg", baos);
-        fileStorageService.saveThumbnailFile(baos.toByteArray(), thumbnailFileName, userId);
+    private String generateRenditionFilename(String thumbnailFileName, int size) {
+        return getBaseName(thumbnailFileName) + "_" + size + ".jpg";
     }
 
-    private BufferedImage resizeImageByDimension(BufferedImage originalImage, int maxDim) {
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
-        int newWidth, newHeight;
-        if (originalWidth > originalHeight) {
-            newWidth = maxDim;
-            newHeight = (int) (originalHeight * ((double) maxDim / originalWidth));
-        } else {
-            newHeight = maxDim;
-            newWidth = (int) (originalWidth * ((double) maxDim / originalHeight));
-        }
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = resizedImage.createGraphics();
-        g.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-        g.dispose();
-        return resizedImage;
-    }
-
-    private BufferedImage resizeImageByFileSize(BufferedImage image, String filename, long maxSizeKB) throws IOException {
-        float quality = 0.8f;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-
-        while (true) {
-            baos.reset();
-            param.setCompressionQuality(quality);
-            try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
-                writer.setOutput(ios);
-                writer.write(null, new IIOImage(image, null, null), param);
-            }
-            if (baos.size() <= maxSizeKB * 1024 || quality < 0.1f) {
-                logger.info("Image {} resized by quality. Final size: {} KB, Quality: {}", filename, baos.size() / 1024, quality);
-                return ImageIO.read(new ByteArrayInputStream(baos.toByteArray()));
+    private int getThumbnailDecodeDimension() {
+        return renditionSizes.length == 0 ? thumbnailMaxDimension : Math.max(thumbnailMaxDimension, renditionSizes[renditionSizes.length - 1]);
+    }
+
+    private void saveThumbnailsToStorage(BufferedImage sourceImage, String thumbnailFileName, Long userId) throws IOException {
+        BufferedImage thumbnailImage = resizeImageByDimension(sourceImage, thumbnailMaxDimension);
+        fileStorageService.saveThumbnailFile(jpegEncodingService.encode(thumbnailImage, JpegEncodingService.DEFAULT_QUALITY), thumbnailFileName, userId);
+        for (Map.Entry<Integer, byte[]> rendition : renderRenditions(sourceImage).entrySet()) {
+            fileStorageService.saveThumbnailFile(rendition.getValue(), generateRenditionFilename(thumbnailFileName, rendition.getKey()), userId);
+        }
+    }
+
+    private void deleteThumbnailsFromStorage(String thumbnailFileName, Long userId) throws IOException {
+        fileStorageService.deleteThumbnailFile(thumbnailFileName, userId);
+        for (int size : renditionSizes) {
+            fileStorageService.deleteThumbnailFile(generateRenditionFilename(thumbnailFileName, size), userId);
+        }
+    }
+
+    /**
+     * Renders the rendition ladder, largest first, each one scaled from the previous so the source is read once.
+     * Renditions larger than the source keep the source size.
+     */
+    private Map<Integer, byte[]> renderRenditions(BufferedImage sourceImage) throws IOException {
+        Map<Integer, byte[]> renditions = new TreeMap<>();
+        BufferedImage current = sourceImage;
+        for (int i = renditionSizes.length - 1; i >= 0; i--) {
+            int size = renditionSizes[i];
+            if (size < Math.max(current.getWidth(), current.getHeight())) {
+                current = imageDecodingService.scaleToFit(current, size);
             }
-            quality -= 0.1f;
+            renditions.put(size, jpegEncodingService.encode(current, JpegEncodingService.DEFAULT_QUALITY));
         }
+        return renditions;
+    }
+
+    private BufferedImage resizeImageByDimension(BufferedImage originalImage, int maxDim) {
+        return imageDecodingService.scaleToFit(originalImage, maxDim);
     }
 
     private void syncTagsFromMetadata(Map<String, Object> metadata, Image image) {
         Set<String> keywords = new HashSet<>();
-        for (Map.Entry<String, String> entry : tagSourceKeys.entrySet()) {
-            String configuredKeys = entry.getValue();
-            Arrays.stream(configuredKeys.split(","))
-                  .map(String::trim)
-                  .filter(s -> !s.isEmpty())
-                  .forEach(key -> addKeywords(keywords, metadata.get(key)));
+        for (String key : metadataKeyResolver.getTagSourceKeys()) {
+            addKeywords(keywords, metadata.get(key));
         }
 
         if (!keywords.isEmpty()) {
@@ -619,7 +881,7 @@ public class ImageService {
         image.getTags().clear();
         imageRepository.save(image);
 
-        fileStorageService.deleteThumbnailFile(image.getThumbnailFileName(), image.getUser().getId());
+        deleteThumbnailsFromStorage(image.getThumbnailFileName(), image.getUser().getId());
         fileStorageService.moveOriginalToDeleted(image.getOriginalFileName(), image.getUser().getId());
         imageRepository.delete(image);
 
@@ -791,12 +1053,82 @@ public class ImageService {
      * @param fileName The name of the thumbnail file.
      * @param userId   The ID of the user who owns the image.
      * @return The thumbnail resource.
-     * @throws MalformedURLException if the file URL is malformed.
+     * @throws IOException if the thumbnail cannot be read.
      */
-    public Resource loadThumbnailAsResource(String fileName, Long userId) throws MalformedURLException {
+    public Resource loadThumbnailAsResource(String fileName, Long userId) throws IOException {
         return fileStorageService.loadThumbnailAsResource(fileName, userId);
     }
 
+    /**
+     * Gets the configured rendition sizes, in ascending order.
+     *
+     * @return The maximum dimensions of the stored renditions.
+     */
+    public int[] getRenditionSizes() {
+        return renditionSizes.clone();
+    }
+
+    /**
+     * Maps a requested size to the smallest stored rendition that is at least that large.
+     *
+     * @param requestedSize The requested maximum dimension.
+     * @return The rendition size to serve, or the largest one if the request exceeds them all.
+     * @throws IllegalArgumentException if no renditions are configured.
+     */
+    public int resolveRenditionSize(int requestedSize) {
+        if (renditionSizes.length == 0) {
+            throw new IllegalArgumentException("No image renditions are configured.");
+        }
+        for (int size : renditionSizes) {
+            if (size >= requestedSize) {
+                return size;
+            }
+        }
+        return renditionSizes[renditionSizes.length - 1];
+    }
+
+    /**
+     * Checks whether a rendition is small enough to be served under the same rules as the thumbnail.
+     *
+     * @param size The rendition size.
+     * @return True if the rendition is no larger than the thumbnail.
+     */
+    public boolean isThumbnailSizedRendition(int size) {
+        return size <= thumbnailMaxDimension;
+    }
+
+    /**
+     * Loads a rendition of an image as a resource, rendering it from the original if it does not exist yet,
+     * as is the case for images stored before renditions were introduced.
+     *
+     * @param image The image.
+     * @param size  A configured rendition size.
+     * @return The rendition resource.
+     * @throws IOException if the rendition cannot be rendered.
+     */
+    public Resource loadRenditionAsResource(Image image, int size) throws IOException {
+        Long userId = image.getUser().getId();
+        String renditionFilename = generateRenditionFilename(image.getThumbnailFileName(), size);
+        Resource resource = fileStorageService.loadThumbnailAsResource(renditionFilename, userId);
+        if (resource.exists()) {
+            return resource;
+        }
+
+        Resource original = fileStorageService.loadOriginalAsResource(image.getOriginalFileName(), userId);
+        if (!original.exists()) {
+            return resource;
+        }
+        try (ImageDecodingService.DecodedImage decodedImage = imageDecodingService.decode(original.getFile().toPath(), size)) {
+            if (decodedImage != null) {
+                BufferedImage source = decodedImage.getImage();
+                BufferedImage rendition = size < Math.max(source.getWidth(), source.getHeight()) ? resizeImageByDimension(source, size) : source;
+                fileStorageService.saveThumbnailFile(jpegEncodingService.encode(rendition, JpegEncodingService.DEFAULT_QUALITY), renditionFilename, userId);
+                logger.info("Rendered missing {} px rendition for image: {}", size, image.getOriginalFileName());
+            }
+        }
+        return fileStorageService.loadThumbnailAsResource(renditionFilename, userId);
+    }
+
     /**
      * Zips a list of images.
      *
@@ -859,13 +1191,13 @@ public class ImageService {
             try {
                 Resource resource = fileStorageService.loadOriginalAsResource(image.getOriginalFileName(), user.getId());
                 if (resource.exists()) {
-                    BufferedImage originalImage = ImageIO.read(resource.getInputStream());
-                    if (originalImage != null) {
-                        BufferedImage thumbnailImage = resizeImageByDimension(originalImage, thumbnailMaxDimension);
-                        saveThumbnailToStorage(thumbnailImage, image.getThumbnailFileName(), user.getId());
-                        logger.info("Regenerated thumbnail for image: {}", image.getOriginalFileName());
-                    } else {
-                        logger.warn("Could not read original image for thumbnail regeneration: {}", image.getOriginalFileName());
+                    try (ImageDecodingService.DecodedImage decodedImage = imageDecodingService.decode(resource.getFile().toPath(), getThumbnailDecodeDimension())) {
+                        if (decodedImage != null) {
+                            saveThumbnailsToStorage(decodedImage.getImage(), image.getThumbnailFileName(), user.getId());
+                            logger.info("Regenerated thumbnail for image: {}", image.getOriginalFileName());
+                        } else {
+                            logger.warn("Could not read original image for thumbnail regeneration: {}", image.getOriginalFileName());
+                        }
                     }
                 } else {
                     logger.warn("Original image not found for thumbnail regeneration: {}", image.getOriginalFileName());
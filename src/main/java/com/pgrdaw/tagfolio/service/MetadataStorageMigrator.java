@@ -0,0 +1,164 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.model.CompressedJsonConverter;
+import com.pgrdaw.tagfolio.repository.ImageMetadataRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that re-encodes image metadata stored as JSON text into the compressed format, in the background.
+ * <p>
+ * After the application starts, a single daemon thread reads the rows still stored in the legacy column in
+ * batches, each in its own transaction, and rewrites them compressed. Each row is encoded once and written with a
+ * single update, which is skipped if the metadata was changed since it was read. The bytes each row takes before and
+ * after are logged and added up, so the savings can be checked while the migration runs.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class MetadataStorageMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataStorageMigrator.class);
+
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final AtomicLong migratedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a new MetadataStorageMigrator.
+     *
+     * @param imageMetadataRepository The image metadata repository.
+     * @param transactionManager      The transaction manager.
+     * @param enabled                 Whether legacy rows are re-encoded after startup.
+     * @param batchSize               The number of rows re-encoded per transaction.
+     */
+    public MetadataStorageMigrator(ImageMetadataRepository imageMetadataRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${image.metadata.migration.enabled:true}") boolean enabled,
+                                   @Value("${image.metadata.migration.batch-size:200}") int batchSize) {
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Starts the migration thread once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "metadata-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the migration after the current batch.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Re-encodes all legacy rows, batch by batch, until none is left.
+     */
+    public void migrate() {
+        running = true;
+        try {
+            Long lastId = 0L;
+            while (lastId != null && !stopped) {
+                Long afterId = lastId;
+                lastId = transactionTemplate.execute(status -> migrateBatch(afterId));
+            }
+            if (migratedRows.get() > 0) {
+                logger.info("Re-encoded the metadata of {} images: {} bytes as text, {} bytes compressed ({} bytes saved).",
+                        migratedRows.get(), originalBytes.get(), storedBytes.get(), originalBytes.get() - storedBytes.get());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Metadata storage migration stopped: {}", e.getMessage(), e);
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Gets the progress of the migration and the bytes it saved.
+     *
+     * @return A map with the migration statistics.
+     */
+    public Map<String, Object> getStats() {
+        long migrated = migratedRows.get();
+        long saved = originalBytes.get() - storedBytes.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", running);
+        result.put("migratedRows", migrated);
+        result.put("failedRows", failedRows.get());
+        result.put("originalBytes", originalBytes.get());
+        result.put("storedBytes", storedBytes.get());
+        result.put("savedBytes", saved);
+        result.put("savedBytesPerImage", migrated > 0 ? saved / migrated : 0);
+        return result;
+    }
+
+    /**
+     * Re-encodes one batch of legacy rows. Rows whose JSON cannot be parsed are left as they are and counted as
+     * failed; the next batch starts after them. Rows changed since they were read already hold new metadata and are
+     * skipped.
+     *
+     * @return The ID of the last row of the batch, or null if there were no rows left.
+     */
+    private Long migrateBatch(Long afterId) {
+        List<Object[]> batch = imageMetadataRepository.findLegacyAfter(afterId, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return null;
+        }
+        for (Object[] row : batch) {
+            Long id = (Long) row[0];
+            String json = (String) row[1];
+            try {
+                byte[] data = CompressedJsonConverter.encode(json);
+                if (imageMetadataRepository.updateEncoded(id, data, (Long) row[2]) == 0) {
+                    logger.debug("Metadata {} changed while it was re-encoded; skipped.", id);
+                    continue;
+                }
+                int before = json.getBytes(StandardCharsets.UTF_8).length;
+                migratedRows.incrementAndGet();
+                originalBytes.addAndGet(before);
+                storedBytes.addAndGet(data.length);
+                logger.debug("Re-encoded metadata {}: {} bytes as text, {} bytes compressed ({} bytes saved).",
+                        id, before, data.length, before - data.length);
+            } catch (RuntimeException e) {
+                failedRows.incrementAndGet();
+                logger.warn("Could not re-encode metadata {}: {}", id, e.getMessage());
+            }
+        }
+        return (Long) batch.get(batch.size() - 1)[0];
+    }
+}
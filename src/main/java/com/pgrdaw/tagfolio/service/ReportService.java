@@ -1,5 +1,6 @@
 package com.pgrdaw.tagfolio.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.Report;
 import com.pgrdaw.tagfolio.model.ReportImage;
@@ -8,6 +9,8 @@ import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.ImageRepository;
 import com.pgrdaw.tagfolio.repository.ReportRepository;
 import com.pgrdaw.tagfolio.repository.ReportTypeRepository;
+import com.pgrdaw.tagfolio.service.util.HttpCachingService;
+import com.pgrdaw.tagfolio.service.util.MetadataKeyResolver;
 import com.pgrdaw.tagfolio.service.util.MetadataService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -21,6 +24,7 @@ import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 import org.thymeleaf.web.servlet.JakartaServletWebApplication;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
@@ -41,6 +45,9 @@ public class ReportService {
     private final TemplateEngine templateEngine;
     private final UserService userService;
     private final MetadataService metadataService;
+    private final MetadataKeyResolver metadataKeyResolver;
+    private final HttpCachingService httpCachingService;
+    private final ResultSetRegistry resultSetRegistry;
 
     /**
      * Constructs a new ReportService.
@@ -51,6 +58,9 @@ public class ReportService {
      * @param templateEngine     The Thymeleaf template engine.
      * @param userService        The user service.
      * @param metadataService    The metadata service.
+     * @param metadataKeyResolver The resolver of configured metadata keys, used by the report templates.
+     * @param httpCachingService The HTTP caching service, used to version image URLs.
+     * @param resultSetRegistry  The registry of the image lists kept for each session.
      */
     @Autowired
     public ReportService(ReportRepository reportRepository,
@@ -58,13 +68,19 @@ public class ReportService {
                          ReportTypeRepository reportTypeRepository,
                          TemplateEngine templateEngine,
                          UserService userService,
-                         MetadataService metadataService) {
+                         MetadataService metadataService,
+                         MetadataKeyResolver metadataKeyResolver,
+                         HttpCachingService httpCachingService,
+                         ResultSetRegistry resultSetRegistry) {
         this.reportRepository = reportRepository;
         this.imageRepository = imageRepository;
         this.reportTypeRepository = reportTypeRepository;
         this.templateEngine = templateEngine;
         this.userService = userService;
         this.metadataService = metadataService;
+        this.metadataKeyResolver = metadataKeyResolver;
+        this.httpCachingService = httpCachingService;
+        this.resultSetRegistry = resultSetRegistry;
     }
 
     /**
@@ -243,11 +259,25 @@ public class ReportService {
         context.setVariable("report", report);
         context.setVariable("json", new com.fasterxml.jackson.databind.ObjectMapper());
         context.setVariable("metadataService", metadataService);
+        context.setVariable("metadataKeyResolver", metadataKeyResolver);
+        context.setVariable("displayFieldsByImage", getDisplayFields(report));
+        context.setVariable("httpCachingService", httpCachingService);
         context.setVariable("isEditable", false);
         
         return context;
     }
 
+    /**
+     * Reads the display fields of all the images of a report at once, instead of once per image while rendering.
+     */
+    private Map<Long, Map<String, String>> getDisplayFields(Report report) {
+        try {
+            return metadataService.getDisplayFields(report.getReportImages().stream().map(ReportImage::getImage).toList());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not read the metadata of the images of report " + report.getId(), e);
+        }
+    }
+
     /**
      * Generates the HTML content for a shared report.
      *
@@ -263,7 +293,7 @@ public class ReportService {
         List<Long> sharedImageIds = report.getReportImages().stream()
                 .map(ri -> ri.getImage().getId())
                 .collect(Collectors.toList());
-        request.getSession().setAttribute("sharedImageIds", sharedImageIds);
+        resultSetRegistry.store(request.getSession(), ResultSetRegistry.SHARED, sharedImageIds);
 
         WebContext context = createWebContext(request, response, report);
 
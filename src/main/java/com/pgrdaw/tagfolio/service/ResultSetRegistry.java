@@ -0,0 +1,313 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A service that keeps sorted lists of image IDs on the server, so the session only holds an opaque handle to them.
+ * <p>
+ * Each list is stored as a {@code long[]} together with a hash table from image ID to position, so checking whether
+ * an image is in the list and finding the images before and after it take constant time. Lists expire when they
+ * have not been read for a while, and lists are evicted when all of them together take more than a memory budget.
+ * A session whose list expired behaves as if it had never stored one.
+ * <p>
+ * The images shared with a visitor are what authorizes the visitor to view them, so they are not stored in the
+ * registry, where they could be evicted, but in the session itself and live as long as it does.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ResultSetRegistry {
+
+    /**
+     * The session attribute with the handle of the order the gallery was last listed in, used to navigate between
+     * images.
+     */
+    public static final String NAVIGATION = "navigationResultSet";
+
+    /**
+     * The session attribute with the images shared with an anonymous visitor. The list itself is kept in the
+     * session, so it is never evicted before the session ends.
+     */
+    public static final String SHARED = "sharedResultSet";
+
+    private static final int HANDLE_BYTES = 16;
+
+    private final Cache<String, ResultSet> resultSets;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * An immutable list of image IDs, in order.
+     */
+    public static final class ResultSet implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private static final long EMPTY = 0L;
+
+        private final long[] imageIds;
+        private final long[] slots;
+        private final int[] positions;
+        private final int mask;
+
+        /**
+         * Creates a list of image IDs that is not stored in the registry.
+         *
+         * @param imageIds The IDs of the images, in order.
+         * @return The list.
+         */
+        public static ResultSet of(Collection<Long> imageIds) {
+            long[] ids = new long[imageIds.size()];
+            int i = 0;
+            for (Long imageId : imageIds) {
+                ids[i++] = imageId;
+            }
+            return new ResultSet(ids);
+        }
+
+        private ResultSet(long[] imageIds) {
+            this.imageIds = imageIds;
+            int capacity = Integer.highestOneBit(Math.max(2, imageIds.length * 2 - 1)) << 1;
+            this.slots = new long[capacity];
+            this.positions = new int[capacity];
+            this.mask = capacity - 1;
+            for (int i = 0; i < imageIds.length; i++) {
+                long imageId = imageIds[i];
+                int slot = slot(imageId);
+                while (slots[slot] != EMPTY && slots[slot] != imageId) {
+                    slot = (slot + 1) & mask;
+                }
+                if (slots[slot] == EMPTY) {
+                    slots[slot] = imageId;
+                    positions[slot] = i;
+                }
+            }
+        }
+
+        /**
+         * Gets the number of images in the list.
+         *
+         * @return The number of images.
+         */
+        public int size() {
+            return imageIds.length;
+        }
+
+        /**
+         * Finds the position of an image in the list.
+         *
+         * @param imageId The ID of the image.
+         * @return The position, or -1 if the image is not in the list.
+         */
+        public int indexOf(Long imageId) {
+            if (imageId == null || imageId == EMPTY) {
+                return -1;
+            }
+            int slot = slot(imageId);
+            while (slots[slot] != EMPTY) {
+                if (slots[slot] == imageId) {
+                    return positions[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Checks whether an image is in the list.
+         *
+         * @param imageId The ID of the image.
+         * @return True if the image is in the list.
+         */
+        public boolean contains(Long imageId) {
+            return indexOf(imageId) >= 0;
+        }
+
+        /**
+         * Gets the image before another one in the list.
+         *
+         * @param imageId The ID of the image.
+         * @return The ID of the previous image, or null if the image is the first one or is not in the list.
+         */
+        public Long getPrevious(Long imageId) {
+            int position = indexOf(imageId);
+            return position > 0 ? imageIds[position - 1] : null;
+        }
+
+        /**
+         * Gets the image after another one in the list.
+         *
+         * @param imageId The ID of the image.
+         * @return The ID of the next image, or null if the image is the last one or is not in the list.
+         */
+        public Long getNext(Long imageId) {
+            int position = indexOf(imageId);
+            return position >= 0 && position < imageIds.length - 1 ? imageIds[position + 1] : null;
+        }
+
+        /**
+         * Gets the image IDs as a list, without copying them.
+         *
+         * @return An unmodifiable view of the image IDs.
+         */
+        public List<Long> asList() {
+            return new AbstractList<>() {
+                @Override
+                public Long get(int index) {
+                    return imageIds[index];
+                }
+
+                @Override
+                public int size() {
+                    return imageIds.length;
+                }
+            };
+        }
+
+        private int weight() {
+            return 64 + imageIds.length * Long.BYTES + slots.length * (Long.BYTES + Integer.BYTES);
+        }
+
+        private int slot(long imageId) {
+            long hash = imageId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * Constructs a new ResultSetRegistry.
+     *
+     * @param ttlMinutes The minutes a list is kept after it was last read.
+     * @param maxBytes   The estimated memory all the lists may take together.
+     */
+    @Autowired
+    public ResultSetRegistry(@Value("${app.result-sets.ttl-minutes:30}") long ttlMinutes,
+                             @Value("${app.result-sets.max-bytes:67108864}") long maxBytes) {
+        this(ttlMinutes, maxBytes, Ticker.systemTicker());
+    }
+
+    /**
+     * Constructs a new ResultSetRegistry that reads the time from a ticker. Evictions are done on the thread that
+     * stores a list, so the memory budget holds as soon as {@link #register} or {@link #store} returns.
+     *
+     * @param ttlMinutes The minutes a list is kept after it was last read.
+     * @param maxBytes   The estimated memory all the lists may take together.
+     * @param ticker     The source of the time lists expire by.
+     */
+    public ResultSetRegistry(long ttlMinutes, long maxBytes, Ticker ticker) {
+        this.resultSets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(Math.max(1, ttlMinutes)))
+                .maximumWeight(Math.max(0, maxBytes))
+                .weigher((String handle, ResultSet resultSet) -> resultSet.weight())
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Stores a list of image IDs.
+     *
+     * @param imageIds The IDs of the images, in order.
+     * @return The handle of the list.
+     */
+    public String register(Collection<Long> imageIds) {
+        String handle = newHandle();
+        resultSets.put(handle, ResultSet.of(imageIds));
+        return handle;
+    }
+
+    /**
+     * Gets a stored list of image IDs.
+     *
+     * @param handle The handle of the list, or null.
+     * @return The list, or null if there is no list with that handle or it expired.
+     */
+    public ResultSet get(String handle) {
+        return handle != null ? resultSets.getIfPresent(handle) : null;
+    }
+
+    /**
+     * Stores a list of image IDs and keeps its handle in a session attribute, releasing the list it replaces. The
+     * {@link #SHARED} list is kept in the session attribute instead.
+     *
+     * @param session   The HTTP session.
+     * @param attribute The session attribute, such as {@link #NAVIGATION}.
+     * @param imageIds  The IDs of the images, in order.
+     * @return The stored list.
+     */
+    public ResultSet store(HttpSession session, String attribute, Collection<Long> imageIds) {
+        remove(session, attribute);
+        ResultSet resultSet = ResultSet.of(imageIds);
+        if (SHARED.equals(attribute)) {
+            session.setAttribute(attribute, resultSet);
+            return resultSet;
+        }
+        String handle = newHandle();
+        resultSets.put(handle, resultSet);
+        session.setAttribute(attribute, handle);
+        return resultSet;
+    }
+
+    /**
+     * Gets the list whose handle is kept in a session attribute.
+     *
+     * @param session   The HTTP session.
+     * @param attribute The session attribute, such as {@link #NAVIGATION}.
+     * @return The list, or null if the session has no list or it expired.
+     */
+    public ResultSet find(HttpSession session, String attribute) {
+        Object value = session.getAttribute(attribute);
+        return value instanceof ResultSet resultSet ? resultSet : get((String) value);
+    }
+
+    /**
+     * Gets the list whose handle is kept in a session attribute, without creating a session if the request has none.
+     *
+     * @param request   The HTTP request.
+     * @param attribute The session attribute, such as {@link #SHARED}.
+     * @return The list, or null if there is no session, the session has no list or it expired.
+     */
+    public ResultSet find(HttpServletRequest request, String attribute) {
+        HttpSession session = request.getSession(false);
+        return session != null ? find(session, attribute) : null;
+    }
+
+    /**
+     * Releases the list whose handle is kept in a session attribute, and removes the attribute.
+     *
+     * @param session   The HTTP session.
+     * @param attribute The session attribute, such as {@link #NAVIGATION}.
+     */
+    public void remove(HttpSession session, String attribute) {
+        Object value = session.getAttribute(attribute);
+        if (value instanceof String handle) {
+            resultSets.invalidate(handle);
+        }
+        if (value != null) {
+            session.removeAttribute(attribute);
+        }
+    }
+
+    private String newHandle() {
+        byte[] bytes = new byte[HANDLE_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
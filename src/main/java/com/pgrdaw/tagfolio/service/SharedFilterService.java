@@ -1,11 +1,7 @@
 package com.pgrdaw.tagfolio.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.model.Filter;
-import com.pgrdaw.tagfolio.model.Image;
 import com.pgrdaw.tagfolio.model.SharedFilter;
-import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.FilterRepository;
 import com.pgrdaw.tagfolio.repository.SharedFilterRepository;
 import com.pgrdaw.tagfolio.service.util.HashService;
@@ -14,8 +10,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,35 +24,27 @@ public class SharedFilterService {
 
     private final SharedFilterRepository sharedFilterRepository;
     private final FilterRepository filterRepository;
-    private final FilterExpressionEvaluator filterExpressionEvaluator;
-    private final ImageService imageService;
-    private final ObjectMapper objectMapper;
+    private final SharedFilterSnapshotService sharedFilterSnapshotService;
     private final HashService hashService;
     private final String appBaseUrl;
 
     /**
      * Constructs a new SharedFilterService.
      *
-     * @param sharedFilterRepository    The shared filter repository.
-     * @param filterRepository          The filter repository.
-     * @param filterExpressionEvaluator The filter expression evaluator.
-     * @param imageService              The image service.
-     * @param objectMapper              The object mapper for JSON processing.
-     * @param hashService               The hash service.
-     * @param appBaseUrl                The base URL of the application.
+     * @param sharedFilterRepository      The shared filter repository.
+     * @param filterRepository            The filter repository.
+     * @param sharedFilterSnapshotService The service that keeps the snapshots of shared filters.
+     * @param hashService                 The hash service.
+     * @param appBaseUrl                  The base URL of the application.
      */
     public SharedFilterService(SharedFilterRepository sharedFilterRepository,
                                FilterRepository filterRepository,
-                               FilterExpressionEvaluator filterExpressionEvaluator,
-                               ImageService imageService,
-                               ObjectMapper objectMapper,
+                               SharedFilterSnapshotService sharedFilterSnapshotService,
                                HashService hashService,
                                @Value("${app.base-url}") String appBaseUrl) {
         this.sharedFilterRepository = sharedFilterRepository;
         this.filterRepository = filterRepository;
-        this.filterExpressionEvaluator = filterExpressionEvaluator;
-        this.imageService = imageService;
-        this.objectMapper = objectMapper;
+        this.sharedFilterSnapshotService = sharedFilterSnapshotService;
         this.hashService = hashService;
         this.appBaseUrl = appBaseUrl;
     }
@@ -113,31 +99,26 @@ public class SharedFilterService {
     }
 
     /**
-     * Checks if an image is included in a shared filter.
+     * Checks if an image is included in a shared filter, using the snapshot of the filter.
      *
      * @param imageId The ID of the image.
      * @param token   The token of the shared filter.
      * @return True if the image is in the shared filter, false otherwise.
      */
-    @Transactional(readOnly = true)
     public boolean isImageInSharedFilter(Long imageId, String token) {
-        Optional<SharedFilter> sharedFilterOptional = sharedFilterRepository.findByToken(token);
-        if (sharedFilterOptional.isEmpty()) {
-            return false;
-        }
-
-        SharedFilter sharedFilter = sharedFilterOptional.get();
-        Filter originalFilter = sharedFilter.getFilter();
-        User filterCreator = originalFilter.getUser();
-        List<Image> allCreatorImages = imageService.getImagesForUser(filterCreator);
+        SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.getSnapshot(token);
+        return snapshot != null && snapshot.contains(imageId);
+    }
 
-        try {
-            List<Map<String, String>> filterExpression = filterExpressionEvaluator.parseExpressionJson(originalFilter.getExpression());
-            List<Long> matchingImageIds = filterExpressionEvaluator.evaluate(allCreatorImages, filterExpression);
-            return matchingImageIds.contains(imageId);
-        } catch (JsonProcessingException e) {
-            return false;
-        }
+    /**
+     * Drops the snapshot of the shared filter of a filter, if it is shared, once the current transaction commits.
+     *
+     * @param filterId The ID of the filter.
+     */
+    @Transactional(readOnly = true)
+    public void evictSnapshot(Long filterId) {
+        sharedFilterRepository.findByFilterId(filterId)
+                .ifPresent(sharedFilter -> sharedFilterSnapshotService.evict(sharedFilter.getToken()));
     }
 
     /**
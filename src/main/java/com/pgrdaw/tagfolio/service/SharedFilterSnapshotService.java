@@ -0,0 +1,375 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pgrdaw.tagfolio.model.Filter;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.repository.SharedFilterRepository;
+import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import com.pgrdaw.tagfolio.service.util.SharedCapabilityService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A service that keeps a snapshot of the images each shared filter matches, shared by all its visitors.
+ * <p>
+ * A snapshot holds the IDs of the images in ascending order and a bitmap of them, so checking whether a visitor may
+ * see an image takes one lookup, and the orders visitors sort the images in are computed once per snapshot. The
+ * images are those of every owner the creator of the filter can read, which for an administrator is every owner. Its
+ * version is a hash of the IDs, so every instance of the application computes the same version for the same images,
+ * and a capability issued by one instance is valid on the others.
+ * <p>
+ * Each snapshot remembers the versions of the images of those owners it was taken at, and is only taken again once one
+ * of them changes their images or tags, so the filter is not evaluated on every visit. Changes made on this instance
+ * are seen at once. Changes made on other instances, and the deletion of the filter, are seen when the snapshot is
+ * checked against the versions stored in the database, at most every few seconds; the filter index of an owner whose
+ * images changed elsewhere is dropped before the filter is evaluated again. Snapshots nobody visited for a while are
+ * dropped, and the snapshot of a filter is dropped on this instance as soon as the filter is deleted.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class SharedFilterSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedFilterSnapshotService.class);
+
+    private final SharedFilterRepository sharedFilterRepository;
+    private final UserRepository userRepository;
+    private final FilterExpressionEvaluator filterExpressionEvaluator;
+    private final ImageIndexService imageIndexService;
+    private final SharedCapabilityService sharedCapabilityService;
+    private final ResultSetRegistry resultSetRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final long recheckNanos;
+    private final Cache<String, Snapshot> snapshots;
+
+    /**
+     * The images a shared filter matched when the snapshot was taken.
+     */
+    public static final class Snapshot {
+
+        private final String token;
+        private final Long creatorId;
+        private final List<Long> ownerIds;
+        private final long[] dataVersions;
+        private final boolean allUsers;
+        private final Map<Long, Long> imagesVersions;
+        private final String version;
+        private final long[] imageIds;
+        private final Roaring64Bitmap members = new Roaring64Bitmap();
+        private final Map<String, ResultSetRegistry.ResultSet> orders = new ConcurrentHashMap<>();
+        private volatile long checkedAt = System.nanoTime();
+
+        private Snapshot(String token, Long creatorId, List<Long> ownerIds, long[] dataVersions, boolean allUsers,
+                         Map<Long, Long> imagesVersions, long[] imageIds) {
+            this.token = token;
+            this.creatorId = creatorId;
+            this.ownerIds = ownerIds;
+            this.dataVersions = dataVersions;
+            this.allUsers = allUsers;
+            this.imagesVersions = imagesVersions;
+            this.imageIds = imageIds;
+            long hash = 0x9E3779B97F4A7C15L ^ imageIds.length;
+            for (long imageId : imageIds) {
+                members.addLong(imageId);
+                hash = Long.rotateLeft(hash ^ imageId * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+            }
+            members.runOptimize();
+            this.version = Long.toHexString(hash);
+        }
+
+        /**
+         * Gets the token of the shared filter.
+         *
+         * @return The token.
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Gets the ID of the creator of the shared filter.
+         *
+         * @return The ID of the creator.
+         */
+        public Long getCreatorId() {
+            return creatorId;
+        }
+
+        /**
+         * Gets the IDs of the owners whose images the snapshot was taken from: the creator, or every owner if the
+         * creator is an administrator.
+         *
+         * @return The IDs of the owners.
+         */
+        public List<Long> getOwnerIds() {
+            return ownerIds;
+        }
+
+        /**
+         * Gets the version of the snapshot.
+         *
+         * @return A hash of the IDs of the images.
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Checks whether an image is in the snapshot.
+         *
+         * @param imageId The ID of the image.
+         * @return True if the image is in the snapshot.
+         */
+        public boolean contains(Long imageId) {
+            return imageId != null && members.contains(imageId);
+        }
+
+        /**
+         * Gets the IDs of the images, without copying them.
+         *
+         * @return An unmodifiable view of the IDs, in ascending order.
+         */
+        public List<Long> getImageIds() {
+            return new AbstractList<>() {
+                @Override
+                public Long get(int index) {
+                    return imageIds[index];
+                }
+
+                @Override
+                public int size() {
+                    return imageIds.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Constructs a new SharedFilterSnapshotService.
+     *
+     * @param sharedFilterRepository    The shared filter repository.
+     * @param userRepository            The user repository.
+     * @param filterExpressionEvaluator The filter expression evaluator.
+     * @param imageIndexService         The image index service.
+     * @param sharedCapabilityService   The service that verifies the capabilities of visitors.
+     * @param resultSetRegistry         The registry of the image lists kept for each session.
+     * @param transactionManager        The transaction manager.
+     * @param idleMinutes               The minutes a snapshot is kept after it was last read.
+     * @param cacheSize                 The maximum number of snapshots kept.
+     * @param recheckSeconds            The seconds a snapshot is served before it is checked against the database.
+     */
+    public SharedFilterSnapshotService(SharedFilterRepository sharedFilterRepository,
+                                       UserRepository userRepository,
+                                       FilterExpressionEvaluator filterExpressionEvaluator,
+                                       ImageIndexService imageIndexService,
+                                       SharedCapabilityService sharedCapabilityService,
+                                       ResultSetRegistry resultSetRegistry,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.shared-filter.snapshot-idle-minutes:60}") long idleMinutes,
+                                       @Value("${app.shared-filter.snapshot-cache-size:1000}") long cacheSize,
+                                       @Value("${app.shared-filter.snapshot-recheck-seconds:5}") long recheckSeconds) {
+        this.sharedFilterRepository = sharedFilterRepository;
+        this.userRepository = userRepository;
+        this.filterExpressionEvaluator = filterExpressionEvaluator;
+        this.imageIndexService = imageIndexService;
+        this.sharedCapabilityService = sharedCapabilityService;
+        this.resultSetRegistry = resultSetRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.recheckNanos = Duration.ofSeconds(Math.max(0, recheckSeconds)).toNanos();
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(Math.max(1, idleMinutes)))
+                .maximumSize(Math.max(1, cacheSize))
+                .build();
+    }
+
+    /**
+     * Gets the snapshot of a shared filter, taking it if there is none or the owners' images changed since.
+     * <p>
+     * The snapshot is taken without locking the cache, and only replaces the snapshot it was taken for. If another
+     * request installed a snapshot meanwhile, that one is served if it is still current.
+     *
+     * @param token The token of the shared filter.
+     * @return The snapshot, or null if there is no shared filter with that token or its expression is invalid.
+     */
+    public Snapshot getSnapshot(String token) {
+        Snapshot snapshot = snapshots.getIfPresent(token);
+        if (snapshot != null && isCurrent(snapshot)) {
+            return snapshot;
+        }
+        ConcurrentMap<String, Snapshot> installed = snapshots.asMap();
+        Snapshot taken = takeSnapshot(token);
+        if (taken == null) {
+            if (snapshot != null) {
+                installed.remove(token, snapshot);
+            }
+            return null;
+        }
+        if (snapshot == null ? installed.putIfAbsent(token, taken) == null : installed.replace(token, snapshot, taken)) {
+            return taken;
+        }
+        Snapshot current = installed.get(token);
+        if (current != null && isCurrent(current)) {
+            return current;
+        }
+        if (current == null) {
+            installed.putIfAbsent(token, taken);
+        } else {
+            installed.replace(token, current, taken);
+        }
+        return taken;
+    }
+
+    /**
+     * Drops the snapshot of a shared filter once the current transaction commits, because the filter was deleted.
+     *
+     * @param token The token of the shared filter.
+     */
+    public void evict(String token) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            snapshots.invalidate(token);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                snapshots.invalidate(token);
+            }
+        });
+    }
+
+    /**
+     * Gets the snapshot a visitor was granted by the capability of their request.
+     *
+     * @param request The HTTP request.
+     * @return The snapshot, or null if the request has no valid capability or the snapshot it was issued for changed.
+     */
+    public Snapshot findGrantedSnapshot(HttpServletRequest request) {
+        return findGrantedSnapshot(sharedCapabilityService.find(request));
+    }
+
+    /**
+     * Gets the snapshot a capability grants.
+     *
+     * @param capability The capability, or null.
+     * @return The snapshot, or null if there is no capability or the snapshot it was issued for changed.
+     */
+    public Snapshot findGrantedSnapshot(SharedCapabilityService.Capability capability) {
+        if (capability == null) {
+            return null;
+        }
+        Snapshot snapshot = getSnapshot(capability.token());
+        return snapshot != null && snapshot.getVersion().equals(capability.version()) ? snapshot : null;
+    }
+
+    /**
+     * Checks whether an anonymous visitor may see an image: it is in the snapshot granted by their capability, or in
+     * the shared report they opened in their session.
+     *
+     * @param request The HTTP request.
+     * @param imageId The ID of the image.
+     * @return True if the image was shared with the visitor.
+     */
+    public boolean isSharedWithVisitor(HttpServletRequest request, Long imageId) {
+        Snapshot snapshot = findGrantedSnapshot(request);
+        if (snapshot != null && snapshot.contains(imageId)) {
+            return true;
+        }
+        ResultSetRegistry.ResultSet sharedImages = resultSetRegistry.find(request, ResultSetRegistry.SHARED);
+        return sharedImages != null && sharedImages.contains(imageId);
+    }
+
+    /**
+     * Gets the images of a snapshot in the order of the gallery. Each order is computed once per snapshot.
+     *
+     * @param snapshot  The snapshot.
+     * @param sort      The field to sort by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @return The sorted IDs of the images.
+     */
+    public ResultSetRegistry.ResultSet getOrder(Snapshot snapshot, String sort, String direction) {
+        ImageSortService.SortField field = ImageSortService.SortField.of(sort);
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        return snapshot.orders.computeIfAbsent(field.name() + (descending ? ":desc" : ":asc"),
+                key -> ResultSetRegistry.ResultSet.of(imageIndexService.sortImageIds(snapshot.getOwnerIds(),
+                        snapshot.getImageIds(), sort, direction)));
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        for (int i = 0; i < snapshot.ownerIds.size(); i++) {
+            if (snapshot.dataVersions[i] != imageIndexService.getDataVersion(snapshot.ownerIds.get(i))) {
+                return false;
+            }
+        }
+        long now = System.nanoTime();
+        if (now - snapshot.checkedAt < recheckNanos) {
+            return true;
+        }
+        if (!findImagesVersions(snapshot.allUsers, snapshot.creatorId).equals(snapshot.imagesVersions)
+                || !sharedFilterRepository.existsByToken(snapshot.token)) {
+            return false;
+        }
+        snapshot.checkedAt = now;
+        return true;
+    }
+
+    /**
+     * Reads the versions of the images of the creator from the database, or of every user if the creator is an
+     * administrator, so an owner's first image is noticed too.
+     */
+    private Map<Long, Long> findImagesVersions(boolean allUsers, Long creatorId) {
+        List<Object[]> rows = allUsers ? userRepository.findImagesVersions()
+                : userRepository.findImagesVersions(List.of(creatorId));
+        Map<Long, Long> imagesVersions = new HashMap<>();
+        for (Object[] row : rows) {
+            imagesVersions.put((Long) row[0], (Long) row[1]);
+        }
+        return imagesVersions;
+    }
+
+    private Snapshot takeSnapshot(String token) {
+        return transactionTemplate.execute(status -> sharedFilterRepository.findByToken(token).map(sharedFilter -> {
+            Filter filter = sharedFilter.getFilter();
+            User creator = filter.getUser();
+            // Read before the images, so a change made while the filter is evaluated takes the snapshot again.
+            Map<Long, Long> imagesVersions = findImagesVersions(creator.isAdmin(), creator.getId());
+            imagesVersions.forEach(imageIndexService::checkImagesVersion);
+            List<Long> ownerIds = List.copyOf(imageIndexService.getReadableOwnerIds(creator));
+            long[] dataVersions = new long[ownerIds.size()];
+            for (int i = 0; i < dataVersions.length; i++) {
+                dataVersions[i] = imageIndexService.getDataVersion(ownerIds.get(i));
+            }
+            try {
+                List<Long> matchingImageIds = imageIndexService.findMatchingImageIds(creator,
+                        filterExpressionEvaluator.compile(filterExpressionEvaluator.parseExpressionJson(filter.getExpression())));
+                long[] imageIds = matchingImageIds.stream().mapToLong(Long::longValue).toArray();
+                Arrays.sort(imageIds);
+                return new Snapshot(token, creator.getId(), ownerIds, dataVersions, creator.isAdmin(), imagesVersions, imageIds);
+            } catch (JsonProcessingException e) {
+                logger.warn("Could not parse the expression of shared filter {}: {}", token, e.getMessage());
+                return null;
+            }
+        }).orElse(null));
+    }
+}
@@ -0,0 +1,611 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The filter index of a single user's images.
+ * <p>
+ * Every image is given a dense ordinal when it is added. Tags are indexed as compressed bitmaps of ordinals, so
+ * tag predicates and the AND, OR and NOT operators are evaluated as bitmap operations. The other attributes are
+ * stored by ordinal in primitive columns: dates as epoch seconds, ratings as ints and file names as shared,
+ * case-folded sort keys, with sentinels for missing values. Date and rating predicates and sorts are plain loops
+ * over these columns, restricted to the images that can still change the result. Ordinals of removed images are
+ * not reused, and the index is rebuilt from the database when it is evicted.
+ * <p>
+ * For every sort field, the index also keeps the ordinals of its images in ascending order, images without a value
+ * last and ties ordered by ID. Each order is sorted once, the first time the index is sorted by its field, and then
+ * kept sorted as images change by moving each changed image to its new position, so sorting a set of images is a single pass over
+ * an order. The descending order is read from the same array, walking the runs of equal values backwards.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+final class UserImageIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The sort key of an image without a value.
+     */
+    static final long NO_VALUE = Long.MIN_VALUE;
+    private static final long NO_DATE = NO_VALUE;
+    private static final int NO_RATING = Integer.MIN_VALUE;
+    private static final ImageSortService.SortField[] SORT_FIELDS = ImageSortService.SortField.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> tagImages = new HashMap<>();
+    private final Map<String, Long> tagIds = new HashMap<>();
+    private final Map<String, String> fileNameKeys = new HashMap<>();
+
+    private int size;
+    private long[] imageIds = new long[INITIAL_CAPACITY];
+    private long[][] imageTagIds = new long[INITIAL_CAPACITY][];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] modifiedAt = new long[INITIAL_CAPACITY];
+    private long[] importedAt = new long[INITIAL_CAPACITY];
+    private int[] ratings = new int[INITIAL_CAPACITY];
+    private String[] fileNames = new String[INITIAL_CAPACITY];
+    private final int[][] sortOrders = new int[SORT_FIELDS.length][];
+
+    /**
+     * The IDs and sort keys of a set of images, in order.
+     *
+     * @param imageIds The IDs of the images.
+     * @param keys     The numeric sort keys, or null if the images are sorted by file name.
+     * @param names    The file name sort keys, or null if the images are sorted by a numeric field.
+     * @param size     The number of images.
+     */
+    record SortedRun(long[] imageIds, long[] keys, String[] names, int size) {
+
+        /**
+         * Gets the IDs of the images.
+         *
+         * @return The IDs, in order.
+         */
+        List<Long> toImageIds() {
+            List<Long> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(imageIds[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Compares an image of a run with an image of another run sorted by the same field.
+         *
+         * @param a          The first run.
+         * @param i          The position of the image in the first run.
+         * @param b          The second run.
+         * @param j          The position of the image in the second run.
+         * @param descending Whether the runs are in descending order.
+         * @return A negative number, zero or a positive number as the first image sorts before, with or after the
+         * second one.
+         */
+        static int compare(SortedRun a, int i, SortedRun b, int j, boolean descending) {
+            int result = a.names != null
+                    ? compareNames(a.names[i], b.names[j], descending)
+                    : compareValues(a.keys[i], b.keys[j], descending);
+            return result != 0 ? result : Long.compare(a.imageIds[i], b.imageIds[j]);
+        }
+    }
+
+    /**
+     * Adds an image to the index, or updates it if it is already indexed.
+     *
+     * @param image The indexed fields of the image.
+     */
+    void put(ImageIndexService.IndexedImage image) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(image.imageId());
+            int[] positions = null;
+            if (ordinal == null) {
+                ordinal = append(image.imageId());
+            } else {
+                positions = findSortPositions(ordinal);
+            }
+            createdAt[ordinal] = toColumnValue(image.createdAt());
+            modifiedAt[ordinal] = toColumnValue(image.modifiedAt());
+            importedAt[ordinal] = toColumnValue(image.importedAt());
+            ratings[ordinal] = image.rating() != null ? image.rating() : NO_RATING;
+            fileNames[ordinal] = image.originalFileName() != null
+                    ? fileNameKeys.computeIfAbsent(ImageSortService.getFileNameSortKey(image.originalFileName()), key -> key)
+                    : null;
+            if (image.tags() != null) {
+                setTags(ordinal, image.tags());
+            }
+            if (positions == null) {
+                insertIntoSortOrders(ordinal);
+            } else {
+                moveInSortOrders(ordinal, positions);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an image from the index.
+     *
+     * @param imageId The ID of the image.
+     */
+    void remove(Long imageId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(imageId);
+            if (ordinal == null) {
+                return;
+            }
+            removeFromSortOrders(findSortPositions(ordinal));
+            ordinals.remove(imageId);
+            live.remove(ordinal);
+            setTags(ordinal, Map.of());
+            fileNames[ordinal] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether an image is in the index.
+     *
+     * @param imageId The ID of the image.
+     * @return True if the image is indexed.
+     */
+    boolean contains(Long imageId) {
+        lock.readLock().lock();
+        try {
+            return ordinals.containsKey(imageId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the IDs of the indexed images to a list.
+     *
+     * @param candidateIds The IDs to restrict the result to, or null for all images.
+     * @param result       The list to add the IDs to.
+     */
+    void collectImageIds(Collection<Long> candidateIds, List<Long> result) {
+        lock.readLock().lock();
+        try {
+            addImageIds(getCandidates(candidateIds), result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the IDs of the indexed images that match a filter to a list.
+     *
+     * @param filter       The compiled filter.
+     * @param candidateIds The IDs to restrict the result to, or null for all images.
+     * @param result       The list to add the IDs to.
+     */
+    void collectMatching(CompiledFilter filter, Collection<Long> candidateIds, List<Long> result) {
+        lock.readLock().lock();
+        try {
+            addImageIds(evaluate(filter.getRoot(), getCandidates(candidateIds)), result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether an indexed image matches a filter.
+     *
+     * @param filter  The compiled filter.
+     * @param imageId The ID of the image.
+     * @return True if the image is indexed and matches.
+     */
+    boolean matches(CompiledFilter filter, Long imageId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(imageId);
+            return ordinal != null && !evaluate(filter.getRoot(), RoaringBitmap.bitmapOf(ordinal)).isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sorts the indexed images, without comparing them.
+     *
+     * @param field        The field to sort by.
+     * @param descending   Whether the values are sorted in descending order. Images without a value are always
+     *                     last, and images with the same value are always ordered by ID.
+     * @param candidateIds The IDs to restrict the result to, or null for all images.
+     * @return The sorted images.
+     */
+    SortedRun sort(ImageSortService.SortField field, boolean descending, Collection<Long> candidateIds) {
+        ensureSortOrder(field);
+        lock.readLock().lock();
+        try {
+            int[] order = sortOrders[field.ordinal()];
+            int sortedSize = ordinals.size();
+            RoaringBitmap candidates = candidateIds != null ? getCandidates(candidateIds) : null;
+            int[] selected = new int[candidates != null ? candidates.getCardinality() : sortedSize];
+            int count = 0;
+            if (!descending) {
+                for (int i = 0; i < sortedSize; i++) {
+                    if (candidates == null || candidates.contains(order[i])) {
+                        selected[count++] = order[i];
+                    }
+                }
+            } else {
+                int withoutValue = findFirstWithoutValue(field, order, sortedSize);
+                int end = withoutValue;
+                while (end > 0) {
+                    int start = end - 1;
+                    while (start > 0 && compareKeys(field, order[start - 1], order[end - 1]) == 0) {
+                        start--;
+                    }
+                    for (int i = start; i < end; i++) {
+                        if (candidates == null || candidates.contains(order[i])) {
+                            selected[count++] = order[i];
+                        }
+                    }
+                    end = start;
+                }
+                for (int i = withoutValue; i < sortedSize; i++) {
+                    if (candidates == null || candidates.contains(order[i])) {
+                        selected[count++] = order[i];
+                    }
+                }
+            }
+            return toSortedRun(field, selected, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Evaluates a node over a set of candidates. The result is always a subset of the candidates, and a NOT only
+     * has to evaluate its operand over the same candidates; an AND evaluates its right side only over the images
+     * that matched the left one, and an OR only over those that did not.
+     */
+    private RoaringBitmap evaluate(CompiledFilter.Node node, RoaringBitmap candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        if (node instanceof CompiledFilter.Constant constant) {
+            return constant.value() ? candidates : new RoaringBitmap();
+        }
+        if (node instanceof CompiledFilter.HasTag hasTag) {
+            Long tagId = tagIds.get(hasTag.name());
+            RoaringBitmap images = tagId != null ? tagImages.get(tagId) : null;
+            return images != null ? RoaringBitmap.and(candidates, images) : new RoaringBitmap();
+        }
+        if (node instanceof CompiledFilter.Not not) {
+            return RoaringBitmap.andNot(candidates, evaluate(not.operand(), candidates));
+        }
+        if (node instanceof CompiledFilter.And and) {
+            return evaluate(and.right(), evaluate(and.left(), candidates));
+        }
+        if (node instanceof CompiledFilter.Or or) {
+            RoaringBitmap left = evaluate(or.left(), candidates);
+            return RoaringBitmap.or(left, evaluate(or.right(), RoaringBitmap.andNot(candidates, left)));
+        }
+        if (node instanceof CompiledFilter.DateMatch dateMatch) {
+            long[] values = switch (dateMatch.field()) {
+                case CREATED -> createdAt;
+                case MODIFIED -> modifiedAt;
+                case IMPORTED -> importedAt;
+            };
+            RoaringBitmap result = new RoaringBitmap();
+            IntIterator iterator = candidates.getIntIterator();
+            while (iterator.hasNext()) {
+                int ordinal = iterator.next();
+                if (values[ordinal] != NO_DATE && dateMatch.test(values[ordinal])) {
+                    result.add(ordinal);
+                }
+            }
+            return result;
+        }
+        if (node instanceof CompiledFilter.RatingMatch ratingMatch) {
+            RoaringBitmap result = new RoaringBitmap();
+            IntIterator iterator = candidates.getIntIterator();
+            while (iterator.hasNext()) {
+                int ordinal = iterator.next();
+                if (ratings[ordinal] != NO_RATING && ratingMatch.test(ratings[ordinal])) {
+                    result.add(ordinal);
+                }
+            }
+            return result;
+        }
+        throw new IllegalStateException("Unsupported filter node: " + node);
+    }
+
+    private RoaringBitmap getCandidates(Collection<Long> candidateIds) {
+        if (candidateIds == null) {
+            return live;
+        }
+        RoaringBitmap candidates = new RoaringBitmap();
+        for (Long imageId : candidateIds) {
+            Integer ordinal = ordinals.get(imageId);
+            if (ordinal != null) {
+                candidates.add(ordinal);
+            }
+        }
+        return candidates;
+    }
+
+    private void addImageIds(RoaringBitmap ordinalSet, List<Long> result) {
+        IntIterator iterator = ordinalSet.getIntIterator();
+        while (iterator.hasNext()) {
+            result.add(imageIds[iterator.next()]);
+        }
+    }
+
+    private int append(Long imageId) {
+        if (size == imageIds.length) {
+            int capacity = size * 2;
+            imageIds = Arrays.copyOf(imageIds, capacity);
+            imageTagIds = Arrays.copyOf(imageTagIds, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            modifiedAt = Arrays.copyOf(modifiedAt, capacity);
+            importedAt = Arrays.copyOf(importedAt, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            fileNames = Arrays.copyOf(fileNames, capacity);
+        }
+        int ordinal = size++;
+        imageIds[ordinal] = imageId;
+        ordinals.put(imageId, ordinal);
+        live.add(ordinal);
+        return ordinal;
+    }
+
+    private SortedRun toSortedRun(ImageSortService.SortField field, int[] selected, int count) {
+        long[] ids = new long[count];
+        long[] keys = field != ImageSortService.SortField.FILENAME ? new long[count] : null;
+        String[] names = field == ImageSortService.SortField.FILENAME ? new String[count] : null;
+        for (int i = 0; i < count; i++) {
+            int ordinal = selected[i];
+            ids[i] = imageIds[ordinal];
+            if (keys != null) {
+                keys[i] = getSortKey(field, ordinal);
+            } else {
+                names[i] = fileNames[ordinal];
+            }
+        }
+        return new SortedRun(ids, keys, names, count);
+    }
+
+    /**
+     * Sorts the order of a field, the first time the index is sorted by it.
+     */
+    private void ensureSortOrder(ImageSortService.SortField field) {
+        lock.readLock().lock();
+        try {
+            if (sortOrders[field.ordinal()] != null) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (sortOrders[field.ordinal()] != null) {
+                return;
+            }
+            int[] liveOrdinals = live.toArray();
+            int[] order = Arrays.copyOf(liveOrdinals, Math.max(INITIAL_CAPACITY, liveOrdinals.length));
+            mergeSort(field, order, new int[liveOrdinals.length], 0, liveOrdinals.length);
+            sortOrders[field.ordinal()] = order;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the positions of an indexed image in the sorted orders.
+     */
+    private int[] findSortPositions(int ordinal) {
+        int[] positions = new int[SORT_FIELDS.length];
+        for (ImageSortService.SortField field : SORT_FIELDS) {
+            int[] order = sortOrders[field.ordinal()];
+            positions[field.ordinal()] = order != null ? lowerBound(field, order, ordinals.size(), ordinal) : -1;
+        }
+        return positions;
+    }
+
+    /**
+     * Inserts an image that was just appended into the sorted orders.
+     */
+    private void insertIntoSortOrders(int ordinal) {
+        int size = ordinals.size() - 1;
+        for (ImageSortService.SortField field : SORT_FIELDS) {
+            int[] order = sortOrders[field.ordinal()];
+            if (order != null) {
+                sortOrders[field.ordinal()] = insertAt(order, size, lowerBound(field, order, size, ordinal), ordinal);
+            }
+        }
+    }
+
+    /**
+     * Moves a changed image to its new position in every sorted order where it is no longer between its neighbours.
+     */
+    private void moveInSortOrders(int ordinal, int[] positions) {
+        int size = ordinals.size();
+        for (ImageSortService.SortField field : SORT_FIELDS) {
+            int[] order = sortOrders[field.ordinal()];
+            int position = positions[field.ordinal()];
+            if (order == null) {
+                continue;
+            }
+            boolean inOrder = (position == 0 || compareAscending(field, order[position - 1], ordinal) < 0)
+                    && (position == size - 1 || compareAscending(field, ordinal, order[position + 1]) < 0);
+            if (!inOrder) {
+                removeAt(order, size, position);
+                insertAt(order, size - 1, lowerBound(field, order, size - 1, ordinal), ordinal);
+            }
+        }
+    }
+
+    /**
+     * Removes an image that is still indexed from the sorted orders.
+     */
+    private void removeFromSortOrders(int[] positions) {
+        int size = ordinals.size();
+        for (ImageSortService.SortField field : SORT_FIELDS) {
+            int[] order = sortOrders[field.ordinal()];
+            if (order != null) {
+                removeAt(order, size, positions[field.ordinal()]);
+            }
+        }
+    }
+
+    private static int[] insertAt(int[] order, int size, int position, int ordinal) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = ordinal;
+        return order;
+    }
+
+    private static void removeAt(int[] order, int size, int position) {
+        System.arraycopy(order, position + 1, order, position, size - position - 1);
+    }
+
+    /**
+     * Finds the position of an image in an order, or the position it would be inserted at.
+     */
+    private int lowerBound(ImageSortService.SortField field, int[] order, int size, int ordinal) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareAscending(field, order[middle], ordinal) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int findFirstWithoutValue(ImageSortService.SortField field, int[] order, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hasSortValue(field, order[middle])) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void mergeSort(ImageSortService.SortField field, int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(field, order, buffer, from, middle);
+        mergeSort(field, order, buffer, middle, to);
+        if (compareAscending(field, order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareAscending(field, buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compareAscending(ImageSortService.SortField field, int a, int b) {
+        int result = compareKeys(field, a, b);
+        return result != 0 ? result : Long.compare(imageIds[a], imageIds[b]);
+    }
+
+    private int compareKeys(ImageSortService.SortField field, int a, int b) {
+        return field == ImageSortService.SortField.FILENAME
+                ? compareNames(fileNames[a], fileNames[b], false)
+                : compareValues(getSortKey(field, a), getSortKey(field, b), false);
+    }
+
+    private boolean hasSortValue(ImageSortService.SortField field, int ordinal) {
+        return field == ImageSortService.SortField.FILENAME ? fileNames[ordinal] != null : getSortKey(field, ordinal) != NO_VALUE;
+    }
+
+    private long getSortKey(ImageSortService.SortField field, int ordinal) {
+        return switch (field) {
+            case CREATED -> createdAt[ordinal];
+            case MODIFIED -> modifiedAt[ordinal];
+            case IMPORTED -> importedAt[ordinal];
+            case RATING -> ratings[ordinal] != NO_RATING ? ratings[ordinal] : NO_VALUE;
+            case FILENAME -> throw new IllegalArgumentException("File names have no numeric sort key");
+        };
+    }
+
+    private static int compareValues(long a, long b, boolean descending) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == NO_VALUE) {
+            return 1;
+        }
+        if (b == NO_VALUE) {
+            return -1;
+        }
+        return descending ? Long.compare(b, a) : Long.compare(a, b);
+    }
+
+    private static int compareNames(String a, String b, boolean descending) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return descending ? b.compareTo(a) : a.compareTo(b);
+    }
+
+    private static long toColumnValue(LocalDateTime value) {
+        return value != null ? CompiledFilter.toEpochSecond(value) : NO_DATE;
+    }
+
+    private void setTags(int ordinal, Map<Long, String> tags) {
+        long[] previous = imageTagIds[ordinal];
+        if (previous != null) {
+            for (long tagId : previous) {
+                if (!tags.containsKey(tagId)) {
+                    RoaringBitmap images = tagImages.get(tagId);
+                    if (images != null) {
+                        images.remove(ordinal);
+                        if (images.isEmpty()) {
+                            tagImages.remove(tagId);
+                        }
+                    }
+                }
+            }
+        }
+        long[] current = new long[tags.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> tag : tags.entrySet()) {
+            current[i++] = tag.getKey();
+            tagIds.put(tag.getValue(), tag.getKey());
+            tagImages.computeIfAbsent(tag.getKey(), id -> new RoaringBitmap()).add(ordinal);
+        }
+        imageTagIds[ordinal] = current.length > 0 ? current : null;
+    }
+}
@@ -0,0 +1,272 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.service.FileStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service for the HTTP caching of image files.
+ * <p>
+ * Validators are derived from the modification time and size of a file, so they can be checked with a single
+ * file system call. URLs carrying the current version of a file in their {@code v} parameter are cached as
+ * immutable; other URLs must be revalidated. The location of every thumbnail served is remembered by image ID,
+ * so conditional thumbnail requests can be answered without querying the database.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class HttpCachingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpCachingService.class);
+
+    private final FileStorageService fileStorageService;
+    private final long immutableMaxAge;
+    private final Map<ServedFile, ServedLocation> servedThumbnails;
+
+    /**
+     * The validators of a file.
+     *
+     * @param eTag         The strong entity tag, quoted.
+     * @param lastModified The modification time in milliseconds.
+     * @param size         The size in bytes.
+     */
+    public record Validators(String eTag, long lastModified, long size) {
+
+        /**
+         * Creates the validators of a file.
+         *
+         * @param lastModified The modification time in milliseconds.
+         * @param size         The size in bytes.
+         * @return The validators.
+         */
+        public static Validators of(long lastModified, long size) {
+            return new Validators("\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"", lastModified, size);
+        }
+
+        /**
+         * Gets the version of the file, used in the {@code v} parameter of versioned URLs.
+         *
+         * @return The entity tag without quotes.
+         */
+        public String version() {
+            return eTag.substring(1, eTag.length() - 1);
+        }
+    }
+
+    private record ServedFile(Long imageId, int size) {
+    }
+
+    private record ServedLocation(Path file, Path thumbnail) {
+    }
+
+    /**
+     * Constructs a new HttpCachingService.
+     *
+     * @param fileStorageService The file storage service.
+     * @param immutableMaxAge    The number of seconds versioned URLs may be cached for.
+     * @param locationCacheSize  The number of thumbnail locations remembered for conditional requests.
+     */
+    public HttpCachingService(FileStorageService fileStorageService,
+                              @Value("${image.http.immutable-max-age-seconds:31536000}") long immutableMaxAge,
+                              @Value("${image.http.location-cache-size:10000}") int locationCacheSize) {
+        this.fileStorageService = fileStorageService;
+        this.immutableMaxAge = immutableMaxAge;
+        int maxEntries = Math.max(1, locationCacheSize);
+        this.servedThumbnails = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ServedFile, ServedLocation> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Reads the validators of a file resource. Thumbnails served from the cache already carry them.
+     *
+     * @param resource The resource.
+     * @return The validators.
+     * @throws IOException if the file does not exist or cannot be read.
+     */
+    public Validators getValidators(Resource resource) throws IOException {
+        if (resource instanceof ThumbnailCache.CachedThumbnailResource cachedThumbnail) {
+            return cachedThumbnail.getValidators();
+        }
+        return getValidators(resource.getFile().toPath());
+    }
+
+    /**
+     * Gets the version of an image's thumbnail, which also versions its renditions.
+     *
+     * @param image The image.
+     * @return The version, or null if the thumbnail does not exist.
+     */
+    public String getThumbnailVersion(Image image) {
+        return getThumbnailVersion(image.getThumbnailFileName(), image.getUser().getId());
+    }
+
+    /**
+     * Gets the version of a thumbnail, which also versions the renditions of its image.
+     *
+     * @param thumbnailFileName The file name of the thumbnail.
+     * @param userId            The ID of the user who owns the image.
+     * @return The version, or null if the thumbnail does not exist.
+     */
+    public String getThumbnailVersion(String thumbnailFileName, Long userId) {
+        try {
+            return getValidators(fileStorageService.loadThumbnailAsResource(thumbnailFileName, userId)).version();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the version of an image's original file.
+     *
+     * @param image The image.
+     * @return The version, or null if the original does not exist.
+     */
+    public String getOriginalVersion(Image image) {
+        try {
+            return getValidators(fileStorageService.loadOriginalAsResource(image.getOriginalFileName(), image.getUser().getId())).version();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers where a thumbnail or a thumbnail-sized rendition of an image is stored.
+     *
+     * @param imageId   The ID of the image.
+     * @param size      The rendition size, or 0 for the thumbnail.
+     * @param resource  The file that was served.
+     * @param thumbnail The thumbnail of the image, which versions the file.
+     */
+    public void rememberThumbnail(Long imageId, int size, Resource resource, Resource thumbnail) {
+        try {
+            servedThumbnails.put(new ServedFile(imageId, size), new ServedLocation(resource.getFile().toPath(), thumbnail.getFile().toPath()));
+        } catch (IOException e) {
+            logger.debug("Thumbnail of image {} is not a file and cannot be remembered: {}", imageId, e.getMessage());
+        }
+    }
+
+    /**
+     * Answers a conditional request for a thumbnail from the remembered location, without loading the image.
+     *
+     * @param imageId          The ID of the image.
+     * @param size             The rendition size, or 0 for the thumbnail.
+     * @param requestedVersion The {@code v} parameter of the request, if any.
+     * @param webRequest       The current request.
+     * @return A 304 response if the client's copy is current, or null if the request must be served normally.
+     */
+    public ResponseEntity<Resource> checkThumbnailNotModified(Long imageId, int size, String requestedVersion, WebRequest webRequest) {
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) == null && webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) == null) {
+            return null;
+        }
+        ServedLocation location = servedThumbnails.get(new ServedFile(imageId, size));
+        if (location == null) {
+            return null;
+        }
+        Validators validators;
+        String currentVersion;
+        try {
+            validators = getValidators(location.file());
+            currentVersion = location.thumbnail().equals(location.file()) ? validators.version() : getValidators(location.thumbnail()).version();
+        } catch (IOException e) {
+            servedThumbnails.remove(new ServedFile(imageId, size));
+            return null;
+        }
+        if (!webRequest.checkNotModified(validators.eTag(), validators.lastModified())) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(validators.eTag())
+                .lastModified(validators.lastModified())
+                .cacheControl(getCacheControl(currentVersion, requestedVersion))
+                .build();
+    }
+
+    /**
+     * Builds the response for a file, with its validators and cache headers. Conditional requests and byte ranges
+     * are then handled by Spring MVC; an {@code If-Range} that no longer matches disables the range.
+     *
+     * @param resource         The file to serve.
+     * @param validators       The validators of the file.
+     * @param fileName         The file name used in the {@code Content-Disposition} header.
+     * @param currentVersion   The current version of the URL, or null if the URL is not versioned.
+     * @param requestedVersion The {@code v} parameter of the request, if any.
+     * @param webRequest       The current request.
+     * @return The response.
+     * @throws IOException if the file cannot be opened.
+     */
+    public ResponseEntity<Resource> serve(Resource resource, Validators validators, String fileName,
+                                          String currentVersion, String requestedVersion, WebRequest webRequest) throws IOException {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(validators.eTag())
+                .lastModified(validators.lastModified())
+                .cacheControl(getCacheControl(currentVersion, requestedVersion))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+
+        if (webRequest.getHeader(HttpHeaders.RANGE) != null && !isIfRangeSatisfied(webRequest.getHeader(HttpHeaders.IF_RANGE), validators)) {
+            // Spring MVC only applies ranges to resources it can reopen, so a stream is served whole.
+            return builder.contentLength(validators.size())
+                    .contentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                    .body(new InputStreamResource(resource.getInputStream()));
+        }
+        return builder.body(resource);
+    }
+
+    private CacheControl getCacheControl(String currentVersion, String requestedVersion) {
+        if (currentVersion != null && currentVersion.equals(requestedVersion)) {
+            return CacheControl.maxAge(immutableMaxAge, TimeUnit.SECONDS).cachePrivate().immutable();
+        }
+        return CacheControl.noCache().cachePrivate();
+    }
+
+    private static boolean isIfRangeSatisfied(String ifRange, Validators validators) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(validators.eTag());
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return validators.lastModified() / 1000 * 1000 <= date;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static Validators getValidators(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return Validators.of(attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+}
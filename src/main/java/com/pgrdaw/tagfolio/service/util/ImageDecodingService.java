@@ -0,0 +1,201 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A service for decoding images close to the size they are needed at.
+ * <p>
+ * Images much larger than the requested size are decoded with source subsampling, so only a fraction
+ * of their pixels is ever held in memory, and then scaled down with a high-quality filter. Every decoded
+ * image holds a share of a global pixel budget until it is closed, which bounds the memory used by
+ * concurrent decodes.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ImageDecodingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDecodingService.class);
+
+    private final int maxPixels;
+    private final Semaphore pixelBudget;
+
+    /**
+     * A decoded image and the share of the pixel budget it holds. Closing it returns the share.
+     */
+    public static class DecodedImage implements Closeable {
+        private final Semaphore pixelBudget;
+        private BufferedImage image;
+        private int permits;
+
+        private DecodedImage(BufferedImage image, Semaphore pixelBudget, int permits) {
+            this.image = image;
+            this.pixelBudget = pixelBudget;
+            this.permits = permits;
+        }
+
+        /**
+         * Gets the decoded image.
+         *
+         * @return The decoded image.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        @Override
+        public synchronized void close() {
+            image = null;
+            if (permits > 0) {
+                pixelBudget.release(permits);
+                permits = 0;
+            }
+        }
+    }
+
+    /**
+     * Constructs a new ImageDecodingService.
+     *
+     * @param maxPixels The number of decoded pixels that may be held in memory at the same time.
+     */
+    public ImageDecodingService(@Value("${image.decode.max-pixels:100000000}") int maxPixels) {
+        this.maxPixels = Math.max(1, maxPixels);
+        this.pixelBudget = new Semaphore(this.maxPixels, true);
+    }
+
+    /**
+     * Decodes an image file, subsampling it when it is more than twice as large as needed.
+     * Blocks while the pixel budget is exhausted.
+     *
+     * @param file         The image file.
+     * @param maxDimension The largest width or height the caller needs, or 0 to decode at full size.
+     * @return The decoded image, or null if no reader supports the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public DecodedImage decode(Path file, int maxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                throw new IOException("Could not open image file: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = subsamplingFactor(width, height, maxDimension);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+
+                long decodedPixels = (long) ceilDiv(width, subsampling) * ceilDiv(height, subsampling);
+                int permits = (int) Math.min(decodedPixels, maxPixels);
+                acquire(permits);
+                try {
+                    BufferedImage image = reader.read(0, param);
+                    if (subsampling > 1) {
+                        logger.debug("Decoded {} at 1/{} scale ({}x{} -> {}x{}).", file.getFileName(), subsampling, width, height, image.getWidth(), image.getHeight());
+                    }
+                    return new DecodedImage(image, pixelBudget, permits);
+                } catch (IOException | RuntimeException e) {
+                    pixelBudget.release(permits);
+                    throw e;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales an image so that its largest side is exactly {@code maxDimension}, keeping its aspect ratio.
+     * Large reductions are done in successive halving steps to avoid the aliasing of a single bilinear pass.
+     *
+     * @param source       The image to scale.
+     * @param maxDimension The size of the largest side of the result.
+     * @return The scaled image, as RGB.
+     */
+    public BufferedImage scaleToFit(BufferedImage source, int maxDimension) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        int targetWidth, targetHeight;
+        if (sourceWidth > sourceHeight) {
+            targetWidth = maxDimension;
+            targetHeight = Math.max(1, (int) (sourceHeight * ((double) maxDimension / sourceWidth)));
+        } else {
+            targetHeight = maxDimension;
+            targetWidth = Math.max(1, (int) (sourceWidth * ((double) maxDimension / sourceHeight)));
+        }
+
+        BufferedImage current = source;
+        int currentWidth = sourceWidth;
+        int currentHeight = sourceHeight;
+        do {
+            int nextWidth = currentWidth / 2 >= targetWidth ? currentWidth / 2 : targetWidth;
+            int nextHeight = currentHeight / 2 >= targetHeight ? currentHeight / 2 : targetHeight;
+            boolean last = nextWidth == targetWidth && nextHeight == targetHeight;
+            current = draw(current, nextWidth, nextHeight, last ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static int subsamplingFactor(int width, int height, int maxDimension) {
+        if (maxDimension <= 0) {
+            return 1;
+        }
+        // Keep at least twice the target size so the final downscale still has detail to filter.
+        return Math.max(1, Math.max(width, height) / (maxDimension * 2));
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private void acquire(int permits) throws IOException {
+        try {
+            pixelBudget.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for image decode memory.");
+        }
+    }
+}
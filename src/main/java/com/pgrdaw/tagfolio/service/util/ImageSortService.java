@@ -5,7 +5,6 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
 
@@ -19,6 +18,32 @@ import java.util.function.Function;
 public class ImageSortService {
 
     private final Map<String, String> sortableFields;
+
+    /**
+     * A field images can be sorted by.
+     */
+    public enum SortField {
+        FILENAME, CREATED, MODIFIED, RATING, IMPORTED;
+
+        /**
+         * Gets the field for a sort parameter. Unknown fields sort by import date, like {@link #getImageComparator}.
+         *
+         * @param sort The sort parameter, such as {@code "Created"}.
+         * @return The field.
+         */
+        public static SortField of(String sort) {
+            if (sort == null) {
+                return IMPORTED;
+            }
+            return switch (sort) {
+                case "Filename" -> FILENAME;
+                case "Created" -> CREATED;
+                case "Modified" -> MODIFIED;
+                case "Rating" -> RATING;
+                default -> IMPORTED;
+            };
+        }
+    }
     private Map<String, Function<Image, ? extends Comparable>> fieldExtractors;
 
     /**
@@ -62,37 +87,36 @@ public class ImageSortService {
     }
 
     /**
-     * Gets a comparator for sorting images.
+     * Gets a comparator for sorting images. Images without a value for the field sort last in both directions.
      *
      * @param sort      The field to sort by.
      * @param direction The sort direction ("asc" or "desc").
      * @return A comparator for sorting images.
      */
-    @SuppressWarnings("unchecked")
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public Comparator<Image> getImageComparator(String sort, String direction) {
         Function<Image, ? extends Comparable> extractor = fieldExtractors.getOrDefault(sort, fieldExtractors.get("default"));
+        Comparator valueComparator = "Filename".equals(sort)
+                ? Comparator.comparing(ImageSortService::getFileNameSortKey) : Comparator.naturalOrder();
+        if ("desc".equalsIgnoreCase(direction)) {
+            valueComparator = valueComparator.reversed();
+        }
+        return Comparator.comparing(extractor, Comparator.nullsLast(valueComparator));
+    }
 
-        return (img1, img2) -> {
-            Comparable val1 = extractor.apply(img1);
-            Comparable val2 = extractor.apply(img2);
-
-            Comparator<Comparable> nonNullValueComparator = (v1, v2) -> {
-                if (v1 instanceof String) {
-                    return ((String) v1).compareToIgnoreCase((String) v2);
-                } else if (v1 instanceof LocalDateTime) {
-                    return v1.compareTo((LocalDateTime) v2);
-                } else if (v1 instanceof Integer) {
-                    return v1.compareTo((Integer) v2);
-                } else {
-                    return v1.compareTo(v2);
-                }
-            };
-
-            Comparator<Comparable> effectiveNonNullComparator = "desc".equalsIgnoreCase(direction) ?
-                    nonNullValueComparator.reversed() :
-                    nonNullValueComparator;
-
-            return Comparator.nullsLast(effectiveNonNullComparator).compare(val1, val2);
-        };
+    /**
+     * Gets the key a file name is sorted by: the file name with each character mapped to lower case, as
+     * {@code LOWER(original_file_name)} does in the database, so images sorted in memory and pages read from the
+     * database come in the same order.
+     *
+     * @param fileName The file name.
+     * @return The sort key.
+     */
+    public static String getFileNameSortKey(String fileName) {
+        char[] chars = fileName.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
     }
 }
@@ -0,0 +1,198 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A service for encoding JPEG images with a pool of reusable {@link ImageWriter}s.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class JpegEncodingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JpegEncodingService.class);
+
+    /**
+     * The quality used by {@code ImageIO.write} for JPEG, used for every image that has no size limit.
+     */
+    public static final float DEFAULT_QUALITY = 0.75f;
+
+    private static final float MIN_QUALITY = 0.3f;
+    private static final int MAX_QUALITY_ENCODES = 4;
+    private static final int MAX_RESOLUTION_STEPS = 4;
+
+    private final BlockingQueue<ImageWriter> writers;
+    private final ImageDecodingService imageDecodingService;
+
+    /**
+     * A JPEG that was encoded to fit a size limit.
+     *
+     * @param bytes   The encoded bytes.
+     * @param image   The image that was encoded, which is smaller than the input if the resolution had to be reduced.
+     * @param quality The JPEG quality that was used.
+     */
+    public record FittedJpeg(byte[] bytes, BufferedImage image, float quality) {
+    }
+
+    /**
+     * Constructs a new JpegEncodingService.
+     *
+     * @param imageDecodingService The image decoding service, used to scale images down.
+     * @param writerPoolSize       The number of idle JPEG writers kept for reuse.
+     */
+    public JpegEncodingService(ImageDecodingService imageDecodingService,
+                               @Value("${image.jpeg.writer-pool-size:4}") int writerPoolSize) {
+        this.imageDecodingService = imageDecodingService;
+        this.writers = new ArrayBlockingQueue<>(Math.max(1, writerPoolSize));
+    }
+
+    /**
+     * Disposes the pooled writers.
+     */
+    @PreDestroy
+    public void cleanup() {
+        ImageWriter writer;
+        while ((writer = writers.poll()) != null) {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Encodes an image as JPEG.
+     *
+     * @param image   The image to encode.
+     * @param quality The JPEG quality, between 0 and 1.
+     * @return The encoded bytes.
+     * @throws IOException if the image cannot be encoded.
+     */
+    public byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = borrowWriter();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(toRgb(image), null, null), param);
+            }
+            return baos.toByteArray();
+        } finally {
+            returnWriter(writer);
+        }
+    }
+
+    /**
+     * Encodes an image as JPEG no larger than the given size.
+     * <p>
+     * The image is first encoded at {@link #DEFAULT_QUALITY}. If it is too large, the quality is binary searched
+     * between a floor and that value, keeping the best encoding that fits, for at most four encodes in total. If
+     * even the floor quality is too large, the resolution is reduced in proportion to the excess instead.
+     *
+     * @param image    The image to encode.
+     * @param maxBytes The maximum size of the result in bytes.
+     * @param filename The name of the file, for logging.
+     * @return The encoded image.
+     * @throws IOException if the image cannot be encoded.
+     */
+    public FittedJpeg encodeWithinSize(BufferedImage image, long maxBytes, String filename) throws IOException {
+        byte[] bytes = encode(image, DEFAULT_QUALITY);
+        if (bytes.length <= maxBytes) {
+            return new FittedJpeg(bytes, image, DEFAULT_QUALITY);
+        }
+
+        float low = MIN_QUALITY;
+        float high = DEFAULT_QUALITY;
+        byte[] best = encode(image, low);
+        int encodes = 2;
+        if (best.length > maxBytes) {
+            return reduceResolution(image, best.length, maxBytes, filename);
+        }
+
+        float bestQuality = low;
+        while (encodes < MAX_QUALITY_ENCODES) {
+            float quality = (low + high) / 2;
+            bytes = encode(image, quality);
+            encodes++;
+            if (bytes.length <= maxBytes) {
+                best = bytes;
+                bestQuality = quality;
+                low = quality;
+            } else {
+                high = quality;
+            }
+        }
+        logger.info("Image {} compressed to fit size limit. Final size: {} KB, Quality: {}", filename, best.length / 1024, bestQuality);
+        return new FittedJpeg(best, image, bestQuality);
+    }
+
+    private FittedJpeg reduceResolution(BufferedImage image, long encodedSize, long maxBytes, String filename) throws IOException {
+        BufferedImage current = image;
+        byte[] bytes = null;
+        for (int step = 0; step < MAX_RESOLUTION_STEPS; step++) {
+            // JPEG size grows roughly with the pixel count, so scale each side by the square root of the excess.
+            double scale = Math.sqrt((double) maxBytes / encodedSize) * 0.95;
+            int maxSide = Math.max(current.getWidth(), current.getHeight());
+            int targetSide = Math.max(1, Math.min(maxSide - 1, (int) (maxSide * scale)));
+            current = imageDecodingService.scaleToFit(current, targetSide);
+            bytes = encode(current, MIN_QUALITY);
+            if (bytes.length <= maxBytes || targetSide == 1) {
+                break;
+            }
+            encodedSize = bytes.length;
+        }
+        logger.info("Image {} scaled down to {}x{} to fit size limit. Final size: {} KB", filename, current.getWidth(), current.getHeight(), bytes.length / 1024);
+        return new FittedJpeg(bytes, current, MIN_QUALITY);
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || !image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private ImageWriter borrowWriter() throws IOException {
+        ImageWriter writer = writers.poll();
+        if (writer != null) {
+            return writer;
+        }
+        var available = ImageIO.getImageWritersByFormatName("jpg");
+        if (!available.hasNext()) {
+            throw new IOException("No JPEG writer available.");
+        }
+        return available.next();
+    }
+
+    private void returnWriter(ImageWriter writer) {
+        writer.reset();
+        if (!writers.offer(writer)) {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import com.pgrdaw.tagfolio.model.ImageMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Invalidates the parsed metadata cached by the {@link MetadataService} whenever image metadata is updated or
+ * deleted through Hibernate. The entry is invalidated when the change is flushed, and again after the commit, so
+ * a copy read by another transaction in between is not kept.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Component
+public class MetadataCacheEventListener implements PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MetadataService metadataService;
+
+    /**
+     * Constructs a new MetadataCacheEventListener.
+     *
+     * @param entityManagerFactory The entity manager factory.
+     * @param metadataService      The metadata service.
+     */
+    public MetadataCacheEventListener(EntityManagerFactory entityManagerFactory, MetadataService metadataService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.metadataService = metadataService;
+    }
+
+    /**
+     * Registers the listener with Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof ImageMetadata metadata) {
+            invalidate(metadata.getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof ImageMetadata metadata) {
+            invalidate(metadata.getId());
+        }
+    }
+
+    private void invalidate(Long metadataId) {
+        metadataService.invalidate(metadataId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    metadataService.invalidate(metadataId);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A component that resolves configured fields against parsed ExifTool metadata.
+ * <p>
+ * The display fields, sortable fields and tag sources are configured as maps of a field name to a comma-separated
+ * list of ExifTool keys, in order of preference. They are split once, when the application starts, into arrays
+ * that are never modified, so resolving a field is a loop over its keys. It is also available to templates as
+ * {@code @metadataKeyResolver}.
+ * <p>
+ * The display keys also have a version, a hash of their configuration, stored with the display fields
+ * materialized for each image, so fields extracted with a previous configuration can be told apart.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Component
+public class MetadataKeyResolver {
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private final Map<String, String[]> displayKeys;
+    private final Map<String, String[]> sortableKeys;
+    private final List<String> displayMetadataKeys;
+    private final List<String> tagSourceKeys;
+    private final String displayKeysVersion;
+
+    /**
+     * Constructs a new MetadataKeyResolver.
+     *
+     * @param displayMetadataMap A map of display names to ExifTool keys.
+     * @param sortableFields     A map of sortable field names to ExifTool keys.
+     * @param tagSourceKeys      A map of tag sources to ExifTool keys.
+     * @param hashService        The hash service, used to version the display keys.
+     */
+    public MetadataKeyResolver(@Value("#{${image.exiftool.display-metadata-keys}}") Map<String, String> displayMetadataMap,
+                               @Value("#{${app.sortable-fields}}") Map<String, String> sortableFields,
+                               @Value("#{${image.exiftool.tag-source-keys}}") Map<String, String> tagSourceKeys,
+                               HashService hashService) {
+        this.displayKeys = compile(displayMetadataMap);
+        this.sortableKeys = compile(sortableFields);
+        this.displayMetadataKeys = flatten(this.displayKeys, false);
+        this.tagSourceKeys = flatten(compile(tagSourceKeys), true);
+        this.displayKeysVersion = hashService.calculateSha256Hash(String.join(",", this.displayMetadataKeys));
+    }
+
+    /**
+     * Resolves a display field: the value of its first key with a value that is not blank.
+     *
+     * @param displayName The display name of the field.
+     * @param metadata    The parsed metadata or materialized display fields, or null.
+     * @return The value, or null if the field is unknown or none of its keys has a value.
+     */
+    public String resolve(String displayName, Map<String, ?> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        for (String key : displayKeys.getOrDefault(displayName, NO_KEYS)) {
+            Object value = metadata.get(key);
+            if (value != null) {
+                String text = value instanceof String string ? string : String.valueOf(value);
+                if (!isBlank(text)) {
+                    return text;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a sortable field: the value of its first key that is set.
+     *
+     * @param fieldName The name of the sortable field.
+     * @param metadata  The parsed metadata, or null.
+     * @return The value, or null if the field is unknown or none of its keys is set.
+     */
+    public Object resolveSortable(String fieldName, Map<String, Object> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        for (String key : sortableKeys.getOrDefault(fieldName, NO_KEYS)) {
+            Object value = metadata.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the keys of all display fields, in the order they are configured.
+     *
+     * @return An unmodifiable list of ExifTool keys.
+     */
+    public List<String> getDisplayMetadataKeys() {
+        return displayMetadataKeys;
+    }
+
+    /**
+     * Gets the version of the display keys configuration.
+     *
+     * @return A hash of the display keys, in order.
+     */
+    public String getDisplayKeysVersion() {
+        return displayKeysVersion;
+    }
+
+    /**
+     * Gets the keys that tags are read from, without duplicates.
+     *
+     * @return An unmodifiable list of ExifTool keys.
+     */
+    public List<String> getTagSourceKeys() {
+        return tagSourceKeys;
+    }
+
+    private static Map<String, String[]> compile(Map<String, String> fields) {
+        Map<String, String[]> compiled = new LinkedHashMap<>();
+        fields.forEach((name, keys) -> {
+            List<String> parsed = new ArrayList<>();
+            for (String key : keys.split(",")) {
+                String trimmed = key.trim();
+                if (!trimmed.isEmpty()) {
+                    parsed.add(trimmed);
+                }
+            }
+            compiled.put(name, parsed.toArray(NO_KEYS));
+        });
+        return Collections.unmodifiableMap(compiled);
+    }
+
+    private static List<String> flatten(Map<String, String[]> compiled, boolean distinct) {
+        List<String> keys = new ArrayList<>();
+        for (String[] fieldKeys : compiled.values()) {
+            keys.addAll(List.of(fieldKeys));
+        }
+        if (distinct) {
+            Set<String> unique = new LinkedHashSet<>(keys);
+            return List.copyOf(unique);
+        }
+        return List.copyOf(keys);
+    }
+
+    /**
+     * Whether a value is empty once trimmed, without trimming it.
+     */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
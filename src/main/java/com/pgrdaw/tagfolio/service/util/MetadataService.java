@@ -3,20 +3,39 @@ package com.pgrdaw.tagfolio.service.util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.ImageMetadata;
+import com.pgrdaw.tagfolio.repository.ImageMetadataRepository;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 /**
  * A service for handling image metadata.
+ * <p>
+ * Parsed metadata is cached by metadata ID as an immutable map, together with the version of the metadata it was
+ * parsed from. The cache is bounded by an estimate of the memory the maps take, and entries are invalidated when
+ * their metadata is updated or deleted; an entry is also replaced if it is older than metadata at hand.
+ * <p>
+ * The values of the display metadata keys are also materialized in each image when its metadata is set, so they
+ * can be shown without reading or parsing the metadata. Images whose display fields were extracted with another
+ * configuration of the keys fall back to the parsed metadata until they are extracted again.
  *
  * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
  * @since 2026-01-01
@@ -28,17 +47,61 @@ public class MetadataService {
 
     private final Map<String, String> displayMetadataMap;
     private final ObjectMapper objectMapper;
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final ImageRepository imageRepository;
+    private final MetadataKeyResolver metadataKeyResolver;
+    private final long maxBytes;
+    private final Cache<Long, ParsedMetadata> parsedMetadata;
+
+    /**
+     * Estimated bytes a parsed map takes per character of its JSON text.
+     */
+    private static final int BYTES_PER_JSON_CHAR = 4;
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    /**
+     * The maximum size of a materialized display value, in UTF-8 bytes.
+     */
+    private static final int MAX_DISPLAY_VALUE_BYTES = 4000;
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    /**
+     * The parsed metadata of an image.
+     *
+     * @param version The version of the metadata it was parsed from.
+     * @param values  The immutable metadata map.
+     * @param weight  The estimated memory it takes, in bytes.
+     */
+    private record ParsedMetadata(long version, Map<String, Object> values, int weight) {
+    }
 
     /**
      * Constructs a new MetadataService.
      *
-     * @param displayMetadataMap A map of display names to ExifTool keys.
-     * @param objectMapper       The object mapper for JSON processing.
+     * @param displayMetadataMap      A map of display names to ExifTool keys.
+     * @param objectMapper            The object mapper for JSON processing.
+     * @param imageMetadataRepository The image metadata repository.
+     * @param imageRepository         The image repository.
+     * @param metadataKeyResolver     The resolver of configured metadata keys.
+     * @param maxBytes                The estimated memory the parsed metadata cache may take, or 0 to disable it.
      */
     public MetadataService(@Value("#{${image.exiftool.display-metadata-keys}}") Map<String, String> displayMetadataMap,
-                           ObjectMapper objectMapper) {
+                           ObjectMapper objectMapper,
+                           ImageMetadataRepository imageMetadataRepository,
+                           ImageRepository imageRepository,
+                           MetadataKeyResolver metadataKeyResolver,
+                           @Value("${image.metadata.cache-max-bytes:33554432}") long maxBytes) {
         this.displayMetadataMap = displayMetadataMap;
         this.objectMapper = objectMapper;
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.imageRepository = imageRepository;
+        this.metadataKeyResolver = metadataKeyResolver;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.parsedMetadata = Caffeine.newBuilder()
+                .maximumWeight(this.maxBytes)
+                .weigher((Long id, ParsedMetadata parsed) -> parsed.weight())
+                .recordStats()
+                .build();
     }
 
     /**
@@ -56,11 +119,7 @@ public class MetadataService {
      * @return A list of display metadata keys.
      */
     public List<String> getDisplayMetadataKeys() {
-        return displayMetadataMap.values().stream()
-                .flatMap(keys -> Arrays.stream(keys.split(",")))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .toList();
+        return metadataKeyResolver.getDisplayMetadataKeys();
     }
 
     /**
@@ -71,37 +130,204 @@ public class MetadataService {
      * @return The value of the metadata field, or null if not found.
      */
     public String getMetadataValue(String displayName, Map<String, Object> rawMetadata) {
-        String exiftoolKeysString = displayMetadataMap.get(displayName);
-        if (exiftoolKeysString == null || rawMetadata == null) {
-            return null;
+        return metadataKeyResolver.resolve(displayName, rawMetadata);
+    }
+
+    /**
+     * Gets the raw metadata map from an image, parsing it only if it is not cached. If the metadata is not loaded,
+     * only its version is read to check the cached map, and it is loaded only if the map is missing or stale.
+     *
+     * @param image The image.
+     * @return The raw metadata map, which cannot be modified.
+     * @throws JsonProcessingException if an error occurs during JSON processing.
+     */
+    public Map<String, Object> getRawMetadata(Image image) throws JsonProcessingException {
+        ImageMetadata metadata = image.getMetadata();
+        if (metadata == null) {
+            return Collections.emptyMap();
+        }
+        if (Hibernate.isInitialized(metadata) || metadata.getId() == null) {
+            return getParsedMetadata(metadata);
+        }
+        ParsedMetadata cached = parsedMetadata.getIfPresent(metadata.getId());
+        if (cached != null) {
+            // The metadata may have been written by another instance, so the cached entry is only served if it was
+            // parsed from the version in the database.
+            Optional<Long> version = imageMetadataRepository.findVersionById(metadata.getId());
+            if (version.isEmpty()) {
+                parsedMetadata.invalidate(metadata.getId());
+                return Collections.emptyMap();
+            }
+            if (version.get() == cached.version()) {
+                return cached.values();
+            }
         }
+        Optional<ImageMetadata> loaded = imageMetadataRepository.findById(metadata.getId());
+        return loaded.isPresent() ? getParsedMetadata(loaded.get()) : Collections.emptyMap();
+    }
 
-        List<String> exiftoolKeys = Arrays.stream(exiftoolKeysString.split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .toList();
+    /**
+     * Removes the parsed metadata of an image from the cache. Must be called when the metadata is updated or
+     * deleted, and again once the change is committed.
+     *
+     * @param metadataId The ID of the metadata.
+     */
+    public void invalidate(Long metadataId) {
+        parsedMetadata.invalidate(metadataId);
+    }
 
-        for (String key : exiftoolKeys) {
-            Object value = rawMetadata.get(key);
-            if (value != null && !String.valueOf(value).trim().isEmpty()) {
-                return String.valueOf(value);
-            }
+    /**
+     * Extracts the values of the display metadata keys from parsed metadata and stores them in an image, with the
+     * current version of the keys. If a value is too long to be stored, the image keeps no display fields and they
+     * are read from its metadata instead.
+     *
+     * @param image    The image.
+     * @param metadata The parsed metadata of the image.
+     * @return True if the display fields were stored.
+     */
+    public boolean materializeDisplayFields(Image image, Map<String, Object> metadata) {
+        Map<String, String> values = extractDisplayFields(metadata);
+        Map<String, String> displayFields = image.getDisplayFields();
+        if (!isStorable(values)) {
+            displayFields.clear();
+            image.setDisplayFieldsVersion(null);
+            return false;
         }
-        return null;
+        displayFields.keySet().retainAll(values.keySet());
+        displayFields.putAll(values);
+        image.setDisplayFieldsVersion(metadataKeyResolver.getDisplayKeysVersion());
+        return true;
+    }
+
+    /**
+     * Extracts the values of the display metadata keys from the metadata of an image, to be stored without loading
+     * the image.
+     *
+     * @param metadata The metadata of the image, or null if it has none.
+     * @return The display fields, keyed by ExifTool key, or null if a value is too long to be stored.
+     * @throws JsonProcessingException if the metadata is not valid JSON.
+     */
+    public Map<String, String> extractStorableDisplayFields(ImageMetadata metadata) throws JsonProcessingException {
+        Map<String, String> values = extractDisplayFields(metadata != null ? getParsedMetadata(metadata) : Collections.emptyMap());
+        return isStorable(values) ? values : null;
     }
 
     /**
-     * Gets the raw metadata map from an image.
+     * Gets the display fields of an image: the values of the display metadata keys, keyed by ExifTool key.
      *
      * @param image The image.
-     * @return The raw metadata map.
-     * @throws JsonProcessingException if an error occurs during JSON processing.
+     * @return The display fields, which cannot be modified.
+     * @throws JsonProcessingException if the metadata has to be parsed and it is not valid JSON.
      */
-    public Map<String, Object> getRawMetadata(Image image) throws JsonProcessingException {
-        if (image.getExiftool() != null && !image.getExiftool().isEmpty()) {
-            return objectMapper.readValue(image.getExiftool(), new TypeReference<>() {
-            });
+    public Map<String, String> getDisplayFields(Image image) throws JsonProcessingException {
+        if (isMaterialized(image) && Hibernate.isInitialized(image.getDisplayFields())) {
+            return Collections.unmodifiableMap(image.getDisplayFields());
+        }
+        return getDisplayFields(List.of(image)).getOrDefault(image.getId(), Collections.emptyMap());
+    }
+
+    /**
+     * Gets the display fields of a set of images, reading the materialized ones with one query per thousand images.
+     *
+     * @param images The images.
+     * @return A map of image ID to display fields.
+     * @throws JsonProcessingException if the metadata of an image has to be parsed and it is not valid JSON.
+     */
+    public Map<Long, Map<String, String>> getDisplayFields(Collection<Image> images) throws JsonProcessingException {
+        Map<Long, Map<String, String>> result = new HashMap<>();
+        List<Long> materializedIds = new ArrayList<>();
+        for (Image image : images) {
+            if (isMaterialized(image)) {
+                result.put(image.getId(), new HashMap<>());
+                materializedIds.add(image.getId());
+            } else {
+                result.put(image.getId(), extractDisplayFields(getRawMetadata(image)));
+            }
+        }
+        for (int i = 0; i < materializedIds.size(); i += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = materializedIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, materializedIds.size()));
+            for (Object[] row : imageRepository.findDisplayFieldsByImageIds(chunk)) {
+                result.get((Long) row[0]).put((String) row[1], (String) row[2]);
+            }
+        }
+        return result;
+    }
+
+    private boolean isMaterialized(Image image) {
+        return image.getId() != null && metadataKeyResolver.getDisplayKeysVersion().equals(image.getDisplayFieldsVersion());
+    }
+
+    private static boolean isStorable(Map<String, String> values) {
+        for (String value : values.values()) {
+            if (value.getBytes(StandardCharsets.UTF_8).length > MAX_DISPLAY_VALUE_BYTES) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, String> extractDisplayFields(Map<String, Object> metadata) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String key : metadataKeyResolver.getDisplayMetadataKeys()) {
+            Object value = metadata.get(key);
+            if (value != null) {
+                values.put(key, String.valueOf(value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the statistics of the parsed metadata cache, to size its memory budget.
+     *
+     * @return A map with the cache statistics.
+     */
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = parsedMetadata.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hitRate", stats.hitRate());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("entries", parsedMetadata.estimatedSize());
+        result.put("usedBytes", parsedMetadata.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        return result;
+    }
+
+    private Map<String, Object> getParsedMetadata(ImageMetadata metadata) throws JsonProcessingException {
+        Long id = metadata.getId();
+        // Metadata set in the current transaction keeps its version until it is written, so it is never cached.
+        boolean cacheable = id != null && !metadata.isModified();
+        ParsedMetadata cached = cacheable ? parsedMetadata.getIfPresent(id) : null;
+        if (cached != null && cached.version() == metadata.getVersion()) {
+            return cached.values();
+        }
+        String exiftool = metadata.getExiftool();
+        if (exiftool == null || exiftool.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> values = freeze(objectMapper.readValue(exiftool, new TypeReference<Map<String, Object>>() {
+        }));
+        if (cacheable) {
+            parsedMetadata.put(id, new ParsedMetadata(metadata.getVersion(), values,
+                    exiftool.length() * BYTES_PER_JSON_CHAR + ENTRY_OVERHEAD_BYTES));
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T freeze(T value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, entry) -> copy.put(key, freeze(entry)));
+            return (T) Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(entry -> copy.add(freeze(entry)));
+            return (T) Collections.unmodifiableList(copy);
         }
-        return Collections.emptyMap();
+        return value;
     }
 }
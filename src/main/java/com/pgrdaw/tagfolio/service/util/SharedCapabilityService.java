@@ -0,0 +1,176 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * A service that issues and verifies the capabilities anonymous visitors browse shared filters with.
+ * <p>
+ * A capability names a shared filter and the version of its snapshot the visitor was shown, and is signed with
+ * HMAC-SHA256, so any instance of the application that shares the secret can verify it without a session. It is
+ * carried in a cookie, so the browser sends it with every request for the shared images, including the image
+ * elements of the gallery. A secret must be configured; only when generating one is explicitly allowed, as the
+ * development profile does, is a random one generated on startup, and capabilities are then only valid on the
+ * instance that issued them until it restarts.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class SharedCapabilityService {
+
+    /**
+     * The name of the cookie the capability is carried in.
+     */
+    public static final String COOKIE_NAME = "tagfolio_share";
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedCapabilityService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    /**
+     * The right to browse the snapshot of a shared filter.
+     *
+     * @param token     The token of the shared filter.
+     * @param version   The version of the snapshot the visitor was shown.
+     * @param sort      The field the visitor sorted the images by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @param expiresAt The epoch second the capability expires at.
+     */
+    public record Capability(String token, String version, String sort, String direction, long expiresAt) {
+    }
+
+    /**
+     * Constructs a new SharedCapabilityService.
+     *
+     * @param objectMapper   The object mapper for JSON processing.
+     * @param secret         The secret capabilities are signed with, the same on all instances.
+     * @param generateSecret Whether a random secret is generated when none is configured.
+     * @param ttlHours       The hours a capability is valid for.
+     * @throws IllegalStateException if no secret is configured and generating one is not allowed.
+     */
+    public SharedCapabilityService(ObjectMapper objectMapper,
+                                   @Value("${app.shared-capability.secret:}") String secret,
+                                   @Value("${app.shared-capability.generate-secret:false}") boolean generateSecret,
+                                   @Value("${app.shared-capability.ttl-hours:24}") long ttlHours) {
+        this.objectMapper = objectMapper;
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            if (!generateSecret) {
+                throw new IllegalStateException("No shared capability secret is configured: set the SHARED_CAPABILITY_SECRET environment variable or app.shared-capability.secret.");
+            }
+            logger.warn("No shared capability secret is configured; capabilities will only be valid on this instance until it restarts.");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttl = Duration.ofHours(Math.max(1, ttlHours));
+    }
+
+    /**
+     * Issues a capability for a snapshot of a shared filter and sets it in the response cookie.
+     *
+     * @param token     The token of the shared filter.
+     * @param version   The version of the snapshot.
+     * @param sort      The field the images are sorted by.
+     * @param direction The sort direction ("asc" or "desc").
+     * @param request   The HTTP request.
+     * @param response  The HTTP response.
+     */
+    public void issue(String token, String version, String sort, String direction,
+                      HttpServletRequest request, HttpServletResponse response) {
+        Capability capability = new Capability(token, version, sort, direction, Instant.now().plus(ttl).getEpochSecond());
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, encode(capability))
+                .path("/")
+                .maxAge(ttl)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    /**
+     * Reads the capability of a request.
+     *
+     * @param request The HTTP request.
+     * @return The capability, or null if the request has none or it is not valid or expired.
+     */
+    public Capability find(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                return decode(cookie.getValue());
+            }
+        }
+        return null;
+    }
+
+    private String encode(Capability capability) {
+        try {
+            String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(capability));
+            return payload + "." + sign(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode the shared capability", e);
+        }
+    }
+
+    private Capability decode(String value) {
+        int separator = value.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        String payload = value.substring(0, separator);
+        byte[] signature = value.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(signature, sign(payload).getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        try {
+            Capability capability = objectMapper.readValue(Base64.getUrlDecoder().decode(payload), Capability.class);
+            if (capability.token() == null || capability.version() == null
+                    || capability.expiresAt() < Instant.now().getEpochSecond()) {
+                return null;
+            }
+            return capability;
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available. This should not happen in a standard Java environment.", e);
+        }
+    }
+}
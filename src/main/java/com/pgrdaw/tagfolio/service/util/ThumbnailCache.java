@@ -0,0 +1,240 @@
+package com.pgrdaw.tagfolio.service.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory cache of encoded thumbnail and rendition files, keyed by user and file name.
+ * <p>
+ * The cache is bounded by the total size of the files it holds and uses W-TinyLFU eviction, so a burst of
+ * one-off requests does not push out the thumbnails the gallery keeps asking for. File contents can be held
+ * off-heap in direct buffers to keep them out of the garbage-collected heap. Entries must be invalidated
+ * whenever their file is written or deleted.
+ *
+ * @author Pablo Gimeno Ramallo &lt;pgrdaw@gmail.com&gt;
+ * @since 2026-01-01
+ */
+@Service
+public class ThumbnailCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    /**
+     * An estimate of the memory used by a cache entry besides the file content.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<Key, CachedThumbnail> cache;
+    private final long maxBytes;
+    private final boolean offHeap;
+
+    private record Key(Long userId, String fileName) {
+    }
+
+    private record CachedThumbnail(ByteBuffer content, HttpCachingService.Validators validators) {
+    }
+
+    /**
+     * A thumbnail served from the cache. It still reports the file it was read from, but its content and
+     * validators come from memory.
+     */
+    public static class CachedThumbnailResource extends AbstractResource {
+        private final Path file;
+        private final CachedThumbnail thumbnail;
+
+        private CachedThumbnailResource(Path file, CachedThumbnail thumbnail) {
+            this.file = file;
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * Gets the validators of the file at the time it was cached.
+         *
+         * @return The validators.
+         */
+        public HttpCachingService.Validators getValidators() {
+            return thumbnail.validators();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return thumbnail.content().remaining();
+        }
+
+        @Override
+        public long lastModified() {
+            return thumbnail.validators().lastModified();
+        }
+
+        @Override
+        public File getFile() {
+            return file.toFile();
+        }
+
+        @Override
+        public String getFilename() {
+            return file.getFileName().toString();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(thumbnail.content().duplicate());
+        }
+
+        @Override
+        public String getDescription() {
+            return "cached thumbnail [" + file + "]";
+        }
+    }
+
+    /**
+     * Constructs a new ThumbnailCache.
+     *
+     * @param maxBytes The total size of the files the cache may hold, or 0 to disable it.
+     * @param offHeap  Whether file contents are held in direct buffers outside the heap.
+     */
+    public ThumbnailCache(@Value("${thumbnail.cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${thumbnail.cache.off-heap:false}") boolean offHeap) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.offHeap = offHeap;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(this.maxBytes)
+                .weigher((Key key, CachedThumbnail thumbnail) -> thumbnail.content().capacity() + key.fileName().length() * 2 + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets a thumbnail file from the cache, reading it from disk if it is not cached yet.
+     *
+     * @param userId   The ID of the user who owns the file.
+     * @param fileName The name of the file.
+     * @param file     The path of the file.
+     * @return The cached file, or null if the file does not exist.
+     * @throws IOException if the file cannot be read.
+     */
+    public CachedThumbnailResource get(Long userId, String fileName, Path file) throws IOException {
+        if (maxBytes == 0) {
+            return null;
+        }
+        try {
+            // Loading inside the cache blocks invalidations of the same key until the file has been read,
+            // so a thumbnail rewritten during the load is never cached with its old content.
+            CachedThumbnail thumbnail = cache.get(new Key(userId, fileName), key -> read(file));
+            return thumbnail != null ? new CachedThumbnailResource(file, thumbnail) : null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Removes a file from the cache. Must be called after the file is written or deleted.
+     *
+     * @param userId   The ID of the user who owns the file.
+     * @param fileName The name of the file.
+     */
+    public void invalidate(Long userId, String fileName) {
+        cache.invalidate(new Key(userId, fileName));
+    }
+
+    /**
+     * Gets the statistics of the cache, to size its memory budget.
+     *
+     * @return The statistics, by name.
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hitRate", stats.hitRate());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictedBytes", stats.evictionWeight());
+        result.put("entries", cache.estimatedSize());
+        result.put("usedBytes", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("offHeap", offHeap);
+        return result;
+    }
+
+    private CachedThumbnail read(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer content;
+            if (offHeap) {
+                content = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            } else {
+                content = ByteBuffer.wrap(bytes);
+            }
+            return new CachedThumbnail(content.asReadOnlyBuffer(),
+                    HttpCachingService.Validators.of(attributes.lastModifiedTime().toMillis(), bytes.length));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not read thumbnail {} into the cache: {}", file, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+-- Flyway Undo Script for V010400
+--
+-- This script drops the composite sort indexes added by the V010400 migration.
+
+DROP INDEX IDX_IMAGES_USER_IMPORTED;
+/
+
+DROP INDEX IDX_IMAGES_USER_CREATED;
+/
+
+DROP INDEX IDX_IMAGES_USER_MODIFIED;
+/
+
+DROP INDEX IDX_IMAGES_USER_RATING;
+/
+
+DROP INDEX IDX_IMAGES_USER_FILENAME;
+/
@@ -0,0 +1,5 @@
+-- Flyway Undo Script for V010401
+-- This script removes the image dimension columns.
+
+ALTER TABLE IMAGES DROP (WIDTH, HEIGHT);
+/
@@ -0,0 +1,16 @@
+-- Flyway Undo Script for V010402
+-- This script moves the raw ExifTool JSON back into the IMAGES table.
+
+ALTER TABLE IMAGES ADD (EXIFTOOL CLOB);
+/
+
+UPDATE IMAGES I
+SET EXIFTOOL = (SELECT M.EXIFTOOL FROM IMAGE_METADATA M WHERE M.ID = I.METADATA_ID)
+WHERE METADATA_ID IS NOT NULL;
+/
+
+ALTER TABLE IMAGES DROP COLUMN METADATA_ID;
+/
+
+DROP TABLE IMAGE_METADATA;
+/
@@ -0,0 +1,7 @@
+-- Flyway Undo Script for V010403
+-- This script drops the compressed metadata column.
+-- Rows already re-encoded only hold their metadata in EXIFTOOL_DATA, and have to be decoded back into EXIFTOOL
+-- by the application before running it, or their metadata is lost.
+
+ALTER TABLE IMAGE_METADATA DROP COLUMN EXIFTOOL_DATA;
+/
@@ -0,0 +1,5 @@
+-- Flyway Undo Script for V010404
+-- This script drops the image metadata version counter.
+
+ALTER TABLE IMAGE_METADATA DROP COLUMN VERSION;
+/
@@ -0,0 +1,8 @@
+-- Flyway Undo Script for V010405
+-- This script drops the materialized display fields; they are read from the metadata again.
+
+ALTER TABLE IMAGES DROP COLUMN DISPLAY_FIELDS_VERSION;
+/
+
+DROP TABLE IMAGE_DISPLAY_FIELDS;
+/
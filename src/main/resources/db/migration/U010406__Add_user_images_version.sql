@@ -0,0 +1,5 @@
+-- Flyway Undo Script for V010406
+-- This script drops the version counter of the images of each user.
+
+ALTER TABLE USERS DROP COLUMN IMAGES_VERSION;
+/
@@ -0,0 +1,18 @@
+-- Flyway Undo Script for V010407
+--
+-- This script drops the owner-agnostic sort indexes added by the V010407 migration.
+
+DROP INDEX IDX_IMAGES_IMPORTED;
+/
+
+DROP INDEX IDX_IMAGES_CREATED;
+/
+
+DROP INDEX IDX_IMAGES_MODIFIED;
+/
+
+DROP INDEX IDX_IMAGES_RATING;
+/
+
+DROP INDEX IDX_IMAGES_FILENAME;
+/
@@ -0,0 +1,22 @@
+-- Flyway Migration Script to version 010400
+--
+-- This script adds one composite index per sortable gallery field, so keyset pagination of a user's images
+-- reads each page with a single index range scan, however deep the page is.
+-- 1. IMPORTED_AT, CREATED_AT, MODIFIED_AT and RATING are indexed as they are stored.
+-- 2. ORIGINAL_FILE_NAME is indexed in lower case, the order the gallery sorts file names in.
+-- The ID closes every index, as it breaks ties between equal values.
+
+CREATE INDEX IDX_IMAGES_USER_IMPORTED ON IMAGES (USER_ID, IMPORTED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_USER_CREATED ON IMAGES (USER_ID, CREATED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_USER_MODIFIED ON IMAGES (USER_ID, MODIFIED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_USER_RATING ON IMAGES (USER_ID, RATING, ID);
+/
+
+CREATE INDEX IDX_IMAGES_USER_FILENAME ON IMAGES (USER_ID, LOWER(ORIGINAL_FILE_NAME), ID);
+/
@@ -0,0 +1,23 @@
+-- Flyway Migration Script to version 010401
+--
+-- This script stores the dimensions of each image in their own columns, so the gallery can list them without
+-- reading the EXIFTOOL CLOB.
+-- 1. Add the WIDTH and HEIGHT columns.
+-- 2. Fill them from the stored ExifTool JSON, using the same keys as the application, in the same order.
+
+ALTER TABLE IMAGES ADD (WIDTH NUMBER(10), HEIGHT NUMBER(10));
+/
+
+UPDATE IMAGES
+SET WIDTH = COALESCE(
+        JSON_VALUE(EXIFTOOL, '$."File:ImageWidth"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."PNG:ImageWidth"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."ExifIFD:ExifImageWidth"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."IFD0:ImageWidth"' RETURNING NUMBER NULL ON ERROR)),
+    HEIGHT = COALESCE(
+        JSON_VALUE(EXIFTOOL, '$."File:ImageHeight"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."PNG:ImageHeight"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."ExifIFD:ExifImageHeight"' RETURNING NUMBER NULL ON ERROR),
+        JSON_VALUE(EXIFTOOL, '$."IFD0:ImageHeight"' RETURNING NUMBER NULL ON ERROR))
+WHERE EXIFTOOL IS NOT NULL;
+/
@@ -0,0 +1,33 @@
+-- Flyway Migration Script to version 010402
+--
+-- This script moves the raw ExifTool JSON out of the IMAGES table, so image rows only hold fixed-width columns
+-- and the CLOB is only read when the metadata is shown.
+-- 1. Create the IMAGE_METADATA table.
+-- 2. Copy the metadata of every image, reusing the image ID as the metadata ID.
+-- 3. Move the identity past the copied IDs.
+-- 4. Link each image to its metadata and drop the old column.
+
+CREATE TABLE IMAGE_METADATA
+(
+    ID       NUMBER(19) GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    EXIFTOOL CLOB
+);
+/
+
+INSERT INTO IMAGE_METADATA (ID, EXIFTOOL)
+SELECT ID, EXIFTOOL FROM IMAGES WHERE EXIFTOOL IS NOT NULL;
+/
+
+ALTER TABLE IMAGE_METADATA MODIFY ID GENERATED BY DEFAULT AS IDENTITY (START WITH LIMIT VALUE);
+/
+
+ALTER TABLE IMAGES ADD (METADATA_ID NUMBER(19)
+    CONSTRAINT UK_IMAGES_METADATA UNIQUE
+    CONSTRAINT FK_IMAGES_METADATA REFERENCES IMAGE_METADATA (ID));
+/
+
+UPDATE IMAGES SET METADATA_ID = ID WHERE EXIFTOOL IS NOT NULL;
+/
+
+ALTER TABLE IMAGES DROP COLUMN EXIFTOOL;
+/
@@ -0,0 +1,8 @@
+-- Flyway Migration Script to version 010403
+--
+-- This script adds a BLOB column for image metadata stored as Smile compressed with Deflate.
+-- Existing rows keep their JSON text in EXIFTOOL and are re-encoded by the application in the background;
+-- the application reads either column, so no data is copied here.
+
+ALTER TABLE IMAGE_METADATA ADD (EXIFTOOL_DATA BLOB);
+/
@@ -0,0 +1,8 @@
+-- Flyway Migration Script to version 010404
+--
+-- This script adds a version counter to image metadata.
+-- The application increments it every time the metadata is rewritten, and keeps parsed metadata cached only while
+-- its version matches the row.
+
+ALTER TABLE IMAGE_METADATA ADD (VERSION NUMBER(19) DEFAULT 0 NOT NULL);
+/
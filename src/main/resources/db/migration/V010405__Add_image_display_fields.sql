@@ -0,0 +1,20 @@
+-- Flyway Migration Script to version 010405
+--
+-- This script adds the display fields materialized from the metadata of each image, so they can be shown
+-- without reading or parsing the metadata.
+-- 1. Create the IMAGE_DISPLAY_FIELDS table, one row per display key an image has a value for.
+-- 2. Add the version of the display keys the fields were extracted with. It is left empty here; the application
+--    extracts the fields of existing images in the background and reads their metadata until then.
+
+CREATE TABLE IMAGE_DISPLAY_FIELDS
+(
+    IMAGE_ID       NUMBER(19)     NOT NULL,
+    METADATA_KEY   VARCHAR2(255)  NOT NULL,
+    METADATA_VALUE VARCHAR2(4000),
+    CONSTRAINT PK_IMAGE_DISPLAY_FIELDS PRIMARY KEY (IMAGE_ID, METADATA_KEY),
+    CONSTRAINT FK_IMAGE_DISPLAY_FIELDS_IMAGE FOREIGN KEY (IMAGE_ID) REFERENCES IMAGES (ID) ON DELETE CASCADE
+);
+/
+
+ALTER TABLE IMAGES ADD (DISPLAY_FIELDS_VERSION VARCHAR2(64));
+/
@@ -0,0 +1,8 @@
+-- Flyway Migration Script to version 010406
+--
+-- This script adds a version counter to the images of each user.
+-- The application increments it in every transaction that inserts, updates or deletes images of the user, so every
+-- instance of the application can tell whether results computed from those images are still current.
+
+ALTER TABLE USERS ADD (IMAGES_VERSION NUMBER(19) DEFAULT 0 NOT NULL);
+/
@@ -0,0 +1,20 @@
+-- Flyway Migration Script to version 010407
+--
+-- This script adds one composite index per sortable gallery field that does not start with the owner, so keyset
+-- pagination of the images of every user, as administrators see them, reads each page with a single index range
+-- scan too. The indexes mirror those added by V010400 without their USER_ID column.
+
+CREATE INDEX IDX_IMAGES_IMPORTED ON IMAGES (IMPORTED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_CREATED ON IMAGES (CREATED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_MODIFIED ON IMAGES (MODIFIED_AT, ID);
+/
+
+CREATE INDEX IDX_IMAGES_RATING ON IMAGES (RATING, ID);
+/
+
+CREATE INDEX IDX_IMAGES_FILENAME ON IMAGES (LOWER(ORIGINAL_FILE_NAME), ID);
+/
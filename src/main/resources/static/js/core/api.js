@@ -15,3 +15,29 @@ function getCsrfHeaders() {
     }
     return {};
 }
+
+/**
+ * Reads a newline-delimited JSON response, calling the handler for each event as soon as it arrives.
+ *
+ * @param {Response} response - The fetch response.
+ * @param {Function} onEvent - The function called with each parsed event.
+ * @returns {Promise<void>} A promise that resolves when the whole response has been read.
+ */
+async function readNdjsonStream(response, onEvent) {
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+
+    while (true) {
+        const {done, value} = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, {stream: true});
+        const lines = buffer.split('\n');
+        buffer = lines.pop();
+        lines.filter(line => line.trim()).forEach(line => onEvent(JSON.parse(line)));
+    }
+    buffer += decoder.decode();
+    if (buffer.trim()) {
+        onEvent(JSON.parse(buffer));
+    }
+}
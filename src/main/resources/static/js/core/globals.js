@@ -64,6 +64,12 @@ window.selectionInProgress = false;
  */
 window.currentPage = 0;
 
+/**
+ * The cursor of the next page of the gallery, as returned by the server.
+ * @type {?string}
+ */
+window.nextCursor = null;
+
 /**
  * A flag indicating if images are currently being loaded.
  * @type {boolean}
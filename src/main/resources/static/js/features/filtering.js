@@ -1165,6 +1165,7 @@ document.addEventListener('DOMContentLoaded', function() {
         imageGrid.innerHTML = '';
         
         window.currentPage = 0;
+        window.nextCursor = null;
         window.allImagesLoaded = false;
         window.isLoading = false;
 
@@ -4,6 +4,12 @@
  * @since 2026-01-01
  */
 
+/**
+ * The image fields the gallery cards render, requested from the server.
+ * @type {string}
+ */
+const GALLERY_FIELDS = 'id,originalFileName,thumbnailUrl,createdAt,modifiedAt,importedAt,rating';
+
 /**
  * Formats a date string to "yyyy-mm-dd hh:mm:ss" (24h).
  * @param {string} dateString - The date string to format.
@@ -21,6 +27,15 @@ function formatDate(dateString) {
     return `${year}-${month}-${day} ${hours}:${minutes}:${seconds}`;
 }
 
+/**
+ * Gets the "sizes" attribute for card images, based on the current zoom level.
+ * @returns {string} The width of a card image in CSS pixels.
+ */
+function getCardImageSizes() {
+    const scale = parseFloat(getComputedStyle(document.documentElement).getPropertyValue('--image-scale')) || 1.0;
+    return `${Math.round(150 * scale)}px`;
+}
+
 /**
  * Creates an image card element.
  * @param {Object} image - The image object.
@@ -66,8 +81,12 @@ function createImageCard(image, isMatching) {
         `;
     }
 
+    // Renditions share the version of the thumbnail.
+    const versionQuery = image.thumbnailUrl && image.thumbnailUrl.includes('?') ? image.thumbnailUrl.substring(image.thumbnailUrl.indexOf('?')) : '';
     imageCard.innerHTML = `
-        <img src="/images/thumbnail/${image.id}" alt="${image.originalFileName}" loading="lazy">
+        <img src="/images/rendition/${image.id}/300${versionQuery}"
+             srcset="/images/rendition/${image.id}/150${versionQuery} 150w, /images/rendition/${image.id}/300${versionQuery} 300w, /images/rendition/${image.id}/600${versionQuery} 600w"
+             sizes="${getCardImageSizes()}" alt="${image.originalFileName}" loading="lazy">
         <div class="image-card-details">
             ${detailsHtml}
         </div>
@@ -96,7 +115,7 @@ async function fetchAndRenderImages() {
             const batchIds = allFilteredIds.slice(start, end);
 
             if (batchIds.length > 0) {
-                const response = await fetch(`/images/by-ids?sort=${window.sortField}&direction=${window.sortDirection}`, {
+                const response = await fetch(`/images/by-ids?sort=${window.sortField}&direction=${window.sortDirection}&fields=${GALLERY_FIELDS}`, {
                     method: 'POST',
                     headers: {
                         'Content-Type': 'application/json',
@@ -114,7 +133,8 @@ async function fetchAndRenderImages() {
                 window.allImagesLoaded = true;
             }
         } else {
-            const response = await fetch(`/images/paginated?page=${window.currentPage}&size=${window.batchSize}&sort=${window.sortField}&direction=${window.sortDirection}`, {
+            const cursorParam = window.nextCursor ? `&cursor=${encodeURIComponent(window.nextCursor)}` : '';
+            const response = await fetch(`/images/paginated?page=${window.currentPage}&size=${window.batchSize}&sort=${window.sortField}&direction=${window.sortDirection}&fields=${GALLERY_FIELDS}${cursorParam}`, {
                 headers: {
                     'Accept': 'application/json',
                     ...window.getCsrfHeaders()
@@ -122,6 +142,10 @@ async function fetchAndRenderImages() {
             });
             if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
             images = await response.json();
+            window.nextCursor = response.headers.get('X-Next-Cursor');
+            if (images.length < window.batchSize) {
+                window.allImagesLoaded = true;
+            }
         }
 
         if (images.length === 0) {
@@ -234,6 +258,7 @@ document.addEventListener('DOMContentLoaded', function() {
             const imageGrid = document.getElementById('image-grid-main');
             if (imageGrid) imageGrid.innerHTML = '';
             window.currentPage = 0;
+            window.nextCursor = null;
             window.allImagesLoaded = false;
             window.loadImagesUntilScrollable();
         }
@@ -68,10 +68,10 @@ async function uploadFiles(files) {
     let reloadPage = false;
 
     try {
-        const response = await fetch('/images', {
+        const response = await fetch('/images/stream', {
             method: 'POST',
             headers: {
-                'Accept': 'application/json',
+                'Accept': 'application/x-ndjson',
                 'X-Requested-With': 'XMLHttpRequest',
                 ...window.getCsrfHeaders()
             },
@@ -79,11 +79,25 @@ async function uploadFiles(files) {
         });
 
         if (!response.ok) {
-            const errorData = await response.json();
-            throw new Error(errorData.message || 'Upload failed.');
+            throw new Error('Upload failed.');
         }
 
-        const data = await response.json();
+        const overlayText = uploadOverlay ? uploadOverlay.querySelector('.upload-overlay__text') : null;
+        const data = {uploaded: [], skipped: [], conflicted: []};
+        await window.readNdjsonStream(response, event => {
+            if (event.type === 'result') {
+                if (event.status === 'UPLOADED') data.uploaded.push(event.image);
+                else if (event.status === 'SKIPPED') data.skipped.push(event.image);
+                else if (event.status === 'CONFLICT') data.conflicted.push(event.conflict);
+            } else if (event.type === 'failure') {
+                console.error(`Failed to upload ${event.fileName}:`, event.message);
+            } else if (event.type === 'error') {
+                throw new Error(event.message || 'Upload failed.');
+            }
+            if (overlayText && (event.type === 'progress' || event.type === 'complete')) {
+                overlayText.textContent = `Uploading... ${event.processed} / ${event.total}`;
+            }
+        });
 
         if (data.uploaded && data.uploaded.length > 0) {
             window.displayGlobalAlert('success', `Successfully uploaded ${data.uploaded.length} image(s)!`);
@@ -171,6 +185,8 @@ async function uploadFiles(files) {
     } finally {
         if (uploadOverlay) {
             uploadOverlay.classList.remove('visible');
+            const overlayText = uploadOverlay.querySelector('.upload-overlay__text');
+            if (overlayText) overlayText.textContent = 'Uploading...';
         }
         const fileInput = document.getElementById('fileInput');
         if (fileInput) fileInput.value = '';
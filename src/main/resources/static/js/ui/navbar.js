@@ -181,20 +181,32 @@ document.addEventListener('DOMContentLoaded', function() {
                         uploadOverlay.classList.add('visible');
                     }
                     try {
-                        const response = await fetch('/images/sync-database', {
+                        const response = await fetch('/images/sync-database/stream', {
                             method: 'POST',
                             headers: {
-                                'Accept': 'application/json',
+                                'Accept': 'application/x-ndjson',
                                 ...window.getCsrfHeaders()
                             }
                         });
 
                         if (!response.ok) {
-                            const errorData = await response.json();
-                            throw new Error(errorData.message || 'Failed to update database.');
+                            throw new Error('Failed to update database.');
                         }
 
-                        const data = await response.json();
+                        const overlayText = uploadOverlay ? uploadOverlay.querySelector('.upload-overlay__text') : null;
+                        const data = {uploaded: [], skipped: [], conflicted: []};
+                        await window.readNdjsonStream(response, event => {
+                            if (event.type === 'result') {
+                                if (event.status === 'UPLOADED') data.uploaded.push(event.image);
+                                else if (event.status === 'SKIPPED') data.skipped.push(event.image);
+                                else if (event.status === 'CONFLICT') data.conflicted.push(event.conflict);
+                            } else if (event.type === 'error') {
+                                throw new Error(event.message || 'Failed to update database.');
+                            }
+                            if (overlayText && (event.type === 'progress' || event.type === 'complete')) {
+                                overlayText.textContent = `Updating... ${event.processed} / ${event.total}`;
+                            }
+                        });
                         let message = `Database update complete.\nUploaded: ${data.uploaded.length}\nSkipped: ${data.skipped.length}\nConflicted: ${data.conflicted.length}`;
                         
                         if (data.conflicted.length > 0) {
@@ -214,6 +226,8 @@ document.addEventListener('DOMContentLoaded', function() {
                     } finally {
                         if (uploadOverlay) {
                             uploadOverlay.classList.remove('visible');
+                            const overlayText = uploadOverlay.querySelector('.upload-overlay__text');
+                            if (overlayText) overlayText.textContent = 'Uploading...';
                         }
                     }
                 }
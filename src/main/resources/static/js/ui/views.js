@@ -28,6 +28,7 @@ document.addEventListener('DOMContentLoaded', function() {
 
         if (imageGrid) imageGrid.innerHTML = '';
         window.currentPage = 0;
+        window.nextCursor = null;
         window.allImagesLoaded = false;
     }
 
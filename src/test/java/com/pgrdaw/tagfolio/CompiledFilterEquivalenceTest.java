@@ -0,0 +1,354 @@
+package com.pgrdaw.tagfolio;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.service.CompiledFilter;
+import com.pgrdaw.tagfolio.service.FilterExpressionEvaluator;
+import com.pgrdaw.tagfolio.service.util.FilterFieldService;
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks compiled filters against the RPN evaluator they replaced, on random token lists that include malformed
+ * parentheses, split comparators, unknown fields and invalid dates.
+ */
+public class CompiledFilterEquivalenceTest {
+
+    private static final int EXPRESSIONS = 20_000;
+    private static final int IMAGES = 40;
+    private static final List<String> TAGS = List.of("red", "green", "blue", "Red", "sky");
+    private static final List<String> FIELDS = List.of("rating", "Rating", "created", "MODIFIED", "imported",
+            "createdat", "originalfilename", "unknown");
+    private static final List<String> COMPARATORS = List.of("=", "<", ">", "<=", ">=", "!=");
+    private static final List<String> VALUES = List.of("3", " 4 ", "0", "5", "-1", "x", "2024", "2023-06",
+            "2024-02-29", "2023-02-29", "2024-13", "2024-05-17 10:20:30", "2024-05-17T10:20:30", "abc", "");
+
+    private final FilterFieldService filterFieldService = new FilterFieldService();
+    private final FilterExpressionEvaluator evaluator =
+            new FilterExpressionEvaluator(filterFieldService, new ObjectMapper(), 0);
+    private final ReferenceEvaluator reference = new ReferenceEvaluator(filterFieldService);
+
+    @Test
+    void testCompiledFiltersMatchReferenceEvaluator() {
+        Random random = new Random(20260101L);
+        List<Image> images = new ArrayList<>();
+        User user = new User("equivalence@tagfolio.com", "password");
+        for (int i = 0; i < IMAGES; i++) {
+            images.add(randomImage(random, user, (long) i + 1));
+        }
+
+        for (int i = 0; i < EXPRESSIONS; i++) {
+            List<Map<String, String>> expression = randomExpression(random);
+            CompiledFilter compiled = evaluator.compile(expression);
+            List<Long> expected = reference.evaluate(images, expression);
+            List<Long> actual = images.stream().filter(compiled::matches).map(Image::getId).toList();
+            assertEquals(expected, actual, "Expression " + expression);
+        }
+    }
+
+    private Image randomImage(Random random, User user, Long id) {
+        Image image = new Image(user);
+        image.setId(id);
+        // Stored dates have whole seconds, the resolution compiled filters compare at.
+        image.setCreatedAt(random.nextInt(6) == 0 ? null : randomDate(random));
+        image.setModifiedAt(random.nextInt(6) == 0 ? null : randomDate(random));
+        image.setImportedAt(random.nextInt(6) == 0 ? null : randomDate(random));
+        image.setRating(random.nextInt(7) == 0 ? null : random.nextInt(6));
+        for (String tag : TAGS) {
+            if (random.nextBoolean()) {
+                image.getTags().add(new Tag(tag));
+            }
+        }
+        return image;
+    }
+
+    private LocalDateTime randomDate(Random random) {
+        LocalDateTime start = LocalDateTime.of(2022, 11, 1, 0, 0, 0);
+        return start.plusSeconds(random.nextInt(3 * 365 * 24 * 3600));
+    }
+
+    private List<Map<String, String>> randomExpression(Random random) {
+        List<Map<String, String>> expression = new ArrayList<>();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(9)) {
+                case 0, 1 -> expression.add(token("tag", pick(random, TAGS)));
+                case 2 -> expression.add(token("operator", pick(random, List.of("AND", "OR", "NOT"))));
+                case 3 -> expression.add(token("parenthesis", pick(random, List.of("(", ")"))));
+                case 4, 5 -> {
+                    expression.add(token("comparator-field", pick(random, FIELDS)));
+                    String comparator = pick(random, COMPARATORS);
+                    if (comparator.length() == 2 && random.nextBoolean()) {
+                        // The editor sends two-character comparators as two tokens.
+                        expression.add(token("comparator", comparator.substring(0, 1)));
+                        expression.add(token("comparator", comparator.substring(1)));
+                    } else {
+                        expression.add(token("comparator", comparator));
+                    }
+                    expression.add(token("value", pick(random, VALUES)));
+                }
+                case 6 -> expression.add(token("comparator", pick(random, COMPARATORS)));
+                case 7 -> expression.add(token("value", pick(random, VALUES)));
+                default -> expression.add(token("comparator-field", pick(random, FIELDS)));
+            }
+        }
+        return expression;
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Map<String, String> token(String type, String value) {
+        return Map.of("type", type, "value", value);
+    }
+
+    /**
+     * The RPN evaluator filters were evaluated with before they were compiled, kept as the reference.
+     */
+    private static final class ReferenceEvaluator {
+
+        private static final Map<String, Integer> PRECEDENCE = Map.of("OR", 1, "AND", 2, "NOT", 3);
+
+        private static final List<DateTimeFormatter> DATE_FORMATTERS = Arrays.asList(
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+                DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+                DateTimeFormatter.ofPattern("yyyy-MM"),
+                DateTimeFormatter.ofPattern("yyyy")
+        );
+
+        private record DateRange(LocalDateTime start, LocalDateTime end) {
+        }
+
+        private final FilterFieldService filterFieldService;
+
+        ReferenceEvaluator(FilterFieldService filterFieldService) {
+            this.filterFieldService = filterFieldService;
+        }
+
+        List<Long> evaluate(List<Image> allImages, List<Map<String, String>> expression) {
+            if (expression == null || expression.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Map<String, String>> rpn = convertToRPN(consolidateExpression(expression));
+            if (rpn == null) {
+                return Collections.emptyList();
+            }
+            return allImages.stream()
+                    .filter(image -> evaluateRPN(rpn, image))
+                    .map(Image::getId)
+                    .collect(Collectors.toList());
+        }
+
+        private List<Map<String, String>> consolidateExpression(List<Map<String, String>> expression) {
+            List<Map<String, String>> result = new ArrayList<>();
+            List<Map<String, String>> temp = new ArrayList<>(expression);
+
+            for (int i = 0; i < temp.size() - 1; i++) {
+                Map<String, String> current = temp.get(i);
+                Map<String, String> next = temp.get(i + 1);
+                if ("comparator".equals(current.get("type")) && "comparator".equals(next.get("type"))) {
+                    String combinedValue = current.get("value") + next.get("value");
+                    if (Arrays.asList(">=", "<=").contains(combinedValue)) {
+                        temp.set(i, Map.of("type", "comparator", "value", combinedValue));
+                        temp.remove(i + 1);
+                        i--;
+                    }
+                }
+            }
+
+            for (int i = 0; i < temp.size(); i++) {
+                Map<String, String> item = temp.get(i);
+                if ("comparator-field".equals(item.get("type")) && i + 2 < temp.size()) {
+                    Map<String, String> next1 = temp.get(i + 1);
+                    Map<String, String> next2 = temp.get(i + 2);
+                    if ("comparator".equals(next1.get("type")) && "value".equals(next2.get("type"))) {
+                        String fieldRaw = item.get("value");
+                        String fieldCanonical = filterFieldService.getAllowedFields().stream()
+                                .filter(f -> f.equalsIgnoreCase(fieldRaw))
+                                .findFirst()
+                                .orElse(null);
+                        if (fieldCanonical != null) {
+                            Map<String, String> newField = new HashMap<>();
+                            newField.put("type", "field");
+                            newField.put("field", fieldCanonical);
+                            newField.put("op", next1.get("value"));
+                            newField.put("rawValue", next2.get("value"));
+                            result.add(newField);
+                            i += 2;
+                            continue;
+                        }
+                    }
+                }
+                result.add(item);
+            }
+            return result;
+        }
+
+        private boolean evaluateRPN(List<Map<String, String>> rpn, Image image) {
+            Set<String> imageTags = image.getTags().stream().map(Tag::getName).collect(Collectors.toSet());
+            Deque<Boolean> stack = new ArrayDeque<>();
+            for (Map<String, String> item : rpn) {
+                String type = item.get("type");
+                String value = item.get("value");
+                if ("tag".equals(type)) {
+                    stack.push(imageTags.contains(value));
+                } else if ("field".equals(type)) {
+                    stack.push(evaluateFieldPredicate(item, image));
+                } else if ("operator".equals(type)) {
+                    if ("NOT".equals(value)) {
+                        if (stack.isEmpty()) {
+                            return false;
+                        }
+                        stack.push(!stack.pop());
+                    } else {
+                        if (stack.size() < 2) {
+                            return false;
+                        }
+                        boolean op2 = stack.pop();
+                        boolean op1 = stack.pop();
+                        stack.push("AND".equals(value) ? op1 && op2 : op1 || op2);
+                    }
+                }
+            }
+            return stack.size() == 1 && stack.pop();
+        }
+
+        private List<Map<String, String>> convertToRPN(List<Map<String, String>> infix) {
+            Deque<Map<String, String>> outputQueue = new ArrayDeque<>();
+            Deque<Map<String, String>> operatorStack = new ArrayDeque<>();
+            for (Map<String, String> item : infix) {
+                String type = item.get("type");
+                String value = item.get("value");
+                switch (type) {
+                    case "tag", "field" -> outputQueue.add(item);
+                    case "operator" -> {
+                        while (!operatorStack.isEmpty() && "operator".equals(operatorStack.peek().get("type")) &&
+                                (PRECEDENCE.get(operatorStack.peek().get("value")) > PRECEDENCE.get(value) ||
+                                        (PRECEDENCE.get(operatorStack.peek().get("value")).equals(PRECEDENCE.get(value)) && !"NOT".equals(value)))) {
+                            outputQueue.add(operatorStack.pop());
+                        }
+                        operatorStack.push(item);
+                    }
+                    case "parenthesis" -> {
+                        if ("(".equals(value)) {
+                            operatorStack.push(item);
+                        } else {
+                            while (!operatorStack.isEmpty() && !"(".equals(operatorStack.peek().get("value"))) {
+                                outputQueue.add(operatorStack.pop());
+                            }
+                            if (operatorStack.isEmpty()) {
+                                return null;
+                            }
+                            operatorStack.pop();
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            while (!operatorStack.isEmpty()) {
+                Map<String, String> op = operatorStack.pop();
+                if ("(".equals(op.get("value"))) {
+                    return null;
+                }
+                outputQueue.add(op);
+            }
+            return new ArrayList<>(outputQueue);
+        }
+
+        private boolean evaluateFieldPredicate(Map<String, String> item, Image image) {
+            String field = item.get("field").toLowerCase();
+            String op = item.get("op");
+            String rawValue = item.get("rawValue");
+            switch (field) {
+                case "created", "modified", "imported" -> {
+                    LocalDateTime fieldValue = switch (field) {
+                        case "created" -> image.getCreatedAt();
+                        case "modified" -> image.getModifiedAt();
+                        default -> image.getImportedAt();
+                    };
+                    if (fieldValue == null) return false;
+                    DateRange range = parseDateRange(rawValue);
+                    if (range == null) return false;
+                    return switch (op) {
+                        case "=" -> !fieldValue.isBefore(range.start) && !fieldValue.isAfter(range.end);
+                        case "<" -> fieldValue.isBefore(range.start);
+                        case "<=" -> !fieldValue.isAfter(range.end);
+                        case ">" -> fieldValue.isAfter(range.end);
+                        case ">=" -> !fieldValue.isBefore(range.start);
+                        default -> false;
+                    };
+                }
+                case "rating" -> {
+                    Integer rating = image.getRating();
+                    if (rating == null) return false;
+                    Integer value;
+                    try {
+                        value = Integer.valueOf(rawValue.trim());
+                    } catch (Exception e) {
+                        return false;
+                    }
+                    return switch (op) {
+                        case "<" -> rating < value;
+                        case ">" -> rating > value;
+                        case "=" -> rating.intValue() == value;
+                        case "<=" -> rating <= value;
+                        case ">=" -> rating >= value;
+                        default -> false;
+                    };
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+
+        private DateRange parseDateRange(String s) {
+            String str = s.trim();
+            try {
+                if (str.matches("^\\d{4}$")) {
+                    int year = Integer.parseInt(str);
+                    return new DateRange(LocalDateTime.of(year, 1, 1, 0, 0, 0),
+                            LocalDateTime.of(year, 12, 31, 23, 59, 59, 999999999));
+                } else if (str.matches("^\\d{4}-\\d{2}$")) {
+                    String[] parts = str.split("-");
+                    LocalDateTime start = LocalDateTime.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 1, 0, 0, 0);
+                    LocalDateTime end = start.withDayOfMonth(start.toLocalDate().lengthOfMonth())
+                            .withHour(23).withMinute(59).withSecond(59).withNano(999999999);
+                    return new DateRange(start, end);
+                } else if (str.matches("^\\d{4}-\\d{2}-\\d{2}$")) {
+                    LocalDate date = LocalDate.parse(str);
+                    return new DateRange(date.atStartOfDay(), date.atTime(23, 59, 59, 999999999));
+                } else {
+                    LocalDateTime dateTime = parseDateString(str.replace(' ', 'T'));
+                    return new DateRange(dateTime, dateTime);
+                }
+            } catch (NumberFormatException | DateTimeException e) {
+                return null;
+            }
+        }
+
+        private LocalDateTime parseDateString(String dateString) {
+            for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+                try {
+                    return LocalDateTime.parse(dateString, formatter);
+                } catch (DateTimeParseException e) {
+                    // Try the next format.
+                }
+            }
+            throw new DateTimeParseException("Unable to parse date string: " + dateString, dateString, 0);
+        }
+    }
+}
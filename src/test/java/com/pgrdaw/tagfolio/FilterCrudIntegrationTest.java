@@ -4,10 +4,22 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pgrdaw.tagfolio.dto.FilterResponse;
 import com.pgrdaw.tagfolio.model.Filter;
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Role;
+import com.pgrdaw.tagfolio.model.RoleType;
+import com.pgrdaw.tagfolio.model.Tag;
 import com.pgrdaw.tagfolio.model.User;
 import com.pgrdaw.tagfolio.repository.FilterRepository;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.repository.RoleRepository;
 import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.CompiledFilter;
+import com.pgrdaw.tagfolio.service.FilterExpressionEvaluator;
 import com.pgrdaw.tagfolio.service.FilterService;
+import com.pgrdaw.tagfolio.service.FilterSqlService;
+import com.pgrdaw.tagfolio.service.ImagePaginationService;
+import com.pgrdaw.tagfolio.service.SharedFilterSnapshotService;
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,8 +31,12 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,6 +64,27 @@ public class FilterCrudIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private FilterExpressionEvaluator filterExpressionEvaluator;
+
+    @Autowired
+    private FilterSqlService filterSqlService;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private SharedFilterSnapshotService sharedFilterSnapshotService;
+
+    @Autowired
+    private ImagePaginationService imagePaginationService;
+
+    @Autowired
+    private ImageSortService imageSortService;
+
     private Long testUserId;
 
     @BeforeEach
@@ -63,6 +100,7 @@ public class FilterCrudIntegrationTest {
     @AfterEach
     void tearDown() {
         filterRepository.deleteAll();
+        imageRepository.deleteAll();
         userRepository.deleteAll();
     }
 
@@ -70,6 +108,30 @@ public class FilterCrudIntegrationTest {
         return objectMapper.writeValueAsString(List.of(Map.of("type", "tag", "value", tag)));
     }
 
+    private Map<String, String> token(String type, String value) {
+        return Map.of("type", type, "value", value);
+    }
+
+    private List<Map<String, String>> comparison(String field, String comparator, String value) {
+        return List.of(token("comparator-field", field), token("comparator", comparator), token("value", value));
+    }
+
+    @SafeVarargs
+    private List<Map<String, String>> expression(List<Map<String, String>>... parts) {
+        List<Map<String, String>> expression = new ArrayList<>();
+        for (List<Map<String, String>> part : parts) {
+            expression.addAll(part);
+        }
+        return expression;
+    }
+
+    private Long createImage(User user, String fileName, LocalDateTime createdAt, Integer rating, Tag... tags) {
+        Image image = TestImages.newImage(user, fileName, rating, tags);
+        image.setCreatedAt(createdAt);
+        imageRepository.save(image);
+        return image.getId();
+    }
+
     @Test
     void testCreateFilter() throws JsonProcessingException {
         User user = userRepository.findById(testUserId).orElseThrow();
@@ -156,4 +218,120 @@ public class FilterCrudIntegrationTest {
         assertNotNull(sharedFilter.getSharedFilter());
         assertNotNull(sharedFilter.getSharedFilter().getToken());
     }
+
+    @Test
+    void testAdminSharedFilterIncludesImagesOfAllOwners() throws JsonProcessingException {
+        Role adminRole = roleRepository.findByName(RoleType.ADMIN).orElseThrow();
+        User admin = new User("admin@tagfolio.com", passwordEncoder.encode("password"));
+        admin.addRole(adminRole);
+        userRepository.save(admin);
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Tag shared = new Tag("admin-shared-tag");
+        Long userImageId = createImage(user, "b-user.jpg", null, 1, shared);
+        Long adminImageId = createImage(admin, "a-admin.jpg", null, 2, shared);
+        createImage(user, "c-other.jpg", null, 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        User currentAdmin = userRepository.findById(admin.getId()).orElseThrow();
+        Filter filter = filterService.saveFilter("Admin Filter", createExpressionJson("admin-shared-tag"), currentAdmin);
+        String shareableLink = filterService.generateShareableLink(filter.getId(), currentAdmin);
+        entityManager.flush();
+        entityManager.clear();
+
+        String token = shareableLink.substring(shareableLink.lastIndexOf('/') + 1);
+        SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.getSnapshot(token);
+        assertNotNull(snapshot);
+        assertEquals(new TreeSet<>(List.of(userImageId, adminImageId)), new TreeSet<>(snapshot.getImageIds()));
+        assertTrue(snapshot.contains(userImageId));
+        assertEquals(List.of(adminImageId, userImageId),
+                sharedFilterSnapshotService.getOrder(snapshot, "Filename", "asc").asList());
+        assertEquals(List.of(userImageId, adminImageId),
+                sharedFilterSnapshotService.getOrder(snapshot, "Rating", "asc").asList());
+    }
+
+    @Test
+    void testSqlEvaluationMatchesInMemoryEvaluation() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Tag beach = new Tag("sql-test-beach");
+        Tag sunset = new Tag("sql-test-sunset");
+        createImage(user, "a.jpg", LocalDateTime.of(2023, 5, 10, 12, 0, 0), 5, beach, sunset);
+        createImage(user, "b.jpg", LocalDateTime.of(2024, 1, 1, 0, 0, 0), 3, beach);
+        createImage(user, "c.jpg", LocalDateTime.of(2023, 12, 31, 23, 59, 59), null, sunset);
+        createImage(user, "d.jpg", null, 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<String, String> and = token("operator", "AND");
+        Map<String, String> or = token("operator", "OR");
+        Map<String, String> not = token("operator", "NOT");
+        Map<String, String> beachTag = token("tag", "sql-test-beach");
+        Map<String, String> sunsetTag = token("tag", "sql-test-sunset");
+        List<List<Map<String, String>>> expressions = List.of(
+                List.of(beachTag),
+                List.of(beachTag, and, not, sunsetTag),
+                List.of(not, token("tag", "sql-test-missing")),
+                comparison("rating", ">=", "3"),
+                expression(List.of(not), comparison("rating", ">", "3")),
+                comparison("created", "=", "2023"),
+                comparison("created", "<", "2024-01-01"),
+                comparison("created", "<=", "2023-12-31 23:59:59"),
+                comparison("created", ">", "2023-12"),
+                comparison("imported", "=", "2025-06-01 09:30:15"),
+                expression(List.of(token("parenthesis", "("), sunsetTag, or), comparison("rating", "<", "2"),
+                        List.of(token("parenthesis", ")"), and, not, beachTag)),
+                List.of(beachTag, and));
+
+        User currentUser = userRepository.findById(testUserId).orElseThrow();
+        List<Image> images = imageRepository.findByUserId(testUserId);
+        for (List<Map<String, String>> expression : expressions) {
+            TreeSet<Long> expected = new TreeSet<>(filterExpressionEvaluator.evaluate(images, expression));
+            TreeSet<Long> actual = new TreeSet<>(filterSqlService.findMatchingImageIds(currentUser, filterExpressionEvaluator.compile(expression)));
+            assertEquals(expected, actual, "Expression: " + expression);
+        }
+    }
+
+    @Test
+    void testSqlSortingMatchesInMemorySorting() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Tag beach = new Tag("sql-sort-beach");
+        Long a = createImage(user, "a.jpg", LocalDateTime.of(2023, 5, 10, 12, 0, 0), 3, beach);
+        Long b = createImage(user, "B.jpg", null, 3, beach);
+        createImage(user, "c.jpg", LocalDateTime.of(2024, 1, 1, 0, 0, 0), null, beach);
+        Long d = createImage(user, "d.jpg", LocalDateTime.of(2022, 7, 1, 8, 0, 0), 1);
+        createImage(user, "e.jpg", LocalDateTime.of(2021, 1, 1, 0, 0, 0), 5, beach);
+        entityManager.flush();
+        entityManager.clear();
+
+        User currentUser = userRepository.findById(testUserId).orElseThrow();
+        List<Image> images = imageRepository.findByUserId(testUserId);
+        List<Map<String, String>> expression = List.of(token("tag", "sql-sort-beach"));
+        CompiledFilter filter = filterExpressionEvaluator.compile(expression);
+        List<Long> matching = filterExpressionEvaluator.evaluate(images, expression);
+        List<Long> candidates = List.of(a, b, d);
+
+        for (String sort : List.of("Filename", "Created", "Rating", "Imported")) {
+            for (String direction : List.of("asc", "desc")) {
+                Comparator<Image> order = imageSortService.getImageComparator(sort, direction).thenComparing(Image::getId);
+                List<Long> expected = images.stream().sorted(order).map(Image::getId).filter(matching::contains).toList();
+                String message = sort + " " + direction;
+
+                assertEquals(expected, imagePaginationService.findSortedImageIds(List.of(testUserId), null, filter, sort, direction), message);
+                assertEquals(expected.stream().filter(candidates::contains).toList(),
+                        imagePaginationService.findSortedImageIds(List.of(testUserId), candidates, filter, sort, direction), message);
+
+                List<Long> paged = new ArrayList<>();
+                String cursor = null;
+                do {
+                    ImagePaginationService.ImagePage page = imagePaginationService.findPage(currentUser, filter, sort, direction, cursor, 2);
+                    paged.addAll(page.imageIds());
+                    cursor = page.nextCursor();
+                } while (cursor != null);
+                assertEquals(expected, paged, message);
+            }
+        }
+
+        assertEquals(new TreeSet<>(List.of(a, b)),
+                new TreeSet<>(filterSqlService.findMatchingImageIds(List.of(testUserId), filter, candidates)));
+    }
 }
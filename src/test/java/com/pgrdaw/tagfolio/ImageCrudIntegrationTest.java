@@ -100,6 +100,21 @@ public class ImageCrudIntegrationTest {
         assertTrue(Files.exists(thumbnailPath));
     }
 
+    @Test
+    void testReuploadIdenticalFileIsSkipped() throws IOException {
+        ImageService.UploadResult result = imageService.processAndSaveFile(multipartFile, testUser);
+
+        assertEquals("SKIPPED", result.getStatus());
+        assertEquals(testImage.getId(), result.getImage().getId());
+
+        Path incomingDir = fileStorageService.getOriginalsPath()
+                .resolve(String.valueOf(testUser.getId()))
+                .resolve(".incoming");
+        try (var stream = Files.list(incomingDir)) {
+            assertEquals(0, stream.count(), "Spooled uploads should be removed once processed.");
+        }
+    }
+
     @Test
     void testReadImage() {
         Image foundImage = imageService.getImageById(testImage.getId());
@@ -0,0 +1,182 @@
+package com.pgrdaw.tagfolio;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.repository.TagRepository;
+import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.CompiledFilter;
+import com.pgrdaw.tagfolio.service.FilterExpressionEvaluator;
+import com.pgrdaw.tagfolio.service.ImageIndexService;
+import com.pgrdaw.tagfolio.service.ImagePaginationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ImageIndexIntegrationTest {
+
+    @Autowired
+    private ImageIndexService imageIndexService;
+
+    @Autowired
+    private ImagePaginationService imagePaginationService;
+
+    @Autowired
+    private FilterExpressionEvaluator filterExpressionEvaluator;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Long testUserId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        testUserId = transactionTemplate.execute(status ->
+                userRepository.save(new User("indexuser@tagfolio.com", passwordEncoder.encode("password"))).getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            TestImages.deleteImages(jdbcTemplate, testUserId);
+            tagRepository.findByNameIn(Set.of("index-red", "index-blue")).forEach(tagRepository::delete);
+            userRepository.deleteById(testUserId);
+        });
+        imageIndexService.evict(testUserId);
+    }
+
+    private Long createImage(String fileName, Integer rating, String... tagNames) {
+        return transactionTemplate.execute(status -> {
+            Tag[] tags = Arrays.stream(tagNames)
+                    .map(tagName -> tagRepository.findByName(tagName).orElseGet(() -> tagRepository.save(new Tag(tagName))))
+                    .toArray(Tag[]::new);
+            return imageRepository.save(TestImages.newImage(userRepository.findById(testUserId).orElseThrow(), fileName, rating, tags)).getId();
+        });
+    }
+
+    private CompiledFilter tagFilter(String tagName) {
+        return filterExpressionEvaluator.compile(List.of(Map.of("type", "tag", "value", tagName)));
+    }
+
+    private TreeSet<Long> findMatching(User user, String tagName) {
+        return new TreeSet<>(imageIndexService.findMatchingImageIds(user, tagFilter(tagName)));
+    }
+
+    @Test
+    void testIndexFollowsCommittedChanges() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Long first = createImage("first.jpg", 1, "index-red");
+        Long second = createImage("second.jpg", 3, "index-blue");
+
+        assertEquals(new TreeSet<>(List.of(first)), findMatching(user, "index-red"));
+        assertEquals(List.of(first, second), imageIndexService.sortImageIds(user, null, "Rating", "asc"));
+
+        long version = imageIndexService.getDataVersion(testUserId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Image image = imageRepository.findById(second).orElseThrow();
+            image.getTags().add(tagRepository.findByName("index-red").orElseThrow());
+            imageRepository.findById(first).orElseThrow().setRating(5);
+        });
+
+        assertTrue(imageIndexService.getDataVersion(testUserId) > version);
+        assertEquals(new TreeSet<>(List.of(first, second)), findMatching(user, "index-red"));
+        assertEquals(List.of(second, first), imageIndexService.sortImageIds(user, null, "Rating", "asc"));
+        assertEquals(List.of(first, second), imageIndexService.sortImageIds(user, null, "Rating", "desc"));
+
+        transactionTemplate.executeWithoutResult(status -> imageRepository.deleteById(first));
+
+        assertEquals(new TreeSet<>(List.of(second)), findMatching(user, "index-red"));
+        assertEquals(List.of(second), imageIndexService.sortImageIds(user, null, "Rating", "asc"));
+    }
+
+    @Test
+    void testRolledBackChangesLeaveTheIndexUnchanged() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Long image = createImage("kept.jpg", 2, "index-blue");
+        assertEquals(new TreeSet<>(List.of(image)), findMatching(user, "index-blue"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            imageRepository.deleteById(image);
+            imageRepository.flush();
+            // Within the transaction, its own change is seen.
+            assertTrue(findMatching(user, "index-blue").isEmpty());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(new TreeSet<>(List.of(image)), findMatching(user, "index-blue"));
+    }
+
+    @Test
+    void testIndexMissingAnImageIsRebuilt() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        Long indexed = createImage("indexed.jpg", 1);
+        assertEquals(List.of(indexed), imageIndexService.sortImageIds(user, null, "Rating", "asc"));
+
+        Long unseen = TestImages.insertImage(jdbcTemplate, testUserId, "unseen.jpg", 4);
+
+        assertEquals(List.of(indexed, unseen), imageIndexService.sortImageIds(user, List.of(indexed, unseen), "Rating", "asc"));
+        assertEquals(new TreeSet<>(List.of(indexed, unseen)),
+                new TreeSet<>(imageIndexService.findReadableImageIds(user, List.of(indexed, unseen))));
+    }
+
+    @Test
+    void testPagesFollowTheFileNameOrderOfTheIndex() {
+        User user = userRepository.findById(testUserId).orElseThrow();
+        // The dotless i is its own lower case, but upper-cases to I: both orders must keep it after every plain i.
+        createImage("\u0131a.jpg", null);
+        createImage("ib.jpg", null);
+        createImage("IC.jpg", null);
+        createImage("Ia.jpg", null);
+        createImage("b.jpg", null);
+
+        for (String direction : List.of("asc", "desc")) {
+            List<Long> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                ImagePaginationService.ImagePage page = imagePaginationService.findPage(user, "Filename", direction, cursor, 2);
+                paged.addAll(page.imageIds());
+                cursor = page.nextCursor();
+            } while (cursor != null);
+
+            assertEquals(imageIndexService.sortImageIds(user, null, "Filename", direction), paged);
+        }
+    }
+}
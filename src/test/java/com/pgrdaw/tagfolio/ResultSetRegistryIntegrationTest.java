@@ -0,0 +1,120 @@
+package com.pgrdaw.tagfolio;
+
+import com.pgrdaw.tagfolio.service.ResultSetRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ResultSetRegistryIntegrationTest {
+
+    @Autowired
+    private ResultSetRegistry resultSetRegistry;
+
+    private List<Long> imageIds(int count) {
+        return LongStream.rangeClosed(1, count).boxed().toList();
+    }
+
+    @Test
+    void testRegisteredListIsFoundByHandle() {
+        String handle = resultSetRegistry.register(List.of(30L, 10L, 20L));
+
+        ResultSetRegistry.ResultSet resultSet = resultSetRegistry.get(handle);
+        assertNotNull(resultSet);
+        assertEquals(List.of(30L, 10L, 20L), resultSet.asList());
+        assertEquals(1, resultSet.indexOf(10L));
+        assertEquals(-1, resultSet.indexOf(40L));
+        assertEquals(30L, resultSet.getPrevious(10L));
+        assertEquals(20L, resultSet.getNext(10L));
+        assertNull(resultSet.getPrevious(30L));
+        assertNull(resultSet.getNext(20L));
+
+        assertNull(resultSetRegistry.get(null));
+        assertNull(resultSetRegistry.get("unknown-handle"));
+        assertNotEquals(handle, resultSetRegistry.register(List.of(30L, 10L, 20L)));
+    }
+
+    @Test
+    void testSessionListIsReplacedAndRemoved() {
+        MockHttpSession session = new MockHttpSession();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+
+        resultSetRegistry.store(session, ResultSetRegistry.NAVIGATION, List.of(1L, 2L));
+        String firstHandle = (String) session.getAttribute(ResultSetRegistry.NAVIGATION);
+        assertEquals(List.of(1L, 2L), resultSetRegistry.find(request, ResultSetRegistry.NAVIGATION).asList());
+        assertNull(resultSetRegistry.find(session, ResultSetRegistry.SHARED));
+
+        resultSetRegistry.store(session, ResultSetRegistry.NAVIGATION, List.of(3L));
+        assertNull(resultSetRegistry.get(firstHandle));
+        assertEquals(List.of(3L), resultSetRegistry.find(session, ResultSetRegistry.NAVIGATION).asList());
+
+        resultSetRegistry.remove(session, ResultSetRegistry.NAVIGATION);
+        assertNull(session.getAttribute(ResultSetRegistry.NAVIGATION));
+        assertNull(resultSetRegistry.find(session, ResultSetRegistry.NAVIGATION));
+
+        assertNull(resultSetRegistry.find(new MockHttpServletRequest(), ResultSetRegistry.NAVIGATION));
+    }
+
+    @Test
+    void testListsAreEvictedOverTheMemoryBudget() {
+        // Each list of 1000 images takes about 32 KB, so only one fits in the budget.
+        ResultSetRegistry registry = new ResultSetRegistry(30, 48 * 1024, System::nanoTime);
+        List<String> handles = List.of(
+                registry.register(imageIds(1000)),
+                registry.register(imageIds(1000)),
+                registry.register(imageIds(1000)));
+
+        assertEquals(1, handles.stream().filter(handle -> registry.get(handle) != null).count());
+        assertNull(registry.get(registry.register(imageIds(10000))));
+    }
+
+    @Test
+    void testSharedListIsKeptInTheSession() {
+        ResultSetRegistry registry = new ResultSetRegistry(30, 48 * 1024, System::nanoTime);
+        MockHttpSession session = new MockHttpSession();
+        registry.store(session, ResultSetRegistry.SHARED, imageIds(1000));
+        List<String> handles = List.of(
+                registry.register(imageIds(1000)),
+                registry.register(imageIds(1000)),
+                registry.register(imageIds(1000)));
+
+        assertEquals(1, handles.stream().filter(handle -> registry.get(handle) != null).count());
+        assertEquals(1000, registry.find(session, ResultSetRegistry.SHARED).size());
+
+        registry.remove(session, ResultSetRegistry.SHARED);
+        assertNull(session.getAttribute(ResultSetRegistry.SHARED));
+        assertNull(registry.find(session, ResultSetRegistry.SHARED));
+    }
+
+    @Test
+    void testListsExpireWhenNotRead() {
+        AtomicLong nanos = new AtomicLong();
+        ResultSetRegistry registry = new ResultSetRegistry(30, 1024 * 1024, nanos::get);
+        String read = registry.register(List.of(1L));
+        String unread = registry.register(List.of(2L));
+
+        nanos.addAndGet(Duration.ofMinutes(20).toNanos());
+        assertNotNull(registry.get(read));
+
+        nanos.addAndGet(Duration.ofMinutes(20).toNanos());
+        assertNotNull(registry.get(read));
+        assertNull(registry.get(unread));
+
+        nanos.addAndGet(Duration.ofMinutes(31).toNanos());
+        assertNull(registry.get(read));
+    }
+}
@@ -0,0 +1,139 @@
+package com.pgrdaw.tagfolio;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgrdaw.tagfolio.service.util.SharedCapabilityService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SharedCapabilityIntegrationTest {
+
+    private static final String SECRET = "test-shared-capability-secret";
+
+    @Autowired
+    private SharedCapabilityService sharedCapabilityService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String issue(SharedCapabilityService service, String token, String version) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.issue(token, version, "Rating", "desc", new MockHttpServletRequest(), response);
+        String header = response.getHeader(HttpHeaders.SET_COOKIE);
+        assertNotNull(header);
+        assertTrue(header.startsWith(SharedCapabilityService.COOKIE_NAME + "="));
+        assertTrue(header.contains("HttpOnly"));
+        return header.substring(SharedCapabilityService.COOKIE_NAME.length() + 1, header.indexOf(';'));
+    }
+
+    private MockHttpServletRequest requestWith(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SharedCapabilityService.COOKIE_NAME, value));
+        return request;
+    }
+
+    private String sign(SharedCapabilityService.Capability capability) throws Exception {
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(capability));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testIssuedCapabilityIsVerified() {
+        String value = issue(sharedCapabilityService, "shared-token", "abc123");
+
+        SharedCapabilityService.Capability capability = sharedCapabilityService.find(requestWith(value));
+        assertNotNull(capability);
+        assertEquals("shared-token", capability.token());
+        assertEquals("abc123", capability.version());
+        assertEquals("Rating", capability.sort());
+        assertEquals("desc", capability.direction());
+        assertTrue(capability.expiresAt() > Instant.now().getEpochSecond());
+
+        assertNull(sharedCapabilityService.find(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void testCapabilitySignedWithTheSharedSecretIsVerified() throws Exception {
+        long expiresAt = Instant.now().plusSeconds(60).getEpochSecond();
+        String value = sign(new SharedCapabilityService.Capability("shared-token", "abc123", null, null, expiresAt));
+
+        SharedCapabilityService.Capability capability = sharedCapabilityService.find(requestWith(value));
+        assertNotNull(capability);
+        assertEquals("shared-token", capability.token());
+    }
+
+    @Test
+    void testTamperedCapabilityIsRejected() throws Exception {
+        String value = issue(sharedCapabilityService, "shared-token", "abc123");
+        String payload = value.substring(0, value.indexOf('.'));
+        String signature = value.substring(value.indexOf('.') + 1);
+
+        long expiresAt = Instant.now().plusSeconds(60).getEpochSecond();
+        String forged = sign(new SharedCapabilityService.Capability("other-token", "abc123", null, null, expiresAt));
+        String forgedPayload = forged.substring(0, forged.indexOf('.'));
+
+        assertNull(sharedCapabilityService.find(requestWith(forgedPayload + "." + signature)));
+        assertNull(sharedCapabilityService.find(requestWith(payload + "." + signature.substring(1))));
+        assertNull(sharedCapabilityService.find(requestWith(payload)));
+        assertNull(sharedCapabilityService.find(requestWith("." + signature)));
+        assertNull(sharedCapabilityService.find(requestWith("not-base64!." + signature)));
+    }
+
+    @Test
+    void testCapabilitySignedWithAnotherSecretIsRejected() {
+        SharedCapabilityService otherInstance = new SharedCapabilityService(objectMapper, "another-secret", false, 24);
+        String value = issue(otherInstance, "shared-token", "abc123");
+
+        assertNotNull(otherInstance.find(requestWith(value)));
+        assertNull(sharedCapabilityService.find(requestWith(value)));
+    }
+
+    @Test
+    void testExpiredCapabilityIsRejected() throws Exception {
+        long expiresAt = Instant.now().minusSeconds(1).getEpochSecond();
+        String value = sign(new SharedCapabilityService.Capability("shared-token", "abc123", null, null, expiresAt));
+
+        assertNull(sharedCapabilityService.find(requestWith(value)));
+    }
+
+    @Test
+    void testCapabilityWithoutTokenOrVersionIsRejected() throws Exception {
+        long expiresAt = Instant.now().plusSeconds(60).getEpochSecond();
+
+        assertNull(sharedCapabilityService.find(requestWith(
+                sign(new SharedCapabilityService.Capability(null, "abc123", null, null, expiresAt)))));
+        assertNull(sharedCapabilityService.find(requestWith(
+                sign(new SharedCapabilityService.Capability("shared-token", null, null, null, expiresAt)))));
+    }
+
+    @Test
+    void testSecretIsRequiredUnlessGenerationIsAllowed() {
+        assertThrows(IllegalStateException.class, () -> new SharedCapabilityService(objectMapper, "", false, 24));
+        assertThrows(IllegalStateException.class, () -> new SharedCapabilityService(objectMapper, null, false, 24));
+
+        SharedCapabilityService generated = new SharedCapabilityService(objectMapper, " ", true, 24);
+        String value = issue(generated, "shared-token", "abc123");
+        assertNotNull(generated.find(requestWith(value)));
+        assertNull(sharedCapabilityService.find(requestWith(value)));
+    }
+}
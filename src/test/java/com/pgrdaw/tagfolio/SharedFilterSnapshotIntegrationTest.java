@@ -0,0 +1,140 @@
+package com.pgrdaw.tagfolio;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.repository.FilterRepository;
+import com.pgrdaw.tagfolio.repository.ImageRepository;
+import com.pgrdaw.tagfolio.repository.TagRepository;
+import com.pgrdaw.tagfolio.repository.UserRepository;
+import com.pgrdaw.tagfolio.service.FilterService;
+import com.pgrdaw.tagfolio.service.ImageIndexService;
+import com.pgrdaw.tagfolio.service.SharedFilterSnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.shared-filter.snapshot-recheck-seconds=0")
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SharedFilterSnapshotIntegrationTest {
+
+    @Autowired
+    private SharedFilterSnapshotService sharedFilterSnapshotService;
+
+    @Autowired
+    private ImageIndexService imageIndexService;
+
+    @Autowired
+    private FilterService filterService;
+
+    @Autowired
+    private FilterRepository filterRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Long testUserId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        testUserId = transactionTemplate.execute(status ->
+                userRepository.save(new User("snapshotuser@tagfolio.com", passwordEncoder.encode("password"))).getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            filterRepository.deleteAll(filterRepository.findByUserId(testUserId));
+            TestImages.deleteImages(jdbcTemplate, testUserId);
+            tagRepository.findByName("snapshot-tag").ifPresent(tagRepository::delete);
+            userRepository.deleteById(testUserId);
+        });
+        imageIndexService.evict(testUserId);
+    }
+
+    private Long createImage(String fileName) {
+        return transactionTemplate.execute(status -> {
+            Tag tag = tagRepository.findByName("snapshot-tag").orElseGet(() -> tagRepository.save(new Tag("snapshot-tag")));
+            return imageRepository.save(TestImages.newImage(userRepository.findById(testUserId).orElseThrow(), fileName, null, tag)).getId();
+        });
+    }
+
+    private String shareFilter() throws JsonProcessingException {
+        String expression = objectMapper.writeValueAsString(List.of(Map.of("type", "tag", "value", "snapshot-tag")));
+        String shareableLink = transactionTemplate.execute(status -> {
+            User user = userRepository.findById(testUserId).orElseThrow();
+            return filterService.generateShareableLink(filterService.saveFilter("Snapshot Filter", expression, user).getId(), user);
+        });
+        return shareableLink.substring(shareableLink.lastIndexOf('/') + 1);
+    }
+
+    @Test
+    void testSnapshotIsTakenAgainWhenImagesChangeOnAnotherInstance() throws JsonProcessingException {
+        Long first = createImage("first.jpg");
+        String token = shareFilter();
+
+        SharedFilterSnapshotService.Snapshot snapshot = sharedFilterSnapshotService.getSnapshot(token);
+        assertNotNull(snapshot);
+        assertEquals(List.of(first), snapshot.getImageIds());
+        assertSame(snapshot, sharedFilterSnapshotService.getSnapshot(token));
+
+        Long second = TestImages.insertImage(jdbcTemplate, testUserId, "second.jpg", null);
+        Long tagId = tagRepository.findByName("snapshot-tag").orElseThrow().getId();
+        jdbcTemplate.update("INSERT INTO image_tag (image_id, tag_id) VALUES (?, ?)", second, tagId);
+        jdbcTemplate.update("UPDATE users SET images_version = images_version + 1 WHERE id = ?", testUserId);
+
+        SharedFilterSnapshotService.Snapshot retaken = sharedFilterSnapshotService.getSnapshot(token);
+        assertNotNull(retaken);
+        assertNotSame(snapshot, retaken);
+        assertEquals(new TreeSet<>(List.of(first, second)), new TreeSet<>(retaken.getImageIds()));
+        assertNotEquals(snapshot.getVersion(), retaken.getVersion());
+        assertSame(retaken, sharedFilterSnapshotService.getSnapshot(token));
+    }
+
+    @Test
+    void testSnapshotIsDroppedWhenTheSharedFilterIsDeletedOnAnotherInstance() throws JsonProcessingException {
+        createImage("kept.jpg");
+        String token = shareFilter();
+        assertNotNull(sharedFilterSnapshotService.getSnapshot(token));
+
+        jdbcTemplate.update("DELETE FROM shared_filters WHERE token = ?", token);
+
+        assertNull(sharedFilterSnapshotService.getSnapshot(token));
+    }
+}
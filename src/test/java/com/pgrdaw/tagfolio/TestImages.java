@@ -0,0 +1,45 @@
+package com.pgrdaw.tagfolio;
+
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+final class TestImages {
+
+    static final LocalDateTime IMPORTED_AT = LocalDateTime.of(2025, 6, 1, 9, 30, 15);
+
+    private TestImages() {
+    }
+
+    static Image newImage(User user, String fileName, Integer rating, Tag... tags) {
+        Image image = new Image(user);
+        image.setOriginalFileName(fileName);
+        image.setThumbnailFileName("thumb_" + fileName);
+        image.setImportedAt(IMPORTED_AT);
+        image.setRating(rating);
+        image.getTags().addAll(List.of(tags));
+        return image;
+    }
+
+    static Long insertImage(JdbcTemplate jdbcTemplate, Long userId, String fileName, Integer rating) {
+        jdbcTemplate.update("INSERT INTO images (user_id, original_file_name, thumbnail_file_name, rating) VALUES (?, ?, ?, ?)",
+                userId, fileName, "thumb_" + fileName, rating);
+        return jdbcTemplate.queryForObject("SELECT id FROM images WHERE user_id = ? AND original_file_name = ?",
+                Long.class, userId, fileName);
+    }
+
+    static void deleteImages(JdbcTemplate jdbcTemplate, Long userId) {
+        List<Long> metadataIds = jdbcTemplate.queryForList(
+                "SELECT metadata_id FROM images WHERE user_id = ? AND metadata_id IS NOT NULL", Long.class, userId);
+        jdbcTemplate.update("DELETE FROM image_tag WHERE image_id IN (SELECT id FROM images WHERE user_id = ?)", userId);
+        jdbcTemplate.update("DELETE FROM image_display_fields WHERE image_id IN (SELECT id FROM images WHERE user_id = ?)", userId);
+        jdbcTemplate.update("DELETE FROM images WHERE user_id = ?", userId);
+        for (Long metadataId : metadataIds) {
+            jdbcTemplate.update("DELETE FROM image_metadata WHERE id = ?", metadataId);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.pgrdaw.tagfolio.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgrdaw.tagfolio.model.Image;
+import com.pgrdaw.tagfolio.model.Tag;
+import com.pgrdaw.tagfolio.model.User;
+import com.pgrdaw.tagfolio.service.util.FilterFieldService;
+import com.pgrdaw.tagfolio.service.util.ImageSortService;
+import com.pgrdaw.tagfolio.service.util.ImageSortService.SortField;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the filter index of a user against a full sort and the compiled filters, after random inserts, updates
+ * that move images between positions, updates that keep them in place, and deletes.
+ */
+public class UserImageIndexTest {
+
+    private static final int INITIAL_IMAGES = 120;
+    private static final int OPERATIONS = 2_000;
+    private static final int CHECK_EVERY = 40;
+    private static final List<String> FILE_NAMES = Arrays.asList("a.jpg", "A.jpg", "b.JPG", "stra\u00dfe.jpg", "STRASSE.jpg",
+            "\u00c9mile.png", "emile.png", "z.jpg", null);
+    private static final Map<String, Long> TAG_IDS = Map.of("red", 1L, "green", 2L, "blue", 3L, "night", 4L, "sky", 5L);
+    private static final List<LocalDateTime> DATES = Arrays.asList(
+            LocalDateTime.of(2023, 1, 1, 0, 0, 0),
+            LocalDateTime.of(2023, 6, 15, 12, 30, 45),
+            LocalDateTime.of(2024, 2, 29, 23, 59, 59),
+            LocalDateTime.of(2024, 5, 17, 10, 20, 30),
+            null);
+
+    private final FilterExpressionEvaluator evaluator =
+            new FilterExpressionEvaluator(new FilterFieldService(), new ObjectMapper(), 0);
+    private final User user = new User("index@tagfolio.com", "password");
+
+    @Test
+    void testSortedOrdersMatchFullSortAfterChanges() {
+        Random random = new Random(20260101L);
+        UserImageIndex index = new UserImageIndex();
+        Map<Long, ImageIndexService.IndexedImage> model = new HashMap<>();
+        for (int i = 0; i < INITIAL_IMAGES; i++) {
+            put(index, model, randomImage(random, randomNewId(random, model)));
+        }
+        // Sort once by every field, so the orders are kept up to date by the changes below instead of sorted again.
+        checkSortOrders(random, index, model);
+
+        for (int i = 1; i <= OPERATIONS; i++) {
+            applyRandomChange(random, index, model);
+            if (i % CHECK_EVERY == 0) {
+                checkSortOrders(random, index, model);
+            }
+        }
+        checkSortOrders(random, index, model);
+    }
+
+    @Test
+    void testSortOrderIsBuiltAfterChanges() {
+        Random random = new Random(7L);
+        UserImageIndex index = new UserImageIndex();
+        Map<Long, ImageIndexService.IndexedImage> model = new HashMap<>();
+        for (int i = 0; i < INITIAL_IMAGES; i++) {
+            put(index, model, randomImage(random, randomNewId(random, model)));
+        }
+        for (int i = 0; i < OPERATIONS / 10; i++) {
+            applyRandomChange(random, index, model);
+        }
+        // Nothing was sorted before the changes, so every order is sorted for the first time here.
+        checkSortOrders(random, index, model);
+    }
+
+    @Test
+    void testSortBreaksTiesByIdInBothDirections() {
+        UserImageIndex index = new UserImageIndex();
+        LocalDateTime date = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        for (long id : new long[]{30, 10, 20}) {
+            index.put(new ImageIndexService.IndexedImage(id, "same.jpg", date, date, date, 3, Map.of()));
+        }
+        index.put(new ImageIndexService.IndexedImage(5L, null, null, null, null, null, Map.of()));
+        index.put(new ImageIndexService.IndexedImage(40L, "other.jpg", date.plusDays(1), date, date, 4, Map.of()));
+
+        assertEquals(List.of(10L, 20L, 30L, 40L, 5L), index.sort(SortField.RATING, false, null).toImageIds());
+        assertEquals(List.of(40L, 10L, 20L, 30L, 5L), index.sort(SortField.RATING, true, null).toImageIds());
+        assertEquals(List.of(40L, 10L, 20L, 30L, 5L), index.sort(SortField.CREATED, true, null).toImageIds());
+        assertEquals(List.of(40L, 10L, 20L, 30L, 5L), index.sort(SortField.FILENAME, false, null).toImageIds());
+        assertEquals(List.of(10L, 20L, 30L, 40L, 5L), index.sort(SortField.FILENAME, true, null).toImageIds());
+    }
+
+    @Test
+    void testFiltersMatchCompiledFiltersAfterChanges() {
+        Random random = new Random(42L);
+        UserImageIndex index = new UserImageIndex();
+        Map<Long, ImageIndexService.IndexedImage> model = new HashMap<>();
+        for (int i = 0; i < INITIAL_IMAGES; i++) {
+            put(index, model, randomImage(random, randomNewId(random, model)));
+        }
+
+        for (int i = 1; i <= OPERATIONS; i++) {
+            applyRandomChange(random, index, model);
+            if (i % CHECK_EVERY != 0) {
+                continue;
+            }
+            List<Image> images = model.values().stream().map(this::toImage).toList();
+            for (int j = 0; j < 25; j++) {
+                CompiledFilter filter = evaluator.compile(randomExpression(random));
+                if (filter == CompiledFilter.NONE) {
+                    continue;
+                }
+                Collection<Long> candidates = random.nextBoolean() ? null : randomCandidates(random, model);
+                List<Long> expected = images.stream()
+                        .filter(image -> candidates == null || candidates.contains(image.getId()))
+                        .filter(filter::matches)
+                        .map(Image::getId)
+                        .sorted()
+                        .toList();
+                List<Long> actual = new ArrayList<>();
+                index.collectMatching(filter, candidates, actual);
+                actual.sort(null);
+                assertEquals(expected, actual, "Filter " + filter.getRoot());
+                for (Image image : images) {
+                    assertEquals(filter.matches(image), index.matches(filter, image.getId()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRemovedImagesLeaveTheIndex() {
+        UserImageIndex index = new UserImageIndex();
+        LocalDateTime date = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        index.put(new ImageIndexService.IndexedImage(1L, "a.jpg", date, date, date, 1, Map.of(1L, "red")));
+        index.put(new ImageIndexService.IndexedImage(2L, "b.jpg", date, date, date, 2, Map.of(1L, "red")));
+        index.remove(1L);
+
+        assertFalse(index.contains(1L));
+        assertTrue(index.contains(2L));
+        List<Long> matching = new ArrayList<>();
+        index.collectMatching(evaluator.compile(List.of(Map.of("type", "tag", "value", "red"))), null, matching);
+        assertEquals(List.of(2L), matching);
+        List<Long> ids = new ArrayList<>();
+        index.collectImageIds(List.of(1L, 2L, 3L), ids);
+        assertEquals(List.of(2L), ids);
+        assertEquals(List.of(2L), index.sort(SortField.FILENAME, false, null).toImageIds());
+    }
+
+    private void applyRandomChange(Random random, UserImageIndex index, Map<Long, ImageIndexService.IndexedImage> model) {
+        int operation = random.nextInt(10);
+        if (model.isEmpty() || operation < 3) {
+            put(index, model, randomImage(random, randomNewId(random, model)));
+        } else if (operation < 7) {
+            // An update with new values, which usually moves the image in every order.
+            ImageIndexService.IndexedImage image = randomImage(random, pickId(random, model));
+            if (random.nextInt(4) == 0) {
+                // Changes that do not touch the tags report none.
+                image = new ImageIndexService.IndexedImage(image.imageId(), image.originalFileName(), image.createdAt(),
+                        image.modifiedAt(), image.importedAt(), image.rating(), null);
+            }
+            put(index, model, image);
+        } else if (operation < 8) {
+            // An update with the same values, which keeps the image where it is.
+            put(index, model, model.get(pickId(random, model)));
+        } else {
+            Long imageId = pickId(random, model);
+            index.remove(imageId);
+            model.remove(imageId);
+        }
+    }
+
+    private static void put(UserImageIndex index, Map<Long, ImageIndexService.IndexedImage> model,
+                            ImageIndexService.IndexedImage image) {
+        index.put(image);
+        ImageIndexService.IndexedImage previous = model.get(image.imageId());
+        Map<Long, String> tags = image.tags() != null ? image.tags() : previous != null ? previous.tags() : Map.of();
+        model.put(image.imageId(), new ImageIndexService.IndexedImage(image.imageId(), image.originalFileName(),
+                image.createdAt(), image.modifiedAt(), image.importedAt(), image.rating(), tags));
+    }
+
+    private void checkSortOrders(Random random, UserImageIndex index, Map<Long, ImageIndexService.IndexedImage> model) {
+        for (SortField field : SortField.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                Collection<Long> candidates = random.nextBoolean() ? null : randomCandidates(random, model);
+                List<Long> expected = model.values().stream()
+                        .filter(image -> candidates == null || candidates.contains(image.imageId()))
+                        .sorted(comparator(field, descending))
+                        .map(ImageIndexService.IndexedImage::imageId)
+                        .toList();
+                assertEquals(expected, index.sort(field, descending, candidates).toImageIds(),
+                        field + (descending ? " desc" : " asc"));
+            }
+        }
+    }
+
+    /**
+     * The order the index must keep: values ascending or descending, images without a value last, ties by ID.
+     */
+    private static Comparator<ImageIndexService.IndexedImage> comparator(SortField field, boolean descending) {
+        return (a, b) -> {
+            int result = switch (field) {
+                case FILENAME -> compareNullsLast(fileNameKey(a), fileNameKey(b), descending);
+                case CREATED -> compareNullsLast(a.createdAt(), b.createdAt(), descending);
+                case MODIFIED -> compareNullsLast(a.modifiedAt(), b.modifiedAt(), descending);
+                case IMPORTED -> compareNullsLast(a.importedAt(), b.importedAt(), descending);
+                case RATING -> compareNullsLast(a.rating(), b.rating(), descending);
+            };
+            return result != 0 ? result : Long.compare(a.imageId(), b.imageId());
+        };
+    }
+
+    private static <T extends Comparable<T>> int compareNullsLast(T a, T b, boolean descending) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return descending ? b.compareTo(a) : a.compareTo(b);
+    }
+
+    private static String fileNameKey(ImageIndexService.IndexedImage image) {
+        return image.originalFileName() != null ? ImageSortService.getFileNameSortKey(image.originalFileName()) : null;
+    }
+
+    private ImageIndexService.IndexedImage randomImage(Random random, Long imageId) {
+        Map<Long, String> tags = new HashMap<>();
+        TAG_IDS.forEach((name, tagId) -> {
+            if (random.nextBoolean()) {
+                tags.put(tagId, name);
+            }
+        });
+        return new ImageIndexService.IndexedImage(imageId, pick(random, FILE_NAMES), pick(random, DATES),
+                pick(random, DATES), pick(random, DATES), random.nextInt(6) == 0 ? null : random.nextInt(4), tags);
+    }
+
+    private Image toImage(ImageIndexService.IndexedImage indexed) {
+        Image image = new Image(user);
+        image.setId(indexed.imageId());
+        image.setOriginalFileName(indexed.originalFileName());
+        image.setCreatedAt(indexed.createdAt());
+        image.setModifiedAt(indexed.modifiedAt());
+        image.setImportedAt(indexed.importedAt());
+        image.setRating(indexed.rating());
+        indexed.tags().values().forEach(name -> image.getTags().add(new Tag(name)));
+        return image;
+    }
+
+    private List<Map<String, String>> randomExpression(Random random) {
+        List<Map<String, String>> expression = new ArrayList<>();
+        int terms = 1 + random.nextInt(4);
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                expression.add(token("operator", random.nextBoolean() ? "AND" : "OR"));
+            }
+            if (random.nextInt(4) == 0) {
+                expression.add(token("operator", "NOT"));
+            }
+            switch (random.nextInt(3)) {
+                case 0 -> expression.add(token("tag", pick(random, new ArrayList<>(TAG_IDS.keySet()))));
+                case 1 -> {
+                    expression.add(token("comparator-field", "rating"));
+                    expression.add(token("comparator", pick(random, List.of("=", "<", ">", "<=", ">="))));
+                    expression.add(token("value", String.valueOf(random.nextInt(4))));
+                }
+                default -> {
+                    expression.add(token("comparator-field", pick(random, List.of("created", "modified", "imported"))));
+                    expression.add(token("comparator", pick(random, List.of("=", "<", ">", "<=", ">="))));
+                    expression.add(token("value", pick(random, List.of("2023", "2024-02", "2024-05-17", "2023-06-15 12:30:45"))));
+                }
+            }
+        }
+        return expression;
+    }
+
+    private static Collection<Long> randomCandidates(Random random, Map<Long, ImageIndexService.IndexedImage> model) {
+        Set<Long> candidates = new HashSet<>();
+        for (Long imageId : model.keySet()) {
+            if (random.nextInt(3) == 0) {
+                candidates.add(imageId);
+            }
+        }
+        // Candidates that are not indexed are left out.
+        candidates.add(-1L);
+        return candidates;
+    }
+
+    private static Long randomNewId(Random random, Map<Long, ImageIndexService.IndexedImage> model) {
+        Long imageId;
+        do {
+            imageId = 1L + random.nextInt(100_000);
+        } while (model.containsKey(imageId));
+        return imageId;
+    }
+
+    private static Long pickId(Random random, Map<Long, ImageIndexService.IndexedImage> model) {
+        List<Long> ids = new ArrayList<>(model.keySet());
+        ids.sort(null);
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static <T> T pick(Random random, List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Map<String, String> token(String type, String value) {
+        return Map.of("type", type, "value", value);
+    }
+}